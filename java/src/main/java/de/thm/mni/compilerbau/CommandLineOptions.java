@@ -1,17 +1,28 @@
 package de.thm.mni.compilerbau;
 
 import java.io.*;
+import java.util.HashMap;
+import java.util.Map;
 
 import static java.lang.System.exit;
 
 public class CommandLineOptions {
     public enum PhaseOption {
-        TOKENS, PARSE, ABSYN, TABLES, SEMANT, VARS;
+        TOKENS, PARSE, ABSYN, TABLES, SEMANT, CALLGRAPH, MODREF, VARS, STACK, IR;
     }
 
     public PhaseOption phaseOption = null;
     public String inFilename = "";
     public String outFilename = "";
+    public boolean lazyBodies = false;
+    public int recursionDepth = 0; // 0 if recursive cycles have no bound
+    public final Map<String, Integer> recursionDepths = new HashMap<>();
+    public int frameLimit = 1024;
+    public int optimizationLevel = 0;
+    public int unrollBudget = 128;
+    public int versionBudget = 128;
+    public int inlineBudget = 64;
+    public boolean verbose = false;
 
     private static void usageError(String format, Object... args) {
         System.err.printf("Usage error: " + format, args);
@@ -31,7 +42,23 @@ public class CommandLineOptions {
         out.println("  --absyn             Phase 3: Creates an abstract syntax tree from the input tokens and prints it.");
         out.println("  --tables            Phase 4a: Builds a symbol table and prints its entries.");
         out.println("  --semant            Phase 4b: Performs the semantic analysis.");
+        out.println("  --callgraph         Phase 4c: Builds the call graph and prints it.");
+        out.println("  --modref            Phase 4c: Analyses which reference parameters each procedure reads or writes and prints it.");
         out.println("  --vars              Phase 5: Allocates memory space for variables and prints the amount of allocated memory.");
+        out.println("  --stack             Phase 5b: Computes the worst-case stack usage of the code for the selected -O level and prints it.");
+        out.println("  --ir                Phase 5c: Translates the procedures into SSA form, optimizes them and prints the result.");
+        out.println("  --recursion-depth=[PROC=]N");
+        out.println("                      Bounds recursive cycles (through PROC) to N activations for '--stack'.");
+        out.println("  --frame-limit=N     Reports frames larger than N bytes with '--stack' (default 1024).");
+        out.println("  --lazy-bodies       Skips procedure bodies while parsing. They are not parsed at all with '--tables'.");
+        out.println("  -O0                 Generates code directly from the abstract syntax tree, without any optimizations (default).");
+        out.println("  -O1                 Optimizes the procedures in SSA form and generates code from them.");
+        out.println("  -O2                 Additionally optimizes loops.");
+        out.println("  --unroll-budget=N   Lets a loop grow by at most N instructions when it is unrolled with '-O2' (default 128).");
+        out.println("  --version-budget=N  Lets a procedure grow by at most N instructions when loops are copied to run without");
+        out.println("                      bounds checks with '-O2' (default 128).");
+        out.println("  --inline-budget=N   Lets a procedure grow by at most N instructions when calls are inlined with '-O2' (default 64).");
+        out.println("  --verbose           Prints the time spent in every optimization pass and analysis to stderr.");
         out.println("  --help              Show this help.");
     }
 
@@ -41,6 +68,16 @@ public class CommandLineOptions {
     }
 
 
+    private static int positiveNumber(String option, String value) {
+        try {
+            final int number = Integer.parseInt(value);
+            if (number > 0) return number;
+        } catch (NumberFormatException ignored) {
+        }
+        usageError("Option '%s' expects a positive number!", option);
+        return 0;
+    }
+
     static CommandLineOptions parse(String[] args) {
         CommandLineOptions options = new CommandLineOptions();
 
@@ -51,13 +88,35 @@ public class CommandLineOptions {
                 case "--absyn" -> options.setPhaseOption(PhaseOption.ABSYN);
                 case "--tables" -> options.setPhaseOption(PhaseOption.TABLES);
                 case "--semant" -> options.setPhaseOption(PhaseOption.SEMANT);
+                case "--callgraph" -> options.setPhaseOption(PhaseOption.CALLGRAPH);
+                case "--modref" -> options.setPhaseOption(PhaseOption.MODREF);
                 case "--vars" -> options.setPhaseOption(PhaseOption.VARS);
+                case "--stack" -> options.setPhaseOption(PhaseOption.STACK);
+                case "--ir" -> options.setPhaseOption(PhaseOption.IR);
+                case "--lazy-bodies" -> options.lazyBodies = true;
+                case "-O0" -> options.optimizationLevel = 0;
+                case "-O1" -> options.optimizationLevel = 1;
+                case "-O2" -> options.optimizationLevel = 2;
+                case "--verbose" -> options.verbose = true;
                 case "--help" -> {
                     showUsage(System.out);
                     exit(0);
                 }
                 default -> {
-                    if (!name.startsWith("--")) {
+                    if (name.startsWith("--recursion-depth=")) {
+                        final String value = name.substring("--recursion-depth=".length());
+                        final int separator = value.indexOf('=');
+                        if (separator < 0) options.recursionDepth = positiveNumber(name, value);
+                        else options.recursionDepths.put(value.substring(0, separator), positiveNumber(name, value.substring(separator + 1)));
+                    } else if (name.startsWith("--frame-limit=")) {
+                        options.frameLimit = positiveNumber(name, name.substring("--frame-limit=".length()));
+                    } else if (name.startsWith("--unroll-budget=")) {
+                        options.unrollBudget = positiveNumber(name, name.substring("--unroll-budget=".length()));
+                    } else if (name.startsWith("--inline-budget=")) {
+                        options.inlineBudget = positiveNumber(name, name.substring("--inline-budget=".length()));
+                    } else if (name.startsWith("--version-budget=")) {
+                        options.versionBudget = positiveNumber(name, name.substring("--version-budget=".length()));
+                    } else if (!name.startsWith("-")) {
                         if (options.inFilename.isEmpty()) options.inFilename = name;
                         else if (options.outFilename.isEmpty()) options.outFilename = name;
                         else usageError("Too many positional arguments!");
@@ -73,22 +132,40 @@ public class CommandLineOptions {
         return options;
     }
 
-    public PrintWriter getOutputWriter() throws IOException {
-        // Unclosable stream to avoid closing stdout when no output file is given.
-        // Source: https://stackoverflow.com/a/23791138
-        class UnclosableOutputStream extends FilterOutputStream {
-            public UnclosableOutputStream(OutputStream out) {
-                super(out);
-            }
+    /**
+     * Stream that does not close the underlying stream, to avoid closing stdout.
+     * Source: https://stackoverflow.com/a/23791138
+     */
+    private static class UnclosableOutputStream extends FilterOutputStream {
+        public UnclosableOutputStream(OutputStream out) {
+            super(out);
+        }
 
-            @Override
-            public void close() throws IOException {
-                out.flush();
-            }
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len); // FilterOutputStream would write every byte on its own
         }
 
+        @Override
+        public void close() throws IOException {
+            out.flush();
+        }
+    }
+
+    public PrintWriter getOutputWriter() throws IOException {
+        // Unclosable stream to avoid closing stdout when no output file is given.
         if (this.outFilename.isEmpty()) return new PrintWriter(new UnclosableOutputStream(System.out));
         return new PrintWriter(new FileWriter(this.outFilename));
     }
+
+    /**
+     * Creates a buffered writer for the output of the phase options, like the tree printed by '--absyn'.
+     * It writes to stdout using the same encoding as {@link System#out}. Closing the writer only flushes it.
+     *
+     * @return The writer for stdout.
+     */
+    public PrintWriter getConsoleWriter() {
+        return new PrintWriter(new BufferedWriter(new OutputStreamWriter(new UnclosableOutputStream(System.out), System.out.charset())));
+    }
 }
 
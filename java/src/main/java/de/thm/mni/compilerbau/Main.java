@@ -1,13 +1,24 @@
 package de.thm.mni.compilerbau;
 
+import de.thm.mni.compilerbau.absyn.AstPrinter;
 import de.thm.mni.compilerbau.absyn.Program;
+import de.thm.mni.compilerbau.ir.Procedure;
 import de.thm.mni.compilerbau.phases._01_scanner.Scanner;
+import de.thm.mni.compilerbau.phases._02_03_parser.LazyBody;
+import de.thm.mni.compilerbau.phases._02_03_parser.LazyBodyScanner;
 import de.thm.mni.compilerbau.phases._02_03_parser.Parser;
 import de.thm.mni.compilerbau.phases._02_03_parser.Sym;
 import de.thm.mni.compilerbau.phases._04a_tablebuild.TableBuilder;
 import de.thm.mni.compilerbau.phases._04b_semant.ProcedureBodyChecker;
+import de.thm.mni.compilerbau.phases._04c_callgraph.CallGraph;
+import de.thm.mni.compilerbau.phases._04c_callgraph.ModRefAnalysis;
+import de.thm.mni.compilerbau.phases._04d_optimize.ConstantFolder;
+import de.thm.mni.compilerbau.phases._05_varalloc.StackUsage;
 import de.thm.mni.compilerbau.phases._05_varalloc.VarAllocator;
+import de.thm.mni.compilerbau.phases._05b_middleend.IrGenerator;
+import de.thm.mni.compilerbau.phases._05b_middleend.PassManager;
 import de.thm.mni.compilerbau.phases._06_codegen.CodeGenerator;
+import de.thm.mni.compilerbau.phases._06_codegen.IrCodeGenerator;
 import de.thm.mni.compilerbau.table.Identifier;
 import de.thm.mni.compilerbau.utils.SplError;
 import java_cup.runtime.DefaultSymbolFactory;
@@ -18,6 +29,7 @@ import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.List;
 
 import static java.lang.System.exit;
 
@@ -65,9 +77,13 @@ class Main {
             }
 
             //Parse errors are caught by the below exception handler
-            Parser parser = new Parser(scanner, symbolFactory);
+            // With --lazy-bodies procedure bodies are skipped here and parsed when they are first used.
+            Parser parser = new Parser(options.lazyBodies ? new LazyBodyScanner(scanner, symbolFactory, options) : scanner, symbolFactory);
             parser.options = options; // Inject the command line options into the parser to grant it access to feature flags.
             Program program = (Program) parser.parse().value; // Change 'parse' to 'debug_parse' for detailed parsing output. Don't forget to change it back
+            // Only the symbol tables can be built without the bodies. All other phases need them, so their syntax
+            // errors are reported now instead of in the middle of a phase's output.
+            if (options.lazyBodies && options.phaseOption != CommandLineOptions.PhaseOption.TABLES) LazyBody.forceAll(program);
 
             if (options.phaseOption == CommandLineOptions.PhaseOption.PARSE) {
                 System.out.println("Input parsed successfully!");
@@ -75,7 +91,10 @@ class Main {
             }
 
             if (options.phaseOption == CommandLineOptions.PhaseOption.ABSYN) {
-                System.out.println(program);
+                try (PrintWriter out = options.getConsoleWriter()) {
+                    program.accept(new AstPrinter(out));
+                    out.println();
+                }
                 exit(0);
             }
 
@@ -88,11 +107,64 @@ class Main {
                 exit(0);
             }
 
+            if (options.optimizationLevel > 0) program = ConstantFolder.fold(program);
+
+            final var callGraph = CallGraph.build(program);
+            if (options.phaseOption == CommandLineOptions.PhaseOption.CALLGRAPH) {
+                try (PrintWriter out = options.getConsoleWriter()) {
+                    callGraph.print(out);
+                }
+                exit(0);
+            }
+
+            ModRefAnalysis.analyze(callGraph);
+            if (options.phaseOption == CommandLineOptions.PhaseOption.MODREF) {
+                try (PrintWriter out = options.getConsoleWriter()) {
+                    ModRefAnalysis.formatSideEffects(out, callGraph);
+                }
+                exit(0);
+            }
+
             new VarAllocator(options).allocVars(program, table);
             if (options.phaseOption == CommandLineOptions.PhaseOption.VARS) exit(0);
 
+            if (options.phaseOption == CommandLineOptions.PhaseOption.STACK && options.optimizationLevel == 0) {
+                try (PrintWriter out = options.getConsoleWriter()) {
+                    StackUsage.analyze(callGraph, options).print(out);
+                }
+                exit(0);
+            }
+
+            if (options.optimizationLevel == 0 && options.phaseOption != CommandLineOptions.PhaseOption.IR) {
+                try (PrintWriter out = options.getOutputWriter()) {
+                    new CodeGenerator(options, out).generateCode(program, table);
+                } catch (IOException e) {
+                    System.err.printf("An error occurred: Cannot open output file '%s'\n", options.outFilename);
+                    exit(1);
+                }
+                exit(0);
+            }
+
+            final PassManager passManager = new PassManager(options);
+            final List<Procedure> procedures = passManager.optimize(IrGenerator.generate(callGraph), callGraph);
+            if (options.verbose) passManager.printStatistics(new PrintWriter(System.err));
+            if (options.phaseOption == CommandLineOptions.PhaseOption.STACK) {
+                // The frames of the optimized code are only known once the code generator has laid them out
+                try (PrintWriter out = options.getConsoleWriter()) {
+                    new IrCodeGenerator(options, out).layoutFrames(procedures);
+                    StackUsage.analyze(callGraph, procedures, options).print(out);
+                }
+                exit(0);
+            }
+            if (options.phaseOption == CommandLineOptions.PhaseOption.IR) {
+                try (PrintWriter out = options.getConsoleWriter()) {
+                    procedures.forEach(procedure -> procedure.print(out));
+                }
+                exit(0);
+            }
+
             try (PrintWriter out = options.getOutputWriter()) {
-                new CodeGenerator(options, out).generateCode(program, table);
+                new IrCodeGenerator(options, out).generateCode(procedures);
             } catch (IOException e) {
                 System.err.printf("An error occurred: Cannot open output file '%s'\n", options.outFilename);
                 exit(1);
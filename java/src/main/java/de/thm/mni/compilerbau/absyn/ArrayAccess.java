@@ -25,11 +25,6 @@ public final class ArrayAccess extends Variable {
         this.index = index;
     }
 
-    @Override
-    public String toString() {
-        return formatAst("ArrayAccess", array, index);
-    }
-
     @Override
     public void accept(Visitor visitor) {
         visitor.visit(this);
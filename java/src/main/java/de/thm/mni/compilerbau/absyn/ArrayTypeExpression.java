@@ -26,11 +26,6 @@ public final class ArrayTypeExpression extends TypeExpression {
         this.arraySize = arraySize;
     }
 
-    @Override
-    public String toString() {
-        return formatAst("ArrayTypeExpression", baseType, arraySize);
-    }
-
     @Override
     public void accept(Visitor visitor) {
         visitor.visit(this);
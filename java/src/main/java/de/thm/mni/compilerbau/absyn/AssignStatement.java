@@ -25,11 +25,6 @@ public final class AssignStatement extends Statement {
         this.value = value;
     }
 
-    @Override
-    public String toString() {
-        return formatAst("AssignStatement", target, value);
-    }
-
     @Override
     public void accept(Visitor visitor) {
         visitor.visit(this);
@@ -0,0 +1,215 @@
+package de.thm.mni.compilerbau.absyn;
+
+import de.thm.mni.compilerbau.absyn.visitor.Visitor;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Prints an abstract syntax tree in the format used by '--absyn'.
+ * <p>
+ * Every node is printed as its name followed by its arguments in parentheses, one argument per line and indented by
+ * two spaces per nesting level. Nodes without arguments are printed as "Name()".
+ * The output is written to the sink while the tree is traversed, so printing takes time proportional to the size of
+ * the output, no matter how deeply the tree is nested. The traversal uses an explicit stack instead of recursion, so
+ * deeply nested trees do not exhaust the call stack either.
+ */
+public class AstPrinter implements Visitor {
+    private static final int INDENT = 2;
+
+    private final PrintWriter out;
+    private int depth = 0;
+    private String spaces = ""; // Written in parts for indentation, grown when the tree gets deeper
+    private final Deque<Object> pending = new ArrayDeque<>(); // The parts still to be printed, the next one on top
+    private boolean printing = false;
+
+    private final Runnable firstSeparator = () -> separator(true);
+    private final Runnable nextSeparator = () -> separator(false);
+    private final Runnable close = this::close;
+
+    /**
+     * @param out The sink the tree is written to.
+     */
+    public AstPrinter(PrintWriter out) {
+        this.out = out;
+    }
+
+    /**
+     * Formats a node and all of its children.
+     *
+     * @param node The node to format.
+     * @return The same text that would be printed for the node.
+     */
+    public static String toString(Node node) {
+        final StringWriter buffer = new StringWriter();
+        final PrintWriter out = new PrintWriter(buffer);
+        node.accept(new AstPrinter(out));
+        out.flush();
+        return buffer.toString();
+    }
+
+    /**
+     * Writes the given parts in order. A part is either a node, which is visited, an action, which is run, or any
+     * other value, which is printed as text. Nodes reached while printing are not visited recursively, but queued on
+     * an explicit stack in front of the remaining parts, so trees of any depth are printed without exhausting the
+     * call stack.
+     */
+    private void print(List<Object> parts) {
+        for (int i = parts.size() - 1; i >= 0; i--) pending.push(parts.get(i));
+        if (printing) return;
+
+        printing = true;
+        try {
+            while (!pending.isEmpty()) {
+                final Object part = pending.pop();
+                if (part instanceof Node node) node.accept(this);
+                else if (part instanceof Runnable action) action.run();
+                else out.print(part == null ? "NULL" : part.toString());
+            }
+        } finally {
+            printing = false;
+            pending.clear();
+        }
+    }
+
+    private void open(String name) {
+        out.print(name);
+        out.print('(');
+        depth++;
+    }
+
+    private void separator(boolean first) {
+        out.print(first ? "\n" : ",\n");
+        final int width = depth * INDENT;
+        if (spaces.length() < width) spaces = " ".repeat(Math.max(width, 2 * spaces.length()));
+        out.write(spaces, 0, width);
+    }
+
+    private void close() {
+        depth--;
+        out.print(')');
+    }
+
+    /**
+     * Prints a node with its arguments. An argument may also be a list created by {@link #list(String, List)}.
+     */
+    private void node(String name, Object... arguments) {
+        final List<Object> parts = new ArrayList<>(2 * arguments.length + 2);
+        parts.add((Runnable) () -> open(name));
+        for (int i = 0; i < arguments.length; i++) {
+            parts.add(i == 0 ? firstSeparator : nextSeparator);
+            parts.add(arguments[i]);
+        }
+        parts.add(close);
+        print(parts);
+    }
+
+    /**
+     * @return An action printing the nodes as a list with the given name.
+     */
+    private Runnable list(String name, List<? extends Node> nodes) {
+        return () -> node(name, nodes.toArray());
+    }
+
+    @Override
+    public void visit(ArrayAccess arrayAccess) {
+        node("ArrayAccess", arrayAccess.array, arrayAccess.index);
+    }
+
+    @Override
+    public void visit(ArrayTypeExpression arrayTypeExpression) {
+        node("ArrayTypeExpression", arrayTypeExpression.baseType, arrayTypeExpression.arraySize);
+    }
+
+    @Override
+    public void visit(AssignStatement assignStatement) {
+        node("AssignStatement", assignStatement.target, assignStatement.value);
+    }
+
+    @Override
+    public void visit(BinaryExpression binaryExpression) {
+        node("BinaryExpression", binaryExpression.operator, binaryExpression.leftOperand, binaryExpression.rightOperand);
+    }
+
+    @Override
+    public void visit(UnaryExpression unaryExpression) {
+        node("UnaryExpression", unaryExpression.operator, unaryExpression.operand);
+    }
+
+    @Override
+    public void visit(CallStatement callStatement) {
+        node("CallStatement", callStatement.procedureName, list("Arguments", callStatement.arguments));
+    }
+
+    @Override
+    public void visit(CompoundStatement compoundStatement) {
+        node("CompoundStatement", compoundStatement.statements.toArray());
+    }
+
+    @Override
+    public void visit(EmptyStatement emptyStatement) {
+        node("EmptyStatement");
+    }
+
+    @Override
+    public void visit(IfStatement ifStatement) {
+        node("IfStatement", ifStatement.condition, ifStatement.thenPart, ifStatement.elsePart);
+    }
+
+    @Override
+    public void visit(IntLiteral intLiteral) {
+        node("IntLiteral", intLiteral.value);
+    }
+
+    @Override
+    public void visit(NamedTypeExpression namedTypeExpression) {
+        node("NamedTypeExpression", namedTypeExpression.name);
+    }
+
+    @Override
+    public void visit(NamedVariable namedVariable) {
+        node("NamedVariable", namedVariable.name);
+    }
+
+    @Override
+    public void visit(ParameterDefinition parameterDefinition) {
+        node("ParameterDefinition", parameterDefinition.name, parameterDefinition.typeExpression, parameterDefinition.isReference);
+    }
+
+    @Override
+    public void visit(ProcedureDefinition procedureDefinition) {
+        node("ProcedureDefinition", procedureDefinition.name,
+                list("Parameters", procedureDefinition.parameters),
+                list("Variables", procedureDefinition.variables),
+                list("Body", procedureDefinition.body));
+    }
+
+    @Override
+    public void visit(Program program) {
+        node("Program", program.definitions.toArray());
+    }
+
+    @Override
+    public void visit(TypeDefinition typeDefinition) {
+        node("TypeDefinition", typeDefinition.name, typeDefinition.typeExpression);
+    }
+
+    @Override
+    public void visit(VariableDefinition variableDefinition) {
+        node("VariableDefinition", variableDefinition.name, variableDefinition.typeExpression);
+    }
+
+    @Override
+    public void visit(VariableExpression variableExpression) {
+        node("VariableExpression", variableExpression.variable);
+    }
+
+    @Override
+    public void visit(WhileStatement whileStatement) {
+        node("WhileStatement", whileStatement.condition, whileStatement.body);
+    }
+}
@@ -110,11 +110,6 @@ public final class BinaryExpression extends Expression {
         this.rightOperand = rightOperand;
     }
 
-    @Override
-    public String toString() {
-        return formatAst("BinaryExpression", operator, leftOperand, rightOperand);
-    }
-
     @Override
     public void accept(Visitor visitor) {
         visitor.visit(this);
@@ -2,6 +2,7 @@ package de.thm.mni.compilerbau.absyn;
 
 import de.thm.mni.compilerbau.absyn.visitor.Visitor;
 import de.thm.mni.compilerbau.table.Identifier;
+import de.thm.mni.compilerbau.table.ProcedureEntry;
 
 import java.util.List;
 
@@ -17,6 +18,11 @@ public non-sealed class CallStatement extends Statement {
     public final Identifier procedureName;
     public final List<Expression> arguments;
 
+    /**
+     * The entry of the called procedure. It is bound during phase 4b, when the name is resolved for the first time.
+     */
+    public ProcedureEntry procedureEntry;
+
     /**
      * Creates a new node representing a procedure call.
      *
@@ -30,11 +36,6 @@ public non-sealed class CallStatement extends Statement {
         this.arguments = arguments;
     }
 
-    @Override
-    public String toString() {
-        return formatAst("CallStatement", procedureName, formatAst("Arguments", arguments.toArray()));
-    }
-
     @Override
     public void accept(Visitor visitor) {
         visitor.visit(this);
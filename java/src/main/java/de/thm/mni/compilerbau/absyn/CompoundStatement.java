@@ -24,11 +24,6 @@ public final class CompoundStatement extends Statement {
         this.statements = statements;
     }
 
-    @Override
-    public String toString() {
-        return formatAst("CompoundStatement", statements.toArray());
-    }
-
     @Override
     public void accept(Visitor visitor) {
         visitor.visit(this);
@@ -15,11 +15,6 @@ public final class EmptyStatement extends Statement {
         super(position);
     }
 
-    @Override
-    public String toString() {
-        return formatAst("EmptyStatement");
-    }
-
     @Override
     public void accept(Visitor visitor) {
         visitor.visit(this);
@@ -28,11 +28,6 @@ public final class IfStatement extends Statement {
         this.elsePart = elsePart;
     }
 
-    @Override
-    public String toString() {
-        return formatAst("IfStatement", condition, thenPart, elsePart);
-    }
-
     @Override
     public void accept(Visitor visitor) {
         visitor.visit(this);
@@ -25,11 +25,6 @@ public final class IntLiteral extends Expression {
         this.value = Objects.requireNonNull(value, "Invalid value null for IntLiteral!");
     }
 
-    @Override
-    public String toString() {
-        return formatAst("IntLiteral", value);
-    }
-
     @Override
     public void accept(Visitor visitor) {
         visitor.visit(this);
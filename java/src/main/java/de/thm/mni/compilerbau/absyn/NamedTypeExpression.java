@@ -2,6 +2,7 @@ package de.thm.mni.compilerbau.absyn;
 
 import de.thm.mni.compilerbau.absyn.visitor.Visitor;
 import de.thm.mni.compilerbau.table.Identifier;
+import de.thm.mni.compilerbau.table.TypeEntry;
 
 /**
  * This class represents a type expression consisting only of an {@link Identifier}.
@@ -12,6 +13,11 @@ import de.thm.mni.compilerbau.table.Identifier;
 public final class NamedTypeExpression extends TypeExpression {
     public final Identifier name;
 
+    /**
+     * The entry of the named type. It is bound during phase 4a, when the name is resolved for the first time.
+     */
+    public TypeEntry entry;
+
     /**
      * Creates a new node representing a named type expression.
      *
@@ -23,11 +29,6 @@ public final class NamedTypeExpression extends TypeExpression {
         this.name = name;
     }
 
-    @Override
-    public String toString() {
-        return formatAst("NamedTypeExpression", name);
-    }
-
     @Override
     public void accept(Visitor visitor) {
         visitor.visit(this);
@@ -2,6 +2,7 @@ package de.thm.mni.compilerbau.absyn;
 
 import de.thm.mni.compilerbau.absyn.visitor.Visitor;
 import de.thm.mni.compilerbau.table.Identifier;
+import de.thm.mni.compilerbau.table.VariableEntry;
 
 /**
  * This class represents a named variable in SPL.
@@ -14,6 +15,11 @@ import de.thm.mni.compilerbau.table.Identifier;
 public final class NamedVariable extends Variable {
     public final Identifier name;
 
+    /**
+     * The entry of the variable. It is bound during phase 4b, when the name is resolved for the first time.
+     */
+    public VariableEntry entry;
+
     /**
      * Creates a new node representing a named variable.
      *
@@ -25,11 +31,6 @@ public final class NamedVariable extends Variable {
         this.name = name;
     }
 
-    @Override
-    public String toString() {
-        return formatAst("NamedVariable", name);
-    }
-
     @Override
     public void accept(Visitor visitor) {
         visitor.visit(this);
@@ -2,10 +2,6 @@ package de.thm.mni.compilerbau.absyn;
 
 import de.thm.mni.compilerbau.absyn.visitor.Visitable;
 
-import java.util.Arrays;
-import java.util.List;
-import java.util.stream.Collectors;
-
 /**
  * This abstract class is the root in the hierarchy of AST classes.
  * <p>
@@ -18,19 +14,11 @@ public abstract class Node implements Visitable {
         this.position = position;
     }
 
-    private static String formatAst(String name, List<String> arguments) {
-        final var indent = 2;
-
-        if (arguments.isEmpty()) {
-            return String.format("%s()", name);
-        } else {
-            return String.format("%s(\n%s)",
-                    name,
-                    String.join(",\n", arguments).indent(indent).stripTrailing());
-        }
-    }
-
-    static String formatAst(String name, Object... arguments) {
-        return formatAst(name, Arrays.stream(arguments).map(o -> o == null ? "NULL" : o.toString()).collect(Collectors.toList()));
+    /**
+     * @return The node and all of its children in the format used by '--absyn'. See {@link AstPrinter}.
+     */
+    @Override
+    public String toString() {
+        return AstPrinter.toString(this);
     }
 }
@@ -2,6 +2,7 @@ package de.thm.mni.compilerbau.absyn;
 
 import de.thm.mni.compilerbau.absyn.visitor.Visitor;
 import de.thm.mni.compilerbau.table.Identifier;
+import de.thm.mni.compilerbau.table.VariableEntry;
 
 /**
  * This class represents the local declaration of a parameter in SPL.
@@ -16,6 +17,11 @@ public class ParameterDefinition extends Node {
     public final TypeExpression typeExpression;
     public final boolean isReference;
 
+    /**
+     * The entry created for this parameter during phase 4a.
+     */
+    public VariableEntry entry;
+
     /**
      * Creates a new node representing the declaration of a parameter in the head of a procedure.
      *
@@ -31,11 +37,6 @@ public class ParameterDefinition extends Node {
         this.isReference = isReference;
     }
 
-    @Override
-    public String toString() {
-        return formatAst("ParameterDefinition", name, typeExpression, isReference);
-    }
-
     @Override
     public void accept(Visitor visitor) {
         visitor.visit(this);
@@ -2,6 +2,7 @@ package de.thm.mni.compilerbau.absyn;
 
 import de.thm.mni.compilerbau.absyn.visitor.Visitor;
 import de.thm.mni.compilerbau.table.Identifier;
+import de.thm.mni.compilerbau.table.ProcedureEntry;
 
 import java.util.List;
 
@@ -26,6 +27,11 @@ final public class ProcedureDefinition extends GlobalDefinition {
      */
     public final List<Statement> body;
 
+    /**
+     * The entry created for this procedure during phase 4a.
+     */
+    public ProcedureEntry entry;
+
     /**
      * Creates a new node representing a procedure declaration.
      *
@@ -42,16 +48,6 @@ final public class ProcedureDefinition extends GlobalDefinition {
         this.body = body;
     }
 
-    @Override
-    public String toString() {
-        return formatAst("ProcedureDefinition",
-                name,
-                formatAst("Parameters", parameters.toArray()),
-                formatAst("Variables", variables.toArray()),
-                formatAst("Body", body.toArray())
-        );
-    }
-
     @Override
     public void accept(Visitor visitor) {
         visitor.visit(this);
@@ -23,11 +23,6 @@ public class Program extends Node {
         this.definitions = definitions;
     }
 
-    @Override
-    public String toString() {
-        return formatAst("Program", definitions.toArray());
-    }
-
     @Override
     public void accept(Visitor visitor) {
         visitor.visit(this);
@@ -2,6 +2,7 @@ package de.thm.mni.compilerbau.absyn;
 
 import de.thm.mni.compilerbau.absyn.visitor.Visitor;
 import de.thm.mni.compilerbau.table.Identifier;
+import de.thm.mni.compilerbau.table.TypeEntry;
 
 /**
  * This class represents the declaration of a type in SPL.
@@ -12,6 +13,11 @@ import de.thm.mni.compilerbau.table.Identifier;
 final public class TypeDefinition extends GlobalDefinition {
     public final TypeExpression typeExpression;
 
+    /**
+     * The entry created for this type during phase 4a.
+     */
+    public TypeEntry entry;
+
     /**
      * Creates a new node representing a type declaration.
      *
@@ -24,11 +30,6 @@ final public class TypeDefinition extends GlobalDefinition {
         this.typeExpression = typeExpression;
     }
 
-    @Override
-    public String toString() {
-        return formatAst("TypeDefinition", name, typeExpression);
-    }
-
     @Override
     public void accept(Visitor visitor) {
         visitor.visit(this);
@@ -36,11 +36,6 @@ public final class UnaryExpression extends Expression {
         this.operand = operand;
     }
 
-    @Override
-    public String toString() {
-        return formatAst("UnaryExpression", operator, operand);
-    }
-
     @Override
     public void accept(Visitor visitor) {
         visitor.visit(this);
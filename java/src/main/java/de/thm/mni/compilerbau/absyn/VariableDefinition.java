@@ -2,6 +2,7 @@ package de.thm.mni.compilerbau.absyn;
 
 import de.thm.mni.compilerbau.absyn.visitor.Visitor;
 import de.thm.mni.compilerbau.table.Identifier;
+import de.thm.mni.compilerbau.table.VariableEntry;
 
 /**
  * This class represents the local declaration of a variable.
@@ -14,6 +15,11 @@ public class VariableDefinition extends Node {
     public final Identifier name;
     public final TypeExpression typeExpression;
 
+    /**
+     * The entry created for this variable during phase 4a.
+     */
+    public VariableEntry entry;
+
     /**
      * Creates a new node representing the declaration of a local variable in a procedures body.
      *
@@ -27,11 +33,6 @@ public class VariableDefinition extends Node {
         this.typeExpression = typeExpression;
     }
 
-    @Override
-    public String toString() {
-        return formatAst("VariableDefinition", name, typeExpression);
-    }
-
     @Override
     public void accept(Visitor visitor) {
         visitor.visit(this);
@@ -24,11 +24,6 @@ public final class VariableExpression extends Expression {
         this.variable = variable;
     }
 
-    @Override
-    public String toString() {
-        return formatAst("VariableExpression", variable);
-    }
-
     @Override
     public void accept(Visitor visitor) {
         visitor.visit(this);
@@ -25,11 +25,6 @@ public final class WhileStatement extends Statement {
         this.body = body;
     }
 
-    @Override
-    public String toString() {
-        return formatAst("WhileStatement", condition, body);
-    }
-
     @Override
     public void accept(Visitor visitor) {
         visitor.visit(this);
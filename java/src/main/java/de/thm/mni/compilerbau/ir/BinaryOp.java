@@ -0,0 +1,69 @@
+package de.thm.mni.compilerbau.ir;
+
+import java.util.List;
+
+/**
+ * Combines two operands with an arithmetic operator.
+ * Example: %5 = %i.2 * 4
+ */
+public final class BinaryOp extends Instruction {
+    public enum Operator {
+        ADD("+", "add", true),
+        SUB("-", "sub", false),
+        MUL("*", "mul", true),
+        DIV("/", "div", false);
+
+        public final String symbol;
+        public final String mnemonic; // The ECO32 instruction
+        public final boolean isCommutative;
+
+        Operator(String symbol, String mnemonic, boolean isCommutative) {
+            this.symbol = symbol;
+            this.mnemonic = mnemonic;
+            this.isCommutative = isCommutative;
+        }
+
+        /**
+         * Evaluates the operator with the 32-bit wraparound of the ECO32.
+         *
+         * @return The result, or null if the operation traps or its result is not portable, which is the case for
+         * a division by zero and the division of the smallest int by -1.
+         */
+        public Integer evaluate(int left, int right) {
+            return switch (this) {
+                case ADD -> left + right;
+                case SUB -> left - right;
+                case MUL -> left * right;
+                case DIV -> right == 0 || (left == Integer.MIN_VALUE && right == -1) ? null : left / right;
+            };
+        }
+    }
+
+    public final Operator operator;
+
+    public BinaryOp(Operator operator, Temp result, Operand left, Operand right) {
+        super(result, List.of(left, right));
+        this.operator = operator;
+    }
+
+    public Operand left() {
+        return operand(0);
+    }
+
+    public Operand right() {
+        return operand(1);
+    }
+
+    /**
+     * A division traps if the divisor is zero, so it can only be dropped if the divisor is a constant other than zero.
+     */
+    @Override
+    public boolean hasSideEffects() {
+        return operator == Operator.DIV && !(right() instanceof Constant divisor && divisor.value() != 0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s = %s %s %s", result(), left(), operator.symbol, right());
+    }
+}
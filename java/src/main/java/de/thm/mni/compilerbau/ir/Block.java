@@ -0,0 +1,43 @@
+package de.thm.mni.compilerbau.ir;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A basic block: a sequence of instructions that is always executed from the beginning to the end, followed by a
+ * {@link Terminator} that transfers control to the successors of the block.
+ */
+public final class Block {
+    public final int number;
+    public final List<Instruction> instructions = new ArrayList<>(); // Phis first, without the terminator
+    public Terminator terminator;
+    public final List<Block> predecessors = new ArrayList<>(); // Set by Procedure.updatePredecessors()
+
+    Block(int number) {
+        this.number = number;
+    }
+
+    /**
+     * @return The blocks control can be transferred to from this block.
+     */
+    public List<Block> successors() {
+        return terminator == null ? List.of() : terminator.successors();
+    }
+
+    /**
+     * @return The phis at the beginning of the block.
+     */
+    public List<Phi> phis() {
+        final List<Phi> phis = new ArrayList<>();
+        for (Instruction instruction : instructions) {
+            if (!(instruction instanceof Phi phi)) break;
+            phis.add(phi);
+        }
+        return phis;
+    }
+
+    @Override
+    public String toString() {
+        return "B" + number;
+    }
+}
@@ -0,0 +1,32 @@
+package de.thm.mni.compilerbau.ir;
+
+import java.util.List;
+
+/**
+ * Jumps to '_indexError' unless 0 &lt;= index &lt; size. Both are compared as unsigned numbers, so a negative index is
+ * caught by the same test.
+ * Example: check %i.2 &lt; 8
+ */
+public final class BoundsCheck extends Instruction {
+    public BoundsCheck(Operand index, Operand size) {
+        super(null, List.of(index, size));
+    }
+
+    public Operand index() {
+        return operand(0);
+    }
+
+    public Operand size() {
+        return operand(1);
+    }
+
+    @Override
+    public boolean hasSideEffects() {
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("check %s < %s", index(), size());
+    }
+}
@@ -0,0 +1,99 @@
+package de.thm.mni.compilerbau.ir;
+
+import java.util.List;
+
+/**
+ * Compares two operands and continues with one of two different blocks.
+ * Example: if %r.3 &lt; 8 then B2 else B5
+ */
+public final class Branch extends Terminator {
+    public enum Condition {
+        EQ("=", "beq"),
+        NE("#", "bne"),
+        LT("<", "blt"),
+        LE("<=", "ble"),
+        GT(">", "bgt"),
+        GE(">=", "bge");
+
+        public final String symbol;
+        public final String mnemonic; // The ECO32 instruction
+
+        Condition(String symbol, String mnemonic) {
+            this.symbol = symbol;
+            this.mnemonic = mnemonic;
+        }
+
+        /**
+         * @return The condition that holds exactly if this one does not.
+         */
+        public Condition negate() {
+            return switch (this) {
+                case EQ -> NE;
+                case NE -> EQ;
+                case LT -> GE;
+                case LE -> GT;
+                case GT -> LE;
+                case GE -> LT;
+            };
+        }
+
+        /**
+         * @return The condition that holds for swapped operands exactly if this one holds for the original ones.
+         */
+        public Condition swap() {
+            return switch (this) {
+                case EQ, NE -> this;
+                case LT -> GT;
+                case LE -> GE;
+                case GT -> LT;
+                case GE -> LE;
+            };
+        }
+
+        public boolean test(int left, int right) {
+            return switch (this) {
+                case EQ -> left == right;
+                case NE -> left != right;
+                case LT -> left < right;
+                case LE -> left <= right;
+                case GT -> left > right;
+                case GE -> left >= right;
+            };
+        }
+    }
+
+    public Condition condition;
+    public Block ifTrue;
+    public Block ifFalse;
+
+    public Branch(Condition condition, Operand left, Operand right, Block ifTrue, Block ifFalse) {
+        super(List.of(left, right));
+        this.condition = condition;
+        this.ifTrue = ifTrue;
+        this.ifFalse = ifFalse;
+    }
+
+    public Operand left() {
+        return operand(0);
+    }
+
+    public Operand right() {
+        return operand(1);
+    }
+
+    @Override
+    public List<Block> successors() {
+        return ifTrue == ifFalse ? List.of(ifTrue) : List.of(ifTrue, ifFalse);
+    }
+
+    @Override
+    public void replaceSuccessor(Block from, Block to) {
+        if (ifTrue == from) ifTrue = to;
+        if (ifFalse == from) ifFalse = to;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("if %s %s %s then %s else %s", left(), condition.symbol, right(), ifTrue, ifFalse);
+    }
+}
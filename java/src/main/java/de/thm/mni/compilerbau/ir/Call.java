@@ -0,0 +1,43 @@
+package de.thm.mni.compilerbau.ir;
+
+import de.thm.mni.compilerbau.table.Identifier;
+import de.thm.mni.compilerbau.table.ProcedureEntry;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Calls a procedure. The operands are the arguments: the value for a value parameter and the address of the variable
+ * for a reference parameter. The code generator stores them in the outgoing area at the offsets of the callee's
+ * {@link de.thm.mni.compilerbau.table.ParameterType}s.
+ * <p>
+ * A call may read and write all memory reachable through its arguments and destroys all registers.
+ * A tail call is the last action of the calling procedure, which can hand its own frame over to the callee.
+ * Example: call try(%8, @row, @col)
+ */
+public final class Call extends Instruction {
+    public final Identifier name;
+    public final ProcedureEntry callee;
+    public final boolean isTail;
+
+    public Call(Identifier name, ProcedureEntry callee, List<Operand> arguments) {
+        this(name, callee, arguments, false);
+    }
+
+    public Call(Identifier name, ProcedureEntry callee, List<Operand> arguments, boolean isTail) {
+        super(null, arguments);
+        this.name = name;
+        this.callee = callee;
+        this.isTail = isTail;
+    }
+
+    @Override
+    public boolean hasSideEffects() {
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %s(%s)", isTail ? "tail call" : "call", name, operands.stream().map(Object::toString).collect(Collectors.joining(", ")));
+    }
+}
@@ -0,0 +1,15 @@
+package de.thm.mni.compilerbau.ir;
+
+/**
+ * An integer constant used as an operand.
+ *
+ * @param value The value of the constant.
+ */
+public record Constant(int value) implements Operand {
+    public static final Constant ZERO = new Constant(0);
+
+    @Override
+    public String toString() {
+        return Integer.toString(value);
+    }
+}
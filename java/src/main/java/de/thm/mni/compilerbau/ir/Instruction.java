@@ -0,0 +1,73 @@
+package de.thm.mni.compilerbau.ir;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class is the abstract superclass of all instructions of the intermediate representation.
+ * <p>
+ * Instructions are three-address code: An instruction defines at most one virtual register, its result, and reads
+ * a list of operands. Both can be replaced, which is all the SSA construction and most optimizations need.
+ * Every {@link Block} ends with exactly one {@link Terminator}, all other instructions of a block are ordinary
+ * instructions, with the {@link Phi}s at its beginning.
+ */
+public abstract sealed class Instruction permits BinaryOp, BoundsCheck, Call, Load, Move, Phi, Store, Terminator {
+    private Temp result;
+    final List<Operand> operands;
+
+    Instruction(Temp result, List<Operand> operands) {
+        this.result = result;
+        this.operands = new ArrayList<>(operands);
+    }
+
+    /**
+     * @return The virtual register defined by this instruction, or null.
+     */
+    public Temp result() {
+        return result;
+    }
+
+    public void setResult(Temp result) {
+        this.result = result;
+    }
+
+    /**
+     * @return The operands read by this instruction.
+     */
+    public List<Operand> operands() {
+        return Collections.unmodifiableList(operands);
+    }
+
+    public Operand operand(int index) {
+        return operands.get(index);
+    }
+
+    public void setOperand(int index, Operand operand) {
+        operands.set(index, operand);
+    }
+
+    /**
+     * Replaces every use of an operand.
+     *
+     * @param from The operand to replace.
+     * @param to   The operand that is used instead.
+     * @return Whether the instruction used the operand.
+     */
+    public boolean replaceUses(Operand from, Operand to) {
+        boolean replaced = false;
+        for (int i = 0; i < operands.size(); i++) {
+            if (operands.get(i).equals(from)) {
+                operands.set(i, to);
+                replaced = true;
+            }
+        }
+        return replaced;
+    }
+
+    /**
+     * @return Whether executing the instruction has an effect besides defining its result. Such an instruction must
+     * not be removed, even if its result is never used.
+     */
+    public abstract boolean hasSideEffects();
+}
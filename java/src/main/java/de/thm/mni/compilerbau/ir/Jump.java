@@ -0,0 +1,31 @@
+package de.thm.mni.compilerbau.ir;
+
+import java.util.List;
+
+/**
+ * Continues with another block.
+ * Example: jump B4
+ */
+public final class Jump extends Terminator {
+    public Block target;
+
+    public Jump(Block target) {
+        super(List.of());
+        this.target = target;
+    }
+
+    @Override
+    public List<Block> successors() {
+        return List.of(target);
+    }
+
+    @Override
+    public void replaceSuccessor(Block from, Block to) {
+        if (target == from) target = to;
+    }
+
+    @Override
+    public String toString() {
+        return "jump " + target;
+    }
+}
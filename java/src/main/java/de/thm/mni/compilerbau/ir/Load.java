@@ -0,0 +1,30 @@
+package de.thm.mni.compilerbau.ir;
+
+import java.util.List;
+
+/**
+ * Loads a word from memory. The address is the sum of the base operand and a constant displacement.
+ * Example: %3 = load [@row + 8]
+ */
+public final class Load extends Instruction {
+    public int displacement;
+
+    public Load(Temp result, Operand base, int displacement) {
+        super(result, List.of(base));
+        this.displacement = displacement;
+    }
+
+    public Operand base() {
+        return operand(0);
+    }
+
+    @Override
+    public boolean hasSideEffects() {
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s = load %s", result(), Store.address(base(), displacement));
+    }
+}
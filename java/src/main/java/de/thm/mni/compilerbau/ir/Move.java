@@ -0,0 +1,27 @@
+package de.thm.mni.compilerbau.ir;
+
+import java.util.List;
+
+/**
+ * Copies an operand into a virtual register.
+ * Example: %x.3 = %y.2
+ */
+public final class Move extends Instruction {
+    public Move(Temp result, Operand source) {
+        super(result, List.of(source));
+    }
+
+    public Operand source() {
+        return operand(0);
+    }
+
+    @Override
+    public boolean hasSideEffects() {
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s = %s", result(), source());
+    }
+}
@@ -0,0 +1,10 @@
+package de.thm.mni.compilerbau.ir;
+
+/**
+ * An operand of an {@link Instruction} in the intermediate representation.
+ * <p>
+ * An operand is either a virtual register ({@link Temp}), an integer constant ({@link Constant}) or the address of a
+ * slot in the stack frame of the procedure ({@link StackSlot}).
+ */
+public sealed interface Operand permits Constant, StackSlot, Temp {
+}
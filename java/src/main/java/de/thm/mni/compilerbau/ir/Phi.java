@@ -0,0 +1,74 @@
+package de.thm.mni.compilerbau.ir;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Selects the operand belonging to the predecessor the block was entered from. Phis only exist in SSA form.
+ * Every operand is paired with the predecessor it flows in from, so the order of the predecessors does not matter.
+ * Example: %i.4 = phi [B0: 0], [B3: %i.7]
+ */
+public final class Phi extends Instruction {
+    private final List<Block> blocks = new ArrayList<>();
+
+    public Phi(Temp result) {
+        super(result, List.of());
+    }
+
+    /**
+     * @return The predecessors, in the same order as the operands.
+     */
+    public List<Block> blocks() {
+        return Collections.unmodifiableList(blocks);
+    }
+
+    /**
+     * @return The operand flowing in from the predecessor, or null if there is none.
+     */
+    public Operand incoming(Block predecessor) {
+        final int index = blocks.indexOf(predecessor);
+        return index < 0 ? null : operands.get(index);
+    }
+
+    /**
+     * Sets the operand flowing in from a predecessor, adding the predecessor if it is not known yet.
+     */
+    public void setIncoming(Block predecessor, Operand operand) {
+        final int index = blocks.indexOf(predecessor);
+        if (index >= 0) {
+            operands.set(index, operand);
+        } else {
+            blocks.add(predecessor);
+            operands.add(operand);
+        }
+    }
+
+    public void removeIncoming(Block predecessor) {
+        final int index = blocks.indexOf(predecessor);
+        if (index >= 0) {
+            blocks.remove(index);
+            operands.remove(index);
+        }
+    }
+
+    /**
+     * Renames a predecessor, e.g. when a block is merged into its predecessor or an edge is split.
+     */
+    public void replaceBlock(Block from, Block to) {
+        final int index = blocks.indexOf(from);
+        if (index >= 0) blocks.set(index, to);
+    }
+
+    @Override
+    public boolean hasSideEffects() {
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        final List<String> incoming = new ArrayList<>();
+        for (int i = 0; i < blocks.size(); i++) incoming.add(String.format("[%s: %s]", blocks.get(i), operands.get(i)));
+        return String.format("%s = phi %s", result(), String.join(", ", incoming));
+    }
+}
@@ -0,0 +1,149 @@
+package de.thm.mni.compilerbau.ir;
+
+import de.thm.mni.compilerbau.absyn.ProcedureDefinition;
+import de.thm.mni.compilerbau.table.Identifier;
+import de.thm.mni.compilerbau.table.ProcedureEntry;
+
+import java.io.PrintWriter;
+import java.util.*;
+
+/**
+ * The intermediate representation of an SPL procedure: a control flow graph of {@link Block}s, starting with the
+ * entry block, and the {@link StackSlot}s of the parameters and local variables that live in memory.
+ */
+public final class Procedure {
+    public final ProcedureDefinition definition;
+    public final List<Block> blocks = new ArrayList<>(); // The entry block first
+    public final List<StackSlot> slots = new ArrayList<>();
+    private int temps = 0;
+    private int blockNumbers = 0;
+
+    public Procedure(ProcedureDefinition definition) {
+        this.definition = definition;
+    }
+
+    public Identifier name() {
+        return definition.name;
+    }
+
+    public ProcedureEntry entry() {
+        return definition.entry;
+    }
+
+    public Block entryBlock() {
+        return blocks.get(0);
+    }
+
+    /**
+     * @param name The SPL variable the register is created for, or null.
+     * @return A new virtual register.
+     */
+    public Temp newTemp(String name) {
+        return new Temp(temps++, name);
+    }
+
+    /**
+     * @return The number of virtual registers created so far. All registers are numbered below this number.
+     */
+    public int tempCount() {
+        return temps;
+    }
+
+    /**
+     * @return A new empty block, added to the end of the block list.
+     */
+    public Block newBlock() {
+        final Block block = new Block(blockNumbers++);
+        blocks.add(block);
+        return block;
+    }
+
+    /**
+     * Recalculates the predecessors of all blocks after the control flow graph has been changed.
+     */
+    public void updatePredecessors() {
+        for (Block block : blocks) block.predecessors.clear();
+        for (Block block : blocks) {
+            for (Block successor : block.successors()) successor.predecessors.add(block);
+        }
+    }
+
+    /**
+     * @return The blocks reachable from the entry block in reverse postorder, in which every block comes before its
+     * successors, except for the targets of back edges.
+     */
+    public List<Block> reversePostorder() {
+        final List<Block> postorder = new ArrayList<>();
+        final Set<Block> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        final ArrayDeque<Block> blockStack = new ArrayDeque<>();
+        final ArrayDeque<Integer> indexStack = new ArrayDeque<>();
+        visited.add(entryBlock());
+        blockStack.push(entryBlock());
+        indexStack.push(0);
+        while (!blockStack.isEmpty()) {
+            final Block block = blockStack.peek();
+            final int index = indexStack.pop();
+            final List<Block> successors = block.successors();
+            if (index < successors.size()) {
+                indexStack.push(index + 1);
+                final Block successor = successors.get(index);
+                if (visited.add(successor)) {
+                    blockStack.push(successor);
+                    indexStack.push(0);
+                }
+            } else {
+                blockStack.pop();
+                postorder.add(block);
+            }
+        }
+        Collections.reverse(postorder);
+        return postorder;
+    }
+
+    /**
+     * Removes all blocks that can not be reached from the entry block, together with the operands of phis that
+     * flow in from them, and updates the predecessors.
+     *
+     * @return Whether a block was removed.
+     */
+    public boolean removeUnreachableBlocks() {
+        final Set<Block> reachable = Collections.newSetFromMap(new IdentityHashMap<>());
+        reachable.addAll(reversePostorder());
+        if (reachable.size() == blocks.size()) {
+            updatePredecessors();
+            return false;
+        }
+
+        for (Block block : blocks) {
+            if (!reachable.contains(block)) continue;
+            for (Phi phi : block.phis()) {
+                for (Block predecessor : List.copyOf(phi.blocks())) {
+                    if (!reachable.contains(predecessor)) phi.removeIncoming(predecessor);
+                }
+            }
+        }
+        blocks.removeIf(block -> !reachable.contains(block));
+        updatePredecessors();
+        return true;
+    }
+
+    /**
+     * Prints the procedure in the format used by '--ir'.
+     *
+     * @param out The sink the procedure is written to.
+     */
+    public void print(PrintWriter out) {
+        out.printf("proc %s\n", name());
+        for (StackSlot slot : slots) out.printf("  %s: %s%s, %d bytes\n", slot, slot.isReference ? "reference " : "", slot.kind.toString().toLowerCase(), slot.size);
+        for (Block block : blocks) {
+            out.printf("%s:", block);
+            if (!block.predecessors.isEmpty()) {
+                out.printf("\t\t\t\t; preds %s", String.join(", ", block.predecessors.stream().map(Block::toString).toList()));
+            }
+            out.println();
+            for (Instruction instruction : block.instructions) out.printf("\t%s\n", instruction);
+            out.printf("\t%s\n", block.terminator);
+        }
+        out.println();
+    }
+}
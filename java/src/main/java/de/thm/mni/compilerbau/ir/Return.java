@@ -0,0 +1,26 @@
+package de.thm.mni.compilerbau.ir;
+
+import java.util.List;
+
+/**
+ * Returns from the procedure.
+ */
+public final class Return extends Terminator {
+    public Return() {
+        super(List.of());
+    }
+
+    @Override
+    public List<Block> successors() {
+        return List.of();
+    }
+
+    @Override
+    public void replaceSuccessor(Block from, Block to) {
+    }
+
+    @Override
+    public String toString() {
+        return "return";
+    }
+}
@@ -0,0 +1,49 @@
+package de.thm.mni.compilerbau.ir;
+
+import de.thm.mni.compilerbau.phases._05_varalloc.StackLayout;
+
+/**
+ * A memory area in the stack frame of a procedure. Used as an operand, a slot stands for its address.
+ * <p>
+ * Parameters live in the outgoing area of the caller at the offset calculated in phase 5. Local variables that can
+ * not be kept in a register, like arrays, and the spill slots of the register allocator are placed in the local
+ * variable area by the code generator, which sets their offsets.
+ */
+public final class StackSlot implements Operand {
+    public enum Kind {
+        PARAMETER, LOCAL, SPILL
+    }
+
+    public final Kind kind;
+    public final String name;
+    public final int size;
+    public final boolean isReference; // Whether the slot holds the address of a variable, as for a reference parameter
+    public int offset = StackLayout.UNSET; // Relative to the frame pointer
+
+    /**
+     * @param kind The kind of the slot.
+     * @param name The name used when the slot is printed.
+     * @param size The size of the slot in bytes.
+     */
+    public StackSlot(Kind kind, String name, int size) {
+        this(kind, name, size, false);
+    }
+
+    /**
+     * @param kind        The kind of the slot.
+     * @param name        The name used when the slot is printed.
+     * @param size        The size of the slot in bytes.
+     * @param isReference Whether the slot holds the address of a variable.
+     */
+    public StackSlot(Kind kind, String name, int size, boolean isReference) {
+        this.kind = kind;
+        this.name = name;
+        this.size = size;
+        this.isReference = isReference;
+    }
+
+    @Override
+    public String toString() {
+        return "@" + name;
+    }
+}
@@ -0,0 +1,38 @@
+package de.thm.mni.compilerbau.ir;
+
+import java.util.List;
+
+/**
+ * Stores a word in memory. The address is the sum of the base operand and a constant displacement.
+ * Example: store [%7 + 0] = 1
+ */
+public final class Store extends Instruction {
+    public int displacement;
+
+    public Store(Operand base, int displacement, Operand value) {
+        super(null, List.of(base, value));
+        this.displacement = displacement;
+    }
+
+    public Operand base() {
+        return operand(0);
+    }
+
+    public Operand value() {
+        return operand(1);
+    }
+
+    @Override
+    public boolean hasSideEffects() {
+        return true;
+    }
+
+    static String address(Operand base, int displacement) {
+        return displacement < 0 ? String.format("[%s - %d]", base, -(long) displacement) : String.format("[%s + %d]", base, displacement);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("store %s = %s", address(base(), displacement), value());
+    }
+}
@@ -0,0 +1,23 @@
+package de.thm.mni.compilerbau.ir;
+
+/**
+ * A virtual register of the intermediate representation. There is no limit on the number of virtual registers, they
+ * are mapped to the registers of the ECO32 or to stack slots by the code generator.
+ * <p>
+ * Before the conversion to SSA form a virtual register may be assigned more than once, e.g. if it holds an SPL
+ * variable. In SSA form every virtual register has exactly one definition.
+ */
+public final class Temp implements Operand {
+    public final int number;
+    public final String name; // The SPL variable the register was created for, or null
+
+    Temp(int number, String name) {
+        this.number = number;
+        this.name = name;
+    }
+
+    @Override
+    public String toString() {
+        return name == null ? "%" + number : "%" + name + "." + number;
+    }
+}
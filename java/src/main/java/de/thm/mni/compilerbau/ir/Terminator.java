@@ -0,0 +1,27 @@
+package de.thm.mni.compilerbau.ir;
+
+import java.util.List;
+
+/**
+ * This class is the abstract superclass of the instructions ending a {@link Block}. They determine its successors.
+ */
+public abstract sealed class Terminator extends Instruction permits Branch, Jump, Return {
+    Terminator(List<Operand> operands) {
+        super(null, operands);
+    }
+
+    /**
+     * @return The blocks control can be transferred to, without duplicates.
+     */
+    public abstract List<Block> successors();
+
+    /**
+     * Redirects every edge to a successor to another block.
+     */
+    public abstract void replaceSuccessor(Block from, Block to);
+
+    @Override
+    public boolean hasSideEffects() {
+        return true;
+    }
+}
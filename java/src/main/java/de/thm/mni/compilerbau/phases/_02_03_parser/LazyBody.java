@@ -0,0 +1,128 @@
+package de.thm.mni.compilerbau.phases._02_03_parser;
+
+import de.thm.mni.compilerbau.CommandLineOptions;
+import de.thm.mni.compilerbau.absyn.GlobalDefinition;
+import de.thm.mni.compilerbau.absyn.ProcedureDefinition;
+import de.thm.mni.compilerbau.absyn.Program;
+import de.thm.mni.compilerbau.absyn.Statement;
+import de.thm.mni.compilerbau.utils.SplError;
+import java_cup.runtime.Symbol;
+import java_cup.runtime.SymbolFactory;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * The statement list of a procedure body that has been skipped by the {@link LazyBodyScanner}.
+ * <p>
+ * Only the range of the body's tokens is recorded. The tokens are parsed into statements when the list is accessed
+ * for the first time, every later access uses the parsed statements.
+ */
+public class LazyBody extends AbstractList<Statement> implements RandomAccess {
+    private final TokenBuffer tokens;
+    private final int start, end;
+    private final Symbol closingToken;
+    private final SymbolFactory symbolFactory;
+    private final CommandLineOptions options;
+
+    private volatile List<Statement> statements = null;
+
+    /**
+     * @param tokens        The buffer holding the tokens of the body.
+     * @param start         The index of the first token of the body.
+     * @param end           The index after the last token of the body.
+     * @param closingToken  The token that ended the body, usually the closing brace of the procedure.
+     * @param symbolFactory The symbol factory used for parsing the body.
+     * @param options       The command line options passed to the parser.
+     */
+    LazyBody(TokenBuffer tokens, int start, int end, Symbol closingToken, SymbolFactory symbolFactory, CommandLineOptions options) {
+        this.tokens = tokens;
+        this.start = start;
+        this.end = end;
+        this.closingToken = closingToken;
+        this.symbolFactory = symbolFactory;
+        this.options = options;
+    }
+
+    /**
+     * @return Whether the body has already been parsed.
+     */
+    public boolean isParsed() {
+        return statements != null;
+    }
+
+    /**
+     * @return The number of tokens in the body.
+     */
+    public int tokenCount() {
+        return end - start;
+    }
+
+    /**
+     * Parses the body if this has not happened yet.
+     *
+     * @return The statements of the body.
+     * @throws SplError If the body contains a syntax error.
+     */
+    @SuppressWarnings("unchecked")
+    public List<Statement> force() {
+        List<Statement> result = statements;
+        if (result != null) return result;
+
+        synchronized (this) {
+            if (statements == null) {
+                Parser parser = new Parser(new Replay(), symbolFactory);
+                parser.options = options;
+                try {
+                    statements = (List<Statement>) parser.parse().value;
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new IllegalStateException("Parsing a procedure body failed", e);
+                }
+            }
+            return statements;
+        }
+    }
+
+    /**
+     * Parses every skipped body of a program in source order, so that a syntax error is reported before any phase
+     * prints its output.
+     *
+     * @throws SplError If a body contains a syntax error.
+     */
+    public static void forceAll(Program program) {
+        for (GlobalDefinition definition : program.definitions) {
+            if (definition instanceof ProcedureDefinition procedure && procedure.body instanceof LazyBody body) {
+                body.force();
+            }
+        }
+    }
+
+    @Override
+    public Statement get(int index) {
+        return force().get(index);
+    }
+
+    @Override
+    public int size() {
+        return force().size();
+    }
+
+    /**
+     * Feeds the recorded tokens to the parser, framed by the BODY marker and the token closing the body.
+     */
+    private class Replay implements java_cup.runtime.Scanner {
+        private int next = start - 1;
+
+        @Override
+        public Symbol next_token() {
+            final int index = next++;
+            if (index < start) return new Symbol(Sym.BODY, closingToken.left, closingToken.right);
+            if (index < end) return tokens.get(index);
+            if (index == end) return new Symbol(closingToken.sym, closingToken.left, closingToken.right, closingToken.value);
+            return new Symbol(Sym.EOF, closingToken.left, closingToken.right);
+        }
+    }
+}
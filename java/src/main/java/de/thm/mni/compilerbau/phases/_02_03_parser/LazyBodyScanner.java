@@ -0,0 +1,110 @@
+package de.thm.mni.compilerbau.phases._02_03_parser;
+
+import de.thm.mni.compilerbau.CommandLineOptions;
+import de.thm.mni.compilerbau.phases._01_scanner.Scanner;
+import java_cup.runtime.Symbol;
+import java_cup.runtime.SymbolFactory;
+
+/**
+ * A token source for the {@link Parser} that skips the bodies of procedures.
+ * <p>
+ * Type definitions, procedure headers and local variable declarations are passed through unchanged.
+ * Once the first token of a procedure body is read, all tokens up to the matching closing brace are moved into a
+ * {@link TokenBuffer} and replaced by a single LAZYBODY token. The value of this token is a {@link LazyBody}, which only
+ * parses the recorded tokens when the statements of the body are accessed for the first time.
+ * <p>
+ * Syntax errors inside a skipped body are only found when the body is parsed. Unless only the symbol tables are
+ * requested, the compiler parses all bodies with {@link LazyBody#forceAll} right after the program.
+ */
+public class LazyBodyScanner implements java_cup.runtime.Scanner {
+    private enum State {
+        GLOBAL,       // Between global definitions
+        HEADER,       // Between 'proc' and the opening brace of the procedure
+        DECLARATIONS, // Inside the procedure, before its body
+        VARIABLE      // Inside a local variable declaration
+    }
+
+    private final Scanner scanner;
+    private final SymbolFactory symbolFactory;
+    private final CommandLineOptions options;
+    private final TokenBuffer buffer = new TokenBuffer();
+
+    private State state = State.GLOBAL;
+    private Symbol pending = null;
+    private int replayed = 0, replayEnd = 0; // Buffered tokens that are passed through instead of being skipped
+
+    /**
+     * @param scanner       The scanner producing the tokens of the program.
+     * @param symbolFactory The symbol factory used when a skipped body is parsed.
+     * @param options       The command line options passed to the parser of a skipped body.
+     */
+    public LazyBodyScanner(Scanner scanner, SymbolFactory symbolFactory, CommandLineOptions options) {
+        this.scanner = scanner;
+        this.symbolFactory = symbolFactory;
+        this.options = options;
+    }
+
+    @Override
+    public Symbol next_token() throws Exception {
+        if (replayed < replayEnd) return buffer.get(replayed++);
+        if (pending != null) {
+            Symbol token = pending;
+            pending = null;
+            return token;
+        }
+
+        Symbol token = scanner.next_token();
+        switch (state) {
+            case GLOBAL -> {
+                if (token.sym == Sym.PROC) state = State.HEADER;
+            }
+            case HEADER -> {
+                if (token.sym == Sym.LCURL) state = State.DECLARATIONS;
+            }
+            case VARIABLE -> {
+                if (token.sym == Sym.SEMIC) state = State.DECLARATIONS;
+            }
+            case DECLARATIONS -> {
+                if (token.sym == Sym.VAR) state = State.VARIABLE;
+                else {
+                    state = State.GLOBAL;
+                    return skipBody(token);
+                }
+            }
+        }
+        return token;
+    }
+
+    /**
+     * Records all tokens of a procedure body by brace matching.
+     * The token closing the body is kept back and returned by the next call.
+     * <p>
+     * A body that is not terminated before the end of the input is not skipped. Its tokens are passed through to the
+     * parser instead, so that the resulting syntax error is the same as without skipping.
+     *
+     * @param first The first token of the body.
+     * @return A LAZYBODY token representing the whole body, or the first token of an unterminated body.
+     */
+    private Symbol skipBody(Symbol first) throws Exception {
+        final int start = buffer.size();
+        int depth = 0;
+
+        Symbol token = first;
+        while (token.sym != Sym.EOF && (token.sym != Sym.RCURL || depth > 0)) {
+            if (token.sym == Sym.LCURL) depth++;
+            else if (token.sym == Sym.RCURL) depth--;
+
+            buffer.add(token);
+            token = scanner.next_token();
+        }
+        pending = token;
+
+        if (token.sym == Sym.EOF) {
+            replayed = start + 1;
+            replayEnd = buffer.size();
+            return first;
+        }
+        return new Symbol(Sym.LAZYBODY, first.left, first.right,
+                new LazyBody(buffer, start, buffer.size(), token, symbolFactory, options));
+    }
+}
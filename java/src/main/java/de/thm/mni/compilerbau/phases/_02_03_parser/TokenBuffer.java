@@ -0,0 +1,58 @@
+package de.thm.mni.compilerbau.phases._02_03_parser;
+
+import java_cup.runtime.Symbol;
+
+import java.util.Arrays;
+
+/**
+ * A growable store for tokens that are kept for later parsing.
+ * <p>
+ * Tokens are stored in parallel arrays instead of as {@link Symbol} objects, so that a skipped procedure body only
+ * costs a few words per token until it is actually parsed. A range of stored tokens is referred to by index.
+ */
+class TokenBuffer {
+    private int[] kinds = new int[1024];
+    private int[] lines = new int[1024];
+    private int[] columns = new int[1024];
+    private Object[] values = new Object[1024];
+    private int size = 0;
+
+    /**
+     * @return The number of tokens stored so far. This is the index the next added token will get.
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Appends a token to the buffer.
+     *
+     * @param token The token to store.
+     */
+    synchronized void add(Symbol token) {
+        if (size == kinds.length) {
+            int capacity = Math.multiplyExact(kinds.length, 2);
+            kinds = Arrays.copyOf(kinds, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+            columns = Arrays.copyOf(columns, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        kinds[size] = token.sym;
+        lines[size] = token.left;
+        columns[size] = token.right;
+        values[size] = token.value;
+        size++;
+    }
+
+    /**
+     * Recreates a stored token in the same form the scanner produced it.
+     *
+     * @param index The index of the token.
+     * @return A new symbol equal to the one that was stored at this index.
+     */
+    synchronized Symbol get(int index) {
+        if (index >= size) throw new IndexOutOfBoundsException(index);
+        return new Symbol(kinds[index], lines[index], columns[index], values[index]);
+    }
+}
@@ -11,6 +11,7 @@ import de.thm.mni.compilerbau.types.Type;
 import de.thm.mni.compilerbau.types.ArrayType;
 import de.thm.mni.compilerbau.utils.SplError;
 
+import java.io.PrintWriter;
 import java.util.*;
 
 /**
@@ -24,148 +25,155 @@ import java.util.*;
 
 public class TableBuilder {
     private SymbolTable globalTable;
-    Map<Identifier, Entry> tableMapForPrinting = new HashMap<Identifier, Entry>();
     private final CommandLineOptions options;
 
     public TableBuilder(CommandLineOptions options) {
         this.options = options;
     }
 
+    /**
+     * Builds the tables in a single pass over the global definitions, in source order. A procedure's local table is
+     * built before the procedure is entered into the global table, so it only sees the global definitions that
+     * precede the procedure, and not the procedure itself.
+     */
     public SymbolTable buildSymbolTable(Program program) {
         this.globalTable = TableInitializer.initializeGlobalTable();
-        Visitor visitor = new TableVisitor();
 
-        program.accept(visitor);
+        final TableVisitor globalVisitor = new TableVisitor(null);
+        // The tables are printed in the order of a hash map keyed by the procedure names, as they always were
+        final Map<String, ProcedureDefinition> tableMapForPrinting = new HashMap<>();
+        for (GlobalDefinition definition : program.definitions) {
+            if (definition instanceof ProcedureDefinition procDef) {
+                buildProcedureTable(procDef);
+                tableMapForPrinting.put(procDef.name.toString(), procDef);
+            } else {
+                definition.accept(globalVisitor);
+            }
+        }
 
         if(options.phaseOption == CommandLineOptions.PhaseOption.TABLES) {
-            for (Map.Entry<Identifier, Entry> entry : tableMapForPrinting.entrySet()) {
-                Identifier key = entry.getKey();
-                ProcedureEntry value = (ProcedureEntry) entry.getValue();
-                printSymbolTableAtEndOfProcedure(key, value);
+            try (PrintWriter out = options.getConsoleWriter()) {
+                for (ProcedureDefinition procDef : tableMapForPrinting.values()) {
+                    printSymbolTableAtEndOfProcedure(out, procDef.name, procDef.entry);
+                }
             }
         }
 
         return globalTable;
     }
 
+    private void buildProcedureTable(ProcedureDefinition procDef) {
+        //Check if procedure was already created with that name
+        if (globalTable.lookup(procDef.name) != null) {
+            throw SplError.RedefinitionOfIdentifier(procDef.position, procDef.name);
+        }
+
+        //Create level 0 table
+        procDef.entry = new ProcedureEntry(new SymbolTable(globalTable), new ArrayList<>());
+        TableVisitor visitor = new TableVisitor(procDef.entry);
+
+        //Traverse parameters
+        for(ParameterDefinition p: procDef.parameters) {
+            p.accept(visitor);
+        }
+
+        //Traverse Variables
+        for(VariableDefinition v: procDef.variables) {
+            v.accept(visitor);
+        }
+
+        //Prüft Regel 4 aus dem Compilerbau Buch
+        for(ParameterDefinition p: procDef.parameters){
+            if(p.entry.type instanceof ArrayType && !p.isReference){
+                throw SplError.ParameterMustBeReference(p.position, p.name, p.entry.type);
+            }
+        }
+
+        //Add entry to global table
+        globalTable.enter(procDef.name, procDef.entry, SplError.RedefinitionOfIdentifier(procDef.position, procDef.name));
+    }
 
     class TableVisitor extends DoNothingVisitor {
         Type type;
-        SymbolTable currentTable;
-        List<ParameterType> paramTypeList;
+        final SymbolTable currentTable;
+        final List<ParameterType> paramTypeList;
+
+        /**
+         * @param procEntry The procedure whose local table is built, or null for the global definitions.
+         */
+        TableVisitor(ProcedureEntry procEntry) {
+            this.currentTable = procEntry == null ? null : procEntry.localTable;
+            this.paramTypeList = procEntry == null ? null : procEntry.parameterTypes;
+        }
 
-        TableVisitor() {}
+        private Entry lookupGlobal(Identifier name) {
+            return globalTable.lookup(name);
+        }
 
-        public void visit(Program prog) {
-            for(GlobalDefinition g: prog.definitions) {
-                g.accept(this);
-            }
+        private Entry lookup(Identifier name) {
+            return currentTable.lookup(name);
         }
 
         public void visit(TypeDefinition typeDef) {
             //Check if type was already created with that name
-            if(globalTable.lookup(typeDef.name) != null){
-                System.err.println("Identifier '" + typeDef.name + "' is already defined in this scope.");
-                System.exit(103);
+            if(lookupGlobal(typeDef.name) != null){
+                throw SplError.RedefinitionOfIdentifier(typeDef.position, typeDef.name);
             }
 
             //Check if type is called main
             if(typeDef.name.equals(new Identifier("main"))){
-                System.err.println("Identifier 'main' does not refer to a procedure.");
-                System.exit(126);
+                throw SplError.MainIsNotAProcedure();
             }
 
             typeDef.typeExpression.accept(this);
-            globalTable.enter(typeDef.name, new TypeEntry(type), SplError.RedefinitionOfIdentifier(typeDef.position, typeDef.name)); //TODO: You could add an SplError Object to be thrown
+            typeDef.entry = new TypeEntry(type);
+            globalTable.enter(typeDef.name, typeDef.entry, SplError.RedefinitionOfIdentifier(typeDef.position, typeDef.name));
         }
 
         public void visit(ArrayTypeExpression arrType) {
             arrType.baseType.accept(this);
-            this.type = new ArrayType(type, arrType.arraySize);
+            try {
+                this.type = ArrayType.of(type, arrType.arraySize);
+            } catch (ArithmeticException e) {
+                throw SplError.TypeTooLarge(arrType.position, arrType.arraySize, type);
+            }
         }
 
         public void visit(NamedTypeExpression nameType) {
-            Entry entry = globalTable.lookup(nameType.name);
+            Entry entry = lookupGlobal(nameType.name);
             if(entry == null) {
                 throw SplError.UndefinedIdentifier(nameType.position, nameType.name);
             }
 
-            if(entry instanceof TypeEntry){
-                type = ((TypeEntry) entry).type;
+            if(entry instanceof TypeEntry typeEntry){
+                nameType.entry = typeEntry;
+                type = typeEntry.type;
             }else{
-                System.err.println("Identifier '" + nameType.name + "' does not refer to a type.");
-                System.exit(102);
+                throw SplError.NotAType(nameType.position, nameType.name);
             }
         }
 
         public void visit(VariableDefinition varDef) {
             //Check if variable was already created with that name
-            Entry entry = currentTable.lookup(varDef.name);
+            Entry entry = lookup(varDef.name);
             if(entry instanceof VariableEntry){
-                System.err.println("Identifier '" + varDef.name + "' is already defined in this scope.");
-                System.exit(103);
+                throw SplError.RedefinitionOfIdentifier(varDef.position, varDef.name);
             }
 
             varDef.typeExpression.accept(this);
-            currentTable.enter(varDef.name, new VariableEntry(type, false));
-        }
-
-        public void visit(ProcedureDefinition procDef) {
-            //Check if procedure was already created with that name
-            if (globalTable.lookup(procDef.name) != null) {
-                System.err.println("Identifier '" + procDef.name + "' is already defined in this scope.");
-                System.exit(103);
-            }
-
-            //Create level 0 table
-            this.currentTable = new SymbolTable(globalTable);
-
-            //Create Parameterlist
-            List<ParameterType> pList = new ArrayList<>();
-            this.paramTypeList = pList;
-
-            //Traverse parameters
-            List<ParameterDefinition> params = procDef.parameters;
-            for(ParameterDefinition p: params) {
-                p.accept(this);
-            }
-
-            //Traverse Variables
-            List<VariableDefinition> vList = procDef.variables;
-            for(VariableDefinition v: vList) {
-                v.accept(this);
-            }
-
-            List<Statement> sList = procDef.body;
-            for(Statement s: sList) {
-                s.accept(this);
-            }
-
-            //Prüft Regel 4 aus dem Compilerbau Buch
-            for(ParameterType param : paramTypeList){
-                if(param.type instanceof ArrayType && !param.isReference){
-                    System.err.println("Non-reference parameter '" + param + "' has type 'ArrayType', which can only be passed by reference.");
-                    System.exit(104);
-                }
-            }
-
-            //Add entry to global table
-            ProcedureEntry procEntry = new ProcedureEntry(currentTable, paramTypeList);
-            globalTable.enter(procDef.name, procEntry, SplError.RedefinitionOfIdentifier(procDef.position, procDef.name));
-
-            tableMapForPrinting.put(procDef.name, procEntry);
+            varDef.entry = new VariableEntry(type, false);
+            currentTable.enter(varDef.name, varDef.entry);
         }
 
         public void visit(ParameterDefinition paramDef) {
-            //TODO: Check for double parameters
-            if(currentTable.lookup(paramDef.name) != null) {
-                System.err.println("Identifier '" + paramDef.name + "' is already defined in this scope.");
-                System.exit(103);
+            if(lookup(paramDef.name) != null) {
+                throw SplError.RedefinitionOfIdentifier(paramDef.position, paramDef.name);
             }
 
             paramDef.typeExpression.accept(this);
             this.paramTypeList.add(new ParameterType(type, paramDef.isReference));
-            currentTable.enter(paramDef.name, new VariableEntry(type, paramDef.isReference));
+            paramDef.entry = new VariableEntry(type, paramDef.isReference);
+            currentTable.enter(paramDef.name, paramDef.entry);
         }
 
     }
@@ -175,11 +183,15 @@ public class TableBuilder {
      * Prints the local symbol table of a procedure together with a heading-line
      * NOTE: You have to call this after completing the local table to support '--tables'.
      *
+     * @param out   The sink the table is written to
      * @param name  The name of the procedure
      * @param entry The entry of the procedure to print
      */
-    static void printSymbolTableAtEndOfProcedure(Identifier name, ProcedureEntry entry) {
-        System.out.format("Symbol table at end of procedure '%s':\n", name);
-        System.out.println(entry.localTable.toString());
+    static void printSymbolTableAtEndOfProcedure(PrintWriter out, Identifier name, ProcedureEntry entry) {
+        out.print("Symbol table at end of procedure '");
+        out.print(name);
+        out.print("':\n");
+        entry.localTable.print(out, 0);
+        out.println();
     }
 }
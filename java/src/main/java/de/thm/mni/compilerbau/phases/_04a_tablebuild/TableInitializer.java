@@ -6,23 +6,45 @@ import de.thm.mni.compilerbau.types.PrimitiveType;
 
 import java.util.List;
 
-final class TableInitializer {
+/**
+ * Defines the predefined types and procedures of SPL.
+ * <p>
+ * They are entered once into a frozen table, which is shared by all compilations. Each compilation overlays it with
+ * its own global table, so the predefined entries are neither created nor copied again. Other phases that need to
+ * know the predefined procedures ask {@link #predefinedScope()} instead of keeping their own list of names.
+ * The predefined entries must never be modified.
+ */
+public final class TableInitializer {
+    private static final SymbolTable predefinedScope = createPredefinedScope();
+
     private TableInitializer() {
     }
 
     /**
-     * Creates a new SymbolTable and enters entries for all predefined types and procedures.
+     * Creates a new SymbolTable, that already contains all predefined types and procedures.
      *
      * @return A new instance of the symbol table representing the global definition scope.
      */
     static SymbolTable initializeGlobalTable() {
+        return SymbolTable.overlay(predefinedScope);
+    }
+
+    /**
+     * Returns the frozen table holding the predefined types and procedures. Its slots are in definition order.
+     *
+     * @return The shared table of predefined symbols.
+     */
+    public static SymbolTable predefinedScope() {
+        return predefinedScope;
+    }
+
+    private static SymbolTable createPredefinedScope() {
         SymbolTable table = new SymbolTable();
         enterPredefinedTypes(table);
         enterPredefinedProcedures(table);
-        return table;
+        return table.freeze();
     }
 
-
     private static void enterPredefinedTypes(SymbolTable table) {
         table.enter(new Identifier("int"), new TypeEntry(PrimitiveType.intType));
     }
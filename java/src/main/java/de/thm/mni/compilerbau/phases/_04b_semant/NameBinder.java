@@ -0,0 +1,88 @@
+package de.thm.mni.compilerbau.phases._04b_semant;
+
+import de.thm.mni.compilerbau.absyn.*;
+import de.thm.mni.compilerbau.absyn.visitor.DoNothingVisitor;
+import de.thm.mni.compilerbau.table.*;
+
+/**
+ * Resolves every name used in the procedure bodies exactly once and stores the found entry in the node.
+ * <p>
+ * {@link NamedVariable}s are bound to their {@link VariableEntry} and {@link CallStatement}s to the
+ * {@link ProcedureEntry} of the called procedure. All later phases read these entries instead of looking the names up
+ * again. The definitions and {@link NamedTypeExpression}s are already bound while the tables are built.
+ * <p>
+ * No errors are reported here: if a name is undefined or refers to the wrong kind of symbol, the node is left unbound
+ * and the {@link ProcedureBodyChecker} reports the error in its usual order.
+ */
+class NameBinder extends DoNothingVisitor {
+    private SymbolTable localTable;
+
+    @Override
+    public void visit(Program program) {
+        for (GlobalDefinition definition : program.definitions) definition.accept(this);
+    }
+
+    @Override
+    public void visit(ProcedureDefinition procedureDefinition) {
+        this.localTable = procedureDefinition.entry.localTable;
+        for (Statement statement : procedureDefinition.body) statement.accept(this);
+    }
+
+    @Override
+    public void visit(NamedVariable namedVariable) {
+        if (localTable.lookup(namedVariable.name) instanceof VariableEntry entry) namedVariable.entry = entry;
+    }
+
+    @Override
+    public void visit(ArrayAccess arrayAccess) {
+        arrayAccess.array.accept(this);
+        arrayAccess.index.accept(this);
+    }
+
+    @Override
+    public void visit(VariableExpression variableExpression) {
+        variableExpression.variable.accept(this);
+    }
+
+    @Override
+    public void visit(BinaryExpression binaryExpression) {
+        binaryExpression.leftOperand.accept(this);
+        binaryExpression.rightOperand.accept(this);
+    }
+
+    @Override
+    public void visit(UnaryExpression unaryExpression) {
+        unaryExpression.operand.accept(this);
+    }
+
+    @Override
+    public void visit(AssignStatement assignStatement) {
+        assignStatement.target.accept(this);
+        assignStatement.value.accept(this);
+    }
+
+    @Override
+    public void visit(CallStatement callStatement) {
+        if (localTable.lookup(callStatement.procedureName) instanceof ProcedureEntry entry)
+            callStatement.procedureEntry = entry;
+        for (Expression argument : callStatement.arguments) argument.accept(this);
+    }
+
+    @Override
+    public void visit(CompoundStatement compoundStatement) {
+        for (Statement statement : compoundStatement.statements) statement.accept(this);
+    }
+
+    @Override
+    public void visit(IfStatement ifStatement) {
+        ifStatement.condition.accept(this);
+        ifStatement.thenPart.accept(this);
+        if (ifStatement.elsePart != null) ifStatement.elsePart.accept(this);
+    }
+
+    @Override
+    public void visit(WhileStatement whileStatement) {
+        whileStatement.condition.accept(this);
+        whileStatement.body.accept(this);
+    }
+}
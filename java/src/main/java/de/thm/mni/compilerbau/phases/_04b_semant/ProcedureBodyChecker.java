@@ -10,6 +10,7 @@ import de.thm.mni.compilerbau.table.SymbolTable;
 import de.thm.mni.compilerbau.types.ArrayType;
 import de.thm.mni.compilerbau.types.PrimitiveType;
 import de.thm.mni.compilerbau.types.Type;
+import de.thm.mni.compilerbau.utils.SplError;
 import java_cup.runtime.Symbol;
 
 import java.util.Iterator;
@@ -31,12 +32,118 @@ public class ProcedureBodyChecker {
     }
 
     public void checkProcedures(Program program, SymbolTable globalTable) {
+        program.accept(new NameBinder());
+
         Visitor visitor = new TypeAnalysisVisitor(globalTable);
         program.accept(visitor);
 
+        program.accept(new ConstantDivisionVisitor());
+
         //throw new NotImplemented();
     }
 
+    /**
+     * Reports divisions by a constant zero, independently of the optimization level. Branches of 'if' statements and
+     * bodies of 'while' loops that are never executed, because their condition is constant, are not checked, as the
+     * division could never happen there.
+     */
+    static class ConstantDivisionVisitor extends DoNothingVisitor {
+        /**
+         * @return The value of a constant integer expression, or null if it is not constant.
+         */
+        static Integer constant(Expression expression) {
+            if (expression instanceof IntLiteral literal) return literal.value;
+            if (expression instanceof UnaryExpression unary && constant(unary.operand) instanceof Integer operand) {
+                return -operand;
+            }
+            if (expression instanceof BinaryExpression binary && constant(binary.leftOperand) instanceof Integer left
+                    && constant(binary.rightOperand) instanceof Integer right) {
+                return switch (binary.operator) {
+                    case ADD -> left + right;
+                    case SUB -> left - right;
+                    case MUL -> left * right;
+                    case DIV -> right == 0 ? null : left / right;
+                    default -> null;
+                };
+            }
+            return null;
+        }
+
+        /**
+         * @return The value of a constant comparison, or null if it is not constant.
+         */
+        static Boolean condition(Expression expression) {
+            if (!(expression instanceof BinaryExpression binary) || !(constant(binary.leftOperand) instanceof Integer left)
+                    || !(constant(binary.rightOperand) instanceof Integer right)) {
+                return null;
+            }
+            return switch (binary.operator) {
+                case EQU -> left.intValue() == right.intValue();
+                case NEQ -> left.intValue() != right.intValue();
+                case LST -> left < right;
+                case LSE -> left <= right;
+                case GRT -> left > right;
+                case GRE -> left >= right;
+                default -> null;
+            };
+        }
+
+        public void visit(Program program) {
+            program.definitions.forEach(definition -> definition.accept(this));
+        }
+
+        public void visit(ProcedureDefinition procedureDefinition) {
+            procedureDefinition.body.forEach(statement -> statement.accept(this));
+        }
+
+        public void visit(CompoundStatement compoundStatement) {
+            compoundStatement.statements.forEach(statement -> statement.accept(this));
+        }
+
+        public void visit(AssignStatement assignStatement) {
+            assignStatement.target.accept(this);
+            assignStatement.value.accept(this);
+        }
+
+        public void visit(CallStatement callStatement) {
+            callStatement.arguments.forEach(argument -> argument.accept(this));
+        }
+
+        public void visit(IfStatement ifStatement) {
+            ifStatement.condition.accept(this);
+            final Boolean condition = condition(ifStatement.condition);
+            if (condition != Boolean.FALSE) ifStatement.thenPart.accept(this);
+            if (condition != Boolean.TRUE && ifStatement.elsePart != null) ifStatement.elsePart.accept(this);
+        }
+
+        public void visit(WhileStatement whileStatement) {
+            whileStatement.condition.accept(this);
+            if (condition(whileStatement.condition) != Boolean.FALSE) whileStatement.body.accept(this);
+        }
+
+        public void visit(ArrayAccess arrayAccess) {
+            arrayAccess.array.accept(this);
+            arrayAccess.index.accept(this);
+        }
+
+        public void visit(VariableExpression variableExpression) {
+            variableExpression.variable.accept(this);
+        }
+
+        public void visit(UnaryExpression unaryExpression) {
+            unaryExpression.operand.accept(this);
+        }
+
+        public void visit(BinaryExpression binaryExpression) {
+            binaryExpression.leftOperand.accept(this);
+            binaryExpression.rightOperand.accept(this);
+            if (binaryExpression.operator == BinaryExpression.Operator.DIV
+                    && constant(binaryExpression.rightOperand) instanceof Integer divisor && divisor == 0) {
+                throw SplError.DivisionByZero(binaryExpression.position);
+            }
+        }
+    }
+
     class TypeAnalysisVisitor extends DoNothingVisitor {
         SymbolTable globalTable;
         SymbolTable localTable;
@@ -60,8 +167,7 @@ public class ProcedureBodyChecker {
 
         @Override
         public void visit(ProcedureDefinition procedureDefinition) {
-            ProcedureEntry procEntry = (ProcedureEntry) globalTable.lookup(procedureDefinition.name);
-            this.localTable = procEntry.localTable;
+            this.localTable = procedureDefinition.entry.localTable;
 
             if(procedureDefinition.name.equals(new Identifier("main"))) {
                 hasMainBeenDeclared = true;
@@ -99,14 +205,11 @@ public class ProcedureBodyChecker {
         }
 
         public void visit(NamedVariable namedVariable) {
-            Entry entry = localTable.lookup(namedVariable.name);
-            if(entry == null) {
-                undefinedIdentifier(namedVariable.name, namedVariable.position);
-            }
-
-            if(entry instanceof VariableEntry) {
-                this.type = ((VariableEntry) entry).type;
+            if(namedVariable.entry != null) {
+                this.type = namedVariable.entry.type;
                 namedVariable.dataType = this.type;
+            } else if(localTable.lookup(namedVariable.name) == null) {
+                undefinedIdentifier(namedVariable.name, namedVariable.position);
             } else {
                 identNotaVariable(namedVariable.name);
             }
@@ -137,14 +240,10 @@ public class ProcedureBodyChecker {
         }
 
         public void visit(CallStatement callStatement) {
-            Entry entry = localTable.lookup(callStatement.procedureName);
-            if(entry == null) {
-                undefinedIdentifier(callStatement.procedureName, callStatement.position);
-            }
-
-            if(entry instanceof ProcedureEntry) {
+            ProcedureEntry procedureEntry = callStatement.procedureEntry;
+            if(procedureEntry != null) {
                 Iterator<Expression> ArgsIt = callStatement.arguments.iterator();
-                Iterator<ParameterType> ParamsIt = ((ProcedureEntry) entry).parameterTypes.iterator();
+                Iterator<ParameterType> ParamsIt = procedureEntry.parameterTypes.iterator();
                 int i = 0;
                 while(ArgsIt.hasNext() && ParamsIt.hasNext()){
                     i++;
@@ -164,6 +263,8 @@ public class ProcedureBodyChecker {
                 } else if(ParamsIt.hasNext()) { /*called with to few*/
                     procArgumentCountMismatch(callStatement.procedureName, i, callStatement.arguments.size());
                 }
+            } else if(localTable.lookup(callStatement.procedureName) == null) {
+                undefinedIdentifier(callStatement.procedureName, callStatement.position);
             } else {
                 identifierNotAProcedure(callStatement.procedureName);
             }
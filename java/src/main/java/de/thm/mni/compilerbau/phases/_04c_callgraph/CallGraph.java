@@ -0,0 +1,311 @@
+package de.thm.mni.compilerbau.phases._04c_callgraph;
+
+import de.thm.mni.compilerbau.absyn.*;
+import de.thm.mni.compilerbau.absyn.visitor.DoNothingVisitor;
+import de.thm.mni.compilerbau.table.Identifier;
+import de.thm.mni.compilerbau.table.ProcedureEntry;
+
+import java.io.PrintWriter;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * The call graph of a semantically checked SPL program.
+ * <p>
+ * There is one node for every procedure defined in the program, numbered in source order, and an edge from a
+ * procedure to every procedure it calls. Calls of predefined procedures are recorded separately, as these have no
+ * definition in the program. The graph is built from the {@link CallStatement}s after phase 4b, when every call is
+ * bound to the {@link ProcedureEntry} of the called procedure.
+ * <p>
+ * Besides callers and callees the graph knows its strongly connected components, which are the groups of
+ * (mutually) recursive procedures, and which procedures are reachable from 'main'.
+ */
+public final class CallGraph {
+    private static final Identifier MAIN = new Identifier("main");
+
+    private final ProcedureDefinition[] procedures;
+    private final Map<ProcedureDefinition, Integer> nodes = new IdentityHashMap<>();
+    private final List<List<CallStatement>> callSites = new ArrayList<>();
+    private final List<List<Identifier>> predefinedCallees = new ArrayList<>();
+    private final int[][] callees;
+    private final int[][] callers;
+
+    private final int[] component; // Index into components for every node
+    private final List<int[]> components = new ArrayList<>(); // Callees before callers
+    private final boolean[] recursive;
+    private final boolean[] reachable;
+
+    private CallGraph(List<ProcedureDefinition> procedures) {
+        final int n = procedures.size();
+        this.procedures = procedures.toArray(new ProcedureDefinition[0]);
+
+        final Map<ProcedureEntry, Integer> byEntry = new IdentityHashMap<>();
+        for (int i = 0; i < n; i++) {
+            nodes.put(this.procedures[i], i);
+            byEntry.put(this.procedures[i].entry, i);
+        }
+
+        // Edges, each callee once in the order of the first call
+        this.callees = new int[n][];
+        final List<List<Integer>> callerLists = new ArrayList<>();
+        for (int i = 0; i < n; i++) callerLists.add(new ArrayList<>());
+        for (int i = 0; i < n; i++) {
+            final List<CallStatement> calls = CallCollector.collect(this.procedures[i]);
+            final LinkedHashSet<Integer> targets = new LinkedHashSet<>();
+            final LinkedHashSet<Identifier> predefined = new LinkedHashSet<>();
+            for (CallStatement call : calls) {
+                final Integer target = byEntry.get(call.procedureEntry);
+                if (target != null) targets.add(target);
+                else predefined.add(call.procedureName);
+            }
+            callSites.add(Collections.unmodifiableList(calls));
+            predefinedCallees.add(List.copyOf(predefined));
+            callees[i] = targets.stream().mapToInt(Integer::intValue).toArray();
+            for (int target : callees[i]) callerLists.get(target).add(i);
+        }
+        this.callers = callerLists.stream().map(l -> l.stream().mapToInt(Integer::intValue).toArray()).toArray(int[][]::new);
+
+        this.component = new int[n];
+        findComponents();
+        this.recursive = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            final int self = i;
+            recursive[i] = components.get(component[i]).length > 1 || Arrays.stream(callees[i]).anyMatch(c -> c == self);
+        }
+
+        this.reachable = new boolean[n];
+        final ArrayDeque<Integer> work = new ArrayDeque<>();
+        for (int i = 0; i < n; i++) {
+            if (this.procedures[i].name.equals(MAIN)) {
+                reachable[i] = true;
+                work.add(i);
+            }
+        }
+        while (!work.isEmpty()) {
+            for (int target : callees[work.poll()]) {
+                if (!reachable[target]) {
+                    reachable[target] = true;
+                    work.add(target);
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds the call graph of a program. The program has to be checked by phase 4b before.
+     *
+     * @param program The abstract syntax tree of the program.
+     * @return The call graph of all procedures defined in the program.
+     */
+    public static CallGraph build(Program program) {
+        return new CallGraph(program.definitions.stream()
+                .filter(d -> d instanceof ProcedureDefinition)
+                .map(d -> (ProcedureDefinition) d)
+                .toList());
+    }
+
+    /**
+     * Tarjan's algorithm without recursion, so that long call chains do not overflow the Java stack.
+     * The components are found in reverse topological order, i.e. every component comes after all components it calls.
+     */
+    private void findComponents() {
+        final int n = procedures.length;
+        final int[] index = new int[n];
+        final int[] lowLink = new int[n];
+        final boolean[] onStack = new boolean[n];
+        final int[] stack = new int[n];
+        final int[] callStack = new int[n];
+        final int[] nextEdge = new int[n];
+        Arrays.fill(index, -1);
+        int stackSize = 0, nextIndex = 0;
+
+        for (int root = 0; root < n; root++) {
+            if (index[root] != -1) continue;
+
+            int depth = 0;
+            callStack[depth++] = root;
+            index[root] = lowLink[root] = nextIndex++;
+            stack[stackSize++] = root;
+            onStack[root] = true;
+
+            while (depth > 0) {
+                final int v = callStack[depth - 1];
+                if (nextEdge[v] < callees[v].length) {
+                    final int w = callees[v][nextEdge[v]++];
+                    if (index[w] == -1) {
+                        index[w] = lowLink[w] = nextIndex++;
+                        stack[stackSize++] = w;
+                        onStack[w] = true;
+                        callStack[depth++] = w;
+                    } else if (onStack[w]) {
+                        lowLink[v] = Math.min(lowLink[v], index[w]);
+                    }
+                    continue;
+                }
+
+                depth--;
+                if (depth > 0) {
+                    final int parent = callStack[depth - 1];
+                    lowLink[parent] = Math.min(lowLink[parent], lowLink[v]);
+                }
+                if (lowLink[v] == index[v]) {
+                    int start = stackSize;
+                    do start--; while (stack[start] != v);
+                    final int[] members = Arrays.copyOfRange(stack, start, stackSize);
+                    Arrays.sort(members);
+                    for (int member : members) {
+                        onStack[member] = false;
+                        component[member] = components.size();
+                    }
+                    components.add(members);
+                    stackSize = start;
+                }
+            }
+        }
+    }
+
+    private int node(ProcedureDefinition procedure) {
+        final Integer node = nodes.get(procedure);
+        if (node == null) throw new IllegalArgumentException("Procedure '" + procedure.name + "' is not part of the call graph");
+        return node;
+    }
+
+    private List<ProcedureDefinition> definitions(int[] nodes) {
+        return Arrays.stream(nodes).mapToObj(i -> procedures[i]).toList();
+    }
+
+    /**
+     * @return All procedures of the program in source order.
+     */
+    public List<ProcedureDefinition> procedures() {
+        return List.of(procedures);
+    }
+
+    /**
+     * @return The procedures called by the given procedure, each once, in the order of their first call.
+     */
+    public List<ProcedureDefinition> callees(ProcedureDefinition procedure) {
+        return definitions(callees[node(procedure)]);
+    }
+
+    /**
+     * @return The procedures calling the given procedure, each once, in source order.
+     */
+    public List<ProcedureDefinition> callers(ProcedureDefinition procedure) {
+        return definitions(callers[node(procedure)]);
+    }
+
+    /**
+     * @return The names of the predefined procedures called by the given procedure, in the order of their first call.
+     */
+    public List<Identifier> predefinedCallees(ProcedureDefinition procedure) {
+        return predefinedCallees.get(node(procedure));
+    }
+
+    /**
+     * @return All calls in the body of the given procedure, in source order.
+     */
+    public List<CallStatement> callSites(ProcedureDefinition procedure) {
+        return callSites.get(node(procedure));
+    }
+
+    /**
+     * Returns the strongly connected components of the graph. Each component is a list of procedures in source order.
+     * Every component comes after the components of all procedures it calls, so the callees of a procedure outside
+     * its own component have always been seen before the procedure itself.
+     *
+     * @return The strongly connected components in reverse topological order.
+     */
+    public List<List<ProcedureDefinition>> components() {
+        return components.stream().map(this::definitions).toList();
+    }
+
+    /**
+     * @return The strongly connected component containing the given procedure.
+     */
+    public List<ProcedureDefinition> component(ProcedureDefinition procedure) {
+        return definitions(components.get(component[node(procedure)]));
+    }
+
+    /**
+     * @return Whether the procedure can call itself, directly or through other procedures.
+     */
+    public boolean isRecursive(ProcedureDefinition procedure) {
+        return recursive[node(procedure)];
+    }
+
+    /**
+     * @return Whether the procedure can be called when the program is run, i.e. if it is 'main' or called from a
+     * reachable procedure.
+     */
+    public boolean isReachable(ProcedureDefinition procedure) {
+        return reachable[node(procedure)];
+    }
+
+    /**
+     * Writes the call graph in a human-readable format, as printed by '--callgraph'.
+     *
+     * @param out The sink the graph is written to.
+     */
+    public void print(PrintWriter out) {
+        out.print("Call graph:\n");
+        for (int i = 0; i < procedures.length; i++) {
+            final List<String> targets = new ArrayList<>();
+            for (int target : callees[i]) targets.add(procedures[target].name.toString());
+            for (Identifier predefined : predefinedCallees.get(i)) targets.add(predefined.toString());
+            out.printf("  %s -> %s\n", procedures[i].name, targets.isEmpty() ? "<none>" : String.join(", ", targets));
+        }
+
+        out.print("\nRecursive procedures:\n");
+        final List<String> cycles = components.stream()
+                .filter(members -> recursive[members[0]])
+                .map(members -> definitions(members).stream().map(p -> p.name.toString()).collect(Collectors.joining(", ")))
+                .toList();
+        if (cycles.isEmpty()) out.print("  <none>\n");
+        for (String cycle : cycles) out.printf("  %s\n", cycle);
+
+        out.print("\nUnreachable procedures:\n");
+        boolean any = false;
+        for (int i = 0; i < procedures.length; i++) {
+            if (!reachable[i]) {
+                out.printf("  %s\n", procedures[i].name);
+                any = true;
+            }
+        }
+        if (!any) out.print("  <none>\n");
+    }
+
+    /**
+     * Collects all {@link CallStatement}s in the body of a procedure.
+     */
+    private static class CallCollector extends DoNothingVisitor {
+        private final List<CallStatement> calls = new ArrayList<>();
+
+        static List<CallStatement> collect(ProcedureDefinition procedure) {
+            final CallCollector collector = new CallCollector();
+            for (Statement statement : procedure.body) statement.accept(collector);
+            return collector.calls;
+        }
+
+        @Override
+        public void visit(CallStatement callStatement) {
+            calls.add(callStatement);
+        }
+
+        @Override
+        public void visit(CompoundStatement compoundStatement) {
+            for (Statement statement : compoundStatement.statements) statement.accept(this);
+        }
+
+        @Override
+        public void visit(IfStatement ifStatement) {
+            ifStatement.thenPart.accept(this);
+            if (ifStatement.elsePart != null) ifStatement.elsePart.accept(this);
+        }
+
+        @Override
+        public void visit(WhileStatement whileStatement) {
+            whileStatement.body.accept(this);
+        }
+    }
+}
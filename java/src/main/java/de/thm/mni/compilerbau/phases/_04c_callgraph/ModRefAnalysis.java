@@ -0,0 +1,188 @@
+package de.thm.mni.compilerbau.phases._04c_callgraph;
+
+import de.thm.mni.compilerbau.absyn.*;
+import de.thm.mni.compilerbau.absyn.visitor.DoNothingVisitor;
+import de.thm.mni.compilerbau.table.ParameterType;
+import de.thm.mni.compilerbau.table.ProcedureEntry;
+import de.thm.mni.compilerbau.table.VariableEntry;
+
+import java.io.PrintWriter;
+import java.util.*;
+
+/**
+ * Calculates the {@link SideEffects} of every procedure defined in the program.
+ * <p>
+ * First the body of each procedure is scanned for direct reads and writes through its reference parameters, and for
+ * reference parameters that are passed on to reference parameters of other procedures. The effects of these calls
+ * are then added in the order of the strongly connected components of the {@link CallGraph}, so that all callees
+ * outside of a component are final when the component is processed. Inside a component the effects are propagated
+ * until nothing changes anymore.
+ * <p>
+ * The results are stored in {@link ProcedureEntry#sideEffects}. The summaries of the predefined procedures are set
+ * when their entries are created.
+ */
+public class ModRefAnalysis {
+    private ModRefAnalysis() {
+    }
+
+    /**
+     * A reference parameter of the analysed procedure, that is passed to a reference parameter of a callee.
+     */
+    private record Binding(ProcedureEntry callee, int calleeParameter, int parameter) {
+    }
+
+    /**
+     * Calculates the side effects of all procedures in the call graph.
+     *
+     * @param callGraph The call graph of the program.
+     */
+    public static void analyze(CallGraph callGraph) {
+        final Map<ProcedureDefinition, List<Binding>> bindings = new IdentityHashMap<>();
+        for (ProcedureDefinition procedure : callGraph.procedures()) {
+            final LocalEffects local = new LocalEffects(procedure);
+            for (Statement statement : procedure.body) statement.accept(local);
+            bindings.put(procedure, local.bindings);
+        }
+
+        for (List<ProcedureDefinition> component : callGraph.components()) {
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                for (ProcedureDefinition procedure : component) {
+                    final SideEffects effects = procedure.entry.sideEffects;
+                    final int read = effects.readParameters.cardinality();
+                    final int written = effects.writtenParameters.cardinality();
+                    final boolean io = effects.performsIo;
+
+                    for (Binding binding : bindings.get(procedure)) {
+                        final SideEffects callee = binding.callee.sideEffects;
+                        if (callee.reads(binding.calleeParameter)) effects.readParameters.set(binding.parameter);
+                        if (callee.writes(binding.calleeParameter)) effects.writtenParameters.set(binding.parameter);
+                    }
+                    for (ProcedureDefinition callee : callGraph.callees(procedure)) {
+                        effects.performsIo |= callee.entry.sideEffects.performsIo;
+                    }
+
+                    changed |= read != effects.readParameters.cardinality()
+                            || written != effects.writtenParameters.cardinality()
+                            || io != effects.performsIo;
+                }
+            }
+        }
+    }
+
+    /**
+     * Collects the direct effects of a procedure body. The bits are set directly in the procedure's summary.
+     */
+    private static class LocalEffects extends DoNothingVisitor {
+        private final SideEffects effects;
+        private final Map<VariableEntry, Integer> referenceParameters = new IdentityHashMap<>();
+        private final List<Binding> bindings = new ArrayList<>();
+
+        LocalEffects(ProcedureDefinition procedure) {
+            this.effects = procedure.entry.sideEffects;
+            for (int i = 0; i < procedure.parameters.size(); i++) {
+                final ParameterDefinition parameter = procedure.parameters.get(i);
+                if (parameter.isReference) referenceParameters.put(parameter.entry, i);
+            }
+        }
+
+        /**
+         * @return The index of the reference parameter the variable belongs to, or -1 for a local variable.
+         */
+        private int referenceParameter(Variable variable) {
+            while (variable instanceof ArrayAccess arrayAccess) {
+                arrayAccess.index.accept(this); // Indices are read whenever the variable is used
+                variable = arrayAccess.array;
+            }
+            return referenceParameters.getOrDefault(((NamedVariable) variable).entry, -1);
+        }
+
+        @Override
+        public void visit(VariableExpression variableExpression) {
+            final int parameter = referenceParameter(variableExpression.variable);
+            if (parameter >= 0) effects.readParameters.set(parameter);
+        }
+
+        @Override
+        public void visit(AssignStatement assignStatement) {
+            final int parameter = referenceParameter(assignStatement.target);
+            if (parameter >= 0) effects.writtenParameters.set(parameter);
+            assignStatement.value.accept(this);
+        }
+
+        @Override
+        public void visit(CallStatement callStatement) {
+            final ProcedureEntry callee = callStatement.procedureEntry;
+            effects.performsIo |= callee.sideEffects.performsIo; // Completed for user procedures by the propagation
+
+            for (int i = 0; i < callStatement.arguments.size(); i++) {
+                final ParameterType parameterType = callee.parameterTypes.get(i);
+                final Expression argument = callStatement.arguments.get(i);
+                if (parameterType.isReference) {
+                    final int parameter = referenceParameter(((VariableExpression) argument).variable);
+                    if (parameter >= 0) bindings.add(new Binding(callee, i, parameter));
+                } else {
+                    argument.accept(this);
+                }
+            }
+        }
+
+        @Override
+        public void visit(BinaryExpression binaryExpression) {
+            binaryExpression.leftOperand.accept(this);
+            binaryExpression.rightOperand.accept(this);
+        }
+
+        @Override
+        public void visit(UnaryExpression unaryExpression) {
+            unaryExpression.operand.accept(this);
+        }
+
+        @Override
+        public void visit(CompoundStatement compoundStatement) {
+            for (Statement statement : compoundStatement.statements) statement.accept(this);
+        }
+
+        @Override
+        public void visit(IfStatement ifStatement) {
+            ifStatement.condition.accept(this);
+            ifStatement.thenPart.accept(this);
+            if (ifStatement.elsePart != null) ifStatement.elsePart.accept(this);
+        }
+
+        @Override
+        public void visit(WhileStatement whileStatement) {
+            whileStatement.condition.accept(this);
+            whileStatement.body.accept(this);
+        }
+    }
+
+    /**
+     * Formats and prints the side effects of all procedures, in the format used by '--modref'.
+     *
+     * @param out       The sink the report is written to.
+     * @param callGraph The call graph of the program, after {@link #analyze(CallGraph)}.
+     */
+    public static void formatSideEffects(PrintWriter out, CallGraph callGraph) {
+        for (ProcedureDefinition procedure : callGraph.procedures()) {
+            final SideEffects effects = procedure.entry.sideEffects;
+            out.printf("Side effects of procedure '%s':\n", procedure.name);
+            out.printf("  - performs input/output = %s\n", effects.performsIo ? "yes" : "no");
+
+            boolean anyReference = false;
+            for (int i = 0; i < procedure.parameters.size(); i++) {
+                final ParameterDefinition parameter = procedure.parameters.get(i);
+                if (!parameter.isReference) continue;
+                anyReference = true;
+
+                final List<String> access = new ArrayList<>();
+                if (effects.reads(i)) access.add("read");
+                if (effects.writes(i)) access.add("written");
+                out.printf("  - ref par %s = %s\n", parameter.name, access.isEmpty() ? "unused" : String.join(", ", access));
+            }
+            if (!anyReference) out.print("  - no reference parameters\n");
+            out.println();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package de.thm.mni.compilerbau.phases._04c_callgraph;
+
+import java.util.BitSet;
+
+/**
+ * This class describes the side effects of calling a procedure, as seen by the caller.
+ * <p>
+ * SPL has no global variables, so a procedure can only change the memory of its caller through its reference
+ * parameters. The parameters are identified by their index in the parameter list. Effects of the callees, including
+ * the predefined procedures, are included. Only the predefined procedures can perform input or output.
+ */
+public class SideEffects {
+    // The following values are calculated after phase 4b, or set when a predefined procedure is entered
+    public final BitSet readParameters = new BitSet();
+    public final BitSet writtenParameters = new BitSet();
+    public boolean performsIo = false;
+
+    /**
+     * @param parameter The index of a reference parameter.
+     * @return Whether the procedure may read the variable passed for this parameter.
+     */
+    public boolean reads(int parameter) {
+        return readParameters.get(parameter);
+    }
+
+    /**
+     * @param parameter The index of a reference parameter.
+     * @return Whether the procedure may write the variable passed for this parameter.
+     */
+    public boolean writes(int parameter) {
+        return writtenParameters.get(parameter);
+    }
+
+    /**
+     * @return Whether the procedure neither writes through a reference parameter nor performs input or output.
+     * A call of such a procedure can be removed, if it terminates.
+     */
+    public boolean isPure() {
+        return !performsIo && writtenParameters.isEmpty();
+    }
+}
@@ -0,0 +1,293 @@
+package de.thm.mni.compilerbau.phases._04d_optimize;
+
+import de.thm.mni.compilerbau.absyn.*;
+import de.thm.mni.compilerbau.absyn.visitor.DoNothingVisitor;
+import de.thm.mni.compilerbau.types.PrimitiveType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Folds constant expressions and removes statically decided control flow from a semantically checked program.
+ * <p>
+ * Arithmetic is evaluated with the 32-bit two's complement wraparound of ECO32, which is also the semantics of Java's
+ * int arithmetic. Divisions by a constant zero have already been reported by the ProcedureBodyChecker at every
+ * optimization level, unless they are in a branch that is never taken, which is removed here. Such divisions and the
+ * division of the smallest int by -1 are never folded.
+ * <p>
+ * Besides folding, the identities x+0, 0+x, x-0, x*1, 1*x, x/1 and -(-x) are applied. x*0 and 0*x are only replaced
+ * by 0 if x can not fail at run time, i.e. contains neither an array access nor a division.
+ * An 'if' statement with a constant condition is replaced by the branch taken, and a 'while' loop whose condition is
+ * always false is removed. Conditions themselves are never replaced, because the code generator expects a comparison.
+ * <p>
+ * The tree is rewritten, not modified: unchanged subtrees are shared with the original tree and new nodes carry the
+ * same types and bound entries as the nodes they replace.
+ */
+public class ConstantFolder extends DoNothingVisitor {
+    // The result of the last visited node
+    private Expression expression;
+    private Variable variable;
+    private Statement statement;
+
+    private ConstantFolder() {
+    }
+
+    /**
+     * Folds all procedure bodies of the program.
+     *
+     * @param program The semantically checked program.
+     * @return The program with folded procedure bodies.
+     */
+    public static Program fold(Program program) {
+        final ConstantFolder folder = new ConstantFolder();
+        final List<GlobalDefinition> definitions = new ArrayList<>(program.definitions.size());
+        for (GlobalDefinition definition : program.definitions) {
+            if (definition instanceof ProcedureDefinition procedure) {
+                final ProcedureDefinition folded = new ProcedureDefinition(procedure.position, procedure.name,
+                        procedure.parameters, procedure.variables, folder.foldStatements(procedure.body));
+                folded.entry = procedure.entry;
+                definitions.add(folded);
+            } else {
+                definitions.add(definition);
+            }
+        }
+        return new Program(program.position, definitions);
+    }
+
+    private Expression fold(Expression expression) {
+        expression.accept(this);
+        return this.expression;
+    }
+
+    private Variable fold(Variable variable) {
+        variable.accept(this);
+        return this.variable;
+    }
+
+    private Statement fold(Statement statement) {
+        statement.accept(this);
+        return this.statement;
+    }
+
+    private List<Statement> foldStatements(List<Statement> statements) {
+        final List<Statement> folded = new ArrayList<>(statements.size());
+        for (Statement statement : statements) folded.add(fold(statement));
+        return folded;
+    }
+
+    private static IntLiteral literal(Position position, int value) {
+        final IntLiteral literal = new IntLiteral(position, value);
+        literal.dataType = PrimitiveType.intType;
+        return literal;
+    }
+
+    private static boolean isLiteral(Expression expression, int value) {
+        return expression instanceof IntLiteral literal && literal.value == value;
+    }
+
+    /**
+     * @return Whether evaluating the expression can not trap, so that it can be dropped.
+     */
+    private static boolean cannotFail(Expression expression) {
+        return switch (expression) {
+            case IntLiteral ignored -> true;
+            case VariableExpression variableExpression -> variableExpression.variable instanceof NamedVariable;
+            case UnaryExpression unary -> cannotFail(unary.operand);
+            case BinaryExpression binary -> binary.operator != BinaryExpression.Operator.DIV
+                    && cannotFail(binary.leftOperand) && cannotFail(binary.rightOperand);
+        };
+    }
+
+    /**
+     * @return Whether the operation is a division that traps or whose result is not portable, which is left to run
+     * time.
+     */
+    private static boolean traps(BinaryExpression.Operator operator, int left, int right) {
+        return operator == BinaryExpression.Operator.DIV && (right == 0 || left == Integer.MIN_VALUE && right == -1);
+    }
+
+    /**
+     * @return The value of a comparison of two constants.
+     */
+    private static boolean compare(BinaryExpression.Operator operator, int left, int right) {
+        return switch (operator) {
+            case EQU -> left == right;
+            case NEQ -> left != right;
+            case LST -> left < right;
+            case LSE -> left <= right;
+            case GRT -> left > right;
+            case GRE -> left >= right;
+            default -> throw new IllegalArgumentException("Not a comparison: " + operator);
+        };
+    }
+
+    /**
+     * @return The condition's value, if both operands are constant after folding, or null.
+     */
+    private static Boolean decide(Expression condition) {
+        if (condition instanceof BinaryExpression binary && binary.operator.isComparison()
+                && binary.leftOperand instanceof IntLiteral left && binary.rightOperand instanceof IntLiteral right) {
+            return compare(binary.operator, left.value, right.value);
+        }
+        return null;
+    }
+
+    @Override
+    public void visit(IntLiteral intLiteral) {
+        expression = intLiteral;
+    }
+
+    @Override
+    public void visit(VariableExpression variableExpression) {
+        final Variable folded = fold(variableExpression.variable);
+        if (folded == variableExpression.variable) {
+            expression = variableExpression;
+        } else {
+            expression = new VariableExpression(variableExpression.position, folded);
+            expression.dataType = variableExpression.dataType;
+        }
+    }
+
+    @Override
+    public void visit(NamedVariable namedVariable) {
+        variable = namedVariable;
+    }
+
+    @Override
+    public void visit(ArrayAccess arrayAccess) {
+        final Variable array = fold(arrayAccess.array);
+        final Expression index = fold(arrayAccess.index);
+        if (array == arrayAccess.array && index == arrayAccess.index) {
+            variable = arrayAccess;
+        } else {
+            variable = new ArrayAccess(arrayAccess.position, array, index);
+            variable.dataType = arrayAccess.dataType;
+        }
+    }
+
+    @Override
+    public void visit(UnaryExpression unaryExpression) {
+        final Expression operand = fold(unaryExpression.operand);
+        if (operand instanceof IntLiteral literal) {
+            expression = literal(unaryExpression.position, -literal.value);
+        } else if (operand instanceof UnaryExpression inner) {
+            expression = inner.operand; // -(-x) = x, SPL only has the unary minus
+        } else if (operand == unaryExpression.operand) {
+            expression = unaryExpression;
+        } else {
+            expression = new UnaryExpression(unaryExpression.position, unaryExpression.operator, operand);
+            expression.dataType = unaryExpression.dataType;
+        }
+    }
+
+    @Override
+    public void visit(BinaryExpression binaryExpression) {
+        final Expression left = fold(binaryExpression.leftOperand);
+        final Expression right = fold(binaryExpression.rightOperand);
+        final Position position = binaryExpression.position;
+
+        if (binaryExpression.operator.isArithmetic() && left instanceof IntLiteral l && right instanceof IntLiteral r
+                && !traps(binaryExpression.operator, l.value, r.value)) {
+            switch (binaryExpression.operator) {
+                case ADD -> expression = literal(position, l.value + r.value);
+                case SUB -> expression = literal(position, l.value - r.value);
+                case MUL -> expression = literal(position, l.value * r.value);
+                case DIV -> expression = literal(position, l.value / r.value);
+            }
+            expression.dataType = PrimitiveType.intType;
+            return;
+        }
+
+        switch (binaryExpression.operator) {
+            case ADD -> {
+                if (isLiteral(right, 0)) { expression = left; return; }
+                if (isLiteral(left, 0)) { expression = right; return; }
+            }
+            case SUB -> {
+                if (isLiteral(right, 0)) { expression = left; return; }
+            }
+            case MUL -> {
+                if (isLiteral(right, 1)) { expression = left; return; }
+                if (isLiteral(left, 1)) { expression = right; return; }
+                if (isLiteral(right, 0) && cannotFail(left)) { expression = literal(position, 0); return; }
+                if (isLiteral(left, 0) && cannotFail(right)) { expression = literal(position, 0); return; }
+            }
+            case DIV -> {
+                if (isLiteral(right, 1)) { expression = left; return; }
+            }
+            default -> {
+            }
+        }
+
+        if (left == binaryExpression.leftOperand && right == binaryExpression.rightOperand) {
+            expression = binaryExpression;
+        } else {
+            expression = new BinaryExpression(position, binaryExpression.operator, left, right);
+            expression.dataType = binaryExpression.dataType;
+        }
+    }
+
+    @Override
+    public void visit(AssignStatement assignStatement) {
+        final Variable target = fold(assignStatement.target);
+        final Expression value = fold(assignStatement.value);
+        statement = target == assignStatement.target && value == assignStatement.value
+                ? assignStatement
+                : new AssignStatement(assignStatement.position, target, value);
+    }
+
+    @Override
+    public void visit(CallStatement callStatement) {
+        boolean changed = false;
+        final List<Expression> arguments = new ArrayList<>(callStatement.arguments.size());
+        for (Expression argument : callStatement.arguments) {
+            final Expression folded = fold(argument);
+            changed |= folded != argument;
+            arguments.add(folded);
+        }
+
+        if (changed) {
+            final CallStatement folded = new CallStatement(callStatement.position, callStatement.procedureName, arguments);
+            folded.procedureEntry = callStatement.procedureEntry;
+            statement = folded;
+        } else {
+            statement = callStatement;
+        }
+    }
+
+    @Override
+    public void visit(CompoundStatement compoundStatement) {
+        statement = new CompoundStatement(compoundStatement.position, foldStatements(compoundStatement.statements));
+    }
+
+    @Override
+    public void visit(EmptyStatement emptyStatement) {
+        statement = emptyStatement;
+    }
+
+    @Override
+    public void visit(IfStatement ifStatement) {
+        final Expression condition = fold(ifStatement.condition);
+        final Statement thenPart = fold(ifStatement.thenPart);
+        final Statement elsePart = fold(ifStatement.elsePart);
+
+        final Boolean decided = decide(condition);
+        if (decided != null) {
+            statement = decided ? thenPart : elsePart;
+        } else {
+            statement = new IfStatement(ifStatement.position, condition, thenPart, elsePart);
+        }
+    }
+
+    @Override
+    public void visit(WhileStatement whileStatement) {
+        final Expression condition = fold(whileStatement.condition);
+        final Statement body = fold(whileStatement.body);
+
+        if (Boolean.FALSE.equals(decide(condition))) {
+            statement = new EmptyStatement(whileStatement.position);
+        } else {
+            statement = new WhileStatement(whileStatement.position, condition, body);
+        }
+    }
+}
@@ -1,22 +1,43 @@
 package de.thm.mni.compilerbau.phases._05_varalloc;
 
-import de.thm.mni.compilerbau.utils.NotImplemented;
-
 /**
  * This class describes the stack frame layout of a procedure.
  * It contains the sizes of the various subareas and provides methods to retrieve information about the stack frame required to generate code for the procedure.
  */
 public class StackLayout {
+    /**
+     * Marks a size or offset that has not been calculated yet.
+     */
+    public static final int UNSET = Integer.MIN_VALUE;
+
     // The following values have to be set in phase 5
-    public Integer argumentAreaSize = null;
-    public Integer localVarAreaSize = null;
-    public Integer outgoingAreaSize = null;
+    public int argumentAreaSize = UNSET;
+    public int localVarAreaSize = UNSET;
+    public int outgoingAreaSize = UNSET;
+
+    /**
+     * @param value A size or offset.
+     * @return The value, if it has been set.
+     * @throws IllegalStateException If the value is still {@link #UNSET}.
+     */
+    public static int require(int value) {
+        if (value == UNSET) throw new IllegalStateException("Value has not been calculated in phase 5");
+        return value;
+    }
+
+    /**
+     * @param value A size or offset.
+     * @return The value as a string, or "NULL" if it is still {@link #UNSET}.
+     */
+    public static String format(int value) {
+        return value == UNSET ? "NULL" : Integer.toString(value);
+    }
 
     /**
      * @return The total size of the stack frame described by this object.
      */
     public int frameSize() {
-        return localVarAreaSize + outgoingAreaSize + 8; //8 sind noch oldFP und oldReturnAddress
+        return require(localVarAreaSize) + require(outgoingAreaSize) + 8; //8 sind noch oldFP und oldReturnAddress
     }
 
     /**
@@ -24,7 +45,7 @@ public class StackLayout {
      */
     public int oldFramePointerOffset() {
         //TODO (assignment 5): Calculate the offset of the old frame pointer
-        return outgoingAreaSize + 4;
+        return require(outgoingAreaSize) + 4;
     }
 
     /**
@@ -32,6 +53,6 @@ public class StackLayout {
      */
     public int oldReturnAddressOffset() {
         //TODO (assignment 5): Calculate the offset of the old return address
-        return -localVarAreaSize - 8;
+        return -require(localVarAreaSize) - 8;
     }
 }
@@ -0,0 +1,220 @@
+package de.thm.mni.compilerbau.phases._05_varalloc;
+
+import de.thm.mni.compilerbau.CommandLineOptions;
+import de.thm.mni.compilerbau.absyn.ProcedureDefinition;
+import de.thm.mni.compilerbau.ir.Block;
+import de.thm.mni.compilerbau.ir.Call;
+import de.thm.mni.compilerbau.ir.Instruction;
+import de.thm.mni.compilerbau.ir.Procedure;
+import de.thm.mni.compilerbau.phases._04c_callgraph.CallGraph;
+import de.thm.mni.compilerbau.table.ProcedureEntry;
+
+import java.io.PrintWriter;
+import java.util.*;
+
+/**
+ * Calculates the worst-case stack usage of every procedure, i.e. the largest number of bytes the stack can grow
+ * while the procedure is active, including the frames of all procedures it calls directly or indirectly.
+ * <p>
+ * The frames are taken from the {@link StackLayout}s computed in phase 5, in the size the code generator allocates
+ * them. The predefined procedures are part of the runtime library and are not counted.
+ * <p>
+ * With optimizations, the frames are those laid out for the optimized code, and the calls left in it after inlining
+ * replace the edges of the call graph. Inlining only moves calls from a callee into its callers, so the components of
+ * the call graph remain in an order in which every procedure comes after its callees. Tail calls are counted like
+ * other calls, which overestimates them by the caller's frame.
+ * <p>
+ * Procedures in a recursive cycle have no bound, unless the maximum number of activations of the cycle's procedures
+ * that can be on the stack at the same time is given with '--recursion-depth'. Such a cycle is counted as that many
+ * times its largest frame.
+ */
+public class StackUsage {
+    public static final long UNBOUNDED = -1;
+
+    private final CallGraph callGraph;
+    private final CommandLineOptions options;
+    private final Map<ProcedureDefinition, Long> worstCase = new IdentityHashMap<>();
+    private final Map<ProcedureDefinition, ProcedureDefinition> heaviestCallee = new IdentityHashMap<>();
+    private final Map<ProcedureDefinition, Integer> recursionBound = new IdentityHashMap<>();
+    private final Map<ProcedureDefinition, List<ProcedureDefinition>> optimizedCallees; // Null without optimizations
+
+    private StackUsage(CallGraph callGraph, CommandLineOptions options, Map<ProcedureDefinition, List<ProcedureDefinition>> optimizedCallees) {
+        this.callGraph = callGraph;
+        this.options = options;
+        this.optimizedCallees = optimizedCallees;
+    }
+
+    /**
+     * Calculates the stack usage of all procedures. The stack layouts must have been calculated in phase 5.
+     *
+     * @param callGraph The call graph of the program.
+     * @param options   The options passed to the compiler, containing the recursion bounds.
+     * @return The stack usage of all procedures in the call graph.
+     */
+    public static StackUsage analyze(CallGraph callGraph, CommandLineOptions options) {
+        return new StackUsage(callGraph, options, null).analyze();
+    }
+
+    /**
+     * Calculates the stack usage of all procedures for the optimized code. The frames of the optimized procedures
+     * must have been laid out by the code generator.
+     *
+     * @param callGraph  The call graph of the program.
+     * @param procedures The optimized procedures. Procedures missing here have been inlined into all of their callers.
+     * @param options    The options passed to the compiler, containing the recursion bounds.
+     * @return The stack usage of all procedures in the call graph.
+     */
+    public static StackUsage analyze(CallGraph callGraph, List<Procedure> procedures, CommandLineOptions options) {
+        final Map<ProcedureEntry, ProcedureDefinition> definitions = new IdentityHashMap<>();
+        for (ProcedureDefinition procedure : callGraph.procedures()) definitions.put(procedure.entry, procedure);
+
+        final Map<ProcedureDefinition, List<ProcedureDefinition>> optimizedCallees = new IdentityHashMap<>();
+        for (Procedure procedure : procedures) {
+            final Set<ProcedureDefinition> callees = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (Block block : procedure.blocks) {
+                for (Instruction instruction : block.instructions) {
+                    // Calls of predefined procedures have no definition
+                    if (instruction instanceof Call call && definitions.containsKey(call.callee)) callees.add(definitions.get(call.callee));
+                }
+            }
+            optimizedCallees.put(procedure.definition, List.copyOf(callees));
+        }
+        return new StackUsage(callGraph, options, optimizedCallees).analyze();
+    }
+
+    private StackUsage analyze() {
+        // Every component is visited after all components it calls
+        for (List<ProcedureDefinition> component : callGraph.components()) analyze(component);
+        return this;
+    }
+
+    private List<ProcedureDefinition> callees(ProcedureDefinition procedure) {
+        return optimizedCallees != null && optimizedCallees.containsKey(procedure) ? optimizedCallees.get(procedure) : callGraph.callees(procedure);
+    }
+
+    /**
+     * @return Whether the procedure has been inlined into all of its callers, so it has no code of its own.
+     */
+    private boolean isInlined(ProcedureDefinition procedure) {
+        return optimizedCallees != null && callGraph.isReachable(procedure) && !optimizedCallees.containsKey(procedure);
+    }
+
+    private void analyze(List<ProcedureDefinition> component) {
+        long callees = 0;
+        ProcedureDefinition heaviest = null;
+        for (ProcedureDefinition procedure : component) {
+            for (ProcedureDefinition callee : callees(procedure)) {
+                if (worstCase.containsKey(callee) && (heaviest == null || exceeds(worstCase.get(callee), callees))) {
+                    callees = worstCase.get(callee);
+                    heaviest = callee;
+                }
+            }
+        }
+
+        final long own;
+        if (callGraph.isRecursive(component.get(0))) {
+            final int bound = bound(component);
+            long largestFrame = 0;
+            for (ProcedureDefinition procedure : component) largestFrame = Math.max(largestFrame, frameSize(procedure));
+            own = bound > 0 ? bound * largestFrame : UNBOUNDED;
+            for (ProcedureDefinition procedure : component) recursionBound.put(procedure, bound);
+        } else {
+            own = frameSize(component.get(0));
+        }
+
+        final long total = own == UNBOUNDED || callees == UNBOUNDED ? UNBOUNDED : own + callees;
+        for (ProcedureDefinition procedure : component) {
+            worstCase.put(procedure, total);
+            if (heaviest != null) heaviestCallee.put(procedure, heaviest);
+        }
+    }
+
+    private static boolean exceeds(long a, long b) {
+        return a == UNBOUNDED ? b != UNBOUNDED : b != UNBOUNDED && a > b;
+    }
+
+    /**
+     * @return The bound given for a recursive cycle, the largest one if several procedures have one, or 0 if unbounded.
+     */
+    private int bound(List<ProcedureDefinition> component) {
+        int bound = 0;
+        for (ProcedureDefinition procedure : component) {
+            bound = Math.max(bound, options.recursionDepths.getOrDefault(procedure.name.toString(), 0));
+        }
+        return bound > 0 ? bound : options.recursionDepth;
+    }
+
+    /**
+     * @return The number of bytes the code generator allocates for a frame of the procedure.
+     */
+    public static long frameSize(ProcedureDefinition procedure) {
+        final StackLayout layout = procedure.entry.stackLayout;
+        // Procedures without calls have an outgoing area size of -1, for which no space is allocated
+        return (long) StackLayout.require(layout.localVarAreaSize) + 8 + Math.max(StackLayout.require(layout.outgoingAreaSize), 0);
+    }
+
+    /**
+     * @return The largest number of bytes the stack can grow while the procedure is active, or {@link #UNBOUNDED}.
+     */
+    public long worstCase(ProcedureDefinition procedure) {
+        return worstCase.get(procedure);
+    }
+
+    /**
+     * @return The call chain that needs the most stack space, starting at the given procedure.
+     * A recursive cycle is represented by the procedure through which the chain enters it.
+     */
+    public List<ProcedureDefinition> heaviestChain(ProcedureDefinition procedure) {
+        final List<ProcedureDefinition> chain = new ArrayList<>();
+        for (ProcedureDefinition p = procedure; p != null; p = heaviestCallee.get(p)) chain.add(p);
+        return chain;
+    }
+
+    private static String format(long bytes) {
+        return bytes == UNBOUNDED ? "unbounded" : Long.toString(bytes);
+    }
+
+    /**
+     * Formats and prints the stack usage, in the format used by '--stack'.
+     *
+     * @param out The sink the report is written to.
+     */
+    public void print(PrintWriter out) {
+        out.printf("Stack usage in bytes at -O%d (predefined procedures are not counted):\n", options.optimizationLevel);
+        for (ProcedureDefinition procedure : callGraph.procedures()) {
+            out.printf("  %s: frame = %d, worst case = %s", procedure.name, frameSize(procedure), format(worstCase(procedure)));
+            if (callGraph.isRecursive(procedure)) {
+                final int bound = recursionBound.get(procedure);
+                out.print(bound > 0 ? String.format(", recursive (at most %d activations)", bound) : ", recursive (no bound)");
+            }
+            if (!callGraph.isReachable(procedure)) out.print(", unreachable");
+            if (isInlined(procedure)) out.print(", inlined into all callers");
+            out.print('\n');
+        }
+
+        for (ProcedureDefinition main : callGraph.procedures()) {
+            if (!main.name.toString().equals("main")) continue;
+
+            out.printf("\nHeaviest call chain from 'main': %s\n", worstCase(main) == UNBOUNDED ? "unbounded" : worstCase(main) + " bytes");
+            for (ProcedureDefinition procedure : heaviestChain(main)) {
+                out.printf("  %s (%d bytes)", procedure.name, frameSize(procedure));
+                if (callGraph.isRecursive(procedure)) {
+                    final int bound = recursionBound.get(procedure);
+                    out.printf(" -- recursive cycle {%s}, %s", String.join(", ", callGraph.component(procedure).stream().map(p -> p.name.toString()).toList()),
+                            bound > 0 ? String.format("at most %d activations", bound) : "use --recursion-depth to bound it");
+                }
+                out.print('\n');
+            }
+        }
+
+        out.printf("\nOversized frames (more than %d bytes):\n", options.frameLimit);
+        boolean any = false;
+        for (ProcedureDefinition procedure : callGraph.procedures()) {
+            if (frameSize(procedure) > options.frameLimit) {
+                out.printf("  %s: %d bytes, local variables %d bytes\n", procedure.name, frameSize(procedure), procedure.entry.stackLayout.localVarAreaSize);
+                any = true;
+            }
+        }
+        if (!any) out.print("  <none>\n");
+    }
+}
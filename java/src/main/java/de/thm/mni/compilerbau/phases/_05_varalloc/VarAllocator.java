@@ -8,6 +8,7 @@ import de.thm.mni.compilerbau.table.*;
 import de.thm.mni.compilerbau.utils.*;
 import java_cup.runtime.Symbol;
 
+import java.io.PrintWriter;
 import java.util.*;
 import java.util.stream.IntStream;
 
@@ -20,7 +21,6 @@ public class VarAllocator {
     public static final int REFERENCE_BYTESIZE = 4;
     SymbolTable globalTable;
     boolean showVarAlloc;
-    ArrayList<String> predefinedProcedures;
     int listIndex;
     int resultSize;
 
@@ -37,8 +37,6 @@ public class VarAllocator {
         this.showVarAlloc = options.phaseOption == CommandLineOptions.PhaseOption.VARS;
         //TODO (assignment 5): Allocate stack slots for all parameters and local variables
         this.globalTable = table;
-        this.predefinedProcedures = new ArrayList<>();
-        this.predefinedProcedures.addAll(List.of("printi", "printc", "readi", "readc", "exit", "time", "clearAll", "setPixel", "drawLine", "drawCircle"));
 
         Visitor firstRoundVisitor = new AllocatorVisitor(table);
         program.accept(firstRoundVisitor);
@@ -46,12 +44,15 @@ public class VarAllocator {
         Visitor secondRoundVisitor = new AllocatorVisitorSecondIteration(table);
         program.accept(secondRoundVisitor);
 
-        if (showVarAlloc) formatVars(program, table);
+        if (showVarAlloc) {
+            try (PrintWriter out = options.getConsoleWriter()) {
+                formatVars(out, program, table);
+            }
+        }
     }
 
     class AllocatorVisitor extends DoNothingVisitor {
         SymbolTable globalTable;
-        SymbolTable localTable;
         ArrayList<Integer> valueOffsetList;
 
         AllocatorVisitor(SymbolTable globalTable) {
@@ -77,8 +78,7 @@ public class VarAllocator {
         }
 
         public void visit(ProcedureDefinition procedureDefinition) {
-            ProcedureEntry entry = (ProcedureEntry) globalTable.lookup(procedureDefinition.name);
-            this.localTable = entry.localTable;
+            ProcedureEntry entry = procedureDefinition.entry;
             int size = 0;
             entry.stackLayout.argumentAreaSize = 0;
             for(ParameterType p: entry.parameterTypes) {
@@ -108,13 +108,13 @@ public class VarAllocator {
         }
 
         public void visit(VariableDefinition variableDefinition) {
-            VariableEntry entry = (VariableEntry) localTable.lookup(variableDefinition.name);
+            VariableEntry entry = variableDefinition.entry;
             resultSize -= entry.type.byteSize;
             entry.offset = resultSize;
         }
 
         public void visit(ParameterDefinition parameterDefinition) {
-            VariableEntry entry = (VariableEntry) localTable.lookup(parameterDefinition.name);
+            VariableEntry entry = parameterDefinition.entry;
             entry.offset = valueOffsetList.get(listIndex);
         }
     }
@@ -133,7 +133,7 @@ public class VarAllocator {
         }
 
         public void visit(ProcedureDefinition procedureDefinition) {
-            ProcedureEntry procedureEntry = (ProcedureEntry) globalTable.lookup(procedureDefinition.name);
+            ProcedureEntry procedureEntry = procedureDefinition.entry;
             this.counter = 0;
             this.callStatementSize = 0;
             procedureDefinition.body.forEach(s -> s.accept(this));
@@ -147,8 +147,7 @@ public class VarAllocator {
 
         public void visit(CallStatement callStatement) {
             this.counter++;
-            Entry entry = globalTable.lookup(callStatement.procedureName);
-            int size = ((ProcedureEntry) entry).stackLayout.argumentAreaSize;
+            int size = callStatement.procedureEntry.stackLayout.argumentAreaSize;
             if(this.callStatementSize < size && size != 0) {
                 this.callStatementSize = size;
             }
@@ -175,12 +174,13 @@ public class VarAllocator {
      * Formats and prints the variable allocation to a human-readable format
      * The stack layout
      *
+     * @param out     The sink the stack layouts are written to
      * @param program The abstract syntax tree of the program
      * @param table   The symbol table containing all symbols of the spl program
      */
-    private static void formatVars(Program program, SymbolTable table) {
+    private static void formatVars(PrintWriter out, Program program, SymbolTable table) {
         program.definitions.stream().filter(dec -> dec instanceof ProcedureDefinition).map(dec -> (ProcedureDefinition) dec).forEach(procDec -> {
-            ProcedureEntry entry = (ProcedureEntry) table.lookup(procDec.name);
+            ProcedureEntry entry = procDec.entry;
 
             var isLeafOptimized = false; // This is a remainder from a bonus assignment, but I refuse to adjust this entire mess of a method
             var varparBasis = (isLeafOptimized ? "SP" : "FP");
@@ -190,16 +190,16 @@ public class VarAllocator {
 
             {
                 final var zipped = IntStream.range(0, procDec.parameters.size()).boxed()
-                        .map(i -> new Pair<>(procDec.parameters.get(i), new Pair<>(((VariableEntry) entry.localTable.lookup(procDec.parameters.get(i).name)), entry.parameterTypes.get(i))))
-                        .sorted(Comparator.comparing(p -> Optional.ofNullable(p.second.first.offset).map(o -> -o).orElse(Integer.MIN_VALUE)));
+                        .map(i -> new Pair<>(procDec.parameters.get(i), new Pair<>(procDec.parameters.get(i).entry, entry.parameterTypes.get(i))))
+                        .sorted(Comparator.comparing(p -> p.second.first.offset == StackLayout.UNSET ? Integer.MIN_VALUE : -p.second.first.offset));
 
                 zipped.forEach(v -> {
-                    boolean consistent = Objects.equals(v.second.first.offset, v.second.second.offset);
+                    boolean consistent = v.second.first.offset == v.second.second.offset;
 
                     ascii.line("par " + v.first.name.toString(), "<- " + varparBasis + " + " +
                                     (consistent
-                                            ? Objects.toString(v.second.first.offset, "NULL")
-                                            : String.format("INCONSISTENT(%s/%s)", Objects.toString(v.second.first.offset, "NULL"), Objects.toString(v.second.second.offset, "NULL"))),
+                                            ? StackLayout.format(v.second.first.offset)
+                                            : String.format("INCONSISTENT(%s/%s)", StackLayout.format(v.second.first.offset), StackLayout.format(v.second.second.offset))),
                             AsciiGraphicalTableBuilder.Alignment.LEFT);
                 });
             }
@@ -207,10 +207,10 @@ public class VarAllocator {
             ascii.sep("BEGIN", "<- " + varparBasis);
             if (!procDec.variables.isEmpty()) {
                 procDec.variables.stream()
-                        .map(v -> new AbstractMap.SimpleImmutableEntry<>(v, ((VariableEntry) entry.localTable.lookup(v.name))))
-                        .sorted(Comparator.comparing(e -> Try.execute(() -> -e.getValue().offset).getOrElse(0)))
+                        .map(v -> new AbstractMap.SimpleImmutableEntry<>(v, v.entry))
+                        .sorted(Comparator.comparing(e -> e.getValue().offset == StackLayout.UNSET ? 0 : -e.getValue().offset))
                         .forEach(v -> ascii.line("var " + v.getKey().name.toString(),
-                                "<- " + varparBasis + " - " + Optional.ofNullable(v.getValue().offset).map(o -> -o).map(Objects::toString).orElse("NULL"),
+                                "<- " + varparBasis + " - " + (v.getValue().offset == StackLayout.UNSET ? "NULL" : Integer.toString(-v.getValue().offset)),
                                 AsciiGraphicalTableBuilder.Alignment.LEFT));
 
                 if (!isLeafOptimized) ascii.sep("");
@@ -226,11 +226,11 @@ public class VarAllocator {
                         "<- FP - " + Try.execute(() -> -entry.stackLayout.oldReturnAddressOffset()).map(Objects::toString).getOrElse("UNKNOWN"),
                         AsciiGraphicalTableBuilder.Alignment.LEFT);
 
-                if (entry.stackLayout.outgoingAreaSize == null || entry.stackLayout.outgoingAreaSize > 0) {
+                if (entry.stackLayout.outgoingAreaSize == StackLayout.UNSET || entry.stackLayout.outgoingAreaSize > 0) {
 
                     ascii.sep("outgoing area");
 
-                    if (entry.stackLayout.outgoingAreaSize != null) {
+                    if (entry.stackLayout.outgoingAreaSize != StackLayout.UNSET) {
                         var max_args = entry.stackLayout.outgoingAreaSize / 4;
 
                         for (int i = 0; i < max_args; ++i) {
@@ -247,16 +247,17 @@ public class VarAllocator {
                 ascii.line("...", AsciiGraphicalTableBuilder.Alignment.CENTER);
             }
 
-            System.out.printf("Variable allocation for procedure '%s':\n", procDec.name);
-            System.out.printf("  - size of argument area = %s\n", Objects.toString(entry.stackLayout.argumentAreaSize, "NULL"));
-            System.out.printf("  - size of localvar area = %s\n", Objects.toString(entry.stackLayout.localVarAreaSize, "NULL"));
-            System.out.printf("  - size of outgoing area = %s\n", Objects.toString(entry.stackLayout.outgoingAreaSize, "NULL"));
-            System.out.printf("  - frame size = %s\n", Try.execute(entry.stackLayout::frameSize).map(Objects::toString).getOrElse("UNKNOWN"));
-            System.out.println();
-            if (isLeafOptimized) System.out.println("  Stack layout (leaf optimized):");
-            else System.out.println("  Stack layout:");
-            System.out.println(ascii.toString().indent(4));
-            System.out.println();
+            out.printf("Variable allocation for procedure '%s':\n", procDec.name);
+            out.printf("  - size of argument area = %s\n", StackLayout.format(entry.stackLayout.argumentAreaSize));
+            out.printf("  - size of localvar area = %s\n", StackLayout.format(entry.stackLayout.localVarAreaSize));
+            out.printf("  - size of outgoing area = %s\n", StackLayout.format(entry.stackLayout.outgoingAreaSize));
+            out.printf("  - frame size = %s\n", Try.execute(entry.stackLayout::frameSize).map(Objects::toString).getOrElse("UNKNOWN"));
+            out.println();
+            if (isLeafOptimized) out.println("  Stack layout (leaf optimized):");
+            else out.println("  Stack layout:");
+            ascii.print(out, 4);
+            out.println();
+            out.println();
         });
     }
 }
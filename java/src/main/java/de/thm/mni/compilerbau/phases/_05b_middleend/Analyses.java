@@ -0,0 +1,44 @@
+package de.thm.mni.compilerbau.phases._05b_middleend;
+
+import de.thm.mni.compilerbau.ir.Procedure;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The cached analysis results of one procedure while it is optimized by a {@link PassManager}.
+ */
+public class Analyses {
+    private final Procedure procedure;
+    private final PassManager manager;
+    private final Map<Analysis<?>, Object> results = new HashMap<>();
+
+    Analyses(Procedure procedure, PassManager manager) {
+        this.procedure = procedure;
+        this.manager = manager;
+    }
+
+    /**
+     * @return The result of the analysis for the current state of the procedure, computed if it is not cached.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(Analysis<T> analysis) {
+        T result = (T) results.get(analysis);
+        if (result == null) {
+            result = manager.compute(analysis, procedure, this);
+            results.put(analysis, result);
+        }
+        return result;
+    }
+
+    /**
+     * Drops the results that may be outdated after the procedure was changed.
+     *
+     * @param controlFlowPreserved Whether the blocks and edges of the control flow graph are unchanged, so only the
+     *                             results depending on the instructions have to be dropped.
+     */
+    public void invalidate(boolean controlFlowPreserved) {
+        if (controlFlowPreserved) results.keySet().removeIf(Analysis::dependsOnInstructions);
+        else results.clear();
+    }
+}
@@ -0,0 +1,18 @@
+package de.thm.mni.compilerbau.phases._05b_middleend;
+
+import de.thm.mni.compilerbau.ir.Procedure;
+
+import java.util.function.BiFunction;
+
+/**
+ * An analysis of a procedure whose result is cached by the {@link PassManager} until a pass changes the procedure.
+ *
+ * @param name                  The name shown in the statistics of the pass manager.
+ * @param dependsOnInstructions Whether the result depends on the instructions of the blocks, and not only on the
+ *                              control flow graph. Only such results are invalidated by a pass that changes
+ *                              instructions but keeps the control flow graph.
+ * @param compute               Computes the result, using the other analyses if needed.
+ * @param <T>                   The type of the result.
+ */
+public record Analysis<T>(String name, boolean dependsOnInstructions, BiFunction<Procedure, Analyses, T> compute) {
+}
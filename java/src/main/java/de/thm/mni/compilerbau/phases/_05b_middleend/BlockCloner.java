@@ -0,0 +1,100 @@
+package de.thm.mni.compilerbau.phases._05b_middleend;
+
+import de.thm.mni.compilerbau.ir.*;
+
+import java.util.*;
+
+/**
+ * Copies a region of blocks of a procedure in SSA form, e.g. the blocks of a loop, giving every register defined in
+ * the region a new register in the copy. The region may also belong to another procedure, as when a callee is inlined.
+ * <p>
+ * Edges between blocks of the region lead to the copies, while edges leaving the region keep their targets. The
+ * phis of the targets outside the region receive no operands from the copies, so the caller has to connect the copies
+ * to the rest of the control flow graph. Registers can be mapped to other operands before the region is copied, which
+ * is how the values of a loop header's phis are fixed for one iteration: a phi whose result is mapped is not copied.
+ * Stack slots can be mapped to other slots as well.
+ */
+final class BlockCloner {
+    private final Procedure procedure;
+    private final Map<Operand, Operand> values = new HashMap<>();
+    private final Map<Block, Block> blocks = new IdentityHashMap<>();
+
+    BlockCloner(Procedure procedure) {
+        this.procedure = procedure;
+    }
+
+    /**
+     * Replaces every use of a register or slot in the copies with another operand.
+     */
+    void map(Operand from, Operand to) {
+        values.put(from, to);
+    }
+
+    /**
+     * @return The operand replacing the given one in the copies.
+     */
+    Operand value(Operand operand) {
+        return values.getOrDefault(operand, operand);
+    }
+
+    /**
+     * @return The copy of a block, or the block itself if it was not copied.
+     */
+    Block block(Block block) {
+        return blocks.getOrDefault(block, block);
+    }
+
+    /**
+     * Copies the blocks and inserts the copies into the block list of the procedure, in the same order.
+     *
+     * @param region   The blocks to copy.
+     * @param position The index in the block list the first copy is inserted at.
+     * @return The copies.
+     */
+    List<Block> copy(List<Block> region, int position) {
+        final List<Block> copies = new ArrayList<>();
+        final Set<Operand> mapped = new HashSet<>(values.keySet());
+        for (Block block : region) {
+            final Block copy = procedure.newBlock();
+            procedure.blocks.remove(copy);
+            blocks.put(block, copy);
+            copies.add(copy);
+            for (Instruction instruction : block.instructions) {
+                final Temp result = instruction.result();
+                if (result != null && !values.containsKey(result)) values.put(result, procedure.newTemp(result.name));
+            }
+        }
+        procedure.blocks.addAll(position, copies);
+
+        for (Block block : region) {
+            final Block copy = blocks.get(block);
+            for (Instruction instruction : block.instructions) {
+                if (instruction instanceof Phi phi && mapped.contains(phi.result())) continue;
+                copy.instructions.add(copy(instruction));
+            }
+            copy.terminator = (Terminator) copy(block.terminator);
+        }
+        return copies;
+    }
+
+    private Instruction copy(Instruction instruction) {
+        final Temp result = instruction.result() == null ? null : (Temp) values.get(instruction.result());
+        return switch (instruction) {
+            case BinaryOp binary -> new BinaryOp(binary.operator, result, value(binary.left()), value(binary.right()));
+            case Move move -> new Move(result, value(move.source()));
+            case Load load -> new Load(result, value(load.base()), load.displacement);
+            case Store store -> new Store(value(store.base()), store.displacement, value(store.value()));
+            case BoundsCheck check -> new BoundsCheck(value(check.index()), value(check.size()));
+            case Call call -> new Call(call.name, call.callee, call.operands().stream().map(this::value).toList());
+            case Phi phi -> {
+                final Phi copy = new Phi(result);
+                for (Block predecessor : phi.blocks()) copy.setIncoming(block(predecessor), value(phi.incoming(predecessor)));
+                yield copy;
+            }
+            case Jump jump -> new Jump(block(jump.target));
+            case Branch branch -> new Branch(branch.condition, value(branch.left()), value(branch.right()),
+                    block(branch.ifTrue), block(branch.ifFalse));
+            case Return ignored -> new Return();
+        };
+    }
+}
@@ -0,0 +1,606 @@
+package de.thm.mni.compilerbau.phases._05b_middleend;
+
+import de.thm.mni.compilerbau.ir.*;
+
+import java.util.*;
+
+/**
+ * Removes the bounds checks of a procedure in SSA form that can not fail, moves the checks of loops in front of them
+ * and merges the checks of neighbouring indices.
+ * <p>
+ * A range analysis assigns every register an interval containing all its values. Intervals are derived from
+ * constants, from arithmetic on intervals and for induction variables, which move from their initial value towards
+ * the bound of the test that keeps them in the loop without passing it. Along the dominator tree, the intervals are
+ * narrowed by the conditions of the branches leading to a block and by the checks executed before, as an index is
+ * within its array after it has been checked. A check whose index lies within the array in any case is removed.
+ * <p>
+ * The checks of a {@link CountedLoop} that are executed in every iteration, whose index is loop invariant or a linear
+ * function of the induction variable, are replaced by a check of the smallest and one of the largest index before the
+ * loop. If the number of iterations is not known, the induction variable must advance by one and these checks are
+ * only executed if the loop is entered. The loop must not contain a call or a division that may trap and the loops
+ * inside it must end, so that the checks fail exactly if one of the checks in the loop would have failed.
+ * <p>
+ * Checks of indices x + c for the same x and different constants c in a block are merged into a check of the smallest
+ * and one of the largest index, if no call is executed in between. The checks in between can not fail then.
+ * <p>
+ * A program with an index out of bounds still stops with an index error. The error is only reported earlier, skipping
+ * stores whose effect could never be observed.
+ */
+public class BoundsCheckElimination {
+    private static final int MAX_DEPTH = 8; // Of the arithmetic that is followed to compute an interval
+    private static final int MAX_OFFSET = 1 << 16;
+    private static final int MAX_SIZE = 1 << 30;
+
+    /**
+     * The values from low to high, both inclusive. The interval is empty if low > high, which is only the case for
+     * code that is never executed.
+     */
+    private record Range(long low, long high) {
+        static final Range FULL = new Range(Integer.MIN_VALUE, Integer.MAX_VALUE);
+
+        /**
+         * @return The interval, or the full one if the arithmetic computing it would wrap around.
+         */
+        static Range of(long low, long high) {
+            return low < Integer.MIN_VALUE || high > Integer.MAX_VALUE ? FULL : new Range(low, high);
+        }
+
+        Range intersect(Range other) {
+            return new Range(Math.max(low, other.low), Math.min(high, other.high));
+        }
+
+        Range union(Range other) {
+            return other == null ? this : new Range(Math.min(low, other.low), Math.max(high, other.high));
+        }
+
+        boolean isWithin(int size) {
+            return low >= 0 && high < size;
+        }
+    }
+
+    private record Narrowing(Temp temp, Range previous) {
+    }
+
+    /**
+     * The checks of an index a * induction variable + b for all b between the smallest and the largest offset. The
+     * invariant index is used instead of the induction variable if it is not null.
+     */
+    private static class Hoisted {
+        final int coefficient;
+        final Operand invariant;
+        final int size;
+        final List<BoundsCheck> checks = new ArrayList<>();
+        int smallestOffset = Integer.MAX_VALUE;
+        int largestOffset = Integer.MIN_VALUE;
+
+        Hoisted(int coefficient, Operand invariant, int size) {
+            this.coefficient = coefficient;
+            this.invariant = invariant;
+            this.size = size;
+        }
+    }
+
+    private record Offset(Operand base, int offset) {
+    }
+
+    private final Procedure procedure;
+    private final Analyses analyses;
+    private Dominators dominators;
+    private LinearAddress.Resolver addresses;
+    private final Map<Temp, Range> narrowed = new HashMap<>();
+    private final Map<Phi, Range> phiRanges = new HashMap<>();
+
+    private BoundsCheckElimination(Procedure procedure, Analyses analyses) {
+        this.procedure = procedure;
+        this.analyses = analyses;
+    }
+
+    /**
+     * Removes, moves and merges the bounds checks of a procedure in SSA form.
+     *
+     * @return Whether the procedure was changed.
+     */
+    public static boolean run(Procedure procedure, Analyses analyses) {
+        final BoundsCheckElimination elimination = new BoundsCheckElimination(procedure, analyses);
+        boolean changed = elimination.removeProvenChecks();
+        if (changed) analyses.invalidate(true);
+        changed |= elimination.hoistChecks();
+        elimination.addresses = new LinearAddress.Resolver(procedure);
+        for (Block block : procedure.blocks) changed |= elimination.mergeChecks(block);
+        return changed;
+    }
+
+    private boolean removeProvenChecks() {
+        dominators = analyses.get(Dominators.ANALYSIS);
+        addresses = new LinearAddress.Resolver(procedure);
+        phiRanges.clear();
+        return removeProvenChecks(dominators.preorder().get(0));
+    }
+
+    /**
+     * Removes the checks that can not fail from a block and the blocks it dominates.
+     */
+    private boolean removeProvenChecks(Block block) {
+        final List<Narrowing> narrowings = new ArrayList<>();
+        if (block.predecessors.size() == 1 && block.predecessors.get(0).terminator instanceof Branch branch
+                && branch.ifTrue != branch.ifFalse) {
+            final Branch.Condition condition = block == branch.ifTrue ? branch.condition : branch.condition.negate();
+            assume(branch.left(), condition, branch.right(), narrowings);
+            assume(branch.right(), condition.swap(), branch.left(), narrowings);
+        }
+
+        boolean changed = false;
+        final Iterator<Instruction> iterator = block.instructions.iterator();
+        while (iterator.hasNext()) {
+            if (!(iterator.next() instanceof BoundsCheck check) || !(check.size() instanceof Constant size)) continue;
+            if (rangeOf(check.index(), 0, true).isWithin(size.value())) {
+                iterator.remove();
+                changed = true;
+                continue;
+            }
+            // The index is within the array after the check
+            if (!(check.index() instanceof Temp index) || size.value() <= 0) continue;
+            narrow(index, new Range(0, size.value() - 1), narrowings);
+            final Offset offset = offsetOf(index);
+            if (offset.base instanceof Temp base && offset.offset != 0) {
+                narrow(base, new Range(-(long) offset.offset, size.value() - 1L - offset.offset), narrowings);
+            }
+        }
+
+        for (Block child : dominators.children(block)) changed |= removeProvenChecks(child);
+        for (int i = narrowings.size() - 1; i >= 0; i--) {
+            final Narrowing narrowing = narrowings.get(i);
+            if (narrowing.previous == null) narrowed.remove(narrowing.temp);
+            else narrowed.put(narrowing.temp, narrowing.previous);
+        }
+        return changed;
+    }
+
+    /**
+     * Narrows the interval of the left operand to the values for which the condition holds.
+     */
+    private void assume(Operand left, Branch.Condition condition, Operand right, List<Narrowing> narrowings) {
+        if (!(left instanceof Temp temp)) return;
+        final Range range = rangeOf(right, 0, true);
+        switch (condition) {
+            case LT -> narrow(temp, new Range(Integer.MIN_VALUE, range.high - 1), narrowings);
+            case LE -> narrow(temp, new Range(Integer.MIN_VALUE, range.high), narrowings);
+            case GT -> narrow(temp, new Range(range.low + 1, Integer.MAX_VALUE), narrowings);
+            case GE -> narrow(temp, new Range(range.low, Integer.MAX_VALUE), narrowings);
+            case EQ -> narrow(temp, range, narrowings);
+            case NE -> {
+            }
+        }
+    }
+
+    private void narrow(Temp temp, Range range, List<Narrowing> narrowings) {
+        narrowings.add(new Narrowing(temp, narrowed.get(temp)));
+        narrowed.put(temp, rangeOf(temp, 0, true).intersect(range));
+    }
+
+    /**
+     * @param narrow Whether the intervals narrowed by the dominating branches and checks are used.
+     * @return An interval containing every value of the operand.
+     */
+    private Range rangeOf(Operand operand, int depth, boolean narrow) {
+        return switch (operand) {
+            case Constant constant -> new Range(constant.value(), constant.value());
+            case Temp temp -> {
+                final Range range = switch (addresses.definition(temp)) {
+                    case BinaryOp binary when depth < MAX_DEPTH -> arithmetic(binary,
+                            rangeOf(binary.left(), depth + 1, narrow), rangeOf(binary.right(), depth + 1, narrow));
+                    case Phi phi -> rangeOf(phi);
+                    case null, default -> Range.FULL;
+                };
+                yield narrow && narrowed.containsKey(temp) ? range.intersect(narrowed.get(temp)) : range;
+            }
+            case StackSlot ignored -> Range.FULL;
+        };
+    }
+
+    private static Range arithmetic(BinaryOp binary, Range left, Range right) {
+        return switch (binary.operator) {
+            case ADD -> Range.of(left.low + right.low, left.high + right.high);
+            case SUB -> Range.of(left.low - right.high, left.high - right.low);
+            case MUL -> {
+                final long[] products = {left.low * right.low, left.low * right.high, left.high * right.low,
+                        left.high * right.high};
+                yield Range.of(Arrays.stream(products).min().getAsLong(), Arrays.stream(products).max().getAsLong());
+            }
+            case DIV -> binary.right() instanceof Constant divisor && divisor.value() > 0
+                    ? Range.of(left.low / divisor.value(), left.high / divisor.value()) : Range.FULL;
+        };
+    }
+
+    /**
+     * Determines the interval of a phi without any narrowing, which holds everywhere.
+     */
+    private Range rangeOf(Phi phi) {
+        if (phiRanges.containsKey(phi)) return phiRanges.get(phi);
+        phiRanges.put(phi, Range.FULL); // For the phis depending on themselves
+
+        Range range = inductionRange(phi);
+        if (range == null) {
+            for (Operand operand : phi.operands()) range = rangeOf(operand, 0, false).union(range);
+        }
+        phiRanges.put(phi, range == null ? Range.FULL : range);
+        return phiRanges.get(phi);
+    }
+
+    /**
+     * Determines the interval of an induction variable: a phi of a block ending with a comparison of the phi with a
+     * bound, whose values are either entering the loop or the phi plus an increment that is computed only after the
+     * comparison has kept the phi in the loop. The increments must all have the same sign, and the comparison must
+     * keep the phi on the side of the bound it moves towards, so that it can not wrap around.
+     *
+     * @return The interval, or null if the phi is not such an induction variable.
+     */
+    private Range inductionRange(Phi phi) {
+        final Block header = addresses.definitionBlock(phi.result());
+        if (!(header.terminator instanceof Branch branch) || branch.ifTrue == branch.ifFalse) return null;
+        final Operand bound;
+        final Branch.Condition condition;
+        if (branch.left() == phi.result()) {
+            bound = branch.right();
+            condition = branch.condition;
+        } else if (branch.right() == phi.result()) {
+            bound = branch.left();
+            condition = branch.condition.swap();
+        } else {
+            return null;
+        }
+
+        Range entries = null;
+        final List<BinaryOp> increments = new ArrayList<>();
+        for (Operand operand : phi.operands()) {
+            final BinaryOp increment = incrementOf(phi, operand);
+            if (increment != null) increments.add(increment);
+            else entries = rangeOf(operand, 0, false).union(entries);
+        }
+        if (entries == null || increments.isEmpty()) return null;
+
+        final Range limit = rangeOf(bound, 0, false);
+        Range range = entries;
+        for (BinaryOp increment : increments) {
+            final Range step = stepOf(phi, increment);
+            final boolean increasing = step.low >= 0;
+            if (!increasing && step.high > 0) return null;
+            // The block the phi stays in the loop with, where it is below respectively above the bound
+            final Block inside = insideTarget(branch, condition, increasing);
+            if (inside == null || !dominators.dominates(inside, addresses.definitionBlock(increment.result()))) {
+                return null;
+            }
+            final Branch.Condition kept = inside == branch.ifTrue ? condition : condition.negate();
+            final long extreme = increasing ? limit.high - (kept == Branch.Condition.LT ? 1 : 0) + step.high
+                    : limit.low + (kept == Branch.Condition.GT ? 1 : 0) + step.low;
+            if (extreme < Integer.MIN_VALUE || extreme > Integer.MAX_VALUE) return null;
+            range = range.union(new Range(extreme, extreme));
+        }
+        return range;
+    }
+
+    /**
+     * @return The operation adding to or subtracting from the phi that computes the operand, or null.
+     */
+    private BinaryOp incrementOf(Phi phi, Operand operand) {
+        if (!(operand instanceof Temp temp) || !(addresses.definition(temp) instanceof BinaryOp binary)) return null;
+        final boolean isIncrement = switch (binary.operator) {
+            case ADD -> binary.left() == phi.result() || binary.right() == phi.result();
+            case SUB -> binary.left() == phi.result() && binary.right() != phi.result();
+            default -> false;
+        };
+        return isIncrement ? binary : null;
+    }
+
+    private Range stepOf(Phi phi, BinaryOp increment) {
+        final Operand other = increment.left() == phi.result() ? increment.right() : increment.left();
+        final Range range = rangeOf(other, 0, false);
+        return increment.operator == BinaryOp.Operator.ADD ? range : new Range(-range.high, -range.low);
+    }
+
+    /**
+     * @param condition The comparison of the phi with the bound.
+     * @return The successor that is only entered while the phi is below the bound if it is increasing, or above it
+     * otherwise, if it has no other predecessors.
+     */
+    private static Block insideTarget(Branch branch, Branch.Condition condition, boolean increasing) {
+        for (Block target : List.of(branch.ifTrue, branch.ifFalse)) {
+            final Branch.Condition kept = target == branch.ifTrue ? condition : condition.negate();
+            final boolean matches = increasing
+                    ? kept == Branch.Condition.LT || kept == Branch.Condition.LE
+                    : kept == Branch.Condition.GT || kept == Branch.Condition.GE;
+            if (matches && target.predecessors.size() == 1) return target;
+        }
+        return null;
+    }
+
+    /**
+     * Moves the checks of the loops in front of them, innermost loops first. Inserting a block that executes the
+     * checks only if the loop is entered changes the loops, so the loops are determined again after it.
+     */
+    private boolean hoistChecks() {
+        boolean changed = false;
+        boolean again = true;
+        while (again) {
+            again = false;
+            final LoopNesting nesting = analyses.get(LoopNesting.ANALYSIS);
+            if (Preheaders.insert(procedure, nesting)) {
+                analyses.invalidate(false);
+                changed = again = true;
+                continue;
+            }
+            dominators = analyses.get(Dominators.ANALYSIS);
+            for (LoopNesting.Loop loop : nesting.innermostFirst()) {
+                final CountedLoop counted = CountedLoop.of(loop, Preheaders.of(loop));
+                if (counted == null || !canHoist(counted, nesting)) continue;
+                addresses = new LinearAddress.Resolver(procedure);
+                final Boolean hoisted = hoist(counted);
+                if (hoisted == null) continue;
+                changed = true;
+                if (hoisted) {
+                    procedure.updatePredecessors();
+                    analyses.invalidate(false);
+                    again = true;
+                    break;
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @return Whether the loop and all loops inside it end without any effect besides stores, if no check fails.
+     */
+    private static boolean canHoist(CountedLoop loop, LoopNesting nesting) {
+        if (loop.tripCount == 0 || loop.body == loop.loop.header) return false;
+        if (loop.tripCount < 0 && !advancesByOne(loop, false)) return false;
+        for (Block block : loop.loop.blocks) {
+            for (Instruction instruction : block.instructions) {
+                if (instruction.hasSideEffects() && !(instruction instanceof Store) && !(instruction instanceof BoundsCheck)) {
+                    return false;
+                }
+            }
+        }
+        for (LoopNesting.Loop inner : nesting.loops()) {
+            if (inner == loop.loop || !loop.loop.contains(inner.header)) continue;
+            final CountedLoop counted = CountedLoop.of(inner, Preheaders.of(inner));
+            if (counted == null || counted.tripCount < 0 && !advancesByOne(counted, true)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @param strict Whether the loop must end when the induction variable reaches the bound. Otherwise, it may also
+     *               end when it passes it.
+     * @return Whether the induction variable moves towards the bound by one in every iteration.
+     */
+    private static boolean advancesByOne(CountedLoop loop, boolean strict) {
+        final Branch.Condition condition = loop.continueCondition();
+        return switch (loop.step) {
+            case 1 -> condition == Branch.Condition.LT || !strict && condition == Branch.Condition.LE;
+            case -1 -> condition == Branch.Condition.GT || !strict && condition == Branch.Condition.GE;
+            default -> false;
+        };
+    }
+
+    /**
+     * Replaces the checks of the loop that are executed in every iteration by checks in front of it.
+     *
+     * @return Null if no check was moved, otherwise whether a block was inserted to execute them.
+     */
+    private Boolean hoist(CountedLoop loop) {
+        final Map<List<Object>, Hoisted> groups = new LinkedHashMap<>();
+        for (Block block : loop.loop.blocks) {
+            // The header is executed once more than the other blocks
+            if (block == loop.loop.header || !dominators.dominates(block, loop.latch)) continue;
+            for (Instruction instruction : block.instructions) {
+                if (!(instruction instanceof BoundsCheck check) || !(check.size() instanceof Constant size)) continue;
+                if (size.value() <= 0 || size.value() > MAX_SIZE) continue;
+                int coefficient = 0;
+                int offset = 0;
+                Operand invariant = null;
+                final int[] linear = addresses.linear(check.index(), List.of(loop));
+                if (linear != null) {
+                    coefficient = linear[0];
+                    offset = linear[1];
+                } else if (check.index() instanceof Temp temp && addresses.definitionBlock(temp) != null
+                        && !loop.loop.contains(addresses.definitionBlock(temp))) {
+                    invariant = temp;
+                } else {
+                    continue;
+                }
+                if (loop.tripCount < 0 && (Math.abs(coefficient) > 1 || Math.abs(offset) > MAX_OFFSET)) continue;
+
+                final int groupCoefficient = coefficient;
+                final Operand groupInvariant = invariant;
+                final Hoisted group = groups.computeIfAbsent(Arrays.asList(coefficient, invariant, size.value()),
+                        key -> new Hoisted(groupCoefficient, groupInvariant, size.value()));
+                group.checks.add(check);
+                group.smallestOffset = Math.min(group.smallestOffset, offset);
+                group.largestOffset = Math.max(group.largestOffset, offset);
+            }
+        }
+
+        final List<Instruction> checks = new ArrayList<>();
+        final Set<Instruction> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Hoisted group : groups.values()) {
+            if (emitChecks(loop, group, checks)) removed.addAll(group.checks);
+        }
+        if (removed.isEmpty()) return null;
+        for (Block block : loop.loop.blocks) block.instructions.removeIf(removed::contains);
+
+        if (loop.tripCount > 0) {
+            loop.preheader.instructions.addAll(checks);
+            return false;
+        }
+        insertGuard(loop, checks);
+        return true;
+    }
+
+    /**
+     * Appends the checks of the smallest and the largest index of a group to the list.
+     *
+     * @return Whether the checks could be computed.
+     */
+    private boolean emitChecks(CountedLoop loop, Hoisted group, List<Instruction> checks) {
+        final Constant size = new Constant(group.size);
+        if (group.invariant != null) {
+            checks.add(new BoundsCheck(group.invariant, size));
+            return true;
+        }
+
+        if (loop.tripCount > 0) {
+            final long first = ((Constant) loop.initial).value();
+            final long last = first + (long) (loop.tripCount - 1) * loop.step;
+            final long smallest = group.coefficient * (group.coefficient >= 0 ? Math.min(first, last) : Math.max(first, last))
+                    + group.smallestOffset;
+            final long largest = group.coefficient * (group.coefficient >= 0 ? Math.max(first, last) : Math.min(first, last))
+                    + group.largestOffset;
+            if (Range.of(smallest, largest) == Range.FULL) return false;
+            checks.add(new BoundsCheck(new Constant((int) smallest), size));
+            if (largest != smallest) checks.add(new BoundsCheck(new Constant((int) largest), size));
+            return true;
+        }
+
+        // The induction variable runs from the initial value to the last one that passes the test
+        final Branch.Condition condition = loop.continueCondition();
+        final int adjustment = condition == Branch.Condition.LT ? -1 : condition == Branch.Condition.GT ? 1 : 0;
+        final Operand last = sum(loop.bound, adjustment, checks);
+        final Operand lowest = loop.step > 0 ? loop.initial : last;
+        final Operand highest = loop.step > 0 ? last : loop.initial;
+        switch (group.coefficient) {
+            case 0 -> {
+                checks.add(new BoundsCheck(new Constant(group.smallestOffset), size));
+                checks.add(new BoundsCheck(new Constant(group.largestOffset), size));
+            }
+            case 1 -> {
+                checks.add(new BoundsCheck(sum(lowest, group.smallestOffset, checks), size));
+                checks.add(new BoundsCheck(sum(highest, group.largestOffset, checks), size));
+            }
+            default -> {
+                checks.add(new BoundsCheck(difference(group.smallestOffset, highest, checks), size));
+                checks.add(new BoundsCheck(difference(group.largestOffset, lowest, checks), size));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The operand plus the constant, appending an addition to the list if needed.
+     */
+    private Operand sum(Operand operand, int constant, List<Instruction> instructions) {
+        if (constant == 0) return operand;
+        if (operand instanceof Constant value) return new Constant(value.value() + constant);
+        final Temp result = procedure.newTemp(null);
+        instructions.add(new BinaryOp(BinaryOp.Operator.ADD, result, operand, new Constant(constant)));
+        return result;
+    }
+
+    /**
+     * @return The constant minus the operand, appending a subtraction to the list if needed.
+     */
+    private Operand difference(int constant, Operand operand, List<Instruction> instructions) {
+        if (operand instanceof Constant value) return new Constant(constant - value.value());
+        final Temp result = procedure.newTemp(null);
+        instructions.add(new BinaryOp(BinaryOp.Operator.SUB, result, new Constant(constant), operand));
+        return result;
+    }
+
+    /**
+     * Inserts a block executing the checks between the preheader and the header, which is only entered if the test
+     * of the header lets the initial value of the induction variable into the loop. A new preheader follows it.
+     */
+    private void insertGuard(CountedLoop loop, List<Instruction> checks) {
+        final Block header = loop.loop.header;
+        final Block guard = procedure.newBlock();
+        final Block preheader = procedure.newBlock();
+        procedure.blocks.remove(guard);
+        procedure.blocks.remove(preheader);
+        procedure.blocks.add(procedure.blocks.indexOf(header), guard);
+        procedure.blocks.add(procedure.blocks.indexOf(header), preheader);
+
+        guard.instructions.addAll(checks);
+        guard.terminator = new Jump(preheader);
+        preheader.terminator = new Jump(header);
+        loop.preheader.terminator = new Branch(loop.continueCondition(), loop.initial, loop.bound, guard, preheader);
+        for (Phi phi : header.phis()) phi.replaceBlock(loop.preheader, preheader);
+    }
+
+    /**
+     * Merges the checks of neighbouring indices in a block.
+     */
+    private boolean mergeChecks(Block block) {
+        final List<List<BoundsCheck>> groups = new ArrayList<>();
+        final Map<List<Object>, List<BoundsCheck>> open = new LinkedHashMap<>();
+        for (Instruction instruction : block.instructions) {
+            if (instruction instanceof BoundsCheck check && check.size() instanceof Constant size
+                    && size.value() > 0 && size.value() <= MAX_SIZE && check.index() instanceof Temp) {
+                final Offset offset = offsetOf(check.index());
+                open.computeIfAbsent(Arrays.asList(offset.base, size.value()), key -> new ArrayList<>()).add(check);
+            } else if (instruction.hasSideEffects() && !(instruction instanceof Store)) {
+                // A check must not fail before a call that was executed before it
+                groups.addAll(open.values());
+                open.clear();
+            }
+        }
+        groups.addAll(open.values());
+
+        boolean changed = false;
+        for (List<BoundsCheck> group : groups) changed |= merge(block, group);
+        return changed;
+    }
+
+    /**
+     * Replaces a group of checks by the checks of its smallest and its largest index at the position of its first
+     * check, if this saves instructions.
+     */
+    private boolean merge(Block block, List<BoundsCheck> group) {
+        if (group.size() < 3) return false;
+        final Operand base = offsetOf(group.get(0).index()).base;
+        final int smallest = group.stream().mapToInt(check -> offsetOf(check.index()).offset).min().getAsInt();
+        final int largest = group.stream().mapToInt(check -> offsetOf(check.index()).offset).max().getAsInt();
+        if (Math.abs(smallest) > MAX_OFFSET || Math.abs(largest) > MAX_OFFSET) return false;
+
+        final int position = block.instructions.indexOf(group.get(0));
+        final Constant size = (Constant) group.get(0).size();
+        final List<Instruction> instructions = new ArrayList<>();
+        instructions.add(new BoundsCheck(indexAt(block, position, group, base, smallest, instructions), size));
+        if (largest != smallest) {
+            instructions.add(new BoundsCheck(indexAt(block, position, group, base, largest, instructions), size));
+        }
+        if (instructions.size() >= group.size()) return false;
+
+        block.instructions.removeAll(group);
+        block.instructions.addAll(position, instructions);
+        return true;
+    }
+
+    /**
+     * @return A register holding base + offset before the position: the index of a check of the group if it is
+     * computed before, otherwise a new register computed by an addition that is appended to the list.
+     */
+    private Operand indexAt(Block block, int position, List<BoundsCheck> group, Operand base, int offset,
+                            List<Instruction> instructions) {
+        for (BoundsCheck check : group) {
+            if (offsetOf(check.index()).offset != offset) continue;
+            final Temp index = (Temp) check.index();
+            final Block definitionBlock = addresses.definitionBlock(index);
+            if (definitionBlock != block || block.instructions.indexOf(addresses.definition(index)) < position) {
+                return index;
+            }
+        }
+        return sum(base, offset, instructions);
+    }
+
+    /**
+     * @return The index as a register plus a constant offset.
+     */
+    private Offset offsetOf(Operand index) {
+        if (index instanceof Temp temp && addresses.definition(temp) instanceof BinaryOp binary
+                && binary.left() instanceof Temp base && binary.right() instanceof Constant constant) {
+            if (binary.operator == BinaryOp.Operator.ADD) return new Offset(base, constant.value());
+            if (binary.operator == BinaryOp.Operator.SUB) return new Offset(base, -constant.value());
+        }
+        return new Offset(index, 0);
+    }
+}
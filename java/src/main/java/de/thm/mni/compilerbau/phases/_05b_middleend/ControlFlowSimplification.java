@@ -0,0 +1,120 @@
+package de.thm.mni.compilerbau.phases._05b_middleend;
+
+import de.thm.mni.compilerbau.ir.*;
+
+import java.util.*;
+
+/**
+ * Cleans up the control flow graph of a procedure, in or out of SSA form:
+ * <ul>
+ *     <li>Unreachable blocks are removed.</li>
+ *     <li>A branch with two constant operands or with the same block as both targets becomes a jump.</li>
+ *     <li>A block that only jumps to another block is skipped by its predecessors.</li>
+ *     <li>A block with a single predecessor ending in a jump to it is appended to that predecessor.</li>
+ * </ul>
+ * The entry block is never removed, so it never has any predecessors.
+ */
+public class ControlFlowSimplification {
+    private final Procedure procedure;
+    private final Set<Block> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private ControlFlowSimplification(Procedure procedure) {
+        this.procedure = procedure;
+    }
+
+    /**
+     * Simplifies the control flow graph of a procedure.
+     *
+     * @return Whether the procedure was changed.
+     */
+    public static boolean run(Procedure procedure) {
+        return new ControlFlowSimplification(procedure).simplify();
+    }
+
+    private boolean simplify() {
+        boolean changed = procedure.removeUnreachableBlocks();
+        boolean progress = true;
+        while (progress) {
+            progress = false;
+            for (Block block : procedure.blocks) {
+                if (removed.contains(block)) continue;
+                progress |= foldBranch(block);
+                progress |= skipEmpty(block);
+                if (!removed.contains(block)) progress |= mergeSuccessor(block);
+            }
+            procedure.blocks.removeIf(removed::contains);
+            removed.clear();
+            progress |= procedure.removeUnreachableBlocks();
+            changed |= progress;
+        }
+        return changed;
+    }
+
+    private boolean foldBranch(Block block) {
+        if (!(block.terminator instanceof Branch branch)) return false;
+        if (branch.ifTrue == branch.ifFalse) {
+            block.terminator = new Jump(branch.ifTrue);
+            return true;
+        }
+        if (branch.left() instanceof Constant left && branch.right() instanceof Constant right) {
+            final boolean taken = branch.condition.test(left.value(), right.value());
+            final Block target = taken ? branch.ifTrue : branch.ifFalse;
+            final Block untaken = taken ? branch.ifFalse : branch.ifTrue;
+            block.terminator = new Jump(target);
+            for (Phi phi : untaken.phis()) phi.removeIncoming(block);
+            untaken.predecessors.remove(block);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Lets the predecessors of an empty block jump to its successor directly. A predecessor that already is a
+     * predecessor of the successor keeps its edge if the successor has phis, which could not tell both edges apart.
+     */
+    private boolean skipEmpty(Block block) {
+        if (block == procedure.entryBlock() || !block.instructions.isEmpty() || !(block.terminator instanceof Jump jump)) return false;
+        final Block target = jump.target;
+        if (target == block) return false;
+
+        final List<Phi> phis = target.phis();
+        boolean changed = false;
+        for (Block predecessor : List.copyOf(block.predecessors)) {
+            if (!phis.isEmpty() && target.predecessors.contains(predecessor)) continue;
+            predecessor.terminator.replaceSuccessor(block, target);
+            for (Phi phi : phis) phi.setIncoming(predecessor, phi.incoming(block));
+            block.predecessors.remove(predecessor);
+            if (!target.predecessors.contains(predecessor)) target.predecessors.add(predecessor);
+            changed = true;
+        }
+        if (block.predecessors.isEmpty()) {
+            for (Phi phi : phis) phi.removeIncoming(block);
+            target.predecessors.remove(block);
+            removed.add(block);
+        }
+        return changed;
+    }
+
+    /**
+     * Appends the only successor of a block to it, if the block is the successor's only predecessor.
+     * The phis of the successor become moves.
+     */
+    private boolean mergeSuccessor(Block block) {
+        if (!(block.terminator instanceof Jump jump)) return false;
+        final Block successor = jump.target;
+        if (successor == block || successor == procedure.entryBlock() || successor.predecessors.size() != 1) return false;
+
+        for (Instruction instruction : successor.instructions) {
+            block.instructions.add(instruction instanceof Phi phi ? new Move(phi.result(), phi.incoming(block)) : instruction);
+        }
+        block.terminator = successor.terminator;
+        for (Block next : successor.successors()) {
+            final int index = next.predecessors.indexOf(successor);
+            if (index >= 0) next.predecessors.set(index, block);
+            for (Phi phi : next.phis()) phi.replaceBlock(successor, block);
+        }
+        successor.predecessors.clear();
+        removed.add(successor);
+        return true;
+    }
+}
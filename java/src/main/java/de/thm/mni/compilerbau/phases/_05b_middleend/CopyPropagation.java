@@ -0,0 +1,184 @@
+package de.thm.mni.compilerbau.phases._05b_middleend;
+
+import de.thm.mni.compilerbau.ir.*;
+
+import java.util.*;
+
+/**
+ * Copy propagation on a procedure in SSA form.
+ * <p>
+ * Every register that is only a copy of another operand is replaced by that operand and its definition is removed.
+ * Besides {@link Move}s these are phis whose operands are all the same (ignoring the phi itself) and arithmetic
+ * identities: x+0, 0+x, x-0, x*1, 1*x, x/1, x-x and x*0. A multiplication can not trap, so x*0 is always 0.
+ * A move of a stack slot's address is kept, as it is used by {@link LoopInvariantCodeMotion} to compute the address
+ * once before a loop instead of in every iteration.
+ * <p>
+ * Constants are also moved to the right of commutative operators, where the code generator can use them as an
+ * immediate operand, constants added one after another are added at once, and constant offsets added to an address
+ * are folded into the displacement of loads and stores.
+ */
+public class CopyPropagation {
+    private CopyPropagation() {
+    }
+
+    /**
+     * Propagates the copies of a procedure in SSA form.
+     *
+     * @return Whether the procedure was changed.
+     */
+    public static boolean run(Procedure procedure) {
+        boolean changed = false;
+        final Map<Temp, Operand> replacements = new HashMap<>();
+        final Map<Temp, BinaryOp> definitions = new HashMap<>();
+
+        boolean progress = true;
+        while (progress) {
+            progress = false;
+            replacements.clear();
+            for (Block block : procedure.blocks) {
+                final Iterator<Instruction> iterator = block.instructions.iterator();
+                while (iterator.hasNext()) {
+                    final Instruction instruction = iterator.next();
+                    replaceOperands(instruction, replacements);
+                    final Operand copied = copiedOperand(instruction);
+                    if (copied != null && copied != instruction.result()) {
+                        replacements.put(instruction.result(), copied);
+                        iterator.remove();
+                        progress = true;
+                    }
+                }
+                replaceOperands(block.terminator, replacements);
+            }
+            // Uses that come before the copy in the block order, like phi operands flowing in along back edges
+            if (progress) {
+                for (Block block : procedure.blocks) {
+                    for (Instruction instruction : block.instructions) replaceOperands(instruction, replacements);
+                    replaceOperands(block.terminator, replacements);
+                }
+                changed = true;
+            }
+        }
+
+        for (Block block : procedure.blocks) {
+            for (Instruction instruction : block.instructions) {
+                if (instruction instanceof BinaryOp binary) {
+                    if (binary.operator.isCommutative && binary.left() instanceof Constant && !(binary.right() instanceof Constant)) {
+                        final Operand left = binary.left();
+                        binary.setOperand(0, binary.right());
+                        binary.setOperand(1, left);
+                        changed = true;
+                    }
+                    definitions.put(binary.result(), binary);
+                }
+            }
+        }
+        for (Block block : procedure.blocks) {
+            for (Instruction instruction : block.instructions) {
+                if (instruction instanceof BinaryOp binary) changed |= foldOffset(binary, definitions);
+            }
+        }
+        for (Block block : procedure.blocks) {
+            for (Instruction instruction : block.instructions) changed |= foldDisplacement(instruction, definitions);
+        }
+        return changed;
+    }
+
+    private static Operand resolve(Operand operand, Map<Temp, Operand> replacements) {
+        while (operand instanceof Temp temp && replacements.containsKey(temp)) operand = replacements.get(temp);
+        return operand;
+    }
+
+    private static void replaceOperands(Instruction instruction, Map<Temp, Operand> replacements) {
+        if (replacements.isEmpty()) return;
+        for (int i = 0; i < instruction.operands().size(); i++) {
+            final Operand operand = instruction.operand(i);
+            if (operand instanceof Temp) {
+                final Operand replacement = resolve(operand, replacements);
+                if (replacement != operand) instruction.setOperand(i, replacement);
+            }
+        }
+    }
+
+    private static boolean isConstant(Operand operand, int value) {
+        return operand instanceof Constant constant && constant.value() == value;
+    }
+
+    /**
+     * @return The operand the result of the instruction is a copy of, or null.
+     */
+    private static Operand copiedOperand(Instruction instruction) {
+        return switch (instruction) {
+            case Move move -> move.source() instanceof StackSlot ? null : move.source();
+            case Phi phi -> {
+                Operand same = null;
+                for (Operand operand : phi.operands()) {
+                    if (operand == phi.result() || operand.equals(same)) continue;
+                    if (same != null) yield null;
+                    same = operand;
+                }
+                yield same;
+            }
+            case BinaryOp binary -> {
+                final Operand left = binary.left();
+                final Operand right = binary.right();
+                yield switch (binary.operator) {
+                    case ADD -> isConstant(right, 0) ? left : isConstant(left, 0) ? right : null;
+                    case SUB -> isConstant(right, 0) ? left : left.equals(right) ? Constant.ZERO : null;
+                    case MUL -> isConstant(right, 1) ? left : isConstant(left, 1) ? right
+                            : isConstant(left, 0) || isConstant(right, 0) ? Constant.ZERO : null;
+                    case DIV -> isConstant(right, 1) ? left : null;
+                };
+            }
+            default -> null;
+        };
+    }
+
+    /**
+     * Folds '(x + constant) + constant' into 'x + constant', like the consecutive increments of an unrolled loop.
+     * Subtractions of constants are handled like additions of their negation.
+     */
+    private static boolean foldOffset(BinaryOp binary, Map<Temp, BinaryOp> definitions) {
+        final Integer outer = offset(binary);
+        if (outer == null || !(binary.left() instanceof Temp temp) || !definitions.containsKey(temp)) return false;
+        final BinaryOp definition = definitions.get(temp);
+        final Integer inner = offset(definition);
+        if (inner == null || definition.left() instanceof Constant) return false;
+
+        final int sum = inner + outer;
+        binary.setOperand(0, definition.left());
+        binary.setOperand(1, new Constant(binary.operator == BinaryOp.Operator.ADD ? sum : -sum));
+        return true;
+    }
+
+    /**
+     * @return The constant added by an addition or subtraction of a constant, or null.
+     */
+    private static Integer offset(BinaryOp binary) {
+        if (!(binary.right() instanceof Constant constant)) return null;
+        return switch (binary.operator) {
+            case ADD -> constant.value();
+            case SUB -> -constant.value();
+            default -> null;
+        };
+    }
+
+    /**
+     * Folds 'base + constant' into the displacement of a load or store.
+     */
+    private static boolean foldDisplacement(Instruction instruction, Map<Temp, BinaryOp> definitions) {
+        final Operand base = switch (instruction) {
+            case Load load -> load.base();
+            case Store store -> store.base();
+            default -> null;
+        };
+        if (!(base instanceof Temp temp) || !definitions.containsKey(temp)) return false;
+        final BinaryOp definition = definitions.get(temp);
+        if (definition.operator != BinaryOp.Operator.ADD || !(definition.right() instanceof Constant offset)) return false;
+        if (definition.left() instanceof Constant) return false;
+
+        instruction.setOperand(0, definition.left());
+        if (instruction instanceof Load load) load.displacement += offset.value();
+        else ((Store) instruction).displacement += offset.value();
+        return true;
+    }
+}
@@ -0,0 +1,131 @@
+package de.thm.mni.compilerbau.phases._05b_middleend;
+
+import de.thm.mni.compilerbau.ir.*;
+
+/**
+ * A loop of a procedure in SSA form that is controlled by an induction variable: a phi of the header that starts
+ * with some value and is incremented by a constant step in every iteration. The loop is left only from the header,
+ * when a comparison of the induction variable with a loop invariant bound fails, like the while loops counting over
+ * arrays.
+ */
+final class CountedLoop {
+    private static final int MAX_TRIP_COUNT = 1 << 16;
+
+    final LoopNesting.Loop loop;
+    final Block preheader;
+    final Block latch;
+    final Block body; // The successor of the header in the loop
+    final Block exit; // The successor of the header outside the loop
+    final Phi inductionVariable;
+    final Operand initial; // The value before the first iteration
+    final int step;
+    final Operand bound; // A constant or a register defined outside the loop
+    final Branch test;
+    /**
+     * The number of iterations, or -1 if the initial value or the bound is not a constant or the loop does not end
+     * soon enough.
+     */
+    final int tripCount;
+
+    private CountedLoop(LoopNesting.Loop loop, Block preheader, Phi inductionVariable, int step, Operand bound) {
+        this.loop = loop;
+        this.preheader = preheader;
+        this.latch = loop.latches.get(0);
+        this.test = (Branch) loop.header.terminator;
+        this.body = loop.contains(test.ifTrue) ? test.ifTrue : test.ifFalse;
+        this.exit = loop.contains(test.ifTrue) ? test.ifFalse : test.ifTrue;
+        this.inductionVariable = inductionVariable;
+        this.initial = inductionVariable.incoming(preheader);
+        this.step = step;
+        this.bound = bound;
+        this.tripCount = initial instanceof Constant constant && bound instanceof Constant
+                ? countIterations(constant.value()) : -1;
+    }
+
+    /**
+     * @param preheader The preheader of the loop.
+     * @return The loop as a counted loop, or null if it is not one.
+     */
+    static CountedLoop of(LoopNesting.Loop loop, Block preheader) {
+        if (loop.latches.size() != 1) return null;
+        final Block header = loop.header;
+        if (!(header.terminator instanceof Branch test) || loop.contains(test.ifTrue) == loop.contains(test.ifFalse)) {
+            return null;
+        }
+        for (Block block : loop.blocks) {
+            if (block != header && !block.successors().stream().allMatch(loop::contains)) return null;
+        }
+
+        for (Phi phi : header.phis()) {
+            final Operand bound = test.left() == phi.result() ? test.right()
+                    : test.right() == phi.result() ? test.left() : null;
+            if (bound == null || !isInvariant(bound, loop)) continue;
+            final Integer step = stepOf(phi, phi.incoming(loop.latches.get(0)), loop);
+            if (step == null || step == 0 || phi.blocks().size() != 2) return null;
+            return new CountedLoop(loop, preheader, phi, step, bound);
+        }
+        return null;
+    }
+
+    private static boolean isInvariant(Operand operand, LoopNesting.Loop loop) {
+        if (!(operand instanceof Temp)) return operand instanceof Constant;
+        for (Block block : loop.blocks) {
+            for (Instruction instruction : block.instructions) {
+                if (operand.equals(instruction.result())) return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param next The value the phi receives from the latch.
+     * @return The constant the phi is incremented by in every iteration, or null if it is not an induction variable.
+     */
+    static Integer stepOf(Phi phi, Operand next, LoopNesting.Loop loop) {
+        for (Block block : loop.blocks) {
+            for (Instruction instruction : block.instructions) {
+                if (instruction.result() != next || !(instruction instanceof BinaryOp binary)) continue;
+                final Temp variable = phi.result();
+                return switch (binary.operator) {
+                    case ADD -> binary.left() == variable && binary.right() instanceof Constant step ? step.value()
+                            : binary.right() == variable && binary.left() instanceof Constant step ? step.value() : null;
+                    case SUB -> binary.left() == variable && binary.right() instanceof Constant step ? -step.value() : null;
+                    default -> null;
+                };
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The condition under which the header continues the loop, as a comparison of the induction variable
+     * with the bound.
+     */
+    Branch.Condition continueCondition() {
+        final Branch.Condition condition = test.left() == inductionVariable.result() ? test.condition : test.condition.swap();
+        return test.ifTrue == body ? condition : condition.negate();
+    }
+
+    /**
+     * @return Whether the test of the header continues the loop for a value of the induction variable. The bound
+     * must be a constant.
+     */
+    boolean continues(int value) {
+        return continueCondition().test(value, ((Constant) bound).value());
+    }
+
+    private int countIterations(int value) {
+        for (int count = 0; count <= MAX_TRIP_COUNT; count++) {
+            if (!continues(value)) return count;
+            value += step;
+        }
+        return -1;
+    }
+
+    /**
+     * @return The number of instructions of the loop, including the terminators.
+     */
+    int size() {
+        return loop.blocks.stream().mapToInt(block -> block.instructions.size() + 1).sum();
+    }
+}
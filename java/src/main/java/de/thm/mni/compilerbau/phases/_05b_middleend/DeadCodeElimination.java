@@ -0,0 +1,52 @@
+package de.thm.mni.compilerbau.phases._05b_middleend;
+
+import de.thm.mni.compilerbau.ir.*;
+
+import java.util.*;
+
+/**
+ * Removes instructions whose results are never used.
+ * <p>
+ * Starting from the instructions with side effects (stores, calls, bounds checks, divisions that may trap and the
+ * terminators), all instructions defining an operand of a live instruction are marked live. Everything else is
+ * removed, including phis that only feed each other in a cycle. The procedure does not have to be in SSA form.
+ */
+public class DeadCodeElimination {
+    private DeadCodeElimination() {
+    }
+
+    /**
+     * Removes the dead instructions of a procedure.
+     *
+     * @return Whether the procedure was changed.
+     */
+    public static boolean run(Procedure procedure) {
+        final Map<Temp, List<Instruction>> definitions = new HashMap<>();
+        final Set<Instruction> live = Collections.newSetFromMap(new IdentityHashMap<>());
+        final ArrayDeque<Instruction> worklist = new ArrayDeque<>();
+
+        for (Block block : procedure.blocks) {
+            for (Instruction instruction : block.instructions) {
+                if (instruction.result() != null) {
+                    definitions.computeIfAbsent(instruction.result(), t -> new ArrayList<>()).add(instruction);
+                }
+                if (instruction.hasSideEffects() && live.add(instruction)) worklist.add(instruction);
+            }
+            live.add(block.terminator);
+            worklist.add(block.terminator);
+        }
+
+        while (!worklist.isEmpty()) {
+            for (Operand operand : worklist.poll().operands()) {
+                if (!(operand instanceof Temp temp)) continue;
+                for (Instruction definition : definitions.getOrDefault(temp, List.of())) {
+                    if (live.add(definition)) worklist.add(definition);
+                }
+            }
+        }
+
+        boolean changed = false;
+        for (Block block : procedure.blocks) changed |= block.instructions.removeIf(instruction -> !live.contains(instruction));
+        return changed;
+    }
+}
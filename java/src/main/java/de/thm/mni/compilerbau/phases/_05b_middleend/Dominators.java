@@ -0,0 +1,169 @@
+package de.thm.mni.compilerbau.phases._05b_middleend;
+
+import de.thm.mni.compilerbau.ir.Block;
+import de.thm.mni.compilerbau.ir.Procedure;
+
+import java.util.*;
+
+/**
+ * The dominator tree and the dominance frontiers of a procedure's control flow graph.
+ * <p>
+ * A block A dominates a block B if every path from the entry block to B passes A. The immediate dominators are
+ * calculated with the iterative algorithm of Cooper, Harvey and Kennedy ("A Simple, Fast Dominance Algorithm"), which
+ * processes the blocks in reverse postorder until nothing changes. Only blocks reachable from the entry block are
+ * part of the tree.
+ */
+public class Dominators {
+    public static final Analysis<Dominators> ANALYSIS =
+            new Analysis<>("dominators", false, (procedure, analyses) -> compute(procedure));
+
+    private final List<Block> order; // Reverse postorder
+    private final Map<Block, Integer> index = new IdentityHashMap<>();
+    private final int[] idom;
+    private final List<List<Block>> children = new ArrayList<>();
+    private final List<List<Block>> frontiers = new ArrayList<>();
+    private final int[] enter; // Preorder numbers of the dominator tree, for constant time dominance queries
+    private final int[] leave;
+    private final List<Block> preorder = new ArrayList<>();
+
+    private Dominators(Procedure procedure) {
+        this.order = procedure.reversePostorder();
+        final int n = order.size();
+        for (int i = 0; i < n; i++) index.put(order.get(i), i);
+
+        this.idom = new int[n];
+        Arrays.fill(idom, -1);
+        idom[0] = 0;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 1; i < n; i++) {
+                int newIdom = -1;
+                for (Block predecessor : order.get(i).predecessors) {
+                    final Integer p = index.get(predecessor);
+                    if (p == null || idom[p] < 0) continue; // Unreachable or not processed yet
+                    newIdom = newIdom < 0 ? p : intersect(p, newIdom);
+                }
+                if (idom[i] != newIdom) {
+                    idom[i] = newIdom;
+                    changed = true;
+                }
+            }
+        }
+
+        for (int i = 0; i < n; i++) {
+            children.add(new ArrayList<>());
+            frontiers.add(new ArrayList<>());
+        }
+        for (int i = 1; i < n; i++) children.get(idom[i]).add(order.get(i));
+
+        // Frontiers: walk up from every predecessor of a join point to the join point's immediate dominator
+        for (int i = 0; i < n; i++) {
+            final Block block = order.get(i);
+            if (block.predecessors.size() < 2) continue;
+            for (Block predecessor : block.predecessors) {
+                final Integer p = index.get(predecessor);
+                if (p == null) continue;
+                for (int runner = p; runner != idom[i]; runner = idom[runner]) {
+                    final List<Block> frontier = frontiers.get(runner);
+                    if (frontier.isEmpty() || frontier.get(frontier.size() - 1) != block) frontier.add(block);
+                    if (runner == 0) break;
+                }
+            }
+        }
+
+        this.enter = new int[n];
+        this.leave = new int[n];
+        final ArrayDeque<Integer> blockStack = new ArrayDeque<>();
+        final ArrayDeque<Integer> childStack = new ArrayDeque<>();
+        int counter = 0;
+        blockStack.push(0);
+        childStack.push(0);
+        enter[0] = counter++;
+        preorder.add(order.get(0));
+        while (!blockStack.isEmpty()) {
+            final int block = blockStack.peek();
+            final int child = childStack.pop();
+            final List<Block> blockChildren = children.get(block);
+            if (child < blockChildren.size()) {
+                childStack.push(child + 1);
+                final int next = index.get(blockChildren.get(child));
+                enter[next] = counter++;
+                preorder.add(blockChildren.get(child));
+                blockStack.push(next);
+                childStack.push(0);
+            } else {
+                leave[block] = counter;
+                blockStack.pop();
+            }
+        }
+    }
+
+    private int intersect(int a, int b) {
+        while (a != b) {
+            while (a > b) a = idom[a];
+            while (b > a) b = idom[b];
+        }
+        return a;
+    }
+
+    /**
+     * Calculates the dominators of a procedure. The predecessors of its blocks must be up to date.
+     */
+    public static Dominators compute(Procedure procedure) {
+        return new Dominators(procedure);
+    }
+
+    /**
+     * @return The immediate dominator of the block, or null for the entry block.
+     */
+    public Block immediateDominator(Block block) {
+        final int i = index.get(block);
+        return i == 0 ? null : order.get(idom[i]);
+    }
+
+    /**
+     * @return The blocks immediately dominated by the block.
+     */
+    public List<Block> children(Block block) {
+        return Collections.unmodifiableList(children.get(index.get(block)));
+    }
+
+    /**
+     * @return The blocks where the dominance of the block ends: every block that has a predecessor dominated by
+     * this block, without being strictly dominated by it.
+     */
+    public List<Block> frontier(Block block) {
+        return Collections.unmodifiableList(frontiers.get(index.get(block)));
+    }
+
+    /**
+     * @return Whether a dominates b. Every block dominates itself.
+     */
+    public boolean dominates(Block a, Block b) {
+        final int i = index.get(a);
+        final int j = index.get(b);
+        return enter[i] <= enter[j] && enter[j] < leave[i];
+    }
+
+    /**
+     * @return Whether the block is reachable from the entry block.
+     */
+    public boolean isReachable(Block block) {
+        return index.containsKey(block);
+    }
+
+    /**
+     * @return The reachable blocks in preorder of the dominator tree, in which every block comes after its dominators.
+     */
+    public List<Block> preorder() {
+        return Collections.unmodifiableList(preorder);
+    }
+
+    /**
+     * @return The reachable blocks in reverse postorder.
+     */
+    public List<Block> reversePostorder() {
+        return Collections.unmodifiableList(order);
+    }
+}
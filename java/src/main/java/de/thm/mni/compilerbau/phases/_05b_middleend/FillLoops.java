@@ -0,0 +1,179 @@
+package de.thm.mni.compilerbau.phases._05b_middleend;
+
+import de.thm.mni.compilerbau.ir.*;
+
+import java.util.*;
+
+/**
+ * Recognizes loops of a procedure in SSA form that only store loop invariant values into consecutive array elements,
+ * like the loops clearing arrays at the beginning of a program, and replaces them with a faster sequence of stores.
+ * <p>
+ * Such a loop is a {@link CountedLoop} with a known number of iterations and a single block as body, which contains
+ * nothing but stores of invariant values to {@link LinearAddress}es advancing by one element per iteration, the
+ * bounds checks of their indices, and the arithmetic computing both. Stores to memory that may overlap must have the
+ * same address.
+ * <p>
+ * The bounds checks are replaced by a check of the first and the last index of every checked range, before any
+ * element is stored. These checks have constant operands, so they are removed by the constant propagation unless the
+ * loop would have stopped with an index error, which it then still does. Each store then becomes a sequence of
+ * stores with constant displacements for up to {@link #MAX_UNROLLED_STORES} elements, or a loop that advances a
+ * pointer from the first to the last element and stores up to {@link #MAX_STORES_PER_ITERATION} elements per
+ * iteration.
+ */
+public class FillLoops {
+    private static final int MAX_UNROLLED_STORES = 16;
+    private static final int MAX_STORES_PER_ITERATION = 4;
+
+    /**
+     * Stores of the value into count consecutive words, starting at base + first.
+     */
+    private record Fill(Operand base, int first, int count, Operand value) {
+    }
+
+    private final Procedure procedure;
+    private final LinearAddress.Resolver addresses;
+    private final MemoryRegion.Resolver regions;
+
+    private FillLoops(Procedure procedure) {
+        this.procedure = procedure;
+        this.addresses = new LinearAddress.Resolver(procedure);
+        this.regions = new MemoryRegion.Resolver(procedure);
+    }
+
+    /**
+     * Replaces the fill loops of a procedure in SSA form.
+     *
+     * @return Whether the procedure was changed.
+     */
+    public static boolean run(Procedure procedure, Analyses analyses) {
+        if (analyses.get(LoopNesting.ANALYSIS).loops().isEmpty()) return false;
+        boolean changed = Preheaders.insert(procedure, analyses.get(LoopNesting.ANALYSIS));
+        if (changed) analyses.invalidate(false);
+
+        final FillLoops fillLoops = new FillLoops(procedure);
+        for (LoopNesting.Loop loop : analyses.get(LoopNesting.ANALYSIS).innermostFirst()) {
+            final CountedLoop counted = CountedLoop.of(loop, Preheaders.of(loop));
+            if (counted != null) changed |= fillLoops.replace(counted);
+        }
+        procedure.updatePredecessors();
+        return changed;
+    }
+
+    private boolean replace(CountedLoop loop) {
+        final Block header = loop.loop.header;
+        if (loop.tripCount <= 0 || loop.loop.blocks.size() != 2 || loop.body != loop.latch) return false;
+        if (header.instructions.size() != 1) return false; // Only the induction variable
+
+        final List<CountedLoop> loops = List.of(loop);
+        final int last = ((Constant) loop.initial).value() + (loop.tripCount - 1) * loop.step;
+        final Set<List<Integer>> checks = new LinkedHashSet<>(); // Index and size of every check
+        final List<Fill> fills = new ArrayList<>();
+        final List<Store> stores = new ArrayList<>();
+        for (Instruction instruction : loop.body.instructions) {
+            switch (instruction) {
+                case BoundsCheck check -> {
+                    final int[] index = addresses.linear(check.index(), loops);
+                    if (index == null || !(check.size() instanceof Constant size)) return false;
+                    checks.add(List.of(index[0] * ((Constant) loop.initial).value() + index[1], size.value()));
+                    checks.add(List.of(index[0] * last + index[1], size.value()));
+                }
+                case Store store -> {
+                    final LinearAddress address = addresses.of(store.base(), store.displacement, loops);
+                    if (address == null || Math.abs(address.coefficient * loop.step) != 4) return false;
+                    if (!isInvariant(store.value(), loop)) return false;
+                    final int first = Math.min(address.coefficient * ((Constant) loop.initial).value(),
+                            address.coefficient * last) + address.offset;
+                    for (Store other : stores) {
+                        if (regions.regionOf(other.base()).mayAlias(regions.regionOf(store.base()))
+                                && !sameAddress(other, store, loops)) {
+                            return false;
+                        }
+                    }
+                    stores.add(store);
+                    fills.add(new Fill(address.baseOperand, first, loop.tripCount, store.value()));
+                }
+                case BinaryOp binary when !binary.hasSideEffects() -> {
+                }
+                case Move ignored -> {
+                }
+                default -> {
+                    return false;
+                }
+            }
+        }
+        if (stores.isEmpty()) return false;
+
+        final Block preheader = loop.preheader;
+        for (List<Integer> check : checks) {
+            preheader.instructions.add(new BoundsCheck(new Constant(check.get(0)), new Constant(check.get(1))));
+        }
+        // All fills have the same number of elements
+        int position = procedure.blocks.indexOf(header);
+        Block previous = preheader;
+        for (Fill fill : fills) {
+            if (fill.count <= MAX_UNROLLED_STORES) {
+                for (int i = 0; i < fill.count; i++) {
+                    preheader.instructions.add(new Store(fill.base, fill.first + 4 * i, fill.value));
+                }
+            } else {
+                previous = fillLoop(fill, preheader, previous, header, position++);
+            }
+        }
+
+        previous.terminator.replaceSuccessor(header, loop.exit);
+        for (Phi phi : loop.exit.phis()) phi.replaceBlock(header, previous);
+        procedure.blocks.removeAll(loop.loop.blocks);
+        final Constant end = new Constant(((Constant) loop.initial).value() + loop.tripCount * loop.step);
+        for (Block block : procedure.blocks) {
+            for (Instruction instruction : block.instructions) instruction.replaceUses(loop.inductionVariable.result(), end);
+            block.terminator.replaceUses(loop.inductionVariable.result(), end);
+        }
+        return true;
+    }
+
+    /**
+     * Appends a loop storing the value to the elements with a pointer that is incremented after every group of
+     * stores.
+     *
+     * @param preheader The block the start and the end of the pointer are calculated in.
+     * @param previous  The block the loop is entered from.
+     * @param successor The successor of the previous block, which becomes the successor of the loop.
+     * @return The block of the fill loop.
+     */
+    private Block fillLoop(Fill fill, Block preheader, Block previous, Block successor, int position) {
+        int storesPerIteration = MAX_STORES_PER_ITERATION;
+        while (fill.count % storesPerIteration != 0) storesPerIteration--;
+
+        final Temp start = procedure.newTemp(null);
+        final Temp end = procedure.newTemp(null);
+        preheader.instructions.add(new BinaryOp(BinaryOp.Operator.ADD, start, fill.base, new Constant(fill.first)));
+        preheader.instructions.add(new BinaryOp(BinaryOp.Operator.ADD, end, start, new Constant(4 * fill.count)));
+
+        final Block block = procedure.newBlock();
+        procedure.blocks.remove(block);
+        procedure.blocks.add(position, block);
+        final Phi pointer = new Phi(procedure.newTemp(null));
+        final Temp next = procedure.newTemp(null);
+        pointer.setIncoming(previous, start);
+        pointer.setIncoming(block, next);
+        block.instructions.add(pointer);
+        for (int i = 0; i < storesPerIteration; i++) {
+            block.instructions.add(new Store(pointer.result(), 4 * i, fill.value));
+        }
+        block.instructions.add(new BinaryOp(BinaryOp.Operator.ADD, next, pointer.result(), new Constant(4 * storesPerIteration)));
+        block.terminator = new Branch(Branch.Condition.NE, next, end, block, successor);
+        previous.terminator.replaceSuccessor(successor, block);
+        return block;
+    }
+
+    private boolean isInvariant(Operand operand, CountedLoop loop) {
+        return !(operand instanceof Temp temp)
+                || addresses.definitionBlock(temp) != null && !loop.loop.contains(addresses.definitionBlock(temp));
+    }
+
+    private boolean sameAddress(Store x, Store y, List<CountedLoop> loops) {
+        final LinearAddress a = addresses.of(x.base(), x.displacement, loops);
+        final LinearAddress b = addresses.of(y.base(), y.displacement, loops);
+        return a.base.equals(b.base) && a.coefficient == b.coefficient && a.offset == b.offset;
+    }
+}
@@ -0,0 +1,230 @@
+package de.thm.mni.compilerbau.phases._05b_middleend;
+
+import de.thm.mni.compilerbau.absyn.ProcedureDefinition;
+import de.thm.mni.compilerbau.ir.*;
+import de.thm.mni.compilerbau.phases._04c_callgraph.CallGraph;
+import de.thm.mni.compilerbau.table.ProcedureEntry;
+
+import java.util.*;
+
+/**
+ * Replaces calls of small procedures by a copy of the callee's body, which saves the call sequence: the stores of the
+ * arguments into the outgoing area, the jump, the prologue and epilogue of the callee and the loads of its parameters,
+ * and lets the optimizations of the caller see through the call.
+ * <p>
+ * Procedures are inlined after they have been optimized themselves, so the {@link PassManager} optimizes the
+ * components of the {@link CallGraph} callees first, inlining into a procedure before it is optimized. Procedures that
+ * can call themselves are never inlined.
+ * <p>
+ * The copy of the callee's body is inserted in place of the call, with new registers for all registers of the callee
+ * and new local slots in the caller's frame for the callee's local variables. The arguments are copied into new
+ * registers before the body: the value for a value parameter and the address of the variable for a reference
+ * parameter, so every access to a reference parameter reaches the caller's variable. The loads of the parameters from
+ * their slots become moves from these registers. A value parameter whose address is taken gets a local slot, which
+ * the argument is stored into. The frames are laid out by the code generator based on the slots and calls that remain.
+ * <p>
+ * A callee is inlined if its body is not larger than the call sequence it saves, if it is called only once in the
+ * program, or if the caller stays within the budget of instructions it may grow by.
+ */
+public class Inliner {
+    private static final int CALL_OVERHEAD = 7; // The jump and the prologue and epilogue of the callee
+    private static final int MAX_SINGLE_CALL_SIZE = 512;
+
+    private final CallGraph callGraph;
+    private final int budget;
+    private final Map<ProcedureEntry, Procedure> optimized = new HashMap<>();
+    private final Map<ProcedureEntry, Integer> callCounts = new HashMap<>();
+
+    /**
+     * @param procedures The procedures of the program, before they are optimized.
+     * @param budget     The number of instructions every procedure may grow by.
+     */
+    Inliner(CallGraph callGraph, List<Procedure> procedures, int budget) {
+        this.callGraph = callGraph;
+        this.budget = budget;
+        for (Procedure procedure : procedures) {
+            for (Block block : procedure.blocks) {
+                for (Instruction instruction : block.instructions) {
+                    if (instruction instanceof Call call) callCounts.merge(call.callee, 1, Integer::sum);
+                }
+            }
+        }
+    }
+
+    /**
+     * Makes an optimized procedure available for inlining.
+     */
+    void optimized(Procedure procedure) {
+        optimized.put(procedure.entry(), procedure);
+    }
+
+    /**
+     * Inlines the calls of a procedure that is not in SSA form yet.
+     *
+     * @return Whether a call was inlined.
+     */
+    boolean inline(Procedure procedure) {
+        int remaining = budget;
+        boolean changed = false;
+        for (int i = 0; i < procedure.blocks.size(); i++) {
+            final Block block = procedure.blocks.get(i);
+            for (int j = 0; j < block.instructions.size(); j++) {
+                if (!(block.instructions.get(j) instanceof Call call)) continue;
+                final Procedure callee = optimized.get(call.callee);
+                if (callee == null || !canInline(callee)) continue;
+
+                final int growth = size(callee) - CALL_OVERHEAD - 2 * call.operands().size();
+                final boolean calledOnce = callCounts.get(call.callee) == 1 && size(callee) <= MAX_SINGLE_CALL_SIZE;
+                if (growth > 0 && !calledOnce) {
+                    if (growth > remaining) continue;
+                    remaining -= growth;
+                }
+                inline(procedure, i, j, call, callee);
+                changed = true;
+                break; // The rest of the block has been moved behind the inlined body
+            }
+        }
+        if (changed) procedure.updatePredecessors();
+        return changed;
+    }
+
+    /**
+     * @return The procedures that are still called, or 'main'.
+     */
+    List<Procedure> called(List<Procedure> procedures) {
+        final Set<ProcedureEntry> called = new HashSet<>();
+        for (Procedure procedure : procedures) {
+            for (Block block : procedure.blocks) {
+                for (Instruction instruction : block.instructions) {
+                    if (instruction instanceof Call call) called.add(call.callee);
+                }
+            }
+        }
+        return procedures.stream()
+                .filter(procedure -> procedure.name().toString().equals("main") || called.contains(procedure.entry()))
+                .toList();
+    }
+
+    /**
+     * The callee must not be recursive, and its parameter slots must only be read, except for value parameters.
+     */
+    private boolean canInline(Procedure callee) {
+        final ProcedureDefinition definition = callee.definition;
+        if (callGraph.isRecursive(definition)) return false;
+        for (StackSlot slot : callee.slots) {
+            if (slot.kind == StackSlot.Kind.PARAMETER && slot.isReference && !isOnlyLoaded(callee, slot)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return Whether the slot is only used by loads of its whole value.
+     */
+    private static boolean isOnlyLoaded(Procedure procedure, StackSlot slot) {
+        for (Block block : procedure.blocks) {
+            for (Instruction instruction : block.instructions) {
+                if (instruction instanceof Load load && load.base() == slot && load.displacement == 0) continue;
+                if (instruction.operands().contains(slot)) return false;
+            }
+            if (block.terminator.operands().contains(slot)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return The number of instructions of the procedure, without its return.
+     */
+    private static int size(Procedure procedure) {
+        return procedure.blocks.stream().mapToInt(block -> block.instructions.size() + 1).sum() - 1;
+    }
+
+    /**
+     * Replaces the call at the given position by a copy of the callee's body, followed by a new block containing the
+     * instructions after the call.
+     */
+    private void inline(Procedure procedure, int blockIndex, int callIndex, Call call, Procedure callee) {
+        final Block block = procedure.blocks.get(blockIndex);
+        final Block after = procedure.newBlock();
+        procedure.blocks.remove(after);
+        final List<Instruction> rest = block.instructions.subList(callIndex + 1, block.instructions.size());
+        after.instructions.addAll(rest);
+        after.terminator = block.terminator;
+        rest.clear();
+        block.instructions.remove(callIndex);
+
+        final BlockCloner cloner = new BlockCloner(procedure);
+        final Map<StackSlot, Temp> parameters = new HashMap<>();
+        final Map<Temp, StackSlot> variables = new HashMap<>();
+        final List<StackSlot> parameterSlots = callee.slots.stream().filter(slot -> slot.kind == StackSlot.Kind.PARAMETER).toList();
+        for (int i = 0; i < parameterSlots.size(); i++) {
+            final StackSlot slot = parameterSlots.get(i);
+            final Temp argument = procedure.newTemp(null);
+            block.instructions.add(new Move(argument, call.operand(i)));
+            if (isOnlyLoaded(callee, slot)) {
+                parameters.put(slot, argument);
+                if (call.operand(i) instanceof StackSlot variable) variables.put(argument, variable);
+            } else {
+                final StackSlot local = newLocal(procedure, callee, slot);
+                block.instructions.add(new Store(local, 0, argument));
+                cloner.map(slot, local);
+            }
+        }
+        for (StackSlot slot : callee.slots) {
+            if (slot.kind == StackSlot.Kind.LOCAL) cloner.map(slot, newLocal(procedure, callee, slot));
+        }
+        // Registers that are read before they are written anywhere still need a register of their own
+        for (Block calleeBlock : callee.blocks) {
+            for (Instruction instruction : calleeBlock.instructions) mapTemps(instruction, cloner, procedure);
+            mapTemps(calleeBlock.terminator, cloner, procedure);
+        }
+
+        final List<Block> copies = cloner.copy(callee.blocks, blockIndex + 1);
+        procedure.blocks.add(blockIndex + 1 + copies.size(), after);
+        block.terminator = new Jump(copies.get(0));
+        for (Block copy : copies) {
+            if (copy.terminator instanceof Return) copy.terminator = new Jump(after);
+            copy.instructions.replaceAll(instruction -> instruction instanceof Load load
+                    && load.base() instanceof StackSlot slot && parameters.containsKey(slot)
+                    ? new Move(load.result(), parameters.get(slot)) : instruction);
+        }
+        addressVariables(copies, variables);
+    }
+
+    /**
+     * Lets the copies access the caller's variables passed by reference through their slots, like the caller itself
+     * does, instead of through a register holding their address, which would have to be kept across calls.
+     */
+    private static void addressVariables(List<Block> copies, Map<Temp, StackSlot> variables) {
+        final Map<Temp, Integer> definitions = new HashMap<>();
+        final Map<Temp, StackSlot> addresses = new HashMap<>();
+        for (Block copy : copies) {
+            for (Instruction instruction : copy.instructions) {
+                if (instruction.result() != null) definitions.merge(instruction.result(), 1, Integer::sum);
+                if (instruction instanceof Move move && move.source() instanceof Temp source && variables.containsKey(source)) {
+                    addresses.put(move.result(), variables.get(source));
+                }
+            }
+        }
+        for (Map.Entry<Temp, StackSlot> address : addresses.entrySet()) {
+            if (definitions.get(address.getKey()) != 1) continue;
+            for (Block copy : copies) {
+                for (Instruction instruction : copy.instructions) instruction.replaceUses(address.getKey(), address.getValue());
+                copy.terminator.replaceUses(address.getKey(), address.getValue());
+            }
+        }
+    }
+
+    private static StackSlot newLocal(Procedure procedure, Procedure callee, StackSlot slot) {
+        final StackSlot local = new StackSlot(StackSlot.Kind.LOCAL, callee.name() + "." + slot.name, slot.size);
+        procedure.slots.add(local);
+        return local;
+    }
+
+    private static void mapTemps(Instruction instruction, BlockCloner cloner, Procedure procedure) {
+        final List<Operand> operands = new ArrayList<>(instruction.operands());
+        if (instruction.result() != null) operands.add(instruction.result());
+        for (Operand operand : operands) {
+            if (operand instanceof Temp temp && cloner.value(temp) == temp) cloner.map(temp, procedure.newTemp(temp.name));
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package de.thm.mni.compilerbau.phases._05b_middleend;
+
+import de.thm.mni.compilerbau.absyn.*;
+import de.thm.mni.compilerbau.absyn.visitor.DoNothingVisitor;
+import de.thm.mni.compilerbau.ir.*;
+import de.thm.mni.compilerbau.phases._04c_callgraph.CallGraph;
+import de.thm.mni.compilerbau.phases._05_varalloc.VarAllocator;
+import de.thm.mni.compilerbau.table.ParameterType;
+import de.thm.mni.compilerbau.table.ProcedureEntry;
+import de.thm.mni.compilerbau.table.VariableEntry;
+import de.thm.mni.compilerbau.types.ArrayType;
+import de.thm.mni.compilerbau.types.Type;
+
+import java.util.*;
+
+/**
+ * Translates the procedures of a semantically checked program into the intermediate representation.
+ * <p>
+ * Scalar local variables and value parameters are kept in virtual registers, unless their address is taken by
+ * passing them to a reference parameter. A value parameter kept in a register is loaded from its stack slot at the
+ * beginning of the procedure. All other variables live in {@link StackSlot}s; a reference parameter's slot holds the
+ * address of the variable, which is loaded on every access.
+ * <p>
+ * The virtual registers of variables are assigned wherever the variable is assigned, so the result is not in SSA
+ * form yet. Expressions are evaluated in the same order as by the {@link de.thm.mni.compilerbau.phases._06_codegen.CodeGenerator},
+ * and every array access is checked by a {@link BoundsCheck}.
+ * The stack layouts of phase 5 must have been calculated, as the offsets of the parameters are taken from them.
+ */
+public class IrGenerator extends DoNothingVisitor {
+    private final Procedure procedure;
+    private final Map<VariableEntry, Temp> registers = new IdentityHashMap<>();
+    private final Map<VariableEntry, StackSlot> slots = new IdentityHashMap<>();
+    private Block current;
+
+    // The result of the last visited expression or variable
+    private Operand value;
+    private Operand address;
+
+    private IrGenerator(Procedure procedure) {
+        this.procedure = procedure;
+    }
+
+    /**
+     * Translates all procedures that can be reached from 'main'.
+     *
+     * @param callGraph The call graph of the program.
+     * @return The procedures in source order.
+     */
+    public static List<Procedure> generate(CallGraph callGraph) {
+        final List<Procedure> procedures = new ArrayList<>();
+        for (ProcedureDefinition definition : callGraph.procedures()) {
+            if (callGraph.isReachable(definition)) procedures.add(generate(definition));
+        }
+        return procedures;
+    }
+
+    /**
+     * Translates a single procedure.
+     *
+     * @param definition The procedure, with the stack layout calculated in phase 5.
+     * @return The control flow graph of the procedure, with its blocks in reverse postorder.
+     */
+    public static Procedure generate(ProcedureDefinition definition) {
+        final Procedure procedure = new Procedure(definition);
+        new IrGenerator(procedure).translate(definition);
+        return procedure;
+    }
+
+    private void translate(ProcedureDefinition definition) {
+        final Set<VariableEntry> addressTaken = AddressTaken.collect(definition);
+        current = procedure.newBlock();
+
+        final ProcedureEntry entry = definition.entry;
+        for (int i = 0; i < definition.parameters.size(); i++) {
+            final ParameterDefinition parameter = definition.parameters.get(i);
+            final ParameterType parameterType = entry.parameterTypes.get(i);
+            final StackSlot slot = new StackSlot(StackSlot.Kind.PARAMETER, parameter.name.toString(),
+                    parameter.isReference ? VarAllocator.REFERENCE_BYTESIZE : parameterType.type.byteSize, parameter.isReference);
+            slot.offset = parameterType.offset;
+            procedure.slots.add(slot);
+
+            if (isScalar(parameter.entry) && !addressTaken.contains(parameter.entry)) {
+                final Temp register = procedure.newTemp(parameter.name.toString());
+                registers.put(parameter.entry, register);
+                emit(new Load(register, slot, 0));
+            } else {
+                slots.put(parameter.entry, slot);
+            }
+        }
+
+        for (VariableDefinition variable : definition.variables) {
+            if (isScalar(variable.entry) && !addressTaken.contains(variable.entry)) {
+                registers.put(variable.entry, procedure.newTemp(variable.name.toString()));
+            } else {
+                final StackSlot slot = new StackSlot(StackSlot.Kind.LOCAL, variable.name.toString(), variable.entry.type.byteSize);
+                procedure.slots.add(slot);
+                slots.put(variable.entry, slot);
+            }
+        }
+
+        for (Statement statement : definition.body) statement.accept(this);
+        current.terminator = new Return();
+
+        final List<Block> order = procedure.reversePostorder();
+        procedure.blocks.clear();
+        procedure.blocks.addAll(order);
+        procedure.updatePredecessors();
+    }
+
+    private static boolean isScalar(VariableEntry entry) {
+        return !entry.isReference && !(entry.type instanceof ArrayType);
+    }
+
+    /**
+     * @return The type of a variable, determined from the table entries instead of the types stored during the
+     * semantic analysis, which are missing in arguments for value parameters.
+     */
+    private static Type typeOf(Variable variable) {
+        return switch (variable) {
+            case NamedVariable namedVariable -> namedVariable.entry.type;
+            case ArrayAccess arrayAccess -> ((ArrayType) typeOf(arrayAccess.array)).baseType;
+        };
+    }
+
+    private void emit(Instruction instruction) {
+        current.instructions.add(instruction);
+    }
+
+    private Temp emitBinary(BinaryOp.Operator operator, Operand left, Operand right) {
+        final Temp result = procedure.newTemp(null);
+        emit(new BinaryOp(operator, result, left, right));
+        return result;
+    }
+
+    private Operand valueOf(Expression expression) {
+        expression.accept(this);
+        return value;
+    }
+
+    private Operand addressOf(Variable variable) {
+        variable.accept(this);
+        return address;
+    }
+
+    private void jumpTo(Block target) {
+        current.terminator = new Jump(target);
+        current = target;
+    }
+
+    private void branch(Expression condition, Block ifTrue, Block ifFalse) {
+        final BinaryExpression comparison = (BinaryExpression) condition;
+        final Operand left = valueOf(comparison.leftOperand);
+        final Operand right = valueOf(comparison.rightOperand);
+        final Branch.Condition branchCondition = switch (comparison.operator) {
+            case EQU -> Branch.Condition.EQ;
+            case NEQ -> Branch.Condition.NE;
+            case LST -> Branch.Condition.LT;
+            case LSE -> Branch.Condition.LE;
+            case GRT -> Branch.Condition.GT;
+            case GRE -> Branch.Condition.GE;
+            default -> throw new IllegalArgumentException("Not a comparison: " + comparison.operator);
+        };
+        current.terminator = new Branch(branchCondition, left, right, ifTrue, ifFalse);
+    }
+
+    @Override
+    public void visit(IntLiteral intLiteral) {
+        value = new Constant(intLiteral.value);
+    }
+
+    @Override
+    public void visit(VariableExpression variableExpression) {
+        if (variableExpression.variable instanceof NamedVariable namedVariable && registers.containsKey(namedVariable.entry)) {
+            value = registers.get(namedVariable.entry);
+        } else {
+            final Operand variableAddress = addressOf(variableExpression.variable);
+            final Temp result = procedure.newTemp(null);
+            emit(new Load(result, variableAddress, 0));
+            value = result;
+        }
+    }
+
+    @Override
+    public void visit(NamedVariable namedVariable) {
+        final StackSlot slot = slots.get(namedVariable.entry);
+        if (namedVariable.entry.isReference) {
+            final Temp pointer = procedure.newTemp(null);
+            emit(new Load(pointer, slot, 0));
+            address = pointer;
+        } else {
+            address = slot;
+        }
+    }
+
+    @Override
+    public void visit(ArrayAccess arrayAccess) {
+        final Operand array = addressOf(arrayAccess.array);
+        final Operand index = valueOf(arrayAccess.index);
+        final ArrayType type = (ArrayType) typeOf(arrayAccess.array);
+
+        emit(new BoundsCheck(index, new Constant(type.arraySize)));
+        final Temp offset = emitBinary(BinaryOp.Operator.MUL, index, new Constant(type.baseType.byteSize));
+        address = emitBinary(BinaryOp.Operator.ADD, array, offset);
+    }
+
+    @Override
+    public void visit(UnaryExpression unaryExpression) {
+        final Operand operand = valueOf(unaryExpression.operand);
+        value = operand instanceof Constant constant
+                ? new Constant(-constant.value())
+                : emitBinary(BinaryOp.Operator.SUB, Constant.ZERO, operand);
+    }
+
+    @Override
+    public void visit(BinaryExpression binaryExpression) {
+        final Operand left = valueOf(binaryExpression.leftOperand);
+        final Operand right = valueOf(binaryExpression.rightOperand);
+        value = emitBinary(switch (binaryExpression.operator) {
+            case ADD -> BinaryOp.Operator.ADD;
+            case SUB -> BinaryOp.Operator.SUB;
+            case MUL -> BinaryOp.Operator.MUL;
+            case DIV -> BinaryOp.Operator.DIV;
+            default -> throw new IllegalArgumentException("Not an arithmetic operator: " + binaryExpression.operator);
+        }, left, right);
+    }
+
+    @Override
+    public void visit(AssignStatement assignStatement) {
+        if (assignStatement.target instanceof NamedVariable namedVariable && registers.containsKey(namedVariable.entry)) {
+            emit(new Move(registers.get(namedVariable.entry), valueOf(assignStatement.value)));
+        } else {
+            final Operand target = addressOf(assignStatement.target);
+            emit(new Store(target, 0, valueOf(assignStatement.value)));
+        }
+    }
+
+    @Override
+    public void visit(CallStatement callStatement) {
+        final List<ParameterType> parameterTypes = callStatement.procedureEntry.parameterTypes;
+        final List<Operand> arguments = new ArrayList<>();
+        for (int i = 0; i < callStatement.arguments.size(); i++) {
+            final Expression argument = callStatement.arguments.get(i);
+            arguments.add(parameterTypes.get(i).isReference
+                    ? addressOf(((VariableExpression) argument).variable)
+                    : valueOf(argument));
+        }
+        emit(new Call(callStatement.procedureName, callStatement.procedureEntry, arguments));
+    }
+
+    @Override
+    public void visit(CompoundStatement compoundStatement) {
+        for (Statement statement : compoundStatement.statements) statement.accept(this);
+    }
+
+    @Override
+    public void visit(IfStatement ifStatement) {
+        final Block thenBlock = procedure.newBlock();
+        final Block elseBlock = procedure.newBlock();
+        final Block join = procedure.newBlock();
+
+        branch(ifStatement.condition, thenBlock, elseBlock);
+        current = thenBlock;
+        ifStatement.thenPart.accept(this);
+        current.terminator = new Jump(join);
+        current = elseBlock;
+        ifStatement.elsePart.accept(this);
+        jumpTo(join);
+    }
+
+    @Override
+    public void visit(WhileStatement whileStatement) {
+        final Block header = procedure.newBlock();
+        final Block body = procedure.newBlock();
+        final Block exit = procedure.newBlock();
+
+        jumpTo(header);
+        branch(whileStatement.condition, body, exit);
+        current = body;
+        whileStatement.body.accept(this);
+        current.terminator = new Jump(header);
+        current = exit;
+    }
+
+    /**
+     * Collects the scalar variables passed to reference parameters, whose address is needed.
+     */
+    private static class AddressTaken extends DoNothingVisitor {
+        private final Set<VariableEntry> entries = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        static Set<VariableEntry> collect(ProcedureDefinition definition) {
+            final AddressTaken visitor = new AddressTaken();
+            for (Statement statement : definition.body) statement.accept(visitor);
+            return visitor.entries;
+        }
+
+        @Override
+        public void visit(CallStatement callStatement) {
+            final List<ParameterType> parameterTypes = callStatement.procedureEntry.parameterTypes;
+            for (int i = 0; i < callStatement.arguments.size(); i++) {
+                if (parameterTypes.get(i).isReference
+                        && callStatement.arguments.get(i) instanceof VariableExpression argument
+                        && argument.variable instanceof NamedVariable namedVariable) {
+                    entries.add(namedVariable.entry);
+                }
+            }
+        }
+
+        @Override
+        public void visit(CompoundStatement compoundStatement) {
+            for (Statement statement : compoundStatement.statements) statement.accept(this);
+        }
+
+        @Override
+        public void visit(IfStatement ifStatement) {
+            ifStatement.thenPart.accept(this);
+            ifStatement.elsePart.accept(this);
+        }
+
+        @Override
+        public void visit(WhileStatement whileStatement) {
+            whileStatement.body.accept(this);
+        }
+    }
+}
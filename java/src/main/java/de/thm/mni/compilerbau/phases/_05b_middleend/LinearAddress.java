@@ -0,0 +1,127 @@
+package de.thm.mni.compilerbau.phases._05b_middleend;
+
+import de.thm.mni.compilerbau.ir.*;
+
+import java.util.*;
+
+/**
+ * An address of a procedure in SSA form that is a linear function of the induction variables of one or more
+ * {@link CountedLoop}s: base + coefficient * induction variable + offset, like the address of an array element
+ * indexed by the induction variable plus a constant.
+ * <p>
+ * The base is a register or stack slot whose value does not change in the loops. Two addresses with the same base
+ * object point into the same variable. The address held by a reference parameter is identified by the parameter's
+ * type: two variables of the same type are either the same variable or do not overlap at all, so comparing the
+ * addresses as if they had the same base finds every overlap.
+ */
+final class LinearAddress {
+    final Object base; // Identifies the variable the address points into
+    final Operand baseOperand; // The register or slot holding the base address
+    final int coefficient;
+    final int offset;
+
+    private LinearAddress(Object base, Operand baseOperand, int coefficient, int offset) {
+        this.base = base;
+        this.baseOperand = baseOperand;
+        this.coefficient = coefficient;
+        this.offset = offset;
+    }
+
+    /**
+     * Determines linear addresses by following the definitions of the registers they are computed in.
+     */
+    static class Resolver {
+        private final Procedure procedure;
+        private final Map<Temp, Instruction> definitions = new HashMap<>();
+        private final Map<Temp, Block> definitionBlocks = new HashMap<>();
+
+        Resolver(Procedure procedure) {
+            this.procedure = procedure;
+            for (Block block : procedure.blocks) {
+                for (Instruction instruction : block.instructions) {
+                    if (instruction.result() == null) continue;
+                    definitions.put(instruction.result(), instruction);
+                    definitionBlocks.put(instruction.result(), block);
+                }
+            }
+        }
+
+        /**
+         * @return The instruction defining a register, or null if it is not defined anywhere.
+         */
+        Instruction definition(Temp temp) {
+            return definitions.get(temp);
+        }
+
+        /**
+         * @return The block defining a register, or null if it is not defined anywhere.
+         */
+        Block definitionBlock(Temp temp) {
+            return definitionBlocks.get(temp);
+        }
+
+        /**
+         * @param address      The base operand of a load or store.
+         * @param displacement The displacement of the load or store.
+         * @param loops        The loops whose induction variables are treated as the same variable.
+         * @return The address accessed by the load or store, or null if it is not linear.
+         */
+        LinearAddress of(Operand address, int displacement, List<CountedLoop> loops) {
+            if (address instanceof Temp temp && definitions.get(temp) instanceof BinaryOp binary
+                    && binary.operator == BinaryOp.Operator.ADD) {
+                for (int i = 0; i < 2; i++) {
+                    final LinearAddress base = base(binary.operand(i), loops);
+                    final int[] index = linear(binary.operand(1 - i), loops);
+                    if (base != null && index != null) {
+                        return new LinearAddress(base.base, base.baseOperand, index[0], index[1] + displacement);
+                    }
+                }
+            }
+            final LinearAddress base = base(address, loops);
+            return base == null ? null : new LinearAddress(base.base, base.baseOperand, 0, displacement);
+        }
+
+        private LinearAddress base(Operand operand, List<CountedLoop> loops) {
+            return switch (operand) {
+                case StackSlot slot -> new LinearAddress(slot, slot, 0, 0);
+                case Constant ignored -> null;
+                case Temp temp -> {
+                    final Block block = definitionBlocks.get(temp);
+                    if (block == null || loops.stream().anyMatch(loop -> loop.loop.contains(block))) yield null;
+                    if (definitions.get(temp) instanceof Move move && move.source() instanceof StackSlot slot) {
+                        yield new LinearAddress(slot, temp, 0, 0);
+                    }
+                    if (definitions.get(temp) instanceof Load load && load.base() instanceof StackSlot slot
+                            && slot.isReference && load.displacement == 0) {
+                        final Object type = procedure.entry().parameterTypes.get(procedure.slots.indexOf(slot)).type;
+                        yield new LinearAddress(type, temp, 0, 0);
+                    }
+                    yield new LinearAddress(temp, temp, 0, 0);
+                }
+            };
+        }
+
+        /**
+         * @param loops The loops whose induction variables are treated as the same variable.
+         * @return The coefficient and the constant of the operand as a linear function of the induction variable, or
+         * null if it is not one.
+         */
+        int[] linear(Operand operand, List<CountedLoop> loops) {
+            if (operand instanceof Constant constant) return new int[]{0, constant.value()};
+            for (CountedLoop loop : loops) {
+                if (operand == loop.inductionVariable.result()) return new int[]{1, 0};
+            }
+            if (!(operand instanceof Temp temp) || !(definitions.get(temp) instanceof BinaryOp binary)) return null;
+            final int[] left = linear(binary.left(), loops);
+            final int[] right = linear(binary.right(), loops);
+            if (left == null || right == null) return null;
+            return switch (binary.operator) {
+                case ADD -> new int[]{left[0] + right[0], left[1] + right[1]};
+                case SUB -> new int[]{left[0] - right[0], left[1] - right[1]};
+                case MUL -> left[0] == 0 ? new int[]{left[1] * right[0], left[1] * right[1]}
+                        : right[0] == 0 ? new int[]{left[0] * right[1], left[1] * right[1]} : null;
+                case DIV -> null;
+            };
+        }
+    }
+}
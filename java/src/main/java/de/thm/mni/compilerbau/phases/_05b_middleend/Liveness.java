@@ -0,0 +1,100 @@
+package de.thm.mni.compilerbau.phases._05b_middleend;
+
+import de.thm.mni.compilerbau.ir.*;
+
+import java.util.*;
+
+/**
+ * The virtual registers live at the beginning and the end of every block, i.e. the registers whose current value
+ * may still be read on some path from that point.
+ * <p>
+ * The sets are calculated by exploring the paths backwards from every use until a definition of the register is
+ * reached, so the work and the memory needed are proportional to the size of the live ranges, not to the number of
+ * blocks times the number of registers. An operand of a phi is live at the end of the predecessor it flows in from,
+ * while the phi's result is defined at the beginning of its block.
+ */
+public class Liveness {
+    public static final Analysis<Liveness> ANALYSIS =
+            new Analysis<>("liveness", true, (procedure, analyses) -> compute(procedure));
+
+    private final Map<Block, Set<Integer>> liveIn = new IdentityHashMap<>();
+    private final Map<Block, Set<Integer>> liveOut = new IdentityHashMap<>();
+    private final Map<Block, Set<Integer>> definitions = new IdentityHashMap<>();
+    private final ArrayDeque<Block> worklist = new ArrayDeque<>();
+
+    private Liveness(Procedure procedure) {
+        for (Block block : procedure.blocks) {
+            liveIn.put(block, new HashSet<>());
+            liveOut.put(block, new HashSet<>());
+            final Set<Integer> definition = new HashSet<>();
+            for (Instruction instruction : block.instructions) {
+                if (instruction.result() != null) definition.add(instruction.result().number);
+            }
+            definitions.put(block, definition);
+        }
+
+        for (Block block : procedure.blocks) {
+            final Set<Integer> killed = new HashSet<>();
+            for (Instruction instruction : block.instructions) {
+                if (!(instruction instanceof Phi)) markUses(block, instruction, killed);
+                if (instruction.result() != null) killed.add(instruction.result().number);
+            }
+            markUses(block, block.terminator, killed);
+
+            for (Phi phi : block.phis()) {
+                for (Block predecessor : phi.blocks()) {
+                    if (phi.incoming(predecessor) instanceof Temp temp) markLiveOut(predecessor, temp.number);
+                }
+            }
+        }
+
+        for (Block block : procedure.blocks) {
+            for (Phi phi : block.phis()) liveIn.get(block).add(phi.result().number);
+        }
+    }
+
+    private void markUses(Block block, Instruction instruction, Set<Integer> killed) {
+        for (Operand operand : instruction.operands()) {
+            if (operand instanceof Temp temp && !killed.contains(temp.number)) markLiveIn(block, temp.number);
+        }
+    }
+
+    private void markLiveOut(Block block, int temp) {
+        if (!liveOut.get(block).add(temp)) return;
+        if (!definitions.get(block).contains(temp)) markLiveIn(block, temp);
+    }
+
+    private void markLiveIn(Block block, int temp) {
+        if (!liveIn.get(block).add(temp)) return;
+        worklist.add(block);
+        while (!worklist.isEmpty()) {
+            for (Block predecessor : worklist.poll().predecessors) {
+                if (liveOut.get(predecessor).add(temp) && !definitions.get(predecessor).contains(temp)
+                        && liveIn.get(predecessor).add(temp)) {
+                    worklist.add(predecessor);
+                }
+            }
+        }
+    }
+
+    /**
+     * Calculates the live registers of a procedure. The predecessors of its blocks must be up to date.
+     */
+    public static Liveness compute(Procedure procedure) {
+        return new Liveness(procedure);
+    }
+
+    /**
+     * @return The numbers of the registers live at the beginning of the block, including the results of its phis.
+     */
+    public Set<Integer> liveIn(Block block) {
+        return Collections.unmodifiableSet(liveIn.get(block));
+    }
+
+    /**
+     * @return The numbers of the registers live at the end of the block, including the phi operands flowing out of it.
+     */
+    public Set<Integer> liveOut(Block block) {
+        return Collections.unmodifiableSet(liveOut.get(block));
+    }
+}
@@ -0,0 +1,207 @@
+package de.thm.mni.compilerbau.phases._05b_middleend;
+
+import de.thm.mni.compilerbau.ir.*;
+
+import java.util.*;
+
+/**
+ * Merges two adjacent {@link CountedLoop}s of a procedure in SSA form that run over the same values of their
+ * induction variables into one loop, whose body consists of the body of the first loop followed by the body of the
+ * second one. This saves the test, the branch and the increment of the second loop.
+ * <p>
+ * The loops are adjacent if the first one is left into the preheader of the second one. The instructions in between
+ * are moved in front of the first loop, so they must neither depend on the first loop nor have side effects. The
+ * second loop must not use any value computed by the first loop, and neither loop may contain a call, since the
+ * order of the calls would change.
+ * <p>
+ * In the fused loop, the iteration of the second loop for a value of the induction variable is executed before the
+ * iterations of the first loop for the values that follow. This is only wrong if the second loop accesses an array
+ * element that the first loop accesses in such a later iteration, and one of them writes it. Two accesses to the same
+ * array are compared as {@link LinearAddress}es; accesses to memory that can not overlap, according to their
+ * {@link MemoryRegion}s, never conflict.
+ */
+public class LoopFusion {
+    private final Procedure procedure;
+    private final Analyses analyses;
+    private LinearAddress.Resolver addresses;
+    private MemoryRegion.Resolver regions;
+
+    private LoopFusion(Procedure procedure, Analyses analyses) {
+        this.procedure = procedure;
+        this.analyses = analyses;
+    }
+
+    /**
+     * Fuses the adjacent loops of a procedure in SSA form.
+     *
+     * @return Whether the procedure was changed.
+     */
+    public static boolean run(Procedure procedure, Analyses analyses) {
+        final LoopFusion fusion = new LoopFusion(procedure, analyses);
+        boolean changed = false;
+        while (fusion.fuseAny()) {
+            analyses.invalidate(false);
+            changed = true;
+        }
+        return changed;
+    }
+
+    /**
+     * Fuses the first pair of adjacent loops that can be fused.
+     */
+    private boolean fuseAny() {
+        final LoopNesting nesting = analyses.get(LoopNesting.ANALYSIS);
+        if (nesting.loops().size() < 2) return false;
+        if (Preheaders.insert(procedure, nesting)) {
+            analyses.invalidate(false);
+            return true;
+        }
+
+        addresses = new LinearAddress.Resolver(procedure);
+        regions = new MemoryRegion.Resolver(procedure);
+
+        final Map<Block, CountedLoop> byPreheader = new IdentityHashMap<>();
+        for (LoopNesting.Loop loop : nesting.loops()) {
+            final CountedLoop counted = CountedLoop.of(loop, Preheaders.of(loop));
+            if (counted != null) byPreheader.put(counted.preheader, counted);
+        }
+        for (CountedLoop first : byPreheader.values()) {
+            final CountedLoop second = byPreheader.get(first.exit);
+            if (second != null && canFuse(first, second)) {
+                fuse(first, second);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean canFuse(CountedLoop first, CountedLoop second) {
+        final Block between = second.preheader;
+        if (between.predecessors.size() != 1 || first.loop.parent() != second.loop.parent()) return false;
+        if (first.step != second.step || !first.initial.equals(second.initial)) return false;
+        if (first.tripCount >= 0 ? first.tripCount != second.tripCount : !sameTest(first, second)) return false;
+        for (CountedLoop loop : List.of(first, second)) {
+            if (loop.body == loop.loop.header) return false;
+            if (loop.loop.header.instructions.size() != loop.loop.header.phis().size()) return false;
+        }
+
+        final List<Instruction> firstAccesses = accesses(first);
+        final List<Instruction> secondAccesses = accesses(second);
+        if (firstAccesses == null || secondAccesses == null) return false;
+
+        for (Instruction instruction : between.instructions) {
+            if (instruction instanceof Phi || instruction.hasSideEffects() || usesValueOf(instruction, first)) return false;
+            if (instruction instanceof Load load && firstAccesses.stream()
+                    .anyMatch(access -> access instanceof Store store && mayOverlap(store.base(), load.base()))) {
+                return false;
+            }
+        }
+        for (Block block : second.loop.blocks) {
+            for (Instruction instruction : block.instructions) {
+                if (usesValueOf(instruction, first)) return false;
+            }
+            if (usesValueOf(block.terminator, first)) return false;
+        }
+
+        for (Instruction x : firstAccesses) {
+            for (Instruction y : secondAccesses) {
+                if (!(x instanceof Store) && !(y instanceof Store)) continue;
+                if (conflict(x, y, first, second)) return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean sameTest(CountedLoop first, CountedLoop second) {
+        return first.continueCondition() == second.continueCondition() && first.bound.equals(second.bound);
+    }
+
+    /**
+     * @return The loads and stores of the loop, or null if it contains a call.
+     */
+    private static List<Instruction> accesses(CountedLoop loop) {
+        final List<Instruction> accesses = new ArrayList<>();
+        for (Block block : loop.loop.blocks) {
+            for (Instruction instruction : block.instructions) {
+                if (instruction instanceof Call) return null;
+                if (instruction instanceof Load || instruction instanceof Store) accesses.add(instruction);
+            }
+        }
+        return accesses;
+    }
+
+    private boolean usesValueOf(Instruction instruction, CountedLoop loop) {
+        for (Operand operand : instruction.operands()) {
+            if (operand instanceof Temp temp && addresses.definitionBlock(temp) != null
+                    && loop.loop.contains(addresses.definitionBlock(temp))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean mayOverlap(Operand x, Operand y) {
+        return regions.regionOf(x).mayAlias(regions.regionOf(y));
+    }
+
+    /**
+     * @return Whether the access of the second loop may touch memory that the access of the first loop touches in a
+     * later iteration.
+     */
+    private boolean conflict(Instruction x, Instruction y, CountedLoop first, CountedLoop second) {
+        final Operand xBase = x instanceof Load load ? load.base() : ((Store) x).base();
+        final Operand yBase = y instanceof Load load ? load.base() : ((Store) y).base();
+        if (!mayOverlap(xBase, yBase)) return false;
+
+        final LinearAddress a = addresses.of(xBase, displacement(x), List.of(first, second));
+        final LinearAddress b = addresses.of(yBase, displacement(y), List.of(first, second));
+        if (a == null || b == null || !a.base.equals(b.base) || a.coefficient != b.coefficient) return true;
+        if (a.coefficient == 0) return a.offset == b.offset;
+        final int difference = b.offset - a.offset;
+        if (difference % a.coefficient != 0) return false;
+        // The value of the induction variable in the first loop minus the one in the second loop
+        final int distance = difference / a.coefficient;
+        return distance != 0 && (distance > 0) == (first.step > 0);
+    }
+
+    private static int displacement(Instruction access) {
+        return access instanceof Load load ? load.displacement : ((Store) access).displacement;
+    }
+
+    /**
+     * Appends the body of the second loop to the body of the first loop and moves the phis of the second header into
+     * the first one.
+     */
+    private void fuse(CountedLoop first, CountedLoop second) {
+        final Block header = first.loop.header;
+        final Block between = second.preheader;
+
+        first.preheader.instructions.addAll(between.instructions);
+        between.instructions.clear();
+
+        final Temp variable = first.inductionVariable.result();
+        final Temp replaced = second.inductionVariable.result();
+        for (Block block : procedure.blocks) {
+            for (Instruction instruction : block.instructions) instruction.replaceUses(replaced, variable);
+            block.terminator.replaceUses(replaced, variable);
+        }
+
+        for (Phi phi : header.phis()) phi.replaceBlock(first.latch, second.latch);
+        final List<Instruction> phis = new ArrayList<>();
+        for (Phi phi : second.loop.header.phis()) {
+            if (phi == second.inductionVariable) continue;
+            phi.replaceBlock(between, first.preheader);
+            phis.add(phi);
+        }
+        header.instructions.addAll(header.phis().size(), phis);
+
+        first.latch.terminator.replaceSuccessor(header, second.body);
+        second.latch.terminator.replaceSuccessor(second.loop.header, header);
+        first.test.replaceSuccessor(between, second.exit);
+        for (Phi phi : second.exit.phis()) phi.replaceBlock(second.loop.header, header);
+
+        procedure.blocks.remove(between);
+        procedure.blocks.remove(second.loop.header);
+        procedure.updatePredecessors();
+    }
+}
@@ -0,0 +1,137 @@
+package de.thm.mni.compilerbau.phases._05b_middleend;
+
+import de.thm.mni.compilerbau.ir.*;
+
+import java.util.*;
+
+/**
+ * Moves computations whose result is the same in every iteration of a loop into the loop's preheader, a block that
+ * is executed once before the loop is entered. Works on a procedure in SSA form, innermost loops first, so an
+ * instruction can be moved out of several loops.
+ * <p>
+ * An instruction is invariant if all its operands are constants, stack slots, or registers defined outside the loop
+ * or by invariant instructions. Arithmetic that can not trap is moved, even if it is executed only on some paths
+ * through the loop. A load is moved if no store or call in the loop may write its {@link MemoryRegion} (the
+ * {@link de.thm.mni.compilerbau.phases._04c_callgraph.ModRefAnalysis} tells which reference parameters a callee
+ * writes) and if its address is valid even when the loop is not executed: the address held by a reference parameter,
+ * a variable reached through such an address, or a part of a stack slot.
+ * <p>
+ * Finally, the address of a stack slot used as operand of a computation in the loop is calculated once in the
+ * preheader, instead of in every iteration by the code generator.
+ */
+public class LoopInvariantCodeMotion {
+    private final Procedure procedure;
+    private final Analyses analyses;
+    private final Map<Temp, Block> definitionBlocks = new HashMap<>();
+    private MemoryRegion.Resolver regions;
+    private boolean changed = false;
+
+    private LoopInvariantCodeMotion(Procedure procedure, Analyses analyses) {
+        this.procedure = procedure;
+        this.analyses = analyses;
+    }
+
+    /**
+     * Moves the loop invariant computations of a procedure in SSA form.
+     *
+     * @return Whether the procedure was changed.
+     */
+    public static boolean run(Procedure procedure, Analyses analyses) {
+        return new LoopInvariantCodeMotion(procedure, analyses).hoist();
+    }
+
+    private boolean hoist() {
+        if (analyses.get(LoopNesting.ANALYSIS).loops().isEmpty()) return false;
+        if (Preheaders.insert(procedure, analyses.get(LoopNesting.ANALYSIS))) {
+            analyses.invalidate(false);
+            changed = true;
+        }
+
+        for (Block block : procedure.blocks) {
+            for (Instruction instruction : block.instructions) {
+                if (instruction.result() != null) definitionBlocks.put(instruction.result(), block);
+            }
+        }
+        regions = new MemoryRegion.Resolver(procedure);
+
+        for (LoopNesting.Loop loop : analyses.get(LoopNesting.ANALYSIS).innermostFirst()) {
+            hoist(loop, Preheaders.of(loop));
+        }
+        return changed;
+    }
+
+    private void hoist(LoopNesting.Loop loop, Block preheader) {
+        final List<MemoryRegion> written = new ArrayList<>();
+        for (Block block : loop.blocks) {
+            for (Instruction instruction : block.instructions) {
+                if (instruction instanceof Store store) written.add(regions.regionOf(store.base()));
+                if (instruction instanceof Call call) written.addAll(regions.writtenBy(call));
+            }
+        }
+
+        final Set<Temp> invariant = new HashSet<>();
+        for (Block block : loop.blocks) {
+            final Iterator<Instruction> iterator = block.instructions.iterator();
+            while (iterator.hasNext()) {
+                final Instruction instruction = iterator.next();
+                if (!isInvariant(instruction, loop, invariant, written)) continue;
+                iterator.remove();
+                preheader.instructions.add(instruction);
+                definitionBlocks.put(instruction.result(), preheader);
+                invariant.add(instruction.result());
+                changed = true;
+            }
+        }
+
+        final Map<StackSlot, Temp> addresses = new HashMap<>();
+        for (Block block : loop.blocks) {
+            for (Instruction instruction : block.instructions) {
+                if (!(instruction instanceof BinaryOp)) continue;
+                for (int i = 0; i < instruction.operands().size(); i++) {
+                    if (!(instruction.operand(i) instanceof StackSlot slot)) continue;
+                    final Temp address = addresses.computeIfAbsent(slot, s -> {
+                        final Temp temp = procedure.newTemp(s.name + ".address");
+                        preheader.instructions.add(new Move(temp, s));
+                        definitionBlocks.put(temp, preheader);
+                        return temp;
+                    });
+                    instruction.setOperand(i, address);
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    private boolean isInvariant(Operand operand, LoopNesting.Loop loop, Set<Temp> invariant) {
+        return switch (operand) {
+            case Constant ignored -> true;
+            case StackSlot ignored -> true;
+            case Temp temp -> invariant.contains(temp)
+                    || definitionBlocks.containsKey(temp) && !loop.contains(definitionBlocks.get(temp));
+        };
+    }
+
+    private boolean isInvariant(Instruction instruction, LoopNesting.Loop loop, Set<Temp> invariant, List<MemoryRegion> written) {
+        if (!(instruction instanceof BinaryOp || instruction instanceof Move || instruction instanceof Load)) return false;
+        if (instruction.hasSideEffects()) return false;
+        for (Operand operand : instruction.operands()) {
+            if (!isInvariant(operand, loop, invariant)) return false;
+        }
+        if (instruction instanceof Load load) {
+            if (!isAlwaysValid(load)) return false;
+            final MemoryRegion region = regions.regionOf(load.base());
+            return written.stream().noneMatch(region::mayAlias);
+        }
+        return true;
+    }
+
+    /**
+     * @return Whether the load reads a valid address, even if it is executed before the checks in the loop.
+     */
+    private boolean isAlwaysValid(Load load) {
+        if (load.base() instanceof StackSlot slot) {
+            return load.displacement >= 0 && load.displacement + 4 <= slot.size;
+        }
+        return load.displacement == 0 && regions.isReferenceAddress(load.base());
+    }
+}
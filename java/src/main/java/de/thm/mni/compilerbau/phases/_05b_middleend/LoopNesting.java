@@ -0,0 +1,170 @@
+package de.thm.mni.compilerbau.phases._05b_middleend;
+
+import de.thm.mni.compilerbau.ir.Block;
+
+import java.util.*;
+
+/**
+ * The natural loops of a procedure and how they are nested.
+ * <p>
+ * An edge from a block to a block dominating it is a back edge. The loop of a header consists of the header and all
+ * blocks that can reach one of its back edges without passing the header. Two loops are either disjoint or one
+ * contains the other, since the control flow graphs of SPL programs are reducible.
+ */
+public class LoopNesting {
+    public static final Analysis<LoopNesting> ANALYSIS =
+            new Analysis<>("loop nesting", false, (procedure, analyses) -> compute(analyses.get(Dominators.ANALYSIS)));
+
+    /**
+     * A natural loop.
+     */
+    public static class Loop {
+        public final Block header;
+        public final List<Block> latches = new ArrayList<>(); // The sources of the back edges
+        public final List<Block> blocks = new ArrayList<>(); // In reverse postorder, the header first
+        private final Set<Block> members = Collections.newSetFromMap(new IdentityHashMap<>());
+        private Loop parent = null;
+        private final List<Loop> children = new ArrayList<>();
+        private int depth = 1;
+
+        private Loop(Block header) {
+            this.header = header;
+        }
+
+        public boolean contains(Block block) {
+            return members.contains(block);
+        }
+
+        /**
+         * @return The innermost loop containing this loop, or null for an outermost loop.
+         */
+        public Loop parent() {
+            return parent;
+        }
+
+        /**
+         * @return The loops immediately nested in this loop.
+         */
+        public List<Loop> children() {
+            return Collections.unmodifiableList(children);
+        }
+
+        /**
+         * @return The number of loops containing this loop, including itself.
+         */
+        public int depth() {
+            return depth;
+        }
+
+        /**
+         * @return The predecessors of the header outside the loop.
+         */
+        public List<Block> entries() {
+            return header.predecessors.stream().filter(block -> !contains(block)).toList();
+        }
+
+        /**
+         * @return The blocks outside the loop that are successors of blocks in the loop, without duplicates.
+         */
+        public List<Block> exits() {
+            final Set<Block> exits = Collections.newSetFromMap(new IdentityHashMap<>());
+            final List<Block> result = new ArrayList<>();
+            for (Block block : blocks) {
+                for (Block successor : block.successors()) {
+                    if (!contains(successor) && exits.add(successor)) result.add(successor);
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return "loop " + header;
+        }
+    }
+
+    private final List<Loop> loops = new ArrayList<>(); // Every loop after the loops containing it
+    private final Map<Block, Loop> innermost = new IdentityHashMap<>();
+
+    private LoopNesting(Dominators dominators) {
+        final List<Block> order = dominators.reversePostorder();
+        final Map<Block, Integer> index = new IdentityHashMap<>();
+        for (int i = 0; i < order.size(); i++) index.put(order.get(i), i);
+
+        for (Block header : order) {
+            Loop loop = null;
+            for (Block predecessor : header.predecessors) {
+                if (!dominators.isReachable(predecessor) || !dominators.dominates(header, predecessor)) continue;
+                if (loop == null) loop = new Loop(header);
+                loop.latches.add(predecessor);
+            }
+            if (loop == null) continue;
+
+            loop.members.add(header);
+            final ArrayDeque<Block> worklist = new ArrayDeque<>();
+            for (Block latch : loop.latches) {
+                if (loop.members.add(latch)) worklist.add(latch);
+            }
+            while (!worklist.isEmpty()) {
+                for (Block predecessor : worklist.poll().predecessors) {
+                    if (dominators.isReachable(predecessor) && loop.members.add(predecessor)) worklist.add(predecessor);
+                }
+            }
+            loop.blocks.addAll(loop.members);
+            loop.blocks.sort(Comparator.comparingInt(index::get));
+            loops.add(loop);
+        }
+
+        // A loop containing another one is larger, so it is processed first and then overridden as innermost loop
+        loops.sort(Comparator.comparingInt((Loop loop) -> loop.blocks.size()).reversed());
+        for (Loop loop : loops) {
+            final Loop parent = innermost.get(loop.header);
+            if (parent != null) {
+                loop.parent = parent;
+                loop.depth = parent.depth + 1;
+                parent.children.add(loop);
+            }
+            for (Block block : loop.blocks) innermost.put(block, loop);
+        }
+    }
+
+    /**
+     * Finds the loops of a procedure.
+     *
+     * @param dominators The dominators of the procedure.
+     */
+    public static LoopNesting compute(Dominators dominators) {
+        return new LoopNesting(dominators);
+    }
+
+    /**
+     * @return All loops, every loop after the loops containing it.
+     */
+    public List<Loop> loops() {
+        return Collections.unmodifiableList(loops);
+    }
+
+    /**
+     * @return All loops, every loop before the loops containing it.
+     */
+    public List<Loop> innermostFirst() {
+        final List<Loop> result = new ArrayList<>(loops);
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * @return The innermost loop containing the block, or null if it is not part of a loop.
+     */
+    public Loop loopOf(Block block) {
+        return innermost.get(block);
+    }
+
+    /**
+     * @return The number of loops containing the block.
+     */
+    public int depth(Block block) {
+        final Loop loop = innermost.get(block);
+        return loop == null ? 0 : loop.depth;
+    }
+}
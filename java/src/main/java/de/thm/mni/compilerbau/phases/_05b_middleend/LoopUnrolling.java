@@ -0,0 +1,200 @@
+package de.thm.mni.compilerbau.phases._05b_middleend;
+
+import de.thm.mni.compilerbau.ir.*;
+
+import java.util.*;
+
+/**
+ * Unrolls the innermost {@link CountedLoop}s of a procedure in SSA form whose number of iterations is known at
+ * compile time, to save the test, the branch and the increment of most iterations and to let the constant
+ * propagation fold the index computations and bounds checks of the copies.
+ * <p>
+ * A loop is unrolled fully if the copies of all its iterations fit into the code size budget, which is given in
+ * instructions. Otherwise it is unrolled partially: a new loop executing up to {@link #MAX_FACTOR} copies of the body
+ * per iteration runs as long as complete groups of iterations are left, and the original loop runs the remaining
+ * iterations. The unroll factor is chosen as the largest one within the budget that divides the number of
+ * iterations, so the remainder loop is not executed at all where possible.
+ */
+public class LoopUnrolling {
+    private static final int MAX_FACTOR = 8;
+
+    private final Procedure procedure;
+    private final int budget;
+
+    private LoopUnrolling(Procedure procedure, int budget) {
+        this.procedure = procedure;
+        this.budget = budget;
+    }
+
+    /**
+     * Unrolls the loops of a procedure in SSA form.
+     *
+     * @param budget The number of instructions a loop may grow by.
+     * @return Whether the procedure was changed.
+     */
+    public static boolean run(Procedure procedure, Analyses analyses, int budget) {
+        if (analyses.get(LoopNesting.ANALYSIS).loops().isEmpty()) return false;
+        boolean changed = Preheaders.insert(procedure, analyses.get(LoopNesting.ANALYSIS));
+        if (changed) analyses.invalidate(false);
+
+        final LoopUnrolling unrolling = new LoopUnrolling(procedure, budget);
+        final List<CountedLoop> loops = new ArrayList<>();
+        for (LoopNesting.Loop loop : analyses.get(LoopNesting.ANALYSIS).innermostFirst()) {
+            if (!loop.children().isEmpty()) continue;
+            final CountedLoop counted = CountedLoop.of(loop, Preheaders.of(loop));
+            if (counted != null && counted.tripCount >= 0) loops.add(counted);
+        }
+
+        for (CountedLoop loop : loops) changed |= unrolling.unroll(loop);
+        procedure.updatePredecessors();
+        return changed;
+    }
+
+    /**
+     * @return Whether the loop is unrolled fully within the budget.
+     */
+    static boolean unrollsFully(CountedLoop loop, int budget) {
+        return loop.tripCount >= 0 && loop.loop.children().isEmpty() && (long) loop.tripCount * loop.size() <= budget;
+    }
+
+    private boolean unroll(CountedLoop loop) {
+        final int size = loop.size();
+        if (unrollsFully(loop, budget)) {
+            unrollFully(loop);
+            return true;
+        }
+
+        int factor = Math.min(Math.min(MAX_FACTOR, budget / size), loop.tripCount / 2);
+        if (factor < 2) return false;
+        for (int divisor = factor; divisor >= 2; divisor--) {
+            if (loop.tripCount % divisor == 0) {
+                factor = divisor;
+                break;
+            }
+        }
+        unrollPartially(loop, factor);
+        return true;
+    }
+
+    /**
+     * Replaces the loop by a copy of its blocks for every iteration, followed by a copy of the header that performs
+     * the final test and leaves the loop.
+     */
+    private void unrollFully(CountedLoop loop) {
+        final Block header = loop.loop.header;
+        final List<Phi> phis = header.phis();
+        int position = procedure.blocks.indexOf(header);
+
+        List<Operand> values = phis.stream().map(phi -> phi.incoming(loop.preheader)).toList();
+        Block previous = loop.preheader;
+        Block previousHeader = header;
+        for (int i = 0; i < loop.tripCount; i++) {
+            final BlockCloner cloner = iteration(phis, values);
+            final List<Block> copies = cloner.copy(loop.loop.blocks, position);
+            position += copies.size();
+
+            final Block copy = cloner.block(header);
+            copy.terminator = new Jump(cloner.block(loop.body));
+            previous.terminator.replaceSuccessor(previousHeader, copy);
+            previous = cloner.block(loop.latch);
+            previousHeader = copy;
+            values = phis.stream().map(phi -> cloner.value(phi.incoming(loop.latch))).toList();
+        }
+
+        previous.terminator.replaceSuccessor(previousHeader, leave(loop, values, position));
+    }
+
+    /**
+     * Replaces the loop by a copy of its header that performs the final test and leaves the loop.
+     *
+     * @param values The values of the header's phis after the last iteration.
+     * @return The copy of the header.
+     */
+    private Block leave(CountedLoop loop, List<Operand> values, int position) {
+        final Block header = loop.loop.header;
+        final BlockCloner cloner = iteration(header.phis(), values);
+        final Block last = cloner.copy(List.of(header), position).get(0);
+        last.terminator = new Jump(loop.exit);
+        for (Phi phi : loop.exit.phis()) phi.replaceBlock(header, last);
+
+        // Only the values of the header are available after the loop
+        procedure.blocks.removeAll(loop.loop.blocks);
+        for (Block block : procedure.blocks) {
+            for (Instruction instruction : block.instructions) replaceHeaderValues(instruction, header, cloner);
+            replaceHeaderValues(block.terminator, header, cloner);
+        }
+        return last;
+    }
+
+    private static void replaceHeaderValues(Instruction instruction, Block header, BlockCloner cloner) {
+        for (Instruction definition : header.instructions) {
+            if (definition.result() != null) instruction.replaceUses(definition.result(), cloner.value(definition.result()));
+        }
+    }
+
+    /**
+     * Inserts a loop in front of the original one, whose body consists of several copies of the original body. Its
+     * header checks whether the induction variable has reached the value it has after the last complete group of
+     * iterations and then passes the values of its phis on to the original loop, unless no iterations remain.
+     */
+    private void unrollPartially(CountedLoop loop, int factor) {
+        final Block header = loop.loop.header;
+        final List<Phi> phis = header.phis();
+        int position = procedure.blocks.indexOf(header);
+
+        final Block unrolledHeader = procedure.newBlock();
+        procedure.blocks.remove(unrolledHeader);
+        procedure.blocks.add(position++, unrolledHeader);
+        final List<Operand> initial = new ArrayList<>();
+        for (Phi phi : phis) {
+            final Phi unrolled = new Phi(procedure.newTemp(phi.result().name));
+            unrolled.setIncoming(loop.preheader, phi.incoming(loop.preheader));
+            unrolledHeader.instructions.add(unrolled);
+            initial.add(unrolled.result());
+        }
+
+        List<Operand> values = initial;
+        Block first = null;
+        Block previous = null;
+        Block previousHeader = null;
+        for (int i = 0; i < factor; i++) {
+            final BlockCloner cloner = iteration(phis, values);
+            final List<Block> copies = cloner.copy(loop.loop.blocks, position);
+            position += copies.size();
+
+            final Block copy = cloner.block(header);
+            copy.terminator = new Jump(cloner.block(loop.body));
+            if (previous == null) first = copy;
+            else previous.terminator.replaceSuccessor(previousHeader, copy);
+            previous = cloner.block(loop.latch);
+            previousHeader = copy;
+            values = phis.stream().map(phi -> cloner.value(phi.incoming(loop.latch))).toList();
+        }
+        previous.terminator.replaceSuccessor(previousHeader, unrolledHeader);
+        for (int i = 0; i < phis.size(); i++) ((Phi) unrolledHeader.instructions.get(i)).setIncoming(previous, values.get(i));
+
+        final int groups = loop.tripCount / factor;
+        final int limit = ((Constant) loop.initial).value() + groups * factor * loop.step;
+        final Operand variable = initial.get(phis.indexOf(loop.inductionVariable));
+        unrolledHeader.terminator = new Branch(Branch.Condition.NE, variable, new Constant(limit), first, header);
+        loop.preheader.terminator.replaceSuccessor(header, unrolledHeader);
+        if (loop.tripCount % factor == 0) {
+            unrolledHeader.terminator.replaceSuccessor(header, leave(loop, initial, position));
+            return;
+        }
+
+        for (int i = 0; i < phis.size(); i++) {
+            phis.get(i).removeIncoming(loop.preheader);
+            phis.get(i).setIncoming(unrolledHeader, initial.get(i));
+        }
+    }
+
+    /**
+     * @return A cloner fixing the values of the header's phis for one iteration.
+     */
+    private BlockCloner iteration(List<Phi> phis, List<Operand> values) {
+        final BlockCloner cloner = new BlockCloner(procedure);
+        for (int i = 0; i < phis.size(); i++) cloner.map(phis.get(i).result(), values.get(i));
+        return cloner;
+    }
+}
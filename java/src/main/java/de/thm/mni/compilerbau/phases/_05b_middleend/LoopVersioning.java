@@ -0,0 +1,354 @@
+package de.thm.mni.compilerbau.phases._05b_middleend;
+
+import de.thm.mni.compilerbau.ir.*;
+
+import java.util.*;
+
+/**
+ * Gives the innermost {@link CountedLoop}s of a procedure in SSA form whose bounds checks could not be eliminated a
+ * copy without these checks, which runs instead of the original loop if a guard in front of the loops finds every
+ * index the checks could see within its array.
+ * <p>
+ * A check can be left out of the copy if its array size is a constant and its index is coefficient * induction
+ * variable + offset, optionally plus or minus a loop invariant register. The values of the induction variable lie
+ * between the initial value and the bound of the test, which may be registers, so the guard compares these values with
+ * constants computed from the coefficients, offsets and sizes of the checks. With a register in the index, the values
+ * of the induction variable must be constants, so the register is compared with constants instead. No arithmetic
+ * happens at runtime, so nothing can wrap around. The guard only says that every check would succeed, so a loop that
+ * is not entered at all may run either version, and if any index might be out of bounds, the original loop runs and
+ * stops with the index error at the same point as before.
+ * <p>
+ * Every copied loop adds its instructions to the code size of the procedure, which may grow by at most the budget
+ * given in instructions. Loops that the {@link LoopUnrolling} unrolls fully are left alone, since the checks of
+ * their copies are merged by the {@link BoundsCheckElimination} afterwards.
+ */
+public class LoopVersioning {
+    private static final int MAX_COEFFICIENT = 1 << 16;
+    private static final int MAX_OFFSET = 1 << 16;
+
+    /**
+     * An index of the form coefficient * induction variable + sign * invariant + offset, where the sign is 0 if there
+     * is no invariant register.
+     */
+    private record Index(long coefficient, Temp invariant, int sign, long offset) {
+        Index plus(Index other, int factor) {
+            if (invariant != null && other.invariant != null) return null;
+            return new Index(coefficient + factor * other.coefficient, invariant != null ? invariant : other.invariant,
+                    invariant != null ? sign : factor * other.sign, offset + factor * other.offset);
+        }
+    }
+
+    /**
+     * The checks of indices that only differ in their offset.
+     */
+    private record Group(long coefficient, Temp invariant, int sign, int size) {
+    }
+
+    /**
+     * The comparison of an operand with a constant, which the guard requires to hold.
+     */
+    private record Condition(Operand operand, Branch.Condition condition, long constant) {
+        /**
+         * @return The result of the comparison if the operand is a constant or the comparison holds for every or no
+         * value, otherwise null.
+         */
+        Boolean value() {
+            if (operand instanceof Constant value) {
+                return condition == Branch.Condition.GE ? value.value() >= constant : value.value() <= constant;
+            }
+            return switch (condition) {
+                case GE -> constant <= Integer.MIN_VALUE ? Boolean.TRUE : constant > Integer.MAX_VALUE ? Boolean.FALSE : null;
+                case LE -> constant >= Integer.MAX_VALUE ? Boolean.TRUE : constant < Integer.MIN_VALUE ? Boolean.FALSE : null;
+                default -> null;
+            };
+        }
+    }
+
+    /**
+     * A value of the induction variable: the operand plus a constant.
+     */
+    private record Value(Operand operand, int adjustment) {
+    }
+
+    private final Procedure procedure;
+    private final LinearAddress.Resolver addresses;
+    private int budget;
+    private final int unrollBudget;
+
+    private LoopVersioning(Procedure procedure, int budget, int unrollBudget) {
+        this.procedure = procedure;
+        this.addresses = new LinearAddress.Resolver(procedure);
+        this.budget = budget;
+        this.unrollBudget = unrollBudget;
+    }
+
+    /**
+     * Versions the loops of a procedure in SSA form.
+     *
+     * @param budget       The number of instructions the procedure may grow by.
+     * @param unrollBudget The budget of the loop unrolling.
+     * @return Whether the procedure was changed.
+     */
+    public static boolean run(Procedure procedure, Analyses analyses, int budget, int unrollBudget) {
+        if (analyses.get(LoopNesting.ANALYSIS).loops().isEmpty()) return false;
+        boolean changed = Preheaders.insert(procedure, analyses.get(LoopNesting.ANALYSIS));
+        if (changed) analyses.invalidate(false);
+
+        final LoopVersioning versioning = new LoopVersioning(procedure, budget, unrollBudget);
+        final List<CountedLoop> loops = new ArrayList<>();
+        for (LoopNesting.Loop loop : analyses.get(LoopNesting.ANALYSIS).innermostFirst()) {
+            if (!loop.children().isEmpty()) continue;
+            final CountedLoop counted = CountedLoop.of(loop, Preheaders.of(loop));
+            if (counted != null && counted.tripCount != 0) loops.add(counted);
+        }
+
+        for (CountedLoop loop : loops) changed |= versioning.version(loop);
+        procedure.updatePredecessors();
+        return changed;
+    }
+
+    private boolean version(CountedLoop loop) {
+        if (loop.size() > budget || LoopUnrolling.unrollsFully(loop, unrollBudget)) return false;
+        final Value first = first(loop);
+        final Value last = last(loop);
+        // Larger steps could let the induction variable wrap around before it passes the bound
+        if (first == null || last == null || Math.abs(loop.step) > MAX_COEFFICIENT) return false;
+
+        final Map<Group, List<BoundsCheck>> groups = new LinkedHashMap<>();
+        for (Block block : loop.loop.blocks) {
+            if (block == loop.loop.header) continue; // The header is executed once more than the other blocks
+            for (Instruction instruction : block.instructions) {
+                if (!(instruction instanceof BoundsCheck check) || !(check.size() instanceof Constant size)) continue;
+                final Index index = indexOf(check.index(), loop, 0);
+                if (index == null || size.value() <= 0) continue;
+                if (index.sign != 0 && index.coefficient != 0 && !(first.operand instanceof Constant
+                        && last.operand instanceof Constant)) {
+                    continue;
+                }
+                groups.computeIfAbsent(new Group(index.coefficient, index.invariant, index.sign, size.value()),
+                        group -> new ArrayList<>()).add(check);
+            }
+        }
+
+        final Set<Instruction> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Condition> guard = new ArrayList<>();
+        for (Map.Entry<Group, List<BoundsCheck>> group : groups.entrySet()) {
+            final long smallest = group.getValue().stream().mapToLong(check -> offsetOf(check, loop)).min().getAsLong();
+            final long largest = group.getValue().stream().mapToLong(check -> offsetOf(check, loop)).max().getAsLong();
+            final List<Condition> conditions = conditions(first, last, group.getKey(), smallest, largest);
+            if (conditions.stream().anyMatch(condition -> Boolean.FALSE.equals(condition.value()))) continue;
+            conditions.stream().filter(condition -> condition.value() == null).forEach(guard::add);
+            removed.addAll(group.getValue());
+        }
+        if (removed.isEmpty()) return false;
+        guard = strongest(guard);
+
+        budget -= loop.size();
+        copy(loop, guard, removed);
+        return true;
+    }
+
+    /**
+     * @return The smallest value the induction variable has in the body of the loop, or null if it is not known.
+     */
+    private static Value first(CountedLoop loop) {
+        if (loop.tripCount > 0) return new Value(new Constant(Math.min(first(loop, 0), first(loop, 1))), 0);
+        if (loop.step > 0) return new Value(loop.initial, 0);
+        return switch (loop.continueCondition()) {
+            case GT -> new Value(loop.bound, 1);
+            case GE -> new Value(loop.bound, 0);
+            default -> null;
+        };
+    }
+
+    /**
+     * @return The largest value the induction variable has in the body of the loop, or null if it is not known.
+     */
+    private static Value last(CountedLoop loop) {
+        if (loop.tripCount > 0) return new Value(new Constant(Math.max(first(loop, 0), first(loop, 1))), 0);
+        if (loop.step < 0) return new Value(loop.initial, 0);
+        return switch (loop.continueCondition()) {
+            case LT -> new Value(loop.bound, -1);
+            case LE -> new Value(loop.bound, 0);
+            default -> null;
+        };
+    }
+
+    /**
+     * @param end 0 for the first iteration and 1 for the last one.
+     * @return The value of the induction variable in the first or the last iteration of a loop whose number of
+     * iterations is known.
+     */
+    private static int first(CountedLoop loop, int end) {
+        return ((Constant) loop.initial).value() + end * (loop.tripCount - 1) * loop.step;
+    }
+
+    private long offsetOf(BoundsCheck check, CountedLoop loop) {
+        return indexOf(check.index(), loop, 0).offset;
+    }
+
+    /**
+     * @return The index as a linear function of the induction variable and an invariant register, or null if it is
+     * not one.
+     */
+    private Index indexOf(Operand operand, CountedLoop loop, int depth) {
+        if (operand instanceof Constant constant) return new Index(0, null, 0, constant.value());
+        if (operand == loop.inductionVariable.result()) return new Index(1, null, 0, 0);
+        if (!(operand instanceof Temp temp)) return null;
+        final Block block = addresses.definitionBlock(temp);
+        if (block == null || !loop.loop.contains(block)) return new Index(0, temp, 1, 0);
+        if (depth > 8 || !(addresses.definition(temp) instanceof BinaryOp binary)) return null;
+
+        final Index left = indexOf(binary.left(), loop, depth + 1);
+        final Index right = indexOf(binary.right(), loop, depth + 1);
+        if (left == null || right == null) return null;
+        final Index index = switch (binary.operator) {
+            case ADD -> left.plus(right, 1);
+            case SUB -> left.plus(right, -1);
+            case MUL -> right.invariant == null && right.coefficient == 0 ? scale(left, right.offset)
+                    : left.invariant == null && left.coefficient == 0 ? scale(right, left.offset) : null;
+            case DIV -> null;
+        };
+        if (index == null || Math.abs(index.coefficient) > MAX_COEFFICIENT || Math.abs(index.offset) > MAX_OFFSET) return null;
+        return index;
+    }
+
+    private static Index scale(Index index, long factor) {
+        if (index.invariant != null && factor != 1) return null;
+        return new Index(index.coefficient * factor, index.invariant, index.sign, index.offset * factor);
+    }
+
+    /**
+     * @return The conditions under which all checks of the group succeed.
+     */
+    private static List<Condition> conditions(Value first, Value last, Group group, long smallest,
+                                              long largest) {
+        final long a = group.coefficient;
+        final long highest = group.size - 1L;
+        if (group.sign == 0) {
+            if (a == 0) {
+                return List.of(new Condition(new Constant((int) smallest), Branch.Condition.GE, 0),
+                        new Condition(new Constant((int) largest), Branch.Condition.LE, highest));
+            }
+            if (a > 0) {
+                return List.of(atLeast(first, Math.ceilDiv(-smallest, a)), atMost(last, Math.floorDiv(highest - largest, a)));
+            }
+            return List.of(atMost(last, Math.floorDiv(smallest, -a)), atLeast(first, Math.ceilDiv(largest - highest, -a)));
+        }
+
+        // The smallest and the largest value of coefficient * induction variable
+        long low = 0;
+        long high = 0;
+        if (a != 0) {
+            final long x = ((Constant) first.operand).value() + first.adjustment;
+            final long y = ((Constant) last.operand).value() + last.adjustment;
+            low = Math.min(a * x, a * y);
+            high = Math.max(a * x, a * y);
+        }
+        final Value invariant = new Value(group.invariant, 0);
+        if (group.sign > 0) {
+            return List.of(atLeast(invariant, -low - smallest), atMost(invariant, highest - high - largest));
+        }
+        return List.of(atMost(invariant, low + smallest), atLeast(invariant, high + largest - highest));
+    }
+
+    /**
+     * @return The conditions, keeping only the strongest comparison of every operand in each direction.
+     */
+    private static List<Condition> strongest(List<Condition> conditions) {
+        final Map<List<Object>, Condition> strongest = new LinkedHashMap<>();
+        for (Condition condition : conditions) {
+            strongest.merge(List.of(condition.operand, condition.condition), condition, (x, y) ->
+                    (x.condition == Branch.Condition.GE) == (x.constant >= y.constant) ? x : y);
+        }
+        return new ArrayList<>(strongest.values());
+    }
+
+    private static Condition atLeast(Value value, long constant) {
+        return new Condition(value.operand, Branch.Condition.GE, constant - value.adjustment);
+    }
+
+    private static Condition atMost(Value value, long constant) {
+        return new Condition(value.operand, Branch.Condition.LE, constant - value.adjustment);
+    }
+
+    /**
+     * Inserts a copy of the loop without the removed checks in front of it, and the guard choosing between them
+     * into the preheader. Both loops are left into a new block merging the values of their headers.
+     */
+    private void copy(CountedLoop loop, List<Condition> guard, Set<Instruction> removed) {
+        final Block header = loop.loop.header;
+        final List<Block> blocks = loop.loop.blocks;
+        int position = procedure.blocks.indexOf(header);
+
+        final BlockCloner cloner = new BlockCloner(procedure);
+        final List<Block> copies = cloner.copy(blocks, position);
+        position += copies.size();
+        for (int i = 0; i < blocks.size(); i++) {
+            final List<Instruction> instructions = blocks.get(i).instructions;
+            final List<Instruction> copied = copies.get(i).instructions;
+            for (int j = instructions.size() - 1; j >= 0; j--) {
+                if (removed.contains(instructions.get(j))) copied.remove(j);
+            }
+        }
+
+        // The guard, branching to the copy or to the original loop
+        final Block slow = newBlock(position++);
+        slow.terminator = new Jump(header);
+        for (Phi phi : header.phis()) phi.replaceBlock(loop.preheader, slow);
+        final Block fast = newBlock(procedure.blocks.indexOf(copies.get(0)));
+        fast.terminator = new Jump(cloner.block(header));
+        for (Phi phi : cloner.block(header).phis()) phi.replaceBlock(loop.preheader, fast);
+        Block target = fast;
+        for (int i = guard.size() - 1; i >= 0; i--) {
+            final Condition condition = guard.get(i);
+            final Block test = i == 0 ? loop.preheader : newBlock(procedure.blocks.indexOf(target));
+            test.terminator = new Branch(condition.condition, condition.operand, new Constant((int) condition.constant),
+                    target, slow);
+            target = test;
+        }
+        if (guard.isEmpty()) loop.preheader.terminator = new Jump(fast);
+
+        // The values of the header that are used after the loop
+        final Block exit = newBlock(procedure.blocks.indexOf(loop.exit));
+        exit.terminator = new Jump(loop.exit);
+        loop.test.replaceSuccessor(loop.exit, exit);
+        cloner.block(header).terminator.replaceSuccessor(loop.exit, exit);
+        for (Phi phi : loop.exit.phis()) phi.replaceBlock(header, exit);
+        final Set<Block> inside = Collections.newSetFromMap(new IdentityHashMap<>());
+        inside.addAll(blocks);
+        inside.addAll(copies);
+        inside.add(exit);
+        for (Instruction definition : header.instructions) {
+            final Temp value = definition.result();
+            if (value == null || !isUsedOutside(value, inside)) continue;
+            final Phi merged = new Phi(procedure.newTemp(value.name));
+            merged.setIncoming(header, value);
+            merged.setIncoming(cloner.block(header), cloner.value(value));
+            exit.instructions.add(merged);
+            for (Block block : procedure.blocks) {
+                if (inside.contains(block)) continue;
+                for (Instruction instruction : block.instructions) instruction.replaceUses(value, merged.result());
+                block.terminator.replaceUses(value, merged.result());
+            }
+        }
+    }
+
+    private Block newBlock(int position) {
+        final Block block = procedure.newBlock();
+        procedure.blocks.remove(block);
+        procedure.blocks.add(position, block);
+        return block;
+    }
+
+    private boolean isUsedOutside(Temp value, Set<Block> inside) {
+        for (Block block : procedure.blocks) {
+            if (inside.contains(block)) continue;
+            for (Instruction instruction : block.instructions) {
+                if (instruction.operands().contains(value)) return true;
+            }
+            if (block.terminator.operands().contains(value)) return true;
+        }
+        return false;
+    }
+}
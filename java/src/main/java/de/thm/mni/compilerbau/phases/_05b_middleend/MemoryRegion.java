@@ -0,0 +1,131 @@
+package de.thm.mni.compilerbau.phases._05b_middleend;
+
+import de.thm.mni.compilerbau.ir.*;
+import de.thm.mni.compilerbau.table.ProcedureEntry;
+
+import java.util.*;
+
+/**
+ * The part of memory an address of a procedure in SSA form may point into.
+ * <p>
+ * SPL has neither global variables nor pointers stored in memory, so an address is either derived from a slot of the
+ * procedure's own stack frame, or from the address held by a reference parameter, which points into the frame of
+ * some caller ({@link #EXTERNAL}). Two different slots of the own frame never overlap, while any two external
+ * addresses may, since the same variable can be passed to several reference parameters.
+ */
+final class MemoryRegion {
+    /**
+     * The variables of the callers, reached through reference parameters.
+     */
+    static final MemoryRegion EXTERNAL = new MemoryRegion(null);
+    /**
+     * Any address.
+     */
+    static final MemoryRegion UNKNOWN = new MemoryRegion(null);
+    /**
+     * A value not derived from any address, like an index.
+     */
+    private static final MemoryRegion NONE = new MemoryRegion(null);
+
+    final StackSlot slot; // The slot of the own frame, or null
+
+    private MemoryRegion(StackSlot slot) {
+        this.slot = slot;
+    }
+
+    /**
+     * @return Whether an access to this region and an access to the other region may touch the same memory.
+     */
+    boolean mayAlias(MemoryRegion other) {
+        if (this == UNKNOWN || other == UNKNOWN) return true;
+        if (this == EXTERNAL || other == EXTERNAL) return this == other;
+        return slot == other.slot;
+    }
+
+    /**
+     * Determines the regions of addresses by following the definitions of the registers they are computed in.
+     */
+    static class Resolver {
+        private final Map<Temp, Instruction> definitions = new HashMap<>();
+
+        Resolver(Procedure procedure) {
+            for (Block block : procedure.blocks) {
+                for (Instruction instruction : block.instructions) {
+                    if (instruction.result() != null) definitions.put(instruction.result(), instruction);
+                }
+            }
+        }
+
+        /**
+         * @return The region the address points into.
+         */
+        MemoryRegion regionOf(Operand address) {
+            final MemoryRegion region = resolve(address, new HashSet<>());
+            return region == NONE ? UNKNOWN : region;
+        }
+
+        /**
+         * @return Whether the operand is the address held by a reference parameter, i.e. the address of a variable.
+         */
+        boolean isReferenceAddress(Operand operand) {
+            return operand instanceof Temp temp && definitions.get(temp) instanceof Load load
+                    && load.base() instanceof StackSlot slot && slot.isReference && load.displacement == 0;
+        }
+
+        /**
+         * @return The regions a call may write through the addresses passed to reference parameters, according to
+         * the side effects of the callee.
+         */
+        List<MemoryRegion> writtenBy(Call call) {
+            final ProcedureEntry callee = call.callee;
+            final List<MemoryRegion> regions = new ArrayList<>();
+            for (int i = 0; i < call.operands().size(); i++) {
+                if (!callee.parameterTypes.get(i).isReference) continue;
+                if (callee.sideEffects.writes(i)) regions.add(regionOf(call.operand(i)));
+            }
+            return regions;
+        }
+
+        private MemoryRegion resolve(Operand operand, Set<Temp> visiting) {
+            return switch (operand) {
+                case StackSlot slot -> new MemoryRegion(slot);
+                case Constant ignored -> NONE;
+                case Temp temp -> {
+                    if (!visiting.add(temp)) yield NONE; // A cycle adds nothing to the other operands of the phis
+                    yield switch (definitions.get(temp)) {
+                        case BinaryOp binary when binary.operator == BinaryOp.Operator.ADD -> {
+                            final MemoryRegion left = resolve(binary.left(), visiting);
+                            yield left != NONE ? left : resolve(binary.right(), visiting);
+                        }
+                        case BinaryOp binary when binary.operator == BinaryOp.Operator.SUB -> resolve(binary.left(), visiting);
+                        case BinaryOp ignored -> NONE;
+                        case Load ignored -> isReferenceAddress(temp) ? EXTERNAL : NONE;
+                        case Move move -> resolve(move.source(), visiting);
+                        case Phi phi -> {
+                            MemoryRegion joined = NONE;
+                            for (Operand incoming : phi.operands()) {
+                                final MemoryRegion region = resolve(incoming, visiting);
+                                if (region == NONE || region.equals(joined)) continue;
+                                if (joined != NONE) yield UNKNOWN;
+                                joined = region;
+                            }
+                            yield joined;
+                        }
+                        case null, default -> UNKNOWN;
+                    };
+                }
+            };
+        }
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) return true;
+        return other instanceof MemoryRegion region && slot != null && slot == region.slot;
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(slot);
+    }
+}
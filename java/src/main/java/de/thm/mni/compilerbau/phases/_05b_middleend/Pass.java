@@ -0,0 +1,51 @@
+package de.thm.mni.compilerbau.phases._05b_middleend;
+
+import de.thm.mni.compilerbau.ir.Procedure;
+
+import java.util.function.BiPredicate;
+
+/**
+ * A transformation of a procedure, run by the {@link PassManager}.
+ */
+public interface Pass {
+    /**
+     * @return The name shown in the statistics of the pass manager.
+     */
+    String name();
+
+    /**
+     * @return Whether the pass never changes the blocks and edges of the control flow graph, so the analyses that
+     * only depend on it stay valid.
+     */
+    boolean preservesControlFlow();
+
+    /**
+     * Transforms the procedure.
+     *
+     * @param analyses The cached analyses of the procedure.
+     * @return Whether the procedure was changed.
+     */
+    boolean run(Procedure procedure, Analyses analyses);
+
+    /**
+     * Creates a pass from a function.
+     */
+    static Pass of(String name, boolean preservesControlFlow, BiPredicate<Procedure, Analyses> transformation) {
+        return new Pass() {
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public boolean preservesControlFlow() {
+                return preservesControlFlow;
+            }
+
+            @Override
+            public boolean run(Procedure procedure, Analyses analyses) {
+                return transformation.test(procedure, analyses);
+            }
+        };
+    }
+}
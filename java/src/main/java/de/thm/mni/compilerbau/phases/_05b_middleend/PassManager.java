@@ -0,0 +1,235 @@
+package de.thm.mni.compilerbau.phases._05b_middleend;
+
+import de.thm.mni.compilerbau.CommandLineOptions;
+import de.thm.mni.compilerbau.absyn.ProcedureDefinition;
+import de.thm.mni.compilerbau.ir.Procedure;
+import de.thm.mni.compilerbau.phases._04c_callgraph.CallGraph;
+
+import java.io.PrintWriter;
+import java.util.*;
+
+/**
+ * Runs the passes of the middle end that are enabled by the optimization level on a procedure.
+ * <p>
+ * The passes get their analyses from an {@link Analyses} cache. After a pass reports a change, the cached results
+ * depending on the instructions are dropped, and if the pass may have changed the control flow graph, all results
+ * are dropped. The time spent in every pass and analysis is recorded for '--verbose'.
+ * <p>
+ * At -O0 no passes are run. At -O1 and -O2 calls of the procedure itself in tail position are replaced by jumps, and
+ * the procedure is converted into SSA form, where sparse conditional constant propagation, copy propagation, dead code
+ * elimination and the simplification of the control flow graph are repeated until none of them changes the procedure
+ * anymore. The remaining calls in tail position are marked as tail calls before the procedure is converted back out of
+ * SSA form for the code generation. At -O2 loop invariant code is moved out of the loops, adjacent loops over the same
+ * range are fused, loops filling arrays are replaced, bounds checks that can not fail are removed or moved in front of
+ * the loops, loops with remaining checks get a copy without them that runs if a guard finds all indices in bounds,
+ * multiplications by induction variables are reduced to additions and loops with a constant number of iterations are
+ * unrolled, each followed by another round of these passes. The bounds checks are eliminated once more after the
+ * unrolling. Before all of that, small procedures are inlined at -O2, which requires the callees to be optimized
+ * first.
+ */
+public final class PassManager {
+    private static final int MAX_ROUNDS = 10;
+
+    public static final Pass SIMPLIFY_CONTROL_FLOW =
+            Pass.of("simplify-cfg", false, (procedure, analyses) -> ControlFlowSimplification.run(procedure));
+    public static final Pass SSA_CONSTRUCTION = Pass.of("ssa-construction", true, (procedure, analyses) -> {
+        if (procedure.removeUnreachableBlocks()) analyses.invalidate(false);
+        SsaConstruction.construct(procedure, analyses.get(Dominators.ANALYSIS));
+        return true;
+    });
+    public static final Pass TAIL_RECURSION =
+            Pass.of("tail-recursion", false, (procedure, analyses) -> TailCalls.eliminateRecursion(procedure));
+    public static final Pass TAIL_CALLS =
+            Pass.of("tail-calls", true, (procedure, analyses) -> TailCalls.mark(procedure));
+    public static final Pass CONSTANT_PROPAGATION =
+            Pass.of("sccp", false, (procedure, analyses) -> SparseConditionalConstantPropagation.run(procedure));
+    public static final Pass COPY_PROPAGATION =
+            Pass.of("copy-propagation", true, (procedure, analyses) -> CopyPropagation.run(procedure));
+    public static final Pass DEAD_CODE_ELIMINATION =
+            Pass.of("dce", true, (procedure, analyses) -> DeadCodeElimination.run(procedure));
+    public static final Pass LOOP_INVARIANT_CODE_MOTION =
+            Pass.of("licm", false, LoopInvariantCodeMotion::run);
+    public static final Pass LOOP_FUSION = Pass.of("loop-fusion", false, LoopFusion::run);
+    public static final Pass FILL_LOOPS = Pass.of("fill-loops", false, FillLoops::run);
+    public static final Pass BOUNDS_CHECK_ELIMINATION = Pass.of("bounds-checks", false, BoundsCheckElimination::run);
+    public static final Pass STRENGTH_REDUCTION = Pass.of("strength-reduction", false, StrengthReduction::run);
+    public static final Pass SSA_DESTRUCTION = Pass.of("ssa-destruction", false, (procedure, analyses) -> {
+        SsaDestruction.run(procedure);
+        return true;
+    });
+
+    private static class Statistics {
+        int runs = 0;
+        int changes = 0;
+        long nanos = 0;
+    }
+
+    private final CommandLineOptions options;
+    private final List<Pass> pipeline = new ArrayList<>();
+    private final Map<String, Statistics> passStatistics = new LinkedHashMap<>();
+    private final Map<String, Statistics> analysisStatistics = new LinkedHashMap<>();
+
+    /**
+     * Creates the pass manager with the pipeline of the optimization level given in the options.
+     */
+    public PassManager(CommandLineOptions options) {
+        this.options = options;
+        if (options.optimizationLevel >= 1) {
+            register(SIMPLIFY_CONTROL_FLOW);
+            register(TAIL_RECURSION);
+            register(SSA_CONSTRUCTION);
+            register(repeat("ssa-optimizations", CONSTANT_PROPAGATION, COPY_PROPAGATION, DEAD_CODE_ELIMINATION, SIMPLIFY_CONTROL_FLOW));
+        }
+        if (options.optimizationLevel >= 2) {
+            register(LOOP_INVARIANT_CODE_MOTION);
+            register(repeat("ssa-optimizations", CONSTANT_PROPAGATION, COPY_PROPAGATION, DEAD_CODE_ELIMINATION, SIMPLIFY_CONTROL_FLOW));
+            register(LOOP_FUSION);
+            register(FILL_LOOPS);
+            register(repeat("ssa-optimizations", CONSTANT_PROPAGATION, COPY_PROPAGATION, DEAD_CODE_ELIMINATION, SIMPLIFY_CONTROL_FLOW));
+            register(BOUNDS_CHECK_ELIMINATION);
+            register(Pass.of("loop-versioning", false, (procedure, analyses) ->
+                    LoopVersioning.run(procedure, analyses, options.versionBudget, options.unrollBudget)));
+            register(repeat("ssa-optimizations", CONSTANT_PROPAGATION, COPY_PROPAGATION, DEAD_CODE_ELIMINATION, SIMPLIFY_CONTROL_FLOW));
+            register(STRENGTH_REDUCTION);
+            register(repeat("ssa-optimizations", CONSTANT_PROPAGATION, COPY_PROPAGATION, DEAD_CODE_ELIMINATION, SIMPLIFY_CONTROL_FLOW));
+            register(Pass.of("loop-unrolling", false,
+                    (procedure, analyses) -> LoopUnrolling.run(procedure, analyses, options.unrollBudget)));
+            register(BOUNDS_CHECK_ELIMINATION);
+            register(repeat("ssa-optimizations", CONSTANT_PROPAGATION, COPY_PROPAGATION, DEAD_CODE_ELIMINATION, SIMPLIFY_CONTROL_FLOW));
+        }
+        if (options.optimizationLevel >= 1) {
+            register(TAIL_CALLS);
+            register(SSA_DESTRUCTION);
+            register(SIMPLIFY_CONTROL_FLOW);
+        }
+    }
+
+    /**
+     * Appends a pass to the pipeline.
+     */
+    public void register(Pass pass) {
+        pipeline.add(pass);
+    }
+
+    /**
+     * Creates a pass running the passes in order until none of them changes the procedure anymore, but at most
+     * {@link #MAX_ROUNDS} times.
+     */
+    public Pass repeat(String name, Pass... passes) {
+        return new Repeat(name, List.of(passes));
+    }
+
+    private class Repeat implements Pass {
+        private final String name;
+        private final List<Pass> passes;
+
+        Repeat(String name, List<Pass> passes) {
+            this.name = name;
+            this.passes = passes;
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public boolean preservesControlFlow() {
+            return passes.stream().allMatch(Pass::preservesControlFlow);
+        }
+
+        @Override
+        public boolean run(Procedure procedure, Analyses analyses) {
+            boolean changed = false;
+            boolean progress = true;
+            for (int round = 0; progress && round < MAX_ROUNDS; round++) {
+                progress = false;
+                for (Pass pass : passes) progress |= PassManager.this.run(pass, procedure, analyses);
+                changed |= progress;
+            }
+            return changed;
+        }
+    }
+
+    /**
+     * Runs the pipeline on all procedures of a program as generated by the {@link IrGenerator}. At -O2 the procedures
+     * are optimized callees first, and the {@link Inliner} runs on every procedure before its pipeline.
+     *
+     * @return The procedures that are still called after inlining, in the given order.
+     */
+    public List<Procedure> optimize(List<Procedure> procedures, CallGraph callGraph) {
+        if (options.optimizationLevel < 2) {
+            procedures.forEach(this::optimize);
+            return procedures;
+        }
+
+        final Inliner inliner = new Inliner(callGraph, procedures, options.inlineBudget);
+        final Pass inlining = Pass.of("inlining", false, (procedure, analyses) -> inliner.inline(procedure));
+        final Map<ProcedureDefinition, Procedure> byDefinition = new IdentityHashMap<>();
+        for (Procedure procedure : procedures) byDefinition.put(procedure.definition, procedure);
+        for (List<ProcedureDefinition> component : callGraph.components()) {
+            for (ProcedureDefinition definition : component) {
+                final Procedure procedure = byDefinition.remove(definition);
+                if (procedure == null) continue;
+                run(inlining, procedure, new Analyses(procedure, this));
+                optimize(procedure);
+                inliner.optimized(procedure);
+            }
+        }
+        byDefinition.values().forEach(this::optimize); // Procedures in no component of the call graph
+        return inliner.called(procedures);
+    }
+
+    /**
+     * Runs the pipeline on a procedure as generated by the {@link IrGenerator}.
+     */
+    public void optimize(Procedure procedure) {
+        final Analyses analyses = new Analyses(procedure, this);
+        for (Pass pass : pipeline) run(pass, procedure, analyses);
+    }
+
+    private boolean run(Pass pass, Procedure procedure, Analyses analyses) {
+        if (pass instanceof Repeat) return pass.run(procedure, analyses); // The passes inside are recorded themselves
+
+        final long start = System.nanoTime();
+        final boolean changed = pass.run(procedure, analyses);
+        final Statistics statistics = passStatistics.computeIfAbsent(pass.name(), name -> new Statistics());
+        statistics.nanos += System.nanoTime() - start;
+        statistics.runs++;
+        if (changed) {
+            statistics.changes++;
+            analyses.invalidate(pass.preservesControlFlow());
+        }
+        return changed;
+    }
+
+    <T> T compute(Analysis<T> analysis, Procedure procedure, Analyses analyses) {
+        final long start = System.nanoTime();
+        final T result = analysis.compute().apply(procedure, analyses);
+        final Statistics statistics = analysisStatistics.computeIfAbsent(analysis.name(), name -> new Statistics());
+        statistics.nanos += System.nanoTime() - start;
+        statistics.runs++;
+        return result;
+    }
+
+    /**
+     * Prints how often every pass and analysis was run and the time spent in it.
+     */
+    public void printStatistics(PrintWriter out) {
+        out.printf("Optimization level %d\n", options.optimizationLevel);
+        out.printf("%-24s %8s %8s %12s\n", "Pass", "Runs", "Changed", "Time (ms)");
+        long total = 0;
+        for (Map.Entry<String, Statistics> entry : passStatistics.entrySet()) {
+            final Statistics statistics = entry.getValue();
+            out.printf("%-24s %8d %8d %12.3f\n", entry.getKey(), statistics.runs, statistics.changes, statistics.nanos / 1e6);
+            total += statistics.nanos;
+        }
+        out.printf("%-24s %8s %8s %12s\n", "Analysis", "Runs", "", "Time (ms)");
+        for (Map.Entry<String, Statistics> entry : analysisStatistics.entrySet()) {
+            final Statistics statistics = entry.getValue();
+            out.printf("%-24s %8d %8s %12.3f\n", entry.getKey(), statistics.runs, "", statistics.nanos / 1e6);
+        }
+        out.printf("%-24s %8s %8s %12.3f\n", "Total (passes)", "", "", total / 1e6);
+        out.flush();
+    }
+}
@@ -0,0 +1,63 @@
+package de.thm.mni.compilerbau.phases._05b_middleend;
+
+import de.thm.mni.compilerbau.ir.*;
+
+import java.util.List;
+
+/**
+ * Gives loops a preheader: a block whose only successor is the loop header and which is the header's only
+ * predecessor outside the loop. Code placed there is executed once whenever the loop is entered.
+ */
+final class Preheaders {
+    private Preheaders() {
+    }
+
+    /**
+     * Inserts a preheader in front of every loop that has none. If the header is entered from several blocks, the
+     * values its phis receive from them are merged by phis in the preheader.
+     *
+     * @return Whether a block was inserted. The analyses of the control flow graph are outdated then.
+     */
+    static boolean insert(Procedure procedure, LoopNesting loops) {
+        boolean inserted = false;
+        for (LoopNesting.Loop loop : loops.loops()) {
+            final Block header = loop.header;
+            final List<Block> entries = loop.entries();
+            if (entries.size() == 1 && entries.get(0).successors().size() == 1) continue;
+
+            final Block preheader = procedure.newBlock();
+            procedure.blocks.remove(preheader);
+            procedure.blocks.add(procedure.blocks.indexOf(header), preheader);
+            preheader.terminator = new Jump(header);
+
+            for (Phi phi : header.phis()) {
+                if (entries.size() == 1) {
+                    phi.replaceBlock(entries.get(0), preheader);
+                    continue;
+                }
+                final Phi merged = new Phi(procedure.newTemp(phi.result().name));
+                for (Block entry : entries) {
+                    merged.setIncoming(entry, phi.incoming(entry));
+                    phi.removeIncoming(entry);
+                }
+                preheader.instructions.add(merged);
+                phi.setIncoming(preheader, merged.result());
+            }
+            for (Block entry : entries) entry.terminator.replaceSuccessor(header, preheader);
+            procedure.updatePredecessors();
+            inserted = true;
+        }
+        return inserted;
+    }
+
+    /**
+     * @return The preheader of a loop, after {@link #insert(Procedure, LoopNesting)} and with the loops computed anew.
+     */
+    static Block of(LoopNesting.Loop loop) {
+        final List<Block> entries = loop.entries();
+        if (entries.size() != 1 || entries.get(0).successors().size() != 1) {
+            throw new IllegalStateException("No preheader for " + loop);
+        }
+        return entries.get(0);
+    }
+}
@@ -0,0 +1,230 @@
+package de.thm.mni.compilerbau.phases._05b_middleend;
+
+import de.thm.mni.compilerbau.ir.*;
+
+import java.util.*;
+
+/**
+ * Sparse conditional constant propagation (Wegman and Zadeck, "Constant Propagation with Conditional Branches") on a
+ * procedure in SSA form.
+ * <p>
+ * Every register starts out as undefined and is lowered to a constant or to "not constant" when one of its
+ * definition's operands changes. Only the successors of a branch that can be taken with the values known so far are
+ * considered executable, so constants are also found in code that is only reached when a condition holds, and
+ * phis ignore the operands flowing in from edges that are never taken.
+ * <p>
+ * Afterwards registers holding a constant are replaced by the constant, branches with a known outcome become jumps,
+ * unreachable blocks are removed and bounds checks of constant indices that are in range are dropped.
+ * Arithmetic is evaluated with the 32-bit wraparound of the ECO32. A division that traps is never folded.
+ */
+public class SparseConditionalConstantPropagation {
+    private static final int UNDEFINED = 0;
+    private static final int CONSTANT = 1;
+    private static final int VARYING = 2;
+
+    private final Procedure procedure;
+    private final int[] state;
+    private final int[] value;
+    private final Map<Temp, List<Instruction>> users = new HashMap<>();
+    private final Map<Instruction, Block> blockOf = new IdentityHashMap<>();
+    private final Set<Block> executable = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Map<Block, Set<Block>> executableEdges = new IdentityHashMap<>(); // From a block to its successors
+    private final ArrayDeque<Block[]> edgeWorklist = new ArrayDeque<>();
+    private final ArrayDeque<Instruction> instructionWorklist = new ArrayDeque<>();
+
+    private SparseConditionalConstantPropagation(Procedure procedure) {
+        this.procedure = procedure;
+        this.state = new int[procedure.tempCount()];
+        this.value = new int[procedure.tempCount()];
+    }
+
+    /**
+     * Propagates the constants of a procedure in SSA form.
+     *
+     * @return Whether the procedure was changed.
+     */
+    public static boolean run(Procedure procedure) {
+        final SparseConditionalConstantPropagation sccp = new SparseConditionalConstantPropagation(procedure);
+        sccp.analyze();
+        return sccp.rewrite();
+    }
+
+    private void analyze() {
+        for (Block block : procedure.blocks) {
+            for (Instruction instruction : block.instructions) register(instruction, block);
+            register(block.terminator, block);
+        }
+
+        edgeWorklist.add(new Block[]{null, procedure.entryBlock()});
+        while (!edgeWorklist.isEmpty() || !instructionWorklist.isEmpty()) {
+            while (!edgeWorklist.isEmpty()) {
+                final Block[] edge = edgeWorklist.poll();
+                final Block from = edge[0];
+                final Block to = edge[1];
+                if (from != null && !executableEdges.computeIfAbsent(from, b -> Collections.newSetFromMap(new IdentityHashMap<>())).add(to)) continue;
+
+                if (executable.add(to)) {
+                    for (Instruction instruction : to.instructions) visit(instruction, to);
+                    visit(to.terminator, to);
+                } else {
+                    for (Phi phi : to.phis()) visit(phi, to);
+                }
+            }
+            while (!instructionWorklist.isEmpty()) {
+                final Instruction instruction = instructionWorklist.poll();
+                final Block block = blockOf.get(instruction);
+                if (executable.contains(block)) visit(instruction, block);
+            }
+        }
+    }
+
+    private void register(Instruction instruction, Block block) {
+        blockOf.put(instruction, block);
+        for (Operand operand : instruction.operands()) {
+            if (operand instanceof Temp temp) users.computeIfAbsent(temp, t -> new ArrayList<>()).add(instruction);
+        }
+    }
+
+    private boolean isEdgeExecutable(Block from, Block to) {
+        final Set<Block> edges = executableEdges.get(from);
+        return edges != null && edges.contains(to);
+    }
+
+    private int stateOf(Operand operand) {
+        return switch (operand) {
+            case Constant ignored -> CONSTANT;
+            case StackSlot ignored -> VARYING; // An address is not known before the code is generated
+            case Temp temp -> state[temp.number];
+        };
+    }
+
+    private int valueOf(Operand operand) {
+        return operand instanceof Constant constant ? constant.value() : value[((Temp) operand).number];
+    }
+
+    private void lower(Temp result, int newState, int newValue) {
+        if (newState == state[result.number] && (newState != CONSTANT || newValue == value[result.number])) return;
+        state[result.number] = newState;
+        value[result.number] = newValue;
+        instructionWorklist.addAll(users.getOrDefault(result, List.of()));
+    }
+
+    private void visit(Instruction instruction, Block block) {
+        switch (instruction) {
+            case Phi phi -> {
+                int newState = UNDEFINED;
+                int newValue = 0;
+                for (Block predecessor : phi.blocks()) {
+                    if (!isEdgeExecutable(predecessor, block)) continue;
+                    final Operand operand = phi.incoming(predecessor);
+                    final int operandState = stateOf(operand);
+                    if (operandState == UNDEFINED) continue;
+                    if (operandState == VARYING || (newState == CONSTANT && valueOf(operand) != newValue)) {
+                        newState = VARYING;
+                        break;
+                    }
+                    newState = CONSTANT;
+                    newValue = valueOf(operand);
+                }
+                lower(phi.result(), newState, newValue);
+            }
+            case Move move -> lower(move.result(), stateOf(move.source()), stateOf(move.source()) == CONSTANT ? valueOf(move.source()) : 0);
+            case BinaryOp binary -> {
+                final int left = stateOf(binary.left());
+                final int right = stateOf(binary.right());
+                if (left == CONSTANT && right == CONSTANT) {
+                    final Integer result = binary.operator.evaluate(valueOf(binary.left()), valueOf(binary.right()));
+                    if (result == null) lower(binary.result(), VARYING, 0);
+                    else lower(binary.result(), CONSTANT, result);
+                } else if (left == VARYING || right == VARYING) {
+                    lower(binary.result(), VARYING, 0);
+                }
+            }
+            case Load load -> lower(load.result(), VARYING, 0);
+            case Jump jump -> edgeWorklist.add(new Block[]{block, jump.target});
+            case Branch branch -> {
+                final int left = stateOf(branch.left());
+                final int right = stateOf(branch.right());
+                if (left == CONSTANT && right == CONSTANT) {
+                    final boolean taken = branch.condition.test(valueOf(branch.left()), valueOf(branch.right()));
+                    edgeWorklist.add(new Block[]{block, taken ? branch.ifTrue : branch.ifFalse});
+                } else if (left == VARYING || right == VARYING) {
+                    edgeWorklist.add(new Block[]{block, branch.ifTrue});
+                    edgeWorklist.add(new Block[]{block, branch.ifFalse});
+                }
+            }
+            case Store ignored -> {
+            }
+            case BoundsCheck ignored -> {
+            }
+            case Call ignored -> {
+            }
+            case Return ignored -> {
+            }
+        }
+    }
+
+    private boolean rewrite() {
+        boolean changed = false;
+        for (Block block : procedure.blocks) {
+            if (!executable.contains(block)) continue;
+
+            final Iterator<Instruction> iterator = block.instructions.iterator();
+            while (iterator.hasNext()) {
+                final Instruction instruction = iterator.next();
+                final Temp result = instruction.result();
+                if (result != null && state[result.number] == CONSTANT && !instruction.hasSideEffects()) {
+                    iterator.remove();
+                    changed = true;
+                    continue;
+                }
+                changed |= replaceConstants(instruction);
+                if (instruction instanceof BoundsCheck check && check.index() instanceof Constant index
+                        && check.size() instanceof Constant size && Integer.compareUnsigned(index.value(), size.value()) < 0) {
+                    iterator.remove();
+                }
+            }
+            changed |= replaceConstants(block.terminator);
+
+            // Only one successor of a branch is ever taken
+            if (block.terminator instanceof Branch branch) {
+                final boolean trueTaken = isEdgeExecutable(block, branch.ifTrue);
+                final boolean falseTaken = isEdgeExecutable(block, branch.ifFalse);
+                if (trueTaken != falseTaken) {
+                    final Block target = trueTaken ? branch.ifTrue : branch.ifFalse;
+                    final Block untaken = trueTaken ? branch.ifFalse : branch.ifTrue;
+                    block.terminator = new Jump(target);
+                    for (Phi phi : untaken.phis()) phi.removeIncoming(block);
+                    changed = true;
+                }
+            }
+        }
+
+        // Operands of phis flowing in along edges that are never taken
+        for (Block block : procedure.blocks) {
+            if (!executable.contains(block)) continue;
+            for (Phi phi : block.phis()) {
+                for (Block predecessor : List.copyOf(phi.blocks())) {
+                    if (!isEdgeExecutable(predecessor, block)) {
+                        phi.removeIncoming(predecessor);
+                        changed = true;
+                    }
+                }
+            }
+        }
+
+        changed |= procedure.removeUnreachableBlocks();
+        return changed;
+    }
+
+    private boolean replaceConstants(Instruction instruction) {
+        boolean changed = false;
+        for (int i = 0; i < instruction.operands().size(); i++) {
+            if (instruction.operand(i) instanceof Temp temp && state[temp.number] == CONSTANT) {
+                instruction.setOperand(i, new Constant(value[temp.number]));
+                changed = true;
+            }
+        }
+        return changed;
+    }
+}
@@ -0,0 +1,191 @@
+package de.thm.mni.compilerbau.phases._05b_middleend;
+
+import de.thm.mni.compilerbau.ir.*;
+
+import java.util.*;
+
+/**
+ * Converts a procedure into SSA form, in which every virtual register is defined exactly once.
+ * <p>
+ * This is the algorithm of Cytron et al. ("Efficiently Computing Static Single Assignment Form and the Control
+ * Dependence Graph"), building semi-pruned SSA form: Only registers that are live across a block boundary
+ * get phis, which are placed in the iterated dominance frontiers of their definitions. Afterwards every definition is
+ * renamed to a new register in a walk over the dominator tree. Registers defined once and only used later in the same
+ * block, like the intermediate results of expressions, keep their names.
+ * <p>
+ * SPL does not initialize local variables. A use that no definition reaches reads the constant 0.
+ */
+public class SsaConstruction {
+    private SsaConstruction() {
+    }
+
+    /**
+     * Converts a procedure, which must not contain phis yet, into SSA form. Unreachable blocks are removed.
+     */
+    public static void construct(Procedure procedure) {
+        procedure.removeUnreachableBlocks();
+        construct(procedure, Dominators.compute(procedure));
+    }
+
+    /**
+     * Converts a procedure, which must not contain phis or unreachable blocks, into SSA form.
+     *
+     * @param dominators The dominators of the procedure.
+     */
+    public static void construct(Procedure procedure, Dominators dominators) {
+        final int temps = procedure.tempCount();
+
+        // Registers used in a block before being defined there, and all blocks defining each register
+        final BitSet global = new BitSet(temps);
+        final BitSet multiple = new BitSet(temps);
+        final List<List<Block>> definitions = new ArrayList<>(temps);
+        for (int i = 0; i < temps; i++) definitions.add(new ArrayList<>());
+        final int[] defined = new int[temps];
+        final BitSet killed = new BitSet(temps);
+        for (Block block : procedure.blocks) {
+            for (Instruction instruction : instructions(block)) {
+                for (Operand operand : instruction.operands()) {
+                    if (operand instanceof Temp temp && !killed.get(temp.number)) global.set(temp.number);
+                }
+                final Temp result = instruction.result();
+                if (result != null) {
+                    killed.set(result.number);
+                    if (defined[result.number]++ > 0) multiple.set(result.number);
+                    final List<Block> blocks = definitions.get(result.number);
+                    if (blocks.isEmpty() || blocks.get(blocks.size() - 1) != block) blocks.add(block);
+                }
+            }
+            for (Instruction instruction : block.instructions) {
+                if (instruction.result() != null) killed.clear(instruction.result().number);
+            }
+        }
+
+        final BitSet renamed = (BitSet) global.clone();
+        renamed.or(multiple);
+
+        // Phi placement
+        final Map<Phi, Temp> phiVariables = new IdentityHashMap<>();
+        final Map<Block, Integer> hasPhi = new IdentityHashMap<>();
+        final Map<Block, Integer> onWorklist = new IdentityHashMap<>();
+        for (int v = global.nextSetBit(0); v >= 0; v = global.nextSetBit(v + 1)) {
+            final List<Block> blocks = definitions.get(v);
+            if (blocks.isEmpty()) continue;
+            final Temp variable = findDefinition(blocks.get(0), v);
+            final ArrayDeque<Block> worklist = new ArrayDeque<>(blocks);
+            for (Block block : blocks) onWorklist.put(block, v);
+            while (!worklist.isEmpty()) {
+                for (Block frontier : dominators.frontier(worklist.poll())) {
+                    if (Objects.equals(hasPhi.get(frontier), v)) continue;
+                    hasPhi.put(frontier, v);
+                    final Phi phi = new Phi(variable);
+                    frontier.instructions.add(0, phi);
+                    phiVariables.put(phi, variable);
+                    if (!Objects.equals(onWorklist.get(frontier), v)) {
+                        onWorklist.put(frontier, v);
+                        worklist.add(frontier);
+                    }
+                }
+            }
+        }
+
+        new Renaming(procedure, dominators, renamed, phiVariables).run();
+    }
+
+    private static List<Instruction> instructions(Block block) {
+        final List<Instruction> instructions = new ArrayList<>(block.instructions);
+        instructions.add(block.terminator);
+        return instructions;
+    }
+
+    private static Temp findDefinition(Block block, int number) {
+        for (Instruction instruction : block.instructions) {
+            if (instruction.result() != null && instruction.result().number == number) return instruction.result();
+        }
+        throw new IllegalStateException("No definition of register " + number + " in " + block);
+    }
+
+    /**
+     * Renames the definitions and uses of the renamed registers, walking the dominator tree in preorder.
+     */
+    private static class Renaming {
+        private final Procedure procedure;
+        private final Dominators dominators;
+        private final BitSet renamed;
+        private final Map<Phi, Temp> phiVariables;
+        private final Map<Integer, ArrayDeque<Temp>> stacks = new HashMap<>();
+
+        Renaming(Procedure procedure, Dominators dominators, BitSet renamed, Map<Phi, Temp> phiVariables) {
+            this.procedure = procedure;
+            this.dominators = dominators;
+            this.renamed = renamed;
+            this.phiVariables = phiVariables;
+        }
+
+        private Operand current(Temp variable) {
+            final ArrayDeque<Temp> stack = stacks.get(variable.number);
+            return stack == null || stack.isEmpty() ? Constant.ZERO : stack.peek();
+        }
+
+        private Temp define(Temp variable, List<Integer> pushed) {
+            final Temp name = procedure.newTemp(variable.name);
+            stacks.computeIfAbsent(variable.number, n -> new ArrayDeque<>()).push(name);
+            pushed.add(variable.number);
+            return name;
+        }
+
+        void run() {
+            // Every block is entered, and left after all blocks it dominates; the registers pushed are then popped
+            final ArrayDeque<Block> blockStack = new ArrayDeque<>();
+            final ArrayDeque<List<Integer>> pushedStack = new ArrayDeque<>();
+            final ArrayDeque<Iterator<Block>> childStack = new ArrayDeque<>();
+
+            final Block entry = procedure.entryBlock();
+            blockStack.push(entry);
+            pushedStack.push(enter(entry));
+            childStack.push(dominators.children(entry).iterator());
+            while (!blockStack.isEmpty()) {
+                final Iterator<Block> children = childStack.peek();
+                if (children.hasNext()) {
+                    final Block child = children.next();
+                    blockStack.push(child);
+                    pushedStack.push(enter(child));
+                    childStack.push(dominators.children(child).iterator());
+                } else {
+                    blockStack.pop();
+                    childStack.pop();
+                    for (int number : pushedStack.pop()) stacks.get(number).pop();
+                }
+            }
+        }
+
+        private List<Integer> enter(Block block) {
+            final List<Integer> pushed = new ArrayList<>();
+            for (Instruction instruction : block.instructions) {
+                if (instruction instanceof Phi phi) {
+                    phi.setResult(define(phiVariables.get(phi), pushed));
+                    continue;
+                }
+                renameUses(instruction);
+                final Temp result = instruction.result();
+                if (result != null && renamed.get(result.number)) instruction.setResult(define(result, pushed));
+            }
+            renameUses(block.terminator);
+
+            for (Block successor : block.successors()) {
+                for (Phi phi : successor.phis()) {
+                    final Temp variable = phiVariables.get(phi);
+                    if (variable != null) phi.setIncoming(block, current(variable));
+                }
+            }
+            return pushed;
+        }
+
+        private void renameUses(Instruction instruction) {
+            for (int i = 0; i < instruction.operands().size(); i++) {
+                if (instruction.operand(i) instanceof Temp temp && renamed.get(temp.number)) {
+                    instruction.setOperand(i, current(temp));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package de.thm.mni.compilerbau.phases._05b_middleend;
+
+import de.thm.mni.compilerbau.ir.*;
+
+import java.util.*;
+
+/**
+ * Converts a procedure out of SSA form, replacing every phi by moves at the end of its predecessors.
+ * <p>
+ * After copy propagation the operands of a phi may still be live when the phi's register is assigned, so two
+ * problems have to be avoided (Briggs et al., "Practical Improvements to the Construction and Destruction of Static
+ * Single Assignment Form"): Edges from a block with several successors to a block with phis are split, so the moves
+ * are only executed on their edge ("lost copy"). And the phis of a block are treated as one parallel copy, which is
+ * sequentialized using a new register to break cycles ("swap").
+ */
+public class SsaDestruction {
+    private SsaDestruction() {
+    }
+
+    private record Copy(Temp target, Operand source) {
+    }
+
+    /**
+     * Removes all phis of a procedure in SSA form.
+     */
+    public static void run(Procedure procedure) {
+        splitEdges(procedure);
+
+        for (Block block : procedure.blocks) {
+            final List<Phi> phis = block.phis();
+            if (phis.isEmpty()) continue;
+
+            for (Block predecessor : block.predecessors) {
+                final List<Copy> copies = new ArrayList<>();
+                for (Phi phi : phis) {
+                    final Operand source = phi.incoming(predecessor);
+                    if (source != phi.result()) copies.add(new Copy(phi.result(), source));
+                }
+                sequentialize(procedure, copies, predecessor.instructions);
+            }
+            block.instructions.subList(0, phis.size()).clear();
+        }
+    }
+
+    private static void splitEdges(Procedure procedure) {
+        for (int i = 0; i < procedure.blocks.size(); i++) {
+            final Block block = procedure.blocks.get(i);
+            if (block.successors().size() < 2) continue;
+
+            for (Block successor : block.successors()) {
+                if (successor.phis().isEmpty()) continue;
+                final Block split = procedure.newBlock();
+                procedure.blocks.remove(split);
+                procedure.blocks.add(i + 1, split); // Keep the new block close to its predecessor
+                split.terminator = new Jump(successor);
+                block.terminator.replaceSuccessor(successor, split);
+                for (Phi phi : successor.phis()) phi.replaceBlock(block, split);
+            }
+        }
+        procedure.updatePredecessors();
+    }
+
+    /**
+     * Appends moves to the list that have the same effect as executing all copies at once.
+     */
+    private static void sequentialize(Procedure procedure, List<Copy> copies, List<Instruction> instructions) {
+        final List<Copy> pending = new ArrayList<>(copies);
+        while (!pending.isEmpty()) {
+            Copy ready = null;
+            for (Copy copy : pending) {
+                if (pending.stream().noneMatch(other -> other.source == copy.target)) {
+                    ready = copy;
+                    break;
+                }
+            }
+
+            if (ready == null) {
+                // Only cycles are left: save the target of one copy, which then can be executed
+                final Copy copy = pending.get(0);
+                final Temp saved = procedure.newTemp(copy.target.name);
+                instructions.add(new Move(saved, copy.target));
+                pending.replaceAll(other -> other.source == copy.target ? new Copy(other.target, saved) : other);
+                continue;
+            }
+
+            instructions.add(new Move(ready.target, ready.source));
+            pending.remove(ready);
+        }
+    }
+}
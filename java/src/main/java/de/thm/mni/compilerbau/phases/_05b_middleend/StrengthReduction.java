@@ -0,0 +1,278 @@
+package de.thm.mni.compilerbau.phases._05b_middleend;
+
+import de.thm.mni.compilerbau.ir.*;
+
+import java.util.*;
+
+/**
+ * Replaces the multiplications by the induction variable of the {@link CountedLoop}s of a procedure in SSA form with
+ * additions, innermost loops first.
+ * <p>
+ * A value computed in the loop with a multiplication that is a linear function of the induction variable, the sum of
+ * some loop invariant operands, coefficient * induction variable and an offset, like the address of an array element
+ * or of a row of a matrix, becomes a new induction variable: a phi of the header that starts with the value of the first iteration and is
+ * incremented by coefficient * step in every iteration. Values that only differ in their offset share one such
+ * variable and add the difference, which the {@link CopyPropagation} folds into the displacement of loads and stores.
+ * <p>
+ * Redundant induction variables are eliminated as well. Another phi of the header that starts at a constant and is
+ * incremented by the same step as the induction variable is replaced by the induction variable plus the difference of
+ * the initial values. If the number of iterations is known and the induction variable is used by nothing but its
+ * increment and the test of the header anymore, the test compares one of the new variables with its final value
+ * instead, so the induction variable is removed by the {@link DeadCodeElimination}.
+ * <p>
+ * Loops containing a call are left alone, as the new induction variables would live across the call and therefore
+ * in memory.
+ */
+public class StrengthReduction {
+    /**
+     * A value of the form bases + coefficient * induction variable + offset, where the bases are the loop invariant
+     * operands that are added, like the address of an array and the offset of a row selected by an outer loop.
+     */
+    private record Form(List<Operand> bases, int coefficient, int offset) {
+    }
+
+    /**
+     * Values with the same key are computed from the same new induction variable.
+     */
+    private record Key(List<Operand> bases, int coefficient) {
+    }
+
+    private final Procedure procedure;
+    private LinearAddress.Resolver addresses;
+
+    private StrengthReduction(Procedure procedure) {
+        this.procedure = procedure;
+    }
+
+    /**
+     * Reduces the strength of the computations in the loops of a procedure in SSA form.
+     *
+     * @return Whether the procedure was changed.
+     */
+    public static boolean run(Procedure procedure, Analyses analyses) {
+        if (analyses.get(LoopNesting.ANALYSIS).loops().isEmpty()) return false;
+        boolean changed = Preheaders.insert(procedure, analyses.get(LoopNesting.ANALYSIS));
+        if (changed) analyses.invalidate(false);
+
+        final StrengthReduction reduction = new StrengthReduction(procedure);
+        for (LoopNesting.Loop loop : analyses.get(LoopNesting.ANALYSIS).innermostFirst()) {
+            final CountedLoop counted = CountedLoop.of(loop, Preheaders.of(loop));
+            if (counted != null) changed |= reduction.reduce(counted);
+        }
+        return changed;
+    }
+
+    private boolean reduce(CountedLoop loop) {
+        boolean changed = mergeInductionVariables(loop);
+        if (containsCall(loop)) return changed;
+        addresses = new LinearAddress.Resolver(procedure);
+
+        final Map<Temp, Form> candidates = new LinkedHashMap<>();
+        for (Block block : loop.loop.blocks) {
+            for (Instruction instruction : block.instructions) {
+                if (instruction instanceof BinaryOp && isMultiplied(instruction.result(), loop)) {
+                    final Form form = form(instruction.result(), loop);
+                    if (form != null && form.coefficient != 0) candidates.put(instruction.result(), form);
+                }
+            }
+        }
+        if (candidates.isEmpty()) return changed;
+
+        // Values only used to compute other candidates are not needed anymore
+        final Set<Temp> needed = new HashSet<>();
+        for (Block block : procedure.blocks) {
+            for (Instruction instruction : block.instructions) {
+                if (!candidates.containsKey(instruction.result())) needed.addAll(usedCandidates(instruction, candidates));
+            }
+            needed.addAll(usedCandidates(block.terminator, candidates));
+        }
+
+        final Map<Key, Phi> variables = new LinkedHashMap<>();
+        final Map<Key, Integer> offsets = new HashMap<>();
+        for (Temp candidate : candidates.keySet()) {
+            final Form form = candidates.get(candidate);
+            final Key key = new Key(form.bases, form.coefficient);
+            if (!needed.contains(candidate) || variables.containsKey(key)) continue;
+            variables.put(key, newInductionVariable(loop, form));
+            offsets.put(key, form.offset);
+        }
+        for (Block block : loop.loop.blocks) {
+            final ListIterator<Instruction> iterator = block.instructions.listIterator();
+            while (iterator.hasNext()) {
+                final Temp result = iterator.next().result();
+                if (!candidates.containsKey(result)) continue;
+                if (!needed.contains(result)) {
+                    iterator.remove();
+                    continue;
+                }
+                final Form form = candidates.get(result);
+                final Key key = new Key(form.bases, form.coefficient);
+                final Operand difference = new Constant(form.offset - offsets.get(key));
+                iterator.set(new BinaryOp(BinaryOp.Operator.ADD, result, variables.get(key).result(), difference));
+            }
+        }
+
+        for (Map.Entry<Key, Phi> variable : variables.entrySet()) {
+            if (replaceTest(loop, variable.getKey(), variable.getValue(), offsets.get(variable.getKey()))) break;
+        }
+        return true;
+    }
+
+    /**
+     * Replaces the other phis of the header that are incremented like the induction variable by the induction
+     * variable plus a constant.
+     */
+    private boolean mergeInductionVariables(CountedLoop loop) {
+        if (!(loop.initial instanceof Constant initial)) return false;
+        final Block header = loop.loop.header;
+        boolean changed = false;
+        for (Phi phi : header.phis()) {
+            if (phi == loop.inductionVariable || phi.blocks().size() != 2) continue;
+            if (!(phi.incoming(loop.preheader) instanceof Constant start)) continue;
+            final Integer step = CountedLoop.stepOf(phi, phi.incoming(loop.latch), loop.loop);
+            if (step == null || step != loop.step) continue;
+
+            final Temp value = procedure.newTemp(phi.result().name);
+            final Constant difference = new Constant(start.value() - initial.value());
+            header.instructions.add(header.phis().size(), new BinaryOp(BinaryOp.Operator.ADD, value,
+                    loop.inductionVariable.result(), difference));
+            header.instructions.remove(phi);
+            for (Block block : procedure.blocks) {
+                for (Instruction instruction : block.instructions) instruction.replaceUses(phi.result(), value);
+                block.terminator.replaceUses(phi.result(), value);
+            }
+            changed = true;
+        }
+        return changed;
+    }
+
+    /**
+     * A call destroys all registers, so a new induction variable would have to be loaded and stored in every
+     * iteration of a loop containing one.
+     */
+    private static boolean containsCall(CountedLoop loop) {
+        return loop.loop.blocks.stream().anyMatch(block -> block.instructions.stream().anyMatch(Call.class::isInstance));
+    }
+
+    /**
+     * @return Whether the value is computed in the loop with a multiplication.
+     */
+    private boolean isMultiplied(Operand operand, CountedLoop loop) {
+        if (!(operand instanceof Temp temp) || !isInLoop(temp, loop)) return false;
+        if (!(addresses.definition(temp) instanceof BinaryOp binary)) return false;
+        return switch (binary.operator) {
+            case MUL -> true;
+            case ADD, SUB -> isMultiplied(binary.left(), loop) || isMultiplied(binary.right(), loop);
+            case DIV -> false;
+        };
+    }
+
+    /**
+     * @return The value as a linear function of the induction variable, or null if it is not one.
+     */
+    private Form form(Operand operand, CountedLoop loop) {
+        final int[] linear = addresses.linear(operand, List.of(loop));
+        if (linear != null) return new Form(List.of(), linear[0], linear[1]);
+        if (operand instanceof StackSlot) return new Form(List.of(operand), 0, 0);
+        if (!(operand instanceof Temp temp) || addresses.definitionBlock(temp) == null) return null;
+        if (!isInLoop(temp, loop)) return new Form(List.of(temp), 0, 0);
+
+        if (!(addresses.definition(temp) instanceof BinaryOp binary)) return null;
+        final Form left = form(binary.left(), loop);
+        final Form right = form(binary.right(), loop);
+        if (left == null || right == null) return null;
+        final List<Operand> bases = new ArrayList<>(left.bases);
+        bases.addAll(right.bases);
+        return switch (binary.operator) {
+            case ADD -> new Form(bases, left.coefficient + right.coefficient, left.offset + right.offset);
+            case SUB -> right.bases.isEmpty()
+                    ? new Form(bases, left.coefficient - right.coefficient, left.offset - right.offset) : null;
+            case MUL, DIV -> null; // Products with a constant factor are linear
+        };
+    }
+
+    private boolean isInLoop(Temp temp, CountedLoop loop) {
+        final Block block = addresses.definitionBlock(temp);
+        return block != null && loop.loop.contains(block);
+    }
+
+    private static List<Temp> usedCandidates(Instruction instruction, Map<Temp, Form> candidates) {
+        final List<Temp> used = new ArrayList<>();
+        for (Operand operand : instruction.operands()) {
+            if (operand instanceof Temp temp && candidates.containsKey(temp)) used.add(temp);
+        }
+        return used;
+    }
+
+    /**
+     * Creates a phi in the header that has the value of the form in every iteration.
+     */
+    private Phi newInductionVariable(CountedLoop loop, Form form) {
+        final Phi phi = new Phi(procedure.newTemp(null));
+        phi.setIncoming(loop.preheader, valueBefore(loop, form, loop.initial));
+        final Temp next = procedure.newTemp(null);
+        loop.latch.instructions.add(new BinaryOp(BinaryOp.Operator.ADD, next, phi.result(),
+                new Constant(form.coefficient * loop.step)));
+        phi.setIncoming(loop.latch, next);
+        loop.loop.header.instructions.add(0, phi);
+        return phi;
+    }
+
+    /**
+     * Computes the value of the form for a value of the induction variable in the preheader.
+     */
+    private Operand valueBefore(CountedLoop loop, Form form, Operand variable) {
+        final List<Instruction> instructions = loop.preheader.instructions;
+        Operand value;
+        if (variable instanceof Constant constant) {
+            value = new Constant(form.coefficient * constant.value() + form.offset);
+        } else {
+            final Temp product = procedure.newTemp(null);
+            instructions.add(new BinaryOp(BinaryOp.Operator.MUL, product, variable, new Constant(form.coefficient)));
+            value = product;
+            if (form.offset != 0) {
+                final Temp sum = procedure.newTemp(null);
+                instructions.add(new BinaryOp(BinaryOp.Operator.ADD, sum, product, new Constant(form.offset)));
+                value = sum;
+            }
+        }
+        for (Operand base : form.bases) {
+            final Temp sum = procedure.newTemp(null);
+            instructions.add(value instanceof Constant
+                    ? new BinaryOp(BinaryOp.Operator.ADD, sum, base, value)
+                    : new BinaryOp(BinaryOp.Operator.ADD, sum, value, base));
+            value = sum;
+        }
+        return value;
+    }
+
+    /**
+     * Lets the header test the new induction variable instead of the original one, if the original one is not used
+     * for anything else and the new one does not wrap around before the loop ends.
+     *
+     * @param offset The offset of the form the new induction variable was created for.
+     * @return Whether the test was replaced.
+     */
+    private boolean replaceTest(CountedLoop loop, Key key, Phi variable, int offset) {
+        if (loop.tripCount < 0) return false;
+        if ((long) Math.abs(key.coefficient) * Math.abs(loop.step) * loop.tripCount >= Integer.MAX_VALUE) return false;
+
+        final Temp counter = loop.inductionVariable.result();
+        final Operand increment = loop.inductionVariable.incoming(loop.latch);
+        for (Block block : procedure.blocks) {
+            for (Instruction instruction : block.instructions) {
+                if (instruction == loop.inductionVariable) continue;
+                final boolean isIncrement = instruction.result() != null && instruction.result().equals(increment);
+                if (instruction.operands().contains(counter) && !isIncrement) return false;
+                if (instruction.operands().contains(increment)) return false;
+            }
+            if (block.terminator != loop.test && block.terminator.operands().contains(counter)) return false;
+            if (block.terminator.operands().contains(increment)) return false;
+        }
+
+        final int last = ((Constant) loop.initial).value() + loop.tripCount * loop.step;
+        final Operand limit = valueBefore(loop, new Form(key.bases, key.coefficient, offset), new Constant(last));
+        loop.loop.header.terminator = new Branch(Branch.Condition.NE, variable.result(), limit, loop.body, loop.exit);
+        return true;
+    }
+}
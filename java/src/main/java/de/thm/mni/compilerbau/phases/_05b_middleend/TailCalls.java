@@ -0,0 +1,194 @@
+package de.thm.mni.compilerbau.phases._05b_middleend;
+
+import de.thm.mni.compilerbau.ir.*;
+import de.thm.mni.compilerbau.table.ProcedureEntry;
+
+import java.util.*;
+
+/**
+ * Optimizes calls in tail position, which are followed by nothing but the return of the procedure, on every path.
+ * <p>
+ * A procedure calling itself in tail position does not need a new frame, as nothing of the current one is used after
+ * the call. Before the conversion into SSA form, such a call is replaced by assignments of the arguments to the
+ * parameters and a jump back to the beginning of the body, which turns the recursion into a loop. Value parameters
+ * kept in registers are assigned directly; the arguments for the other parameters overwrite the parameter slots.
+ * <p>
+ * A call of another procedure in tail position is marked as a tail call in SSA form. The code generator stores the
+ * arguments into the own argument area, removes the frame and jumps to the callee, which then returns to the caller
+ * directly. This requires the arguments of the callee to fit into the argument area of the procedure.
+ * <p>
+ * Neither is possible if an argument for a reference parameter may point into the current frame, as the frame is
+ * reused by the callee.
+ */
+public class TailCalls {
+    private TailCalls() {
+    }
+
+    /**
+     * Replaces the calls of a procedure, which must not be in SSA form yet, to itself in tail position by jumps.
+     *
+     * @return Whether the procedure was changed.
+     */
+    public static boolean eliminateRecursion(Procedure procedure) {
+        final Map<Temp, List<Instruction>> definitions = new HashMap<>();
+        for (Block block : procedure.blocks) {
+            for (Instruction instruction : block.instructions) {
+                if (instruction.result() != null) {
+                    definitions.computeIfAbsent(instruction.result(), temp -> new ArrayList<>()).add(instruction);
+                }
+            }
+        }
+
+        final List<Block> tails = new ArrayList<>();
+        for (Block block : procedure.blocks) {
+            if (tailCall(block) instanceof Call call && call.callee == procedure.entry()
+                    && call.operands().stream().noneMatch(argument -> mayPointIntoFrame(argument, definitions, new HashSet<>()))) {
+                tails.add(block);
+            }
+        }
+        if (tails.isEmpty()) return false;
+
+        // The loads of the value parameters kept in registers move into a new entry block, in front of the loop
+        final Block body = procedure.entryBlock();
+        final Block entry = procedure.newBlock();
+        procedure.blocks.remove(entry);
+        procedure.blocks.add(0, entry);
+        entry.terminator = new Jump(body);
+        final Map<StackSlot, Temp> registers = new HashMap<>();
+        while (!body.instructions.isEmpty() && body.instructions.get(0) instanceof Load load
+                && load.base() instanceof StackSlot slot && isRegisterParameter(procedure, slot)) {
+            registers.put(slot, load.result());
+            entry.instructions.add(body.instructions.remove(0));
+        }
+
+        final List<StackSlot> parameters = procedure.slots.stream().filter(slot -> slot.kind == StackSlot.Kind.PARAMETER).toList();
+        for (Block block : tails) {
+            final Call call = (Call) block.instructions.remove(block.instructions.size() - 1);
+            final List<Boolean> reloaded = new ArrayList<>();
+            for (int i = 0; i < parameters.size(); i++) reloaded.add(isReloaded(block, call.operand(i), parameters.get(i)));
+            // All arguments are taken before the first parameter is overwritten
+            final List<Temp> arguments = new ArrayList<>();
+            for (Operand operand : call.operands()) {
+                final Temp argument = procedure.newTemp(null);
+                block.instructions.add(new Move(argument, operand));
+                arguments.add(argument);
+            }
+            for (int i = 0; i < parameters.size(); i++) {
+                final StackSlot slot = parameters.get(i);
+                if (registers.containsKey(slot)) {
+                    block.instructions.add(new Move(registers.get(slot), arguments.get(i)));
+                } else if (!reloaded.get(i)) {
+                    block.instructions.add(new Store(slot, 0, arguments.get(i)));
+                }
+            }
+            block.terminator = new Jump(body);
+        }
+        procedure.updatePredecessors();
+        return true;
+    }
+
+    /**
+     * Marks the calls of a procedure in SSA form to other procedures in tail position as tail calls, if the callee's
+     * arguments fit into the procedure's argument area.
+     *
+     * @return Whether a call was marked.
+     */
+    public static boolean mark(Procedure procedure) {
+        final ProcedureEntry entry = procedure.entry();
+        final MemoryRegion.Resolver regions = new MemoryRegion.Resolver(procedure);
+        boolean changed = false;
+        for (Block block : procedure.blocks) {
+            if (!(tailCall(block) instanceof Call call) || call.isTail) continue;
+            if (call.callee.stackLayout.argumentAreaSize > entry.stackLayout.argumentAreaSize) continue;
+
+            boolean external = true;
+            for (int i = 0; i < call.operands().size(); i++) {
+                if (call.callee.parameterTypes.get(i).isReference) {
+                    external &= regions.regionOf(call.operand(i)) == MemoryRegion.EXTERNAL;
+                }
+            }
+            if (!external) continue;
+
+            block.instructions.set(block.instructions.size() - 1, new Call(call.name, call.callee, call.operands(), true));
+            changed = true;
+        }
+        return changed;
+    }
+
+    /**
+     * @return The call ending the block if only the return of the procedure follows it, or null.
+     */
+    public static Call tailCall(Block block) {
+        if (block.instructions.isEmpty() || !(block.instructions.get(block.instructions.size() - 1) instanceof Call call)) {
+            return null;
+        }
+        final Set<Block> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        Terminator terminator = block.terminator;
+        while (terminator instanceof Jump jump && jump.target.instructions.isEmpty() && visited.add(jump.target)) {
+            terminator = jump.target.terminator;
+        }
+        return terminator instanceof Return ? call : null;
+    }
+
+    /**
+     * @return Whether the argument has just been loaded from the parameter's slot in the block, like a reference
+     * parameter that is passed on, so the slot already holds it.
+     */
+    private static boolean isReloaded(Block block, Operand argument, StackSlot slot) {
+        for (int i = block.instructions.size() - 1; i >= 0; i--) {
+            final Instruction instruction = block.instructions.get(i);
+            if (instruction instanceof Load load && load.result().equals(argument)) {
+                return load.base() == slot && load.displacement == 0;
+            }
+            if (instruction instanceof Store || instruction instanceof Call
+                    || argument.equals(instruction.result())) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A value parameter kept in a register is only loaded once, at the beginning of the procedure.
+     */
+    private static boolean isRegisterParameter(Procedure procedure, StackSlot slot) {
+        if (slot.kind != StackSlot.Kind.PARAMETER || slot.isReference) return false;
+        int loads = 0;
+        for (Block block : procedure.blocks) {
+            for (Instruction instruction : block.instructions) {
+                if (instruction instanceof Load load && load.base() == slot && load.displacement == 0) {
+                    loads++;
+                } else if (instruction.operands().contains(slot)) {
+                    return false;
+                }
+            }
+            if (block.terminator.operands().contains(slot)) return false;
+        }
+        return loads == 1;
+    }
+
+    /**
+     * @return Whether the operand may be an address derived from a slot of the own frame, following all definitions
+     * of the registers, as the procedure is not in SSA form.
+     */
+    private static boolean mayPointIntoFrame(Operand operand, Map<Temp, List<Instruction>> definitions, Set<Temp> visited) {
+        return switch (operand) {
+            case StackSlot ignored -> true;
+            case Constant ignored -> false;
+            case Temp temp -> {
+                if (!visited.add(temp)) yield false;
+                for (Instruction definition : definitions.getOrDefault(temp, List.of())) {
+                    final boolean derived = switch (definition) {
+                        case Load ignored -> false; // An address loaded from a reference parameter, or a value
+                        case BinaryOp binary -> mayPointIntoFrame(binary.left(), definitions, visited)
+                                || mayPointIntoFrame(binary.right(), definitions, visited);
+                        case Move move -> mayPointIntoFrame(move.source(), definitions, visited);
+                        default -> true;
+                    };
+                    if (derived) yield true;
+                }
+                yield false;
+            }
+        };
+    }
+}
@@ -5,6 +5,7 @@ import de.thm.mni.compilerbau.absyn.*;
 import de.thm.mni.compilerbau.absyn.visitor.DoNothingVisitor;
 import de.thm.mni.compilerbau.absyn.visitor.Visitor;
 import de.thm.mni.compilerbau.phases._02_03_parser.Sym;
+import de.thm.mni.compilerbau.phases._04a_tablebuild.TableInitializer;
 import de.thm.mni.compilerbau.phases._05_varalloc.VarAllocator;
 import de.thm.mni.compilerbau.table.*;
 import de.thm.mni.compilerbau.types.ArrayType;
@@ -35,8 +36,15 @@ public class CodeGenerator {
         this.output = new CodePrinter(output);
     }
 
+    /**
+     * Emits the code for every procedure of the program, including procedures that are never called. Only the
+     * {@link IrCodeGenerator} used with optimizations drops unreachable procedures.
+     *
+     * @param program The abstract syntax tree of the program
+     * @param table   The global symbol table
+     */
     public void generateCode(Program program, SymbolTable table) {
-        assemblerProlog();
+        assemblerProlog(output);
         Visitor visitor = new CodeGeneratorVisitor(table);
         program.accept(visitor);
     }
@@ -81,7 +89,7 @@ public class CodeGenerator {
         }
 
         public void visit(NamedVariable namedVariable) {
-            VariableEntry entry = (VariableEntry) localTable.lookup(namedVariable.name);
+            VariableEntry entry = namedVariable.entry;
             checkRegAvailability(currentRegister);
             output.emitInstruction("add", currentRegister, Register.FRAME_POINTER, entry.offset);
 
@@ -216,7 +224,7 @@ public class CodeGenerator {
             int counter = 0;
             String procName = callStatement.procedureName.toString();
 
-            List<ParameterType> paramList = ((ProcedureEntry) globalTable.lookup(callStatement.procedureName)).parameterTypes;
+            List<ParameterType> paramList = callStatement.procedureEntry.parameterTypes;
 
             for(Expression arg : callStatement.arguments) {
                 ParameterType param = paramList.get(counter);
@@ -241,7 +249,7 @@ public class CodeGenerator {
             int oldFrameOffset;
             int oldReturnOffset;
 
-            ProcedureEntry procedureEntry = (ProcedureEntry) globalTable.lookup(procedureDefinition.name);
+            ProcedureEntry procedureEntry = procedureDefinition.entry;
 
             this.localTable = procedureEntry.localTable;
             this.label = procedureDefinition.name.toString();
@@ -286,17 +294,12 @@ public class CodeGenerator {
      * Emits needed import statements, to allow usage of the predefined functions and sets the correct settings
      * for the assembler.
      */
-    private void assemblerProlog() {
-        output.emitImport("printi");
-        output.emitImport("printc");
-        output.emitImport("readi");
-        output.emitImport("readc");
-        output.emitImport("exit");
-        output.emitImport("time");
-        output.emitImport("clearAll");
-        output.emitImport("setPixel");
-        output.emitImport("drawLine");
-        output.emitImport("drawCircle");
+    static void assemblerProlog(CodePrinter output) {
+        final SymbolTable predefinedScope = TableInitializer.predefinedScope();
+        for (int slot = 0; slot < predefinedScope.size(); slot++) {
+            if (predefinedScope.entry(slot) instanceof ProcedureEntry)
+                output.emitImport(predefinedScope.name(slot).toString());
+        }
         output.emitImport("_indexError");
         output.emit("");
         output.emit("\t.code");
@@ -0,0 +1,367 @@
+package de.thm.mni.compilerbau.phases._06_codegen;
+
+import de.thm.mni.compilerbau.CommandLineOptions;
+import de.thm.mni.compilerbau.ir.*;
+import de.thm.mni.compilerbau.phases._05_varalloc.StackLayout;
+import de.thm.mni.compilerbau.phases._05_varalloc.VarAllocator;
+import de.thm.mni.compilerbau.phases._05b_middleend.TailCalls;
+import de.thm.mni.compilerbau.table.ParameterType;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.*;
+
+/**
+ * Generates the assembly code for procedures in the intermediate representation, after they have been converted
+ * out of SSA form.
+ * <p>
+ * The stack frames have the same layout as those of the {@link CodeGenerator}, but the local variable area only holds
+ * the variables that live in memory and the spill slots of the {@link RegisterAllocation}. The recalculated sizes are
+ * stored in the procedure's {@link StackLayout}. The blocks are emitted in the order of the procedure's block list,
+ * and a jump to the next block is left out. A block that only consists of moves the register allocation has made
+ * redundant and a jump, like the copies at the end of a loop, is not emitted at all: its predecessors continue with
+ * the target of the jump directly. Multiplications by powers of two are emitted as shifts.
+ */
+public class IrCodeGenerator {
+    final CommandLineOptions options;
+    final CodePrinter output;
+    private int labelCount = 0;
+
+    /**
+     * Initializes the code generator.
+     *
+     * @param options The command line options passed to the compiler
+     * @param output  The PrintWriter to the output file.
+     */
+    public IrCodeGenerator(CommandLineOptions options, PrintWriter output) throws IOException {
+        this.options = options;
+        this.output = new CodePrinter(output);
+    }
+
+    /**
+     * Emits the code for the procedures.
+     *
+     * @param procedures The procedures, out of SSA form.
+     */
+    public void generateCode(List<Procedure> procedures) {
+        CodeGenerator.assemblerProlog(output);
+        for (Procedure procedure : procedures) new ProcedureGenerator(procedure).generate();
+    }
+
+    /**
+     * Lays out the frames of the procedures like {@link #generateCode(List)}, without emitting any code, and stores
+     * their sizes in the procedures' {@link StackLayout}s.
+     *
+     * @param procedures The procedures, out of SSA form.
+     */
+    public void layoutFrames(List<Procedure> procedures) {
+        for (Procedure procedure : procedures) new ProcedureGenerator(procedure).layoutFrame();
+    }
+
+    private class ProcedureGenerator {
+        final Procedure procedure;
+        final RegisterAllocation allocation;
+        final StackLayout layout;
+        final Map<Block, String> labels = new IdentityHashMap<>();
+        final Set<Block> skipped = Collections.newSetFromMap(new IdentityHashMap<>());
+        int frameSize;
+        int oldFrameOffset;
+        int oldReturnOffset;
+        Constant storedConstant; // The constant in the first scratch register after a store of it, or null
+
+        ProcedureGenerator(Procedure procedure) {
+            this.procedure = procedure;
+            this.allocation = RegisterAllocation.allocate(procedure);
+            this.layout = procedure.entry().stackLayout;
+        }
+
+        void generate() {
+            layoutFrame();
+
+            for (Block block : procedure.blocks) {
+                if (block != procedure.entryBlock() && block.terminator instanceof Jump
+                        && block.instructions.stream().allMatch(instruction -> instruction instanceof Move move && isRedundant(move))) {
+                    skipped.add(block);
+                }
+            }
+            // An empty loop has to be kept
+            skipped.removeAll(skipped.stream().filter(block -> skipped.contains(destination(block))).toList());
+            final List<Block> emitted = procedure.blocks.stream().filter(block -> !skipped.contains(block)).toList();
+            for (Block block : emitted) {
+                for (Block successor : block.successors()) {
+                    labels.computeIfAbsent(destination(successor), b -> "L" + labelCount++);
+                }
+            }
+
+            final String name = procedure.name().toString();
+            output.emitExport(name);
+            output.emitLabel(name);
+            emitPrologue();
+
+            for (int i = 0; i < emitted.size(); i++) {
+                final Block block = emitted.get(i);
+                final Block next = i + 1 < emitted.size() ? emitted.get(i + 1) : null;
+                if (labels.containsKey(block)) output.emitLabel(labels.get(block));
+                storedConstant = null;
+                final Call tailCall = tailCall(block);
+                for (Instruction instruction : block.instructions) {
+                    if (instruction == tailCall) emitTailCall(tailCall);
+                    else emit(instruction);
+                }
+                if (tailCall == null) emitTerminator(block.terminator, next); // The callee returns to the caller itself
+            }
+        }
+
+        /**
+         * @return The block control continues with when it is transferred to the given block, skipping the blocks
+         * that are not emitted.
+         */
+        Block destination(Block block) {
+            final Set<Block> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+            while (skipped.contains(block) && visited.add(block)) block = ((Jump) block.terminator).target;
+            return block;
+        }
+
+        /**
+         * @return Whether the operation is a multiplication by a power of two, which is emitted as a left shift.
+         */
+        static boolean isShift(BinaryOp binary) {
+            return binary.operator == BinaryOp.Operator.MUL && binary.right() instanceof Constant constant
+                    && constant.value() > 0 && Integer.bitCount(constant.value()) == 1;
+        }
+
+        /**
+         * @return Whether the move copies a register into itself or a spill slot into itself.
+         */
+        boolean isRedundant(Move move) {
+            if (!(move.source() instanceof Temp temp)) return false;
+            final Register source = allocation.register(temp);
+            final Register target = allocation.register(move.result());
+            if (source == null || target == null) {
+                return source == target && allocation.spillSlot(temp) == allocation.spillSlot(move.result());
+            }
+            return source.number == target.number;
+        }
+
+        /**
+         * Places the local variables and spill slots below the frame pointer and calculates the size of the
+         * outgoing area, which is -1 if the procedure does not call any procedure.
+         */
+        void layoutFrame() {
+            int localVarAreaSize = 0;
+            for (StackSlot slot : procedure.slots) {
+                if (slot.kind == StackSlot.Kind.PARAMETER) continue;
+                localVarAreaSize += slot.size;
+                slot.offset = -localVarAreaSize;
+            }
+
+            int outgoingAreaSize = -1;
+            for (Block block : procedure.blocks) {
+                for (Instruction instruction : block.instructions) {
+                    if (instruction instanceof Call call && tailCall(block) != call) {
+                        outgoingAreaSize = Math.max(outgoingAreaSize, StackLayout.require(call.callee.stackLayout.argumentAreaSize));
+                    }
+                }
+            }
+
+            layout.localVarAreaSize = localVarAreaSize;
+            layout.outgoingAreaSize = outgoingAreaSize;
+
+            final int outgoing = Math.max(outgoingAreaSize, 0);
+            frameSize = localVarAreaSize + 2 * VarAllocator.REFERENCE_BYTESIZE + outgoing;
+            oldFrameOffset = VarAllocator.REFERENCE_BYTESIZE + outgoing;
+            oldReturnOffset = localVarAreaSize + 2 * VarAllocator.REFERENCE_BYTESIZE;
+        }
+
+        /**
+         * @return The call ending the block if it is a tail call that is still followed by nothing but the return.
+         */
+        Call tailCall(Block block) {
+            final Call call = TailCalls.tailCall(block);
+            return call != null && call.isTail ? call : null;
+        }
+
+        boolean isLeaf() {
+            return layout.outgoingAreaSize < 0;
+        }
+
+        void emitPrologue() {
+            output.emitInstruction("sub", Register.STACK_POINTER, Register.STACK_POINTER, frameSize);
+            output.emitInstruction("stw", Register.FRAME_POINTER, Register.STACK_POINTER, oldFrameOffset);
+            output.emitInstruction("add", Register.FRAME_POINTER, Register.STACK_POINTER, frameSize);
+            if (!isLeaf()) output.emitInstruction("stw", Register.RETURN_ADDRESS, Register.FRAME_POINTER, -oldReturnOffset);
+        }
+
+        void emitEpilogue() {
+            if (!isLeaf()) output.emitInstruction("ldw", Register.RETURN_ADDRESS, Register.FRAME_POINTER, -oldReturnOffset);
+            output.emitInstruction("ldw", Register.FRAME_POINTER, Register.STACK_POINTER, oldFrameOffset);
+            output.emitInstruction("add", Register.STACK_POINTER, Register.STACK_POINTER, frameSize);
+            output.emitInstruction("jr", Register.RETURN_ADDRESS);
+        }
+
+        /**
+         * @return A register holding the operand, loading or materializing it into the scratch register if needed.
+         */
+        Register use(Operand operand, Register scratch) {
+            return switch (operand) {
+                case Constant constant -> {
+                    if (constant.value() == 0) yield Register.NULL;
+                    output.emitInstruction("add", scratch, Register.NULL, constant.value());
+                    yield scratch;
+                }
+                case StackSlot slot -> {
+                    output.emitInstruction("add", scratch, Register.FRAME_POINTER, slot.offset);
+                    yield scratch;
+                }
+                case Temp temp -> {
+                    final Register register = allocation.register(temp);
+                    if (register != null) yield register;
+                    output.emitInstruction("ldw", scratch, Register.FRAME_POINTER, allocation.spillSlot(temp).offset);
+                    yield scratch;
+                }
+            };
+        }
+
+        /**
+         * @return The register the result is computed in, the first scratch register for a spilled result.
+         */
+        Register target(Temp temp) {
+            final Register register = allocation.register(temp);
+            return register != null ? register : RegisterAllocation.SCRATCH_1;
+        }
+
+        /**
+         * Stores a spilled result from the scratch register into its slot.
+         */
+        void complete(Temp temp) {
+            if (allocation.register(temp) == null) {
+                output.emitInstruction("stw", RegisterAllocation.SCRATCH_1, Register.FRAME_POINTER, allocation.spillSlot(temp).offset);
+            }
+        }
+
+        void emit(Instruction instruction) {
+            final Constant held = storedConstant;
+            storedConstant = null;
+            switch (instruction) {
+                case Move move -> {
+                    final Register target = target(move.result());
+                    switch (move.source()) {
+                        case Constant constant -> output.emitInstruction("add", target, Register.NULL, constant.value());
+                        case StackSlot slot -> output.emitInstruction("add", target, Register.FRAME_POINTER, slot.offset);
+                        case Temp temp -> {
+                            if (isRedundant(move)) return;
+                            if (allocation.register(move.result()) == null && allocation.register(temp) != null) {
+                                output.emitInstruction("stw", allocation.register(temp), Register.FRAME_POINTER,
+                                        allocation.spillSlot(move.result()).offset);
+                                return;
+                            }
+                            final Register source = use(temp, target);
+                            if (source.number != target.number) output.emitInstruction("add", target, source, Register.NULL);
+                        }
+                    }
+                    complete(move.result());
+                }
+                case BinaryOp binary -> {
+                    final Register target = target(binary.result());
+                    if (binary.left() instanceof StackSlot slot && binary.right() instanceof Constant constant
+                            && binary.operator == BinaryOp.Operator.ADD) {
+                        output.emitInstruction("add", target, Register.FRAME_POINTER, slot.offset + constant.value());
+                    } else {
+                        final Register left = use(binary.left(), RegisterAllocation.SCRATCH_1);
+                        if (binary.right() instanceof Constant constant && isShift(binary)) {
+                            output.emitInstruction("sll", target, left, Integer.numberOfTrailingZeros(constant.value()));
+                        } else if (binary.right() instanceof Constant constant) {
+                            output.emitInstruction(binary.operator.mnemonic, target, left, constant.value());
+                        } else {
+                            final Register right = use(binary.right(), RegisterAllocation.SCRATCH_2);
+                            output.emitInstruction(binary.operator.mnemonic, target, left, right);
+                        }
+                    }
+                    complete(binary.result());
+                }
+                case Load load -> {
+                    if (load.base() instanceof StackSlot slot && load.displacement == 0
+                            && allocation.register(load.result()) == null && allocation.spillSlot(load.result()) == slot) {
+                        return; // A parameter spilled to its own slot
+                    }
+                    final Register target = target(load.result());
+                    if (load.base() instanceof StackSlot slot) {
+                        output.emitInstruction("ldw", target, Register.FRAME_POINTER, slot.offset + load.displacement);
+                    } else {
+                        output.emitInstruction("ldw", target, use(load.base(), RegisterAllocation.SCRATCH_1), load.displacement);
+                    }
+                    complete(load.result());
+                }
+                case Store store -> {
+                    // Consecutive stores of the same constant, like those of an unrolled fill loop, share its register
+                    final Register value = held != null && held.equals(store.value())
+                            ? RegisterAllocation.SCRATCH_1 : use(store.value(), RegisterAllocation.SCRATCH_1);
+                    if (value == RegisterAllocation.SCRATCH_1 && store.value() instanceof Constant constant) {
+                        storedConstant = constant;
+                    }
+                    if (store.base() instanceof StackSlot slot) {
+                        output.emitInstruction("stw", value, Register.FRAME_POINTER, slot.offset + store.displacement);
+                    } else {
+                        output.emitInstruction("stw", value, use(store.base(), RegisterAllocation.SCRATCH_2), store.displacement);
+                    }
+                }
+                case BoundsCheck check -> {
+                    final Register index = use(check.index(), RegisterAllocation.SCRATCH_1);
+                    final Register size = use(check.size(), RegisterAllocation.SCRATCH_2);
+                    output.emitInstruction("bgeu", index, size, "_indexError");
+                }
+                case Call call -> {
+                    final List<ParameterType> parameterTypes = call.callee.parameterTypes;
+                    for (int i = 0; i < call.operands().size(); i++) {
+                        final Register argument = use(call.operand(i), RegisterAllocation.SCRATCH_1);
+                        output.emitInstruction("stw", argument, Register.STACK_POINTER, parameterTypes.get(i).offset);
+                    }
+                    output.emitInstruction("jal", call.name.toString());
+                }
+                case Phi phi -> throw new IllegalStateException("Phi left in procedure " + procedure.name() + ": " + phi);
+                case Terminator terminator -> throw new IllegalStateException("Terminator inside a block: " + terminator);
+            }
+        }
+
+        /**
+         * Stores the arguments over the procedure's own ones, removes the frame and jumps to the callee.
+         */
+        void emitTailCall(Call call) {
+            final List<ParameterType> parameterTypes = call.callee.parameterTypes;
+            for (int i = 0; i < call.operands().size(); i++) {
+                final Register argument = use(call.operand(i), RegisterAllocation.SCRATCH_1);
+                output.emitInstruction("stw", argument, Register.FRAME_POINTER, parameterTypes.get(i).offset);
+            }
+            if (!isLeaf()) output.emitInstruction("ldw", Register.RETURN_ADDRESS, Register.FRAME_POINTER, -oldReturnOffset);
+            output.emitInstruction("ldw", Register.FRAME_POINTER, Register.STACK_POINTER, oldFrameOffset);
+            output.emitInstruction("add", Register.STACK_POINTER, Register.STACK_POINTER, frameSize);
+            output.emitInstruction("j", call.name.toString());
+        }
+
+        void emitTerminator(Terminator terminator, Block next) {
+            switch (terminator) {
+                case Jump jump -> {
+                    final Block target = destination(jump.target);
+                    if (target != next) output.emitInstruction("j", labels.get(target));
+                }
+                case Branch branch -> {
+                    final Register left = use(branch.left(), RegisterAllocation.SCRATCH_1);
+                    final Register right = use(branch.right(), RegisterAllocation.SCRATCH_2);
+                    final Block ifTrue = destination(branch.ifTrue);
+                    final Block ifFalse = destination(branch.ifFalse);
+                    if (ifTrue == ifFalse) {
+                        if (ifTrue != next) output.emitInstruction("j", labels.get(ifTrue));
+                    } else if (ifFalse == next) {
+                        output.emitInstruction(branch.condition.mnemonic, left, right, labels.get(ifTrue));
+                    } else if (ifTrue == next) {
+                        output.emitInstruction(branch.condition.negate().mnemonic, left, right, labels.get(ifFalse));
+                    } else {
+                        output.emitInstruction(branch.condition.mnemonic, left, right, labels.get(ifTrue));
+                        output.emitInstruction("j", labels.get(ifFalse));
+                    }
+                }
+                case Return ignored -> emitEpilogue();
+            }
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package de.thm.mni.compilerbau.phases._06_codegen;
+
+import de.thm.mni.compilerbau.ir.*;
+import de.thm.mni.compilerbau.phases._05b_middleend.Liveness;
+
+import java.util.*;
+
+/**
+ * Assigns an ECO32 register or a spill slot to every virtual register of a procedure that is not in SSA form.
+ * <p>
+ * Registers $8 to $21 are allocated by graph coloring (Chaitin, with the optimistic coloring of Briggs et al.).
+ * Moves between registers that do not interfere are coalesced beforehand, if this can not make the graph harder to
+ * color (the conservative tests of George and Briggs), so that most moves inserted by the SSA destruction disappear.
+ * <p>
+ * A call destroys all registers, so every virtual register that is live across a call is spilled, as are the
+ * registers that can not be colored. Spilled values are loaded into the scratch registers $22 and $23 when they are
+ * used, and stored from there when they are defined. A value parameter that is only loaded from its stack slot is
+ * spilled to that slot.
+ */
+class RegisterAllocation {
+    static final int COLORS = 14;
+    static final Register FIRST_ALLOCATABLE = new Register(8);
+    static final Register SCRATCH_1 = new Register(22);
+    static final Register SCRATCH_2 = new Register(23);
+
+    private final Procedure procedure;
+    private final int temps;
+    private final int[] alias; // Union-find of coalesced registers
+    private final BitSet spilled;
+    private final List<Set<Integer>> neighbors = new ArrayList<>();
+    private final int[] color;
+    private final int[] occurrences;
+    private final Map<Integer, StackSlot> spillSlots = new HashMap<>();
+    private final List<Move> moves = new ArrayList<>();
+    private final Map<Integer, List<Integer>> partners = new HashMap<>();
+
+    private RegisterAllocation(Procedure procedure) {
+        this.procedure = procedure;
+        this.temps = procedure.tempCount();
+        this.alias = new int[temps];
+        for (int i = 0; i < temps; i++) alias[i] = i;
+        this.spilled = new BitSet(temps);
+        this.color = new int[temps];
+        Arrays.fill(color, -1);
+        this.occurrences = new int[temps];
+        for (int i = 0; i < temps; i++) neighbors.add(new HashSet<>());
+    }
+
+    /**
+     * Allocates the registers of a procedure. Spill slots are added to the procedure's slots.
+     */
+    static RegisterAllocation allocate(Procedure procedure) {
+        final RegisterAllocation allocation = new RegisterAllocation(procedure);
+        allocation.build(Liveness.compute(procedure));
+        allocation.coalesce();
+        allocation.colorGraph();
+        allocation.assignSpillSlots();
+        return allocation;
+    }
+
+    /**
+     * @return The register holding the virtual register, or null if it is spilled.
+     */
+    Register register(Temp temp) {
+        final int c = color[find(temp.number)];
+        return c < 0 ? null : new Register(FIRST_ALLOCATABLE.number + c);
+    }
+
+    /**
+     * @return The slot a spilled virtual register is kept in.
+     */
+    StackSlot spillSlot(Temp temp) {
+        return spillSlots.get(find(temp.number));
+    }
+
+    private int find(int temp) {
+        while (alias[temp] != temp) {
+            alias[temp] = alias[alias[temp]];
+            temp = alias[temp];
+        }
+        return temp;
+    }
+
+    private void addEdge(int a, int b) {
+        if (a == b) return;
+        neighbors.get(a).add(b);
+        neighbors.get(b).add(a);
+    }
+
+    /**
+     * Builds the interference graph by walking every block backwards from its live-out set. The source of a move
+     * does not interfere with its target, so the two can be coalesced.
+     */
+    private void build(Liveness liveness) {
+        for (Block block : procedure.blocks) {
+            final Set<Integer> live = new HashSet<>(liveness.liveOut(block));
+            final List<Instruction> instructions = new ArrayList<>(block.instructions);
+            instructions.add(block.terminator);
+            for (int k = instructions.size() - 1; k >= 0; k--) {
+                final Instruction instruction = instructions.get(k);
+                if (instruction instanceof Call) {
+                    live.forEach(spilled::set); // Live across the call
+                }
+
+                final Temp result = instruction.result();
+                if (result != null) {
+                    occurrences[result.number]++;
+                    live.remove(result.number);
+                    final Operand source = instruction instanceof Move move ? move.source() : null;
+                    for (int other : live) {
+                        if (!(source instanceof Temp temp && temp.number == other)) addEdge(result.number, other);
+                    }
+                    if (source instanceof Temp temp) {
+                        moves.add((Move) instruction);
+                        partners.computeIfAbsent(result.number, t -> new ArrayList<>()).add(temp.number);
+                        partners.computeIfAbsent(temp.number, t -> new ArrayList<>()).add(result.number);
+                    }
+                }
+                for (Operand operand : instruction.operands()) {
+                    if (operand instanceof Temp temp) {
+                        occurrences[temp.number]++;
+                        live.add(temp.number);
+                    }
+                }
+            }
+        }
+    }
+
+    private int degree(int node) {
+        return neighbors.get(node).size();
+    }
+
+    /**
+     * Coalesces the registers of moves if this can not make the graph harder to color. The register with fewer
+     * neighbors is merged into the other one.
+     */
+    private void coalesce() {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Move move : moves) {
+                final int a = find(move.result().number);
+                final int b = find(((Temp) move.source()).number);
+                if (a == b || spilled.get(a) || spilled.get(b) || neighbors.get(a).contains(b)) continue;
+
+                final int kept = degree(a) >= degree(b) ? a : b;
+                final int merged = kept == a ? b : a;
+                if (!isConservative(kept, merged)) continue;
+
+                for (int neighbor : neighbors.get(merged)) {
+                    neighbors.get(neighbor).remove(merged);
+                    addEdge(kept, neighbor);
+                }
+                neighbors.get(merged).clear();
+                alias[merged] = kept;
+                occurrences[kept] += occurrences[merged];
+                changed = true;
+            }
+        }
+    }
+
+    /**
+     * George's test: every neighbor of the merged register already interferes with the kept one or has fewer than
+     * {@link #COLORS} neighbors. Otherwise Briggs' test: the combined register has fewer than {@link #COLORS}
+     * neighbors with {@link #COLORS} or more neighbors.
+     */
+    private boolean isConservative(int kept, int merged) {
+        final Set<Integer> keptNeighbors = neighbors.get(kept);
+        boolean george = true;
+        for (int neighbor : neighbors.get(merged)) {
+            if (!keptNeighbors.contains(neighbor) && degree(neighbor) >= COLORS) {
+                george = false;
+                break;
+            }
+        }
+        if (george) return true;
+
+        int significant = 0;
+        for (int neighbor : keptNeighbors) {
+            if (degree(neighbor) >= COLORS && ++significant >= COLORS) return false;
+        }
+        for (int neighbor : neighbors.get(merged)) {
+            if (!keptNeighbors.contains(neighbor) && degree(neighbor) >= COLORS && ++significant >= COLORS) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Simplifies the graph by removing nodes with fewer than {@link #COLORS} neighbors, removing the cheapest node
+     * optimistically if there is none, and colors the nodes in reverse order.
+     */
+    private void colorGraph() {
+        final List<Integer> nodes = new ArrayList<>();
+        for (int t = 0; t < temps; t++) {
+            if (find(t) == t && !spilled.get(t) && occurrences[t] > 0) nodes.add(t);
+        }
+
+        final int[] degree = new int[temps];
+        final BitSet removed = new BitSet(temps);
+        for (int node : nodes) {
+            for (int neighbor : neighbors.get(node)) {
+                if (!spilled.get(neighbor)) degree[node]++;
+            }
+        }
+
+        final ArrayDeque<Integer> stack = new ArrayDeque<>();
+        final TreeSet<Integer> low = new TreeSet<>();
+        final TreeSet<Integer> high = new TreeSet<>();
+        for (int node : nodes) (degree[node] < COLORS ? low : high).add(node);
+        while (!low.isEmpty() || !high.isEmpty()) {
+            final int node;
+            if (!low.isEmpty()) {
+                node = low.pollFirst();
+            } else {
+                // Spill candidate: the fewest uses and definitions per neighbor
+                node = high.stream().min(Comparator.comparingDouble(n -> occurrences[n] / (double) degree[n])).orElseThrow();
+                high.remove(node);
+            }
+            removed.set(node);
+            stack.push(node);
+            for (int neighbor : neighbors.get(node)) {
+                if (spilled.get(neighbor) || removed.get(neighbor)) continue;
+                if (degree[neighbor]-- == COLORS) {
+                    high.remove(neighbor);
+                    low.add(neighbor);
+                }
+            }
+        }
+
+        while (!stack.isEmpty()) {
+            final int node = stack.pop();
+            final BitSet used = new BitSet(COLORS);
+            for (int neighbor : neighbors.get(node)) {
+                if (color[neighbor] >= 0) used.set(color[neighbor]);
+            }
+            int chosen = -1;
+            for (int partner : partners.getOrDefault(node, List.of())) {
+                final int c = color[find(partner)];
+                if (c >= 0 && !used.get(c)) {
+                    chosen = c;
+                    break;
+                }
+            }
+            if (chosen < 0) chosen = used.nextClearBit(0);
+            if (chosen < COLORS) color[node] = chosen;
+            else spilled.set(node);
+        }
+    }
+
+    /**
+     * Gives every spilled register its own slot. A value parameter that is only defined by the load from its stack
+     * slot is kept there.
+     */
+    private void assignSpillSlots() {
+        final Map<Integer, List<Instruction>> definitions = new HashMap<>();
+        for (Block block : procedure.blocks) {
+            for (Instruction instruction : block.instructions) {
+                if (instruction.result() != null && spilled.get(find(instruction.result().number))) {
+                    definitions.computeIfAbsent(find(instruction.result().number), t -> new ArrayList<>()).add(instruction);
+                }
+            }
+        }
+
+        for (int t = spilled.nextSetBit(0); t >= 0; t = spilled.nextSetBit(t + 1)) {
+            if (find(t) != t) continue;
+            final List<Instruction> defining = definitions.getOrDefault(t, List.of());
+            if (defining.size() == 1 && defining.get(0) instanceof Load load && load.displacement == 0
+                    && load.base() instanceof StackSlot slot && slot.kind == StackSlot.Kind.PARAMETER) {
+                spillSlots.put(t, slot);
+                continue;
+            }
+            final StackSlot slot = new StackSlot(StackSlot.Kind.SPILL, "spill" + t, 4);
+            procedure.slots.add(slot);
+            spillSlots.put(t, slot);
+        }
+    }
+}
@@ -2,23 +2,24 @@ package de.thm.mni.compilerbau.table;
 
 /**
  * Represents an identifier in SPL.
- * Implements string interning internally to speed up lookups in symbol tables.
+ * Names are interned in the {@link IdentifierPool}, so every identifier carries the dense int id of its name.
+ * Equality and hashing only compare these ids, and tables can use {@link #id} as an array index.
  */
 public class Identifier {
     private final String identifier;
+    public final int id;
 
     public Identifier(String identifier) {
-        //Intern the identifier.
-        //This way string equality in table lookups can be determined by only comparing the references.
-        this.identifier = identifier.intern();
+        this.id = IdentifierPool.intern(identifier);
+        this.identifier = IdentifierPool.name(id);
     }
 
     public int hashCode() {
-        return identifier.hashCode();
+        return id;
     }
 
     public boolean equals(Object other) {
-        return other instanceof Identifier && ((Identifier) other).identifier.equals(identifier);
+        return other instanceof Identifier && ((Identifier) other).id == id;
     }
 
     @Override
@@ -0,0 +1,65 @@
+package de.thm.mni.compilerbau.table;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The intern pool for the names of {@link Identifier}s.
+ * <p>
+ * Every distinct name gets a dense int id: the first name interned gets id 0, the next one id 1 and so on.
+ * Tables and caches can therefore use an id directly as an array index, with {@link #size()} as the array length.
+ * <p>
+ * The pool is owned by the compiler instead of using {@link String#intern()}, which goes through the global string
+ * table of the JVM. Names that are already known are looked up without locking, so the pool can be used from several
+ * threads at once. Only adding a new name takes a lock.
+ */
+public final class IdentifierPool {
+    private static final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private static final Object lock = new Object();
+
+    // Written only while holding the lock. An id is published through the map after its name has been stored here.
+    private static volatile String[] names = new String[256];
+    private static int size = 0;
+
+    private IdentifierPool() {
+    }
+
+    /**
+     * Returns the id of a name, assigning the next free id if the name has not been seen before.
+     *
+     * @param name The name to intern.
+     * @return The id of the name. Equal names always get the same id.
+     */
+    public static int intern(String name) {
+        final Integer id = ids.get(name);
+        if (id != null) return id;
+
+        synchronized (lock) {
+            final Integer existing = ids.get(name);
+            if (existing != null) return existing;
+
+            String[] current = names;
+            if (size == current.length) current = names = Arrays.copyOf(current, Math.multiplyExact(current.length, 2));
+            current[size] = name;
+            ids.put(name, size);
+            return size++;
+        }
+    }
+
+    /**
+     * @param id An id returned by {@link #intern(String)}.
+     * @return The name with this id. It is the same String object for every call with this id.
+     */
+    public static String name(int id) {
+        return names[id];
+    }
+
+    /**
+     * @return The number of distinct names interned so far. All ids are smaller than this number.
+     */
+    public static int size() {
+        synchronized (lock) {
+            return size;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package de.thm.mni.compilerbau.table;
 
+import de.thm.mni.compilerbau.phases._05_varalloc.StackLayout;
 import de.thm.mni.compilerbau.types.Type;
 
 /**
@@ -8,7 +9,7 @@ import de.thm.mni.compilerbau.types.Type;
 public class ParameterType {
     public final Type type;
     public final boolean isReference;
-    public Integer offset = null; // This value has to be set in phase 5
+    public int offset = StackLayout.UNSET; // This value has to be set in phase 5
 
     /**
      * @param type        The semantic type of the parameter. See {@link Type} and its subclasses.
@@ -1,5 +1,6 @@
 package de.thm.mni.compilerbau.table;
 
+import de.thm.mni.compilerbau.phases._04c_callgraph.SideEffects;
 import de.thm.mni.compilerbau.phases._05_varalloc.StackLayout;
 
 import java.util.List;
@@ -13,6 +14,7 @@ public class ProcedureEntry implements Entry {
     public final SymbolTable localTable;
     public final List<ParameterType> parameterTypes;
     public final StackLayout stackLayout = new StackLayout();
+    public final SideEffects sideEffects = new SideEffects();
 
     /**
      * Creates a new {@link Entry} representing a declared SPL procedure.
@@ -29,6 +31,7 @@ public class ProcedureEntry implements Entry {
     /**
      * This static method is reserved for the creation of entries for predefined procedures, where the calculations of
      * phase 5 have to be performed manually.
+     * Every predefined procedure performs input or output. Reference parameters are only written, never read.
      *
      * @param parameterTypes   A list describing the parameters of the procedure.
      * @param argumentAreaSize The size in byte needed on the stack frame to store all arguments of the procedure.
@@ -37,6 +40,10 @@ public class ProcedureEntry implements Entry {
     public static ProcedureEntry predefinedProcedureEntry(List<ParameterType> parameterTypes, int argumentAreaSize) {
         final var procedureEntry = new ProcedureEntry(null, parameterTypes);
         procedureEntry.stackLayout.argumentAreaSize = argumentAreaSize;
+        procedureEntry.sideEffects.performsIo = true;
+        for (int i = 0; i < parameterTypes.size(); i++) {
+            if (parameterTypes.get(i).isReference) procedureEntry.sideEffects.writtenParameters.set(i);
+        }
         return procedureEntry;
     }
 
@@ -2,20 +2,43 @@ package de.thm.mni.compilerbau.table;
 
 import de.thm.mni.compilerbau.utils.SplError;
 
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Arrays;
 import java.util.Comparator;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * Represents a symbol table for a definition scope in SPL.
  * Maps identifiers to the corresponding symbols.
+ * <p>
+ * The symbols of a scope are stored in dense slots, numbered from 0 in the order they were entered.
+ * A small open-addressing index maps the {@link Identifier#id} of a name to its slot, so that looking up a name
+ * neither allocates nor recurses: the scopes are searched from the inside out in a simple loop.
+ * <p>
+ * A table can be {@link #freeze() frozen} to share it between compilations, and an {@link #overlay(SymbolTable)
+ * overlay} makes a frozen table the first part of a new scope: the symbols of the frozen table occupy the first slots
+ * of the overlay, and everything entered into the overlay is stored in the overlay only.
  */
 public class SymbolTable {
-    //private final Map<Identifier, Entry> entries = new HashMap<>();
-    public final Map<Identifier, Entry> entries = new HashMap<>();
+    private static final String PADDING = " ".repeat(15); // Names are padded to this width when printed
+    private static final int FREE = -1;
+
     private final SymbolTable upperLevel;
+    private final SymbolTable base; // Frozen table whose symbols are the first slots of this scope, or null
+    private final int baseSize;
+    private boolean frozen = false;
+
+    private Identifier[] names = new Identifier[8];
+    private Entry[] entries = new Entry[8];
+    private int size = 0;
+
+    // Open-addressing index from identifier ids to slots. Its length is always a power of two.
+    private int[] indexIds = new int[16];
+    private int[] indexSlots = new int[16];
+
+    private int[] sortedSlots = null; // Cache for printing, cleared by every enter
 
     /**
      * Constructs a local table representing a local definition scope.
@@ -23,14 +46,44 @@ public class SymbolTable {
      * @param upperLevel The symbol table for the surrounding scope.
      */
     public SymbolTable(SymbolTable upperLevel) {
+        this(upperLevel, null);
+    }
+
+    private SymbolTable(SymbolTable upperLevel, SymbolTable base) {
         this.upperLevel = upperLevel;
+        this.base = base;
+        this.baseSize = base == null ? 0 : base.size();
+        Arrays.fill(indexIds, FREE);
     }
 
     /**
      * Constructs an empty table with no surrounding scope.
      */
     public SymbolTable() {
-        this.upperLevel = null;
+        this(null);
+    }
+
+    /**
+     * Creates a table without surrounding scope, that starts with all symbols of a frozen table.
+     * The frozen table is shared, not copied: symbols entered into the new table are only stored in the new table.
+     *
+     * @param base The frozen table. It must not have a surrounding scope.
+     * @return The new table.
+     */
+    public static SymbolTable overlay(SymbolTable base) {
+        if (!base.frozen || base.upperLevel != null)
+            throw new IllegalArgumentException("Only frozen tables without surrounding scope can be overlaid");
+        return new SymbolTable(null, base);
+    }
+
+    /**
+     * Makes this table immutable. Entering a symbol afterwards throws an {@link UnsupportedOperationException}.
+     *
+     * @return This table.
+     */
+    public SymbolTable freeze() {
+        frozen = true;
+        return this;
     }
 
     /**
@@ -42,6 +95,54 @@ public class SymbolTable {
         return Optional.ofNullable(upperLevel);
     }
 
+    /**
+     * @return The number of symbols defined in this scope. Their slots are 0 to size() - 1.
+     */
+    public int size() {
+        return baseSize + size;
+    }
+
+    /**
+     * @param slot The slot of a symbol in this scope.
+     * @return The name of the symbol in this slot.
+     */
+    public Identifier name(int slot) {
+        return slot < baseSize ? base.name(slot) : names[slot - baseSize];
+    }
+
+    /**
+     * @param slot The slot of a symbol in this scope.
+     * @return The entry of the symbol in this slot.
+     */
+    public Entry entry(int slot) {
+        return slot < baseSize ? base.entry(slot) : entries[slot - baseSize];
+    }
+
+    /**
+     * Finds the slot of a symbol defined in this scope. Outer scopes are not searched.
+     *
+     * @param name The name of the symbol.
+     * @return The slot of the symbol or -1 if there is no symbol with this name in this scope.
+     */
+    public int slot(Identifier name) {
+        if (base != null) {
+            final int slot = base.slot(name);
+            if (slot != FREE) return slot;
+        }
+
+        final int id = name.id;
+        final int mask = indexIds.length - 1;
+        for (int i = hash(id) & mask; ; i = (i + 1) & mask) {
+            final int candidate = indexIds[i];
+            if (candidate == id) return baseSize + indexSlots[i];
+            if (candidate == FREE) return FREE;
+        }
+    }
+
+    private static int hash(int id) {
+        return id * 0x9E3779B9 >>> 7;
+    }
+
     /**
      * Inserts a new symbol into the table.
      * Does nothing if a symbol with this name already exists in this scope.
@@ -50,20 +151,48 @@ public class SymbolTable {
      * @param entry The entry for the new symbol.
      */
     public void enter(Identifier name, Entry entry) {
-        this.entries.putIfAbsent(name, entry);
+        if (frozen) throw new UnsupportedOperationException("The symbol table is frozen");
+        if (slot(name) != FREE) return;
+
+        if (size == names.length) {
+            names = Arrays.copyOf(names, Math.multiplyExact(size, 2));
+            entries = Arrays.copyOf(entries, names.length);
+        }
+        names[size] = name;
+        entries[size] = entry;
+        size++;
+
+        if (2 * size > indexIds.length) rebuildIndex(Math.multiplyExact(indexIds.length, 2));
+        else addToIndex(size - 1);
+        sortedSlots = null;
+    }
+
+    private void addToIndex(int slot) {
+        final int mask = indexIds.length - 1;
+        int i = hash(names[slot].id) & mask;
+        while (indexIds[i] != FREE) i = (i + 1) & mask;
+        indexIds[i] = names[slot].id;
+        indexSlots[i] = slot;
+    }
+
+    private void rebuildIndex(int capacity) {
+        indexIds = new int[capacity];
+        indexSlots = new int[capacity];
+        Arrays.fill(indexIds, FREE);
+        for (int slot = 0; slot < size; slot++) addToIndex(slot);
     }
 
     /**
      * Inserts a new symbol into the table.
      * Throws an exception if a symbol with this name already exists in this scope.
-     * 
+     *
      * @param name  The name of the symbol that is entered.
      * @param entry The entry for the new symbol.
      * @param error The exception to throw if a symbol with this name is already defined.
      * @throws SplError If a symbol with this name is already defined.
      */
     public void enter(Identifier name, Entry entry, SplError error) {
-        if (this.entries.containsKey(name))
+        if (slot(name) != FREE)
             throw error;
 
         this.enter(name, entry);
@@ -71,22 +200,22 @@ public class SymbolTable {
 
     /**
      * Looks for the symbol defined with the given name.
-     * Recursively looks in outer scopes if the name is not defined in this scope.
+     * Looks in the outer scopes if the name is not defined in this scope.
      *
      * @param name The name of the symbol.
      * @return null if no symbol was found, the found symbol otherwise.
      */
     public Entry lookup(Identifier name) {
-        Entry entry = this.entries.get(name);
-
-        if (entry != null) return entry;
-        if (upperLevel != null) return upperLevel.lookup(name);
+        for (SymbolTable table = this; table != null; table = table.upperLevel) {
+            final int slot = table.slot(name);
+            if (slot != FREE) return table.entry(slot);
+        }
         return null;
     }
 
     /**
      * Looks for the symbol defined with the given name.
-     * Recursively looks in outer scopes if the name is not defined in this scope.
+     * Looks in the outer scopes if the name is not defined in this scope.
      *
      * @param name The name of the symbol.
      * @return The symbol belonging to this name.
@@ -94,7 +223,9 @@ public class SymbolTable {
      * @see SymbolTable#find(Identifier)
      */
     public Entry lookup(Identifier name, SplError error) {
-        return find(name).orElseThrow(() -> error);
+        final Entry entry = lookup(name);
+        if (entry == null) throw error;
+        return entry;
     }
 
     /**
@@ -109,6 +240,48 @@ public class SymbolTable {
         return Optional.ofNullable(lookup(name));
     }
 
+    /**
+     * Returns the slots of this scope sorted by name, as they are printed.
+     * The sorted order is kept until the next entry is entered, so printing the same scope repeatedly does not sort
+     * it again.
+     *
+     * @return The slots of this scope in the order of their names.
+     */
+    private int[] sortedSlots() {
+        if (sortedSlots == null) {
+            sortedSlots = IntStream.range(0, size()).boxed()
+                    .sorted(Comparator.comparing(slot -> name(slot).toString()))
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+        }
+        return sortedSlots;
+    }
+
+    /**
+     * Writes the table and all surrounding tables in a human-readable format.
+     *
+     * @param out   The sink the table is written to.
+     * @param level The level of this scope. 0 for the most inner scope, +1 for each outer scope.
+     */
+    public void print(PrintWriter out, int level) {
+        for (SymbolTable table = this; table != null; table = table.upperLevel, level++) {
+            out.print("  level ");
+            out.print(level);
+            out.print('\n');
+
+            if (table.size() == 0) out.print("    <empty>\n");
+            for (int slot : table.sortedSlots()) {
+                final String name = table.name(slot).toString();
+                out.print("    ");
+                out.print(name);
+                out.write(PADDING, 0, Math.max(0, PADDING.length() - name.length()));
+                out.print(" --> ");
+                out.print(table.entry(slot));
+                out.print('\n');
+            }
+        }
+    }
+
     /**
      * Converts the table to a human-readable format.
      *
@@ -116,19 +289,11 @@ public class SymbolTable {
      * @return A human readable representation of the table contents.
      */
     public String toString(int level) {
-        var string = String.format("  level %d\n", level);
-
-        if (this.entries.size() == 0) string += "    <empty>\n";
-        else {
-            string += this.entries.entrySet().stream()
-                    .sorted(Comparator.comparing(a -> a.getKey().toString()))
-                    .map(entry -> String.format("    %-15s --> %s\n", entry.getKey(), entry.getValue()))
-                    .collect(Collectors.joining(""));
-        }
-
-        if (upperLevel != null) string += upperLevel.toString(level + 1);
-
-        return string;
+        final StringWriter buffer = new StringWriter();
+        final PrintWriter out = new PrintWriter(buffer);
+        print(out, level);
+        out.flush();
+        return buffer.toString();
     }
 
     /**
@@ -1,5 +1,6 @@
 package de.thm.mni.compilerbau.table;
 
+import de.thm.mni.compilerbau.phases._05_varalloc.StackLayout;
 import de.thm.mni.compilerbau.types.Type;
 
 /**
@@ -10,7 +11,7 @@ import de.thm.mni.compilerbau.types.Type;
 public class VariableEntry implements Entry {
     public final Type type;
     public final boolean isReference;
-    public Integer offset = null; // This value has to be set in phase 5
+    public int offset = StackLayout.UNSET; // This value has to be set in phase 5
 
     /**
      * Creates a new {@link Entry} representing a declared SPL variable. This variable can be a local variable or the
@@ -1,10 +1,19 @@
 package de.thm.mni.compilerbau.types;
 
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * Represents array types in spl.
- * Is constructed each time an {@link de.thm.mni.compilerbau.absyn.ArrayTypeExpression} is encountered in the source code.
+ * <p>
+ * Array types are hash-consed: {@link #of(Type, int)} returns the same object for the same base type and size, so every
+ * structurally distinct array type exists only once. Two types are therefore equal exactly if they are the same object.
  */
 public class ArrayType extends Type {
+    private record Key(Type baseType, int arraySize) {
+    }
+
+    private static final ConcurrentHashMap<Key, ArrayType> types = new ConcurrentHashMap<>();
+
     public final Type baseType;
     public final int arraySize;
 
@@ -13,13 +22,27 @@ public class ArrayType extends Type {
      *
      * @param baseType  The type of the array's elements.
      * @param arraySize The number of elements in an array of this type.
+     * @throws ArithmeticException If the size of the array in bytes does not fit into an int.
      */
-    public ArrayType(Type baseType, int arraySize) {
-        super(arraySize * baseType.byteSize);
+    private ArrayType(Type baseType, int arraySize) {
+        super(Math.multiplyExact(arraySize, baseType.byteSize));
         this.baseType = baseType;
         this.arraySize = arraySize;
     }
 
+    /**
+     * Returns the array type with the given base type and size, creating it when it is requested for the first time.
+     * Its byte size is computed only then.
+     *
+     * @param baseType  The type of the array's elements.
+     * @param arraySize The number of elements in an array of this type.
+     * @return The only {@link ArrayType} with this base type and size.
+     * @throws ArithmeticException If the size of the array in bytes does not fit into an int.
+     */
+    public static ArrayType of(Type baseType, int arraySize) {
+        return types.computeIfAbsent(new Key(baseType, arraySize), key -> new ArrayType(key.baseType, key.arraySize));
+    }
+
     @Override
     public String toString() {
         return String.format("array [%d] of %s", arraySize, baseType);
@@ -1,5 +1,6 @@
 package de.thm.mni.compilerbau.utils;
 
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -76,6 +77,24 @@ public class AsciiGraphicalTableBuilder {
         return builder.toString();
     }
 
+    /**
+     * Writes the table line by line, each line prefixed with the given number of spaces.
+     *
+     * @param out    The sink the table is written to.
+     * @param indent The number of spaces in front of every line.
+     */
+    public void print(PrintWriter out, int indent) {
+        int minWidth = lines.stream().mapToInt(Line::minWidth).max().orElse(0);
+
+        StringBuilder builder = new StringBuilder();
+        for (Line line : lines) {
+            builder.setLength(0);
+            for (int i = 0; i < indent; i++) builder.append(' ');
+            line.format(builder, minWidth);
+            out.print(builder);
+        }
+    }
+
     public void line(String content, String comment, Alignment alignment) {
         this.lines.add(new Line(VERTICAL_SEP, VERTICAL_SEP, ' ', content, alignment, comment));
     }
@@ -118,6 +118,14 @@ public class SplError extends RuntimeException {
         return new SplError(127, Position.ERROR_POSITION, "Procedure 'main' must not have any parameters.");
     }
 
+    public static SplError TypeTooLarge(Position position, int arraySize, Type baseType) {
+        return new SplError(128, position, "Type 'array [%d] of %s' is too large: its size in bytes does not fit into 32 bits.", arraySize, baseType);
+    }
+
+    public static SplError DivisionByZero(Position position) {
+        return new SplError(129, position, "Division by zero in a constant expression.");
+    }
+
     public static SplError RegisterOverflow() {
         return new SplError(140, Position.ERROR_POSITION, "There are not enough registers to run this program!");
     }
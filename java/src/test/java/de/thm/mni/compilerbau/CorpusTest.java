@@ -0,0 +1,133 @@
+package de.thm.mni.compilerbau;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compiles every program of the corpus in src/test/resources/corpus at every optimization level and runs it in the
+ * {@link Eco32Simulator}. For a program NAME.spl, NAME.out holds the expected output and NAME.status how it has to end,
+ * both taken from the unoptimized code of the original compiler.
+ * <p>
+ * The number of generated and executed instructions of every program is printed at the end, so that the effect of
+ * the optimizations can be measured with: mvn test -Dtest=CorpusTest
+ */
+class CorpusTest {
+    private static final int LEVELS = 3;
+    private static final long MAX_STEPS = 100_000_000;
+
+    /**
+     * The generated and executed instructions of every program, per optimization level.
+     */
+    private static final Map<String, long[][]> counts = new TreeMap<>();
+
+    static Path corpus() throws URISyntaxException {
+        return Path.of(Objects.requireNonNull(CorpusTest.class.getResource("/corpus")).toURI());
+    }
+
+    static Stream<Arguments> programs() throws IOException, URISyntaxException {
+        try (Stream<Path> files = Files.list(corpus())) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.endsWith(".spl"))
+                    .map(name -> name.substring(0, name.length() - ".spl".length()))
+                    .sorted()
+                    .toList().stream()
+                    .flatMap(name -> IntStream.range(0, LEVELS).mapToObj(level -> Arguments.of(name, level)));
+        }
+    }
+
+    /**
+     * @param output   Everything the compiler printed to stdout and stderr.
+     * @param exitCode The exit code of the compiler.
+     */
+    record Compilation(String output, int exitCode) {
+    }
+
+    /**
+     * Runs the compiler in its own process, as it exits the JVM when it is done.
+     */
+    static Compilation runCompiler(String... arguments) throws IOException, InterruptedException {
+        final List<String> command = new ArrayList<>(List.of(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"),
+                Main.class.getName()));
+        command.addAll(List.of(arguments));
+        final Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        final String output = new String(process.getInputStream().readAllBytes());
+        return new Compilation(output, process.waitFor());
+    }
+
+    /**
+     * @return The generated assembler code.
+     */
+    static String compile(Path source, int level, Path directory) throws IOException, InterruptedException {
+        final Path assembly = directory.resolve("out.s");
+        final Compilation compilation = runCompiler("-O" + level, source.toString(), assembly.toString());
+        assertEquals(0, compilation.exitCode(),
+                () -> "Compiling " + source.getFileName() + " failed:\n" + compilation.output());
+        return Files.readString(assembly);
+    }
+
+    @ParameterizedTest(name = "{0} at -O{1}")
+    @MethodSource("programs")
+    void producesTheExpectedOutput(String program, int level, @TempDir Path directory) throws Exception {
+        final String assembly = compile(corpus().resolve(program + ".spl"), level, directory);
+        final Eco32Simulator.Result result = Eco32Simulator.run(assembly, MAX_STEPS);
+
+        assertEquals(Files.readString(corpus().resolve(program + ".status")).strip(), result.status().name());
+        assertEquals(Files.readString(corpus().resolve(program + ".out")), result.output());
+
+        final long instructions = assembly.lines().filter(line -> line.matches("\t[a-z].*")).count();
+        synchronized (counts) {
+            final long[][] programCounts = counts.computeIfAbsent(program, name -> new long[LEVELS][]);
+            programCounts[level] = new long[]{instructions, result.steps()};
+        }
+    }
+
+    @ParameterizedTest(name = "at -O{0}")
+    @ValueSource(ints = {0, 1, 2})
+    void rejectsConstantDivisionByZeroAtEveryLevel(int level, @TempDir Path directory) throws Exception {
+        final Path source = directory.resolve("divzero.spl");
+        Files.writeString(source, """
+                proc main() {
+                    var x: int;
+                    if (1 = 0) { x := 5 / 0; }
+                    x := 7 / (2 - 2);
+                }
+                """);
+        final Compilation compilation = runCompiler("-O" + level, source.toString(), directory.resolve("out.s").toString());
+        assertEquals(129, compilation.exitCode(), compilation.output());
+        assertTrue(compilation.output().contains("Line 4, Column 12"), compilation.output());
+    }
+
+    @AfterAll
+    static void printCounts() {
+        System.out.printf("%-12s %30s %36s%n", "program", "instructions (-O0/-O1/-O2)", "executed (-O0/-O1/-O2)");
+        counts.forEach((program, programCounts) -> {
+            final StringBuilder instructions = new StringBuilder();
+            final StringBuilder executed = new StringBuilder();
+            for (long[] levelCounts : programCounts) {
+                instructions.append(String.format("%10s", levelCounts == null ? "-" : levelCounts[0]));
+                executed.append(String.format("%12s", levelCounts == null ? "-" : levelCounts[1]));
+            }
+            System.out.printf("%-12s %s %s%n", program, instructions, executed);
+        });
+    }
+}
@@ -0,0 +1,213 @@
+package de.thm.mni.compilerbau;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Executes the ECO32 assembler code emitted by the code generators, so that the tests can check what a compiled
+ * program does.
+ * <p>
+ * Only the instructions used by the code generators are supported. The library procedures printi, printc and exit
+ * are emulated and read their argument at the stack pointer, as the calling convention places it there. A jump to
+ * _indexError or a division by zero stops the program like the real runtime would.
+ */
+final class Eco32Simulator {
+    enum Status {
+        OK,
+        INDEX_ERROR,
+        DIVISION_BY_ZERO,
+        EXIT,
+        TIMEOUT
+    }
+
+    /**
+     * @param output    Everything the program printed.
+     * @param status    How the program ended.
+     * @param steps     The number of executed instructions.
+     * @param stackSize The maximum number of bytes the stack grew to.
+     */
+    record Result(String output, Status status, long steps, int stackSize) {
+    }
+
+    private static final int STACK_TOP = 0x00F00000;
+    private static final int HALT = -1;
+    private static final int SP = 29;
+    private static final int RA = 31;
+
+    /**
+     * An instruction with its operands decoded. Each operand is either a register or an immediate value. The last
+     * operand of a jump or branch is its target.
+     */
+    private record Instruction(String opcode, int[] values, boolean[] registers, String target) {
+    }
+
+    private final List<Instruction> code = new ArrayList<>();
+    private final Map<String, Integer> labels = new HashMap<>();
+
+    private final int[] registers = new int[32];
+    private final Map<Integer, Integer> memory = new HashMap<>();
+    private final StringBuilder output = new StringBuilder();
+    private int stackPointer = STACK_TOP;
+    private int pc;
+
+    private Eco32Simulator(String assembly) {
+        for (String line : assembly.split("\n")) {
+            line = line.split(";", 2)[0].strip();
+            final int colon = line.indexOf(':');
+            if (colon >= 0) {
+                labels.put(line.substring(0, colon), code.size());
+                line = line.substring(colon + 1).strip();
+            }
+            if (line.isEmpty() || line.startsWith(".")) continue;
+
+            final String[] parts = line.split("\\s+", 2);
+            final String[] operands = parts.length > 1 ? parts[1].split(",") : new String[0];
+            final int[] values = new int[operands.length];
+            final boolean[] isRegister = new boolean[operands.length];
+            String target = null;
+            for (int i = 0; i < operands.length; i++) {
+                final String operand = operands[i].strip();
+                if (operand.startsWith("$")) {
+                    isRegister[i] = true;
+                    values[i] = Integer.parseInt(operand.substring(1));
+                } else if (Character.isDigit(operand.charAt(0)) || operand.charAt(0) == '-') {
+                    values[i] = Long.decode(operand).intValue();
+                } else {
+                    target = operand;
+                }
+            }
+            code.add(new Instruction(parts[0], values, isRegister, target));
+        }
+    }
+
+    /**
+     * Runs a program, starting at main, until it returns, traps or exceeds the given number of steps.
+     */
+    static Result run(String assembly, long maxSteps) {
+        return new Eco32Simulator(assembly).run(maxSteps);
+    }
+
+    private Result run(long maxSteps) {
+        registers[SP] = STACK_TOP;
+        registers[RA] = HALT;
+        pc = labels.get("main");
+
+        long steps = 0;
+        Status status = null;
+        while (status == null) {
+            if (pc == HALT) {
+                status = Status.OK;
+            } else if (++steps > maxSteps) {
+                status = Status.TIMEOUT;
+            } else {
+                status = execute(code.get(pc++));
+            }
+        }
+        return new Result(output.toString(), status, steps, STACK_TOP - stackPointer);
+    }
+
+    /**
+     * @return The status the program ended with, or null if it continues.
+     */
+    private Status execute(Instruction instruction) {
+        switch (instruction.opcode) {
+            case "add", "sub", "mul", "div", "rem", "and", "or", "xor", "sll", "slr", "sar" -> {
+                final int x = value(instruction, 1);
+                final int y = value(instruction, 2);
+                if ((instruction.opcode.equals("div") || instruction.opcode.equals("rem")) && y == 0) {
+                    return Status.DIVISION_BY_ZERO;
+                }
+                setRegister(instruction.values[0], switch (instruction.opcode) {
+                    case "add" -> x + y;
+                    case "sub" -> x - y;
+                    case "mul" -> x * y;
+                    case "div" -> x / y;
+                    case "rem" -> x % y;
+                    case "and" -> x & y;
+                    case "or" -> x | y;
+                    case "xor" -> x ^ y;
+                    case "sll" -> x << y;
+                    case "slr" -> x >>> y;
+                    default -> x >> y;
+                });
+            }
+            case "ldw" -> setRegister(instruction.values[0], load(value(instruction, 1) + value(instruction, 2)));
+            case "stw" -> store(value(instruction, 1) + value(instruction, 2), value(instruction, 0));
+            case "beq", "bne", "blt", "ble", "bgt", "bge", "bltu", "bleu", "bgtu", "bgeu" -> {
+                final int x = value(instruction, 0);
+                final int y = value(instruction, 1);
+                final boolean taken = switch (instruction.opcode) {
+                    case "beq" -> x == y;
+                    case "bne" -> x != y;
+                    case "blt" -> x < y;
+                    case "ble" -> x <= y;
+                    case "bgt" -> x > y;
+                    case "bge" -> x >= y;
+                    case "bltu" -> Integer.compareUnsigned(x, y) < 0;
+                    case "bleu" -> Integer.compareUnsigned(x, y) <= 0;
+                    case "bgtu" -> Integer.compareUnsigned(x, y) > 0;
+                    default -> Integer.compareUnsigned(x, y) >= 0;
+                };
+                if (taken) return jump(instruction.target);
+            }
+            case "j" -> {
+                return jump(instruction.target);
+            }
+            case "jal" -> {
+                registers[RA] = pc;
+                return jump(instruction.target);
+            }
+            case "jr" -> pc = value(instruction, 0);
+            default -> throw new IllegalArgumentException("Unsupported instruction " + instruction.opcode);
+        }
+        return null;
+    }
+
+    /**
+     * Continues at a label, or runs a library procedure and returns to the address in $31.
+     */
+    private Status jump(String target) {
+        final Integer address = labels.get(target);
+        if (address != null) {
+            pc = address;
+            return null;
+        }
+
+        final int argument = load(registers[SP]);
+        switch (target) {
+            case "printi" -> output.append(argument);
+            case "printc" -> output.append((char) (argument & 0xFF));
+            case "exit" -> {
+                return Status.EXIT;
+            }
+            case "_indexError" -> {
+                return Status.INDEX_ERROR;
+            }
+            default -> throw new IllegalArgumentException("Unsupported library procedure " + target);
+        }
+        pc = registers[RA];
+        return null;
+    }
+
+    private int value(Instruction instruction, int operand) {
+        return instruction.registers[operand] ? registers[instruction.values[operand]] : instruction.values[operand];
+    }
+
+    private void setRegister(int register, int value) {
+        if (register == 0) return;
+        registers[register] = value;
+        if (register == SP) stackPointer = Math.min(stackPointer, value);
+    }
+
+    private int load(int address) {
+        if (address % 4 != 0) throw new IllegalStateException("Unaligned load from " + Integer.toHexString(address));
+        return memory.getOrDefault(address, 0);
+    }
+
+    private void store(int address, int value) {
+        if (address % 4 != 0) throw new IllegalStateException("Unaligned store to " + Integer.toHexString(address));
+        memory.put(address, value);
+    }
+}
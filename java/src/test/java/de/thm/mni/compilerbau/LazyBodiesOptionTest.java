@@ -0,0 +1,39 @@
+package de.thm.mni.compilerbau;
+
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that the compiler reports a syntax error in a procedure body before printing anything, with and without
+ * --lazy-bodies.
+ */
+class LazyBodiesOptionTest {
+    @ParameterizedTest(name = "{0}")
+    @ValueSource(strings = {"--absyn", "--semant", "--vars"})
+    void reportsSyntaxErrorsInBodiesBeforeAnyOutput(String phase, @TempDir Path directory) throws Exception {
+        final Path source = directory.resolve("broken.spl");
+        Files.writeString(source, """
+                proc p(x: int) {
+                    printi(x);
+                }
+
+                proc main() {
+                    var y: int;
+                    y := 1;
+                    if (y < 2) y := ;
+                }
+                """);
+        final CorpusTest.Compilation eager = CorpusTest.runCompiler(phase, source.toString());
+        final CorpusTest.Compilation lazy = CorpusTest.runCompiler(phase, "--lazy-bodies", source.toString());
+        assertEquals(100, eager.exitCode(), eager.output());
+        assertEquals(eager.exitCode(), lazy.exitCode());
+        assertEquals(eager.output(), lazy.output());
+        assertTrue(lazy.output().startsWith("An error occurred at Line 8"), lazy.output());
+    }
+}
@@ -0,0 +1,50 @@
+package de.thm.mni.compilerbau.absyn;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AstPrinterTest {
+    private static final Position POSITION = new Position(1, 1);
+
+    private static Statement nestedWhiles(int depth) {
+        Statement statement = new EmptyStatement(POSITION);
+        for (int i = 0; i < depth; i++) {
+            final Expression condition = new BinaryExpression(POSITION, BinaryExpression.Operator.LST,
+                    new IntLiteral(POSITION, 0), new IntLiteral(POSITION, 1));
+            statement = new WhileStatement(POSITION, condition, new CompoundStatement(POSITION, List.of(statement)));
+        }
+        return statement;
+    }
+
+    @Test
+    void printsNodesWithTheirArguments() {
+        assertEquals("""
+                WhileStatement(
+                  BinaryExpression(
+                    LST,
+                    IntLiteral(
+                      0),
+                    IntLiteral(
+                      1)),
+                  CompoundStatement(
+                    EmptyStatement()))""", AstPrinter.toString(nestedWhiles(1)));
+    }
+
+    @Test
+    void printsDeeplyNestedTrees() {
+        final int depth = 500;
+        final String text = AstPrinter.toString(nestedWhiles(depth));
+        assertEquals(depth, text.lines().filter(line -> line.strip().equals("WhileStatement(")).count());
+        assertTrue(text.endsWith("EmptyStatement()" + "))".repeat(depth)));
+
+        // A recursive printer exhausts the default stack at this depth. The output is discarded, as the indentation
+        // makes it grow quadratically with the depth.
+        final PrintWriter out = new PrintWriter(Writer.nullWriter());
+        assertDoesNotThrow(() -> nestedWhiles(5000).accept(new AstPrinter(out)));
+    }
+}
@@ -0,0 +1,77 @@
+package de.thm.mni.compilerbau.phases._02_03_parser;
+
+import de.thm.mni.compilerbau.CommandLineOptions;
+import de.thm.mni.compilerbau.absyn.AstPrinter;
+import de.thm.mni.compilerbau.absyn.Program;
+import de.thm.mni.compilerbau.phases._01_scanner.Scanner;
+import de.thm.mni.compilerbau.utils.SplError;
+import java_cup.runtime.DefaultSymbolFactory;
+import java_cup.runtime.SymbolFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that parsing with --lazy-bodies yields the same abstract syntax tree and the same syntax errors as parsing
+ * the whole program at once.
+ */
+class LazyBodyTest {
+    @SuppressWarnings("deprecation")
+    private static Program parseLazily(String source) throws Exception {
+        final CommandLineOptions options = new CommandLineOptions();
+        options.lazyBodies = true;
+        final SymbolFactory symbolFactory = new DefaultSymbolFactory();
+        final Parser parser = new Parser(new LazyBodyScanner(new Scanner(new StringReader(source)), symbolFactory, options),
+                symbolFactory);
+        parser.options = options;
+        final Program program = (Program) parser.parse().value;
+        LazyBody.forceAll(program);
+        return program;
+    }
+
+    static Stream<Path> programs() throws IOException, URISyntaxException {
+        final Path corpus = Path.of(Objects.requireNonNull(LazyBodyTest.class.getResource("/corpus")).toURI());
+        try (Stream<Path> files = Files.list(corpus)) {
+            return files.filter(file -> file.toString().endsWith(".spl")).sorted().toList().stream();
+        }
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("programs")
+    void buildsTheSameTreeAsEagerParsing(Path program) throws Exception {
+        final String source = Files.readString(program);
+        assertEquals(AstPrinter.toString(ParserScalingTest.parse(source)), AstPrinter.toString(parseLazily(source)));
+    }
+
+    @Test
+    void reportsSyntaxErrorsInBodiesLikeEagerParsing() {
+        final String source = """
+                proc p(x: int) {
+                    printi(x);
+                }
+
+                proc main() {
+                    var y: int;
+                    y := 1;
+                    if (y < 2) y := ;
+                }
+                """;
+        final SplError eager = assertThrows(SplError.class, () -> ParserScalingTest.parse(source));
+        final SplError lazy = assertThrows(SplError.class, () -> parseLazily(source));
+        assertEquals(100, lazy.errorCode);
+        assertEquals(eager.errorCode, lazy.errorCode);
+        assertEquals(eager.position.line, lazy.position.line);
+        assertEquals(eager.position.column, lazy.position.column);
+        assertEquals(eager.getMessage(), lazy.getMessage());
+    }
+}
@@ -0,0 +1,116 @@
+package de.thm.mni.compilerbau.phases._02_03_parser;
+
+import de.thm.mni.compilerbau.absyn.CompoundStatement;
+import de.thm.mni.compilerbau.absyn.ProcedureDefinition;
+import de.thm.mni.compilerbau.absyn.Program;
+import de.thm.mni.compilerbau.absyn.Statement;
+import de.thm.mni.compilerbau.absyn.WhileStatement;
+import de.thm.mni.compilerbau.phases._01_scanner.Scanner;
+import java_cup.runtime.DefaultSymbolFactory;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that the parser handles very long lists and very deep nesting, and that its running time grows linearly with
+ * the length of the lists.
+ */
+class ParserScalingTest {
+    private static final int SMALL = 20_000;
+    private static final int LARGE = 4 * SMALL;
+    // A linear parser needs about 4 times as long for the large input, a quadratic one 16 times
+    private static final double MAX_RATIO = 8;
+
+    @SuppressWarnings("deprecation")
+    static Program parse(String source) throws Exception {
+        final Parser parser = new Parser(new Scanner(new StringReader(source)), new DefaultSymbolFactory());
+        return (Program) parser.parse().value;
+    }
+
+    /**
+     * @return The shortest of several parse times of the source in nanoseconds, after the parser has been warmed up.
+     */
+    private static long parseTime(String source) throws Exception {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            final long start = System.nanoTime();
+            parse(source);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    private static void assertLinear(IntFunction<String> generator) throws Exception {
+        final String small = generator.apply(SMALL);
+        final String large = generator.apply(LARGE);
+        parseTime(small); // Warm up the JIT compiler
+        final long smallTime = parseTime(small);
+        final long largeTime = parseTime(large);
+        final double ratio = (double) largeTime / smallTime;
+        assertTrue(ratio < MAX_RATIO, String.format("Parsing %d times as much took %.1f times as long (%d ms vs. %d ms)",
+                LARGE / SMALL, ratio, largeTime / 1_000_000, smallTime / 1_000_000));
+    }
+
+    static String declarations(int count) {
+        final StringBuilder source = new StringBuilder();
+        for (int i = 0; i < count; i++) source.append("type t").append(i).append(" = int;\n");
+        source.append("proc main() {}\n");
+        return source.toString();
+    }
+
+    static String statements(int count) {
+        final StringBuilder source = new StringBuilder("proc main() {\n    var x: int;\n");
+        for (int i = 0; i < count; i++) source.append("    x := x + ").append(i).append(";\n");
+        return source.append("}\n").toString();
+    }
+
+    static String parameters(int count) {
+        final StringBuilder source = new StringBuilder("proc p(");
+        for (int i = 0; i < count; i++) source.append(i == 0 ? "" : ", ").append("a").append(i).append(": int");
+        return source.append(") {}\nproc main() {}\n").toString();
+    }
+
+    static String nestedWhiles(int depth) {
+        final StringBuilder source = new StringBuilder("proc main() {\n    var x: int;\n");
+        source.append("while (x < 1) {\n".repeat(depth));
+        source.append("x := 1;\n");
+        source.append("}\n".repeat(depth));
+        return source.append("}\n").toString();
+    }
+
+    @Test
+    void longDeclarationListsParseInLinearTime() throws Exception {
+        assertEquals(SMALL + 1, parse(declarations(SMALL)).definitions.size());
+        assertLinear(ParserScalingTest::declarations);
+    }
+
+    @Test
+    void longStatementListsParseInLinearTime() throws Exception {
+        final ProcedureDefinition main = (ProcedureDefinition) parse(statements(SMALL)).definitions.get(0);
+        assertEquals(SMALL, main.body.size());
+        assertLinear(ParserScalingTest::statements);
+    }
+
+    @Test
+    void longParameterListsParseInLinearTime() throws Exception {
+        final ProcedureDefinition p = (ProcedureDefinition) parse(parameters(SMALL)).definitions.get(0);
+        assertEquals(SMALL, p.parameters.size());
+        assertLinear(ParserScalingTest::parameters);
+    }
+
+    @Test
+    void deeplyNestedBlocksDoNotOverflowTheStack() throws Exception {
+        final int depth = 100_000;
+        final ProcedureDefinition main = (ProcedureDefinition) parse(nestedWhiles(depth)).definitions.get(0);
+        int levels = 0;
+        Statement statement = main.body.get(0);
+        while (statement instanceof WhileStatement loop) {
+            levels++;
+            statement = ((CompoundStatement) loop.body).statements.get(0);
+        }
+        assertEquals(depth, levels);
+    }
+}
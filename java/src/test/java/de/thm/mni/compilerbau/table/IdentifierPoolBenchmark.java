@@ -0,0 +1,67 @@
+package de.thm.mni.compilerbau.table;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.ToIntFunction;
+
+/**
+ * Compares the {@link IdentifierPool} with {@link String#intern()} when several threads intern names at once.
+ * <p>
+ * Every thread interns its own copies of the same set of names over and over, like parsers working on different
+ * procedures that use the same identifiers. The time per interned name is printed for 1, 2, 4 and 8 threads.
+ * <p>
+ * Run with: java -cp target/classes:target/test-classes de.thm.mni.compilerbau.table.IdentifierPoolBenchmark [names] [rounds]
+ */
+public class IdentifierPoolBenchmark {
+    public static void main(String[] args) throws Exception {
+        final int nameCount = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        final int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        System.out.printf("%d distinct names, %d rounds per thread%n", nameCount, rounds);
+        System.out.printf("%-8s %22s %22s%n", "threads", "IdentifierPool ns/op", "String.intern ns/op");
+        for (int threads = 1; threads <= 8; threads *= 2) {
+            // The first run of each variant only warms up the JIT.
+            run(threads, nameCount, rounds / 4, IdentifierPool::intern);
+            run(threads, nameCount, rounds / 4, s -> System.identityHashCode(s.intern()));
+
+            final double pool = run(threads, nameCount, rounds, IdentifierPool::intern);
+            final double intern = run(threads, nameCount, rounds, s -> System.identityHashCode(s.intern()));
+            System.out.printf("%-8d %22.1f %22.1f%n", threads, pool, intern);
+        }
+    }
+
+    /**
+     * @return The average time per interned name in nanoseconds.
+     */
+    private static double run(int threads, int nameCount, int rounds, ToIntFunction<String> intern) throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Callable<Integer>> tasks = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                // Fresh String objects for every thread, so that no lookup can be answered by reference equality.
+                final String[] names = new String[nameCount];
+                for (int i = 0; i < nameCount; i++) names[i] = new String(("name" + i).toCharArray());
+
+                tasks.add(() -> {
+                    int checksum = 0;
+                    for (int r = 0; r < rounds; r++) {
+                        for (String name : names) checksum += intern.applyAsInt(name);
+                    }
+                    return checksum;
+                });
+            }
+
+            final long start = System.nanoTime();
+            for (Future<Integer> result : executor.invokeAll(tasks)) result.get();
+            final long elapsed = System.nanoTime() - start;
+
+            return (double) elapsed / ((long) nameCount * rounds * threads);
+        } finally {
+            executor.shutdown();
+        }
+    }
+}